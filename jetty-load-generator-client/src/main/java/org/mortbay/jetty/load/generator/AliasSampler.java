@@ -0,0 +1,84 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>Samples indexes with probabilities proportional to given weights,
+ * in constant time and without allocation, using Vose's alias method.</p>
+ */
+class AliasSampler {
+    private final double[] probabilities;
+    private final int[] aliases;
+
+    AliasSampler(int[] weights) {
+        int length = weights.length;
+        if (length == 0) {
+            throw new IllegalArgumentException("no weights");
+        }
+        long total = 0;
+        for (int weight : weights) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("invalid weight: " + weight);
+            }
+            total += weight;
+        }
+        probabilities = new double[length];
+        aliases = new int[length];
+        // Scale the weights so that their average is 1.
+        double[] scaled = new double[length];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < length; ++i) {
+            scaled[i] = (double)weights[i] * length / total;
+            if (scaled[i] < 1) {
+                small.push(i);
+            } else {
+                large.push(i);
+            }
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+            probabilities[less] = scaled[less];
+            aliases[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small.push(more);
+            } else {
+                large.push(more);
+            }
+        }
+        // What remains has probability 1, modulo rounding errors.
+        while (!large.isEmpty()) {
+            probabilities[large.pop()] = 1;
+        }
+        while (!small.isEmpty()) {
+            probabilities[small.pop()] = 1;
+        }
+    }
+
+    /**
+     * @param random the random number generator
+     * @return a random index, with probability proportional to its weight
+     */
+    int sample(ThreadLocalRandom random) {
+        int index = random.nextInt(probabilities.length);
+        return random.nextDouble() < probabilities[index] ? index : aliases[index];
+    }
+}
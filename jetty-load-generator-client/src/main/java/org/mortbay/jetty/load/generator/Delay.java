@@ -0,0 +1,172 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A random delay, in milliseconds, used to model the time browsers
+ * and applications take before sending a {@link Resource} request, for
+ * example to parse and render the parent resource.</p>
+ * <p>Delays are scheduled without blocking any thread.</p>
+ *
+ * @see Resource#delay(Delay)
+ * @see Resource#childrenDelay(Delay)
+ */
+public class Delay implements JSON.Convertible {
+    private Distribution distribution;
+    private long min;
+    private long max;
+    private long mean;
+
+    public Delay() {
+    }
+
+    private Delay(Distribution distribution, long min, long max, long mean) {
+        if (min < 0 || max < 0 || mean < 0) {
+            throw new IllegalArgumentException("invalid delay");
+        }
+        this.distribution = Objects.requireNonNull(distribution);
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+    }
+
+    /**
+     * @param millis the delay in milliseconds
+     * @return a constant delay
+     */
+    public static Delay constant(long millis) {
+        return new Delay(Distribution.CONSTANT, millis, millis, 0);
+    }
+
+    /**
+     * @param min the minimum delay in milliseconds
+     * @param max the maximum delay in milliseconds
+     * @return a delay uniformly distributed between {@code min} and {@code max}
+     */
+    public static Delay uniform(long min, long max) {
+        if (max < min) {
+            throw new IllegalArgumentException("invalid uniform delay [" + min + ", " + max + "]");
+        }
+        return new Delay(Distribution.UNIFORM, min, max, 0);
+    }
+
+    /**
+     * @param min the minimum delay in milliseconds
+     * @param mean the mean of the exponential part of the delay in milliseconds
+     * @param max the maximum delay in milliseconds, or 0 for no maximum
+     * @return a delay of {@code min} plus an exponentially distributed delay, capped at {@code max}
+     */
+    public static Delay exponential(long min, long mean, long max) {
+        return new Delay(Distribution.EXPONENTIAL, min, max, mean);
+    }
+
+    public Distribution getDistribution() {
+        return distribution;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getMean() {
+        return mean;
+    }
+
+    /**
+     * @param random the random number generator
+     * @return a random delay in milliseconds
+     */
+    long sample(ThreadLocalRandom random) {
+        switch (distribution) {
+            case CONSTANT:
+                return min;
+            case UNIFORM:
+                return min == max ? min : random.nextLong(min, max + 1);
+            case EXPONENTIAL:
+                long result = min + Math.round(-mean * Math.log(1 - random.nextDouble()));
+                return max > 0 ? Math.min(result, max) : result;
+            default:
+                throw new IllegalStateException("unknown distribution " + distribution);
+        }
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("distribution", getDistribution().name().toLowerCase(Locale.ENGLISH));
+        out.add("min", getMin());
+        out.add("max", getMax());
+        if (getDistribution() == Distribution.EXPONENTIAL) {
+            out.add("mean", getMean());
+        }
+    }
+
+    @Override
+    public void fromJSON(Map map) {
+        distribution = Distribution.valueOf(((String)map.get("distribution")).toUpperCase(Locale.ENGLISH));
+        min = asLong(map, "min");
+        max = asLong(map, "max");
+        mean = asLong(map, "mean");
+        if (distribution == Distribution.CONSTANT && max < min) {
+            max = min;
+        }
+    }
+
+    private static long asLong(Map<?, ?> map, String key) {
+        Number value = (Number)map.get(key);
+        return value == null ? 0 : value.longValue();
+    }
+
+    @Override
+    public String toString() {
+        switch (distribution) {
+            case CONSTANT:
+                return String.format("%s@%h{%d ms}", getClass().getSimpleName(), hashCode(), getMin());
+            case UNIFORM:
+                return String.format("%s@%h{uniform[%d, %d] ms}", getClass().getSimpleName(), hashCode(), getMin(), getMax());
+            default:
+                return String.format("%s@%h{%d ms+exponential(%d ms),max=%d ms}", getClass().getSimpleName(), hashCode(), getMin(), getMean(), getMax());
+        }
+    }
+
+    /**
+     * <p>The delay distributions.</p>
+     */
+    public enum Distribution {
+        /**
+         * <p>A constant delay of {@code min} milliseconds.</p>
+         */
+        CONSTANT,
+        /**
+         * <p>A delay uniformly distributed between {@code min} and {@code max} milliseconds.</p>
+         */
+        UNIFORM,
+        /**
+         * <p>A delay of {@code min} milliseconds plus an exponentially distributed delay
+         * with the given {@code mean}, capped at {@code max} milliseconds if {@code max}
+         * is greater than zero.</p>
+         */
+        EXPONENTIAL
+    }
+}
@@ -0,0 +1,256 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>Extracts a value from the response to a {@link Resource} request
+ * and stores it in the session of the virtual user, so that the
+ * {@code {name}} variables of the paths and request headers of the
+ * resources sent afterwards by the same user, typically the children
+ * resources, are filled with the extracted value.</p>
+ * <p>The value is either the value of a response header, or the text
+ * between a left boundary and a right boundary in the response content,
+ * for example a CSRF token in a HTML form:</p>
+ * <pre>
+ * Extractor.body("csrf", "name=\"csrf\" value=\"", "\"")
+ * </pre>
+ * <p>or a JSON field:</p>
+ * <pre>
+ * Extractor.body("token", "\"token\":\"", "\"")
+ * </pre>
+ * <p>Response content is scanned as it arrives, without copying or
+ * buffering it; only the bytes of the value are retained, up to
+ * {@value #MAX_VALUE_LENGTH} bytes. The first match wins.</p>
+ * <p>Cookies do not need extractors: they are stored in the session
+ * of the virtual user and sent back automatically.</p>
+ */
+public class Extractor implements JSON.Convertible {
+    public static final int MAX_VALUE_LENGTH = 4096;
+
+    private String name;
+    private String header;
+    private String left;
+    private String right;
+    private byte[] leftBytes;
+    private int[] leftTable;
+    private byte[] rightBytes;
+    private int[] rightTable;
+
+    public Extractor() {
+    }
+
+    private Extractor(String name, String header, String left, String right) {
+        this.name = Objects.requireNonNull(name);
+        this.header = header;
+        this.left = left;
+        this.right = right;
+        compile();
+    }
+
+    /**
+     * @param name the name of the variable to store the value in
+     * @param header the name of the response header whose value is extracted
+     * @return an Extractor of a response header value
+     */
+    public static Extractor header(String name, String header) {
+        return new Extractor(name, Objects.requireNonNull(header), null, null);
+    }
+
+    /**
+     * @param name the name of the variable to store the value in
+     * @param left the text that precedes the value in the response content
+     * @param right the text that follows the value in the response content
+     * @return an Extractor of a value in the response content
+     */
+    public static Extractor body(String name, String left, String right) {
+        if (left.isEmpty() || right.isEmpty()) {
+            throw new IllegalArgumentException("empty boundary for extractor " + name);
+        }
+        return new Extractor(name, null, left, right);
+    }
+
+    private void compile() {
+        if (header == null) {
+            leftBytes = left.getBytes(StandardCharsets.UTF_8);
+            leftTable = failureTable(leftBytes);
+            rightBytes = right.getBytes(StandardCharsets.UTF_8);
+            rightTable = failureTable(rightBytes);
+        }
+    }
+
+    /**
+     * @return the Knuth-Morris-Pratt failure table of the given pattern
+     */
+    private static int[] failureTable(byte[] pattern) {
+        int[] result = new int[pattern.length];
+        int length = 0;
+        for (int i = 1; i < pattern.length; ++i) {
+            while (length > 0 && pattern[i] != pattern[length]) {
+                length = result[length - 1];
+            }
+            if (pattern[i] == pattern[length]) {
+                ++length;
+            }
+            result[i] = length;
+        }
+        return result;
+    }
+
+    /**
+     * @return the name of the variable the value is stored in
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of the response header whose value is extracted,
+     * or null if the value is extracted from the response content
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the text that precedes the value in the response content
+     */
+    public String getLeft() {
+        return left;
+    }
+
+    /**
+     * @return the text that follows the value in the response content
+     */
+    public String getRight() {
+        return right;
+    }
+
+    /**
+     * @return a new stateful scanner of the content of one response
+     */
+    Scanner newScanner() {
+        return new Scanner();
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("name", getName());
+        if (getHeader() != null) {
+            out.add("header", getHeader());
+        } else {
+            out.add("left", getLeft());
+            out.add("right", getRight());
+        }
+    }
+
+    @Override
+    public void fromJSON(Map map) {
+        name = (String)map.get("name");
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("missing 'name' in extractor");
+        }
+        header = (String)map.get("header");
+        left = (String)map.get("left");
+        right = (String)map.get("right");
+        if (header == null) {
+            if (left == null || left.isEmpty()) {
+                throw new IllegalArgumentException("missing 'header' or 'left' in extractor " + name);
+            }
+            if (right == null || right.isEmpty()) {
+                throw new IllegalArgumentException("missing 'right' in extractor " + name);
+            }
+        }
+        compile();
+    }
+
+    @Override
+    public String toString() {
+        if (header != null) {
+            return String.format("%s@%h{%s<-header:%s}", getClass().getSimpleName(), hashCode(), getName(), getHeader());
+        }
+        return String.format("%s@%h{%s<-body:%s...%s}", getClass().getSimpleName(), hashCode(), getName(), getLeft(), getRight());
+    }
+
+    /**
+     * <p>Scans the response content for the boundaries of the value,
+     * also across content chunks, retaining only the value bytes.</p>
+     */
+    class Scanner {
+        private int matched;
+        private byte[] value;
+        private int length;
+        private boolean done;
+
+        /**
+         * <p>Scans the given content chunk, without modifying its position.</p>
+         *
+         * @param buffer the content chunk
+         */
+        void scan(ByteBuffer buffer) {
+            if (done) {
+                return;
+            }
+            int limit = buffer.limit();
+            for (int i = buffer.position(); i < limit; ++i) {
+                byte b = buffer.get(i);
+                if (value == null) {
+                    matched = next(leftBytes, leftTable, matched, b);
+                    if (matched == leftBytes.length) {
+                        matched = 0;
+                        value = new byte[64];
+                    }
+                } else {
+                    if (length == value.length) {
+                        if (length == MAX_VALUE_LENGTH + rightBytes.length) {
+                            // Too long, give up.
+                            value = null;
+                            done = true;
+                            return;
+                        }
+                        value = Arrays.copyOf(value, Math.min(2 * length, MAX_VALUE_LENGTH + rightBytes.length));
+                    }
+                    value[length++] = b;
+                    matched = next(rightBytes, rightTable, matched, b);
+                    if (matched == rightBytes.length) {
+                        length -= rightBytes.length;
+                        done = true;
+                        return;
+                    }
+                }
+            }
+        }
+
+        private int next(byte[] pattern, int[] table, int matched, byte b) {
+            while (matched > 0 && pattern[matched] != b) {
+                matched = table[matched - 1];
+            }
+            return pattern[matched] == b ? matched + 1 : matched;
+        }
+
+        /**
+         * @return the extracted value, or null if the value was not found
+         */
+        String getValue() {
+            return done && value != null ? new String(value, 0, length, StandardCharsets.UTF_8) : null;
+        }
+    }
+}
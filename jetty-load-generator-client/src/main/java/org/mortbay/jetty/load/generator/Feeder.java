@@ -0,0 +1,375 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+
+/**
+ * <p>A source of data records, read from a memory-mapped file, used to fill
+ * the variables of {@link Resource} path and request header templates.</p>
+ * <p>If the file name ends with {@code .csv}, the first line is the header
+ * with the comma separated column names, and every other line is a record
+ * with comma separated values (quoting is not supported); otherwise every
+ * line is a record with a single column named after the feeder.</p>
+ * <p>A template such as {@code /item/{id}?q={term}} is filled with the values
+ * of the {@code id} and {@code term} columns of one record per resource tree,
+ * so that all the resources of a tree use the same record.
+ * Values are inserted verbatim, so they must be already URL encoded.</p>
+ * <p>Records are selected according to the feeder {@link Mode}; sender threads
+ * claim blocks of records with a single atomic operation and then iterate over
+ * the block without contention.</p>
+ * <p>A feeder in {@link Mode#ZIPF} mode is a catalog of URLs whose popularity
+ * follows a Zipf distribution: the file holds the paths sorted by popularity,
+ * possibly millions of them, and since the file is memory-mapped the heap
+ * holds only the offset of every line.
+ * For example, a resource with path {@code /{urls}} and a {@code urls.txt}
+ * feeder, whose lines are paths without the leading slash, sends a request
+ * for a path sampled from the catalog every iteration.</p>
+ */
+public class Feeder extends AbstractLifeCycle implements JSON.Convertible {
+    private static final int BLOCK = 64;
+
+    private final AtomicLong next = new AtomicLong();
+    private String name;
+    private String path;
+    private Mode mode;
+    private double exponent = 1;
+    private ByteBuffer buffer;
+    private int[] bounds;
+    private List<String> columns;
+    private boolean csv;
+    private ThreadLocal<Cursor> cursors;
+    private ZipfSampler zipf;
+
+    public Feeder() {
+    }
+
+    /**
+     * @param path the path of the data file
+     * @param mode the record selection mode
+     */
+    public Feeder(String path, Mode mode) {
+        this(nameOf(path), path, mode);
+    }
+
+    /**
+     * @param name the feeder name, which is also the column name for non-CSV files
+     * @param path the path of the data file
+     * @param mode the record selection mode
+     */
+    public Feeder(String name, String path, Mode mode) {
+        this(name, path, mode, 1);
+    }
+
+    /**
+     * @param path the path of the data file
+     * @param mode the record selection mode
+     * @param exponent the exponent of the Zipf distribution, used only in {@link Mode#ZIPF} mode
+     */
+    public Feeder(String path, Mode mode, double exponent) {
+        this(nameOf(path), path, mode, exponent);
+    }
+
+    /**
+     * @param name the feeder name, which is also the column name for non-CSV files
+     * @param path the path of the data file
+     * @param mode the record selection mode
+     * @param exponent the exponent of the Zipf distribution, used only in {@link Mode#ZIPF} mode
+     */
+    public Feeder(String name, String path, Mode mode, double exponent) {
+        this.name = Objects.requireNonNull(name);
+        this.path = Objects.requireNonNull(path);
+        this.mode = Objects.requireNonNull(mode);
+        this.exponent = exponent;
+    }
+
+    private static String nameOf(String path) {
+        String fileName = Path.of(path).getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    /**
+     * @return the feeder name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the path of the data file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the record selection mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the exponent of the Zipf distribution of the records in {@link Mode#ZIPF} mode
+     */
+    public double getExponent() {
+        return exponent;
+    }
+
+    /**
+     * @return the column names, available when this feeder is started
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the number of records, available when this feeder is started
+     */
+    public int getRecords() {
+        int[] bounds = this.bounds;
+        return bounds == null ? 0 : bounds.length - 1;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("feeder file too large: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int limit = buffer.limit();
+        int lines = 0;
+        for (int i = 0; i < limit; ++i) {
+            if (buffer.get(i) == '\n') {
+                ++lines;
+            }
+        }
+        if (limit > 0 && buffer.get(limit - 1) != '\n') {
+            ++lines;
+        }
+        // The start offset of every line, plus the end offset of the last line.
+        int[] bounds = new int[lines + 1];
+        int line = 0;
+        for (int i = 0; i < limit; ++i) {
+            if (buffer.get(i) == '\n') {
+                bounds[++line] = i + 1;
+            }
+        }
+        bounds[lines] = limit;
+        this.buffer = buffer;
+        this.csv = path.toLowerCase(Locale.ENGLISH).endsWith(".csv");
+        if (csv) {
+            if (lines == 0) {
+                throw new IOException("missing CSV header in feeder file " + path);
+            }
+            this.columns = List.of(value(bounds, 0, -1).split(",", -1));
+            this.bounds = Arrays.copyOfRange(bounds, 1, bounds.length);
+        } else {
+            this.columns = List.of(name);
+            this.bounds = bounds;
+        }
+        if (getRecords() == 0) {
+            throw new IOException("no records in feeder file " + path);
+        }
+        next.set(0);
+        cursors = ThreadLocal.withInitial(Cursor::new);
+        zipf = mode == Mode.ZIPF ? new ZipfSampler(getRecords(), exponent) : null;
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        // The mapped memory is released when the buffer is garbage collected.
+        buffer = null;
+        bounds = null;
+        cursors = null;
+        zipf = null;
+    }
+
+    /**
+     * <p>Selects the next record according to the feeder mode.</p>
+     *
+     * @return the index of the next record
+     * @throws IllegalStateException if the mode is {@link Mode#SEQUENTIAL} and all the records have been used
+     */
+    int next() {
+        int records = getRecords();
+        if (mode == Mode.RANDOM) {
+            return ThreadLocalRandom.current().nextInt(records);
+        }
+        if (mode == Mode.ZIPF) {
+            return zipf.sample(ThreadLocalRandom.current()) - 1;
+        }
+        Cursor cursor = cursors.get();
+        if (cursor.index == cursor.end) {
+            long start = next.getAndAdd(BLOCK);
+            if (mode == Mode.SEQUENTIAL) {
+                if (start >= records) {
+                    throw new IllegalStateException("feeder " + name + " exhausted after " + records + " records");
+                }
+                cursor.end = Math.min(start + BLOCK, records);
+            } else {
+                cursor.end = start + BLOCK;
+            }
+            cursor.index = start;
+        }
+        return (int)(cursor.index++ % records);
+    }
+
+    /**
+     * @param record the record index
+     * @param column the column index
+     * @return the value of the given column of the given record
+     */
+    String value(int record, int column) {
+        StringBuilder builder = new StringBuilder();
+        append(builder, record, column);
+        return builder.toString();
+    }
+
+    private String value(int[] bounds, int record, int column) {
+        StringBuilder builder = new StringBuilder();
+        append(builder, bounds, record, column);
+        return builder.toString();
+    }
+
+    /**
+     * <p>Appends the value of the given column of the given record to the given builder.</p>
+     *
+     * @param builder the builder to append the value to
+     * @param record the record index
+     * @param column the column index
+     */
+    void append(StringBuilder builder, int record, int column) {
+        append(builder, bounds, record, column);
+    }
+
+    private void append(StringBuilder builder, int[] bounds, int record, int column) {
+        ByteBuffer buffer = this.buffer;
+        int start = bounds[record];
+        int end = bounds[record + 1];
+        if (end > start && buffer.get(end - 1) == '\n') {
+            --end;
+        }
+        if (end > start && buffer.get(end - 1) == '\r') {
+            --end;
+        }
+        // A negative column means the whole line.
+        if (column >= 0 && csv) {
+            for (int c = 0; c < column && start <= end; ++c) {
+                while (start < end && buffer.get(start) != ',') {
+                    ++start;
+                }
+                ++start;
+            }
+            if (start > end) {
+                return;
+            }
+            int stop = start;
+            while (stop < end && buffer.get(stop) != ',') {
+                ++stop;
+            }
+            end = stop;
+        }
+        for (int i = start; i < end; ++i) {
+            byte b = buffer.get(i);
+            if (b < 0) {
+                // Non-ASCII, decode the remaining bytes as UTF-8.
+                byte[] bytes = new byte[end - i];
+                buffer.duplicate().position(i).get(bytes);
+                builder.append(new String(bytes, StandardCharsets.UTF_8));
+                return;
+            }
+            builder.append((char)b);
+        }
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("name", getName());
+        out.add("path", getPath());
+        out.add("mode", getMode().name());
+        out.add("exponent", getExponent());
+    }
+
+    @Override
+    public void fromJSON(Map map) {
+        name = (String)map.get("name");
+        path = (String)map.get("path");
+        mode = Mode.valueOf((String)map.get("mode"));
+        Number exponent = (Number)map.get("exponent");
+        this.exponent = exponent == null ? 1 : exponent.doubleValue();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%h{%s,%s,%s,exponent=%s,records=%d}", getClass().getSimpleName(), hashCode(), getName(), getPath(), getMode(), getExponent(), getRecords());
+    }
+
+    /**
+     * <p>The modes to select the records of a feeder.</p>
+     */
+    public enum Mode {
+        /**
+         * <p>Every record is used once, in file order; when all the
+         * records have been used, the load generation fails.</p>
+         */
+        SEQUENTIAL,
+        /**
+         * <p>Records are selected at random, independently of each other.</p>
+         */
+        RANDOM,
+        /**
+         * <p>Records are used in file order, restarting from the first
+         * record when all the records have been used.</p>
+         */
+        CIRCULAR,
+        /**
+         * <p>Records are selected at random, with the record at index
+         * {@code i} (in file order) having probability proportional to
+         * {@code 1 / (i + 1)^exponent}, so that the first records are the
+         * most popular.</p>
+         */
+        ZIPF
+    }
+
+    /**
+     * <p>A per-thread cursor over a block of records.</p>
+     */
+    private static class Cursor {
+        private long index;
+        private long end;
+    }
+}
@@ -0,0 +1,291 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.io.Reader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Converts a browser HAR (HTTP Archive) file into a {@link Resource} tree.</p>
+ * <p>The entries of the first page of the HAR file are imported; the first
+ * of these entries, typically the page document, is the root of the tree.
+ * Resources from the origin of the root are sent to the default origin, while
+ * each other origin, for example a CDN host, is mapped to an {@link Origin}
+ * named after its host, that the resources {@link Resource#origin(String) refer to}.
+ * Entries whose URL cannot be parsed are skipped.</p>
+ * <p>The parent of an entry is inferred, in order:</p>
+ * <ul>
+ * <li>from the initiator recorded by the browser (the {@code _initiator}
+ * field of Chromium-based browsers), either the document or stylesheet that
+ * referenced the entry, or the scripts in the initiator call stack</li>
+ * <li>from the {@code Referer} request header</li>
+ * <li>from the timings, as the document, stylesheet or script entry that
+ * completed last before the entry started</li>
+ * </ul>
+ * <p>A candidate parent must have started before the entry; when no parent
+ * can be inferred, the entry is a child of the root.</p>
+ * <p>Resources have the method, the request headers (except cookies and the
+ * headers managed by the HTTP client), the request content length and the
+ * response content length of their entry.</p>
+ */
+public class HARImporter {
+    private static final Logger LOGGER = Log.getLogger(HARImporter.class);
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            HttpHeader.HOST.lowerCaseName(),
+            HttpHeader.CONNECTION.lowerCaseName(),
+            HttpHeader.KEEP_ALIVE.lowerCaseName(),
+            HttpHeader.CONTENT_LENGTH.lowerCaseName(),
+            HttpHeader.TRANSFER_ENCODING.lowerCaseName(),
+            HttpHeader.TE.lowerCaseName(),
+            HttpHeader.UPGRADE.lowerCaseName(),
+            HttpHeader.PROXY_CONNECTION.lowerCaseName(),
+            HttpHeader.ACCEPT_ENCODING.lowerCaseName(),
+            HttpHeader.COOKIE.lowerCaseName());
+
+    private HARImporter() {
+    }
+
+    /**
+     * @param reader the reader of the HAR file
+     * @return the root of the Resource tree
+     * @throws IllegalArgumentException if the HAR file has no HTTP entries
+     * @see #toResource(Reader, List)
+     */
+    public static Resource toResource(Reader reader) {
+        return toResource(reader, new ArrayList<>());
+    }
+
+    /**
+     * <p>Converts the HAR file, adding to the given list the origins,
+     * other than the origin of the root, that the resources refer to;
+     * they must be configured via {@link LoadGenerator.Builder#origin(String, String, String, int)}.</p>
+     *
+     * @param reader the reader of the HAR file
+     * @param origins the list to add the origins of the resources to
+     * @return the root of the Resource tree
+     * @throws IllegalArgumentException if the HAR file has no HTTP entries
+     */
+    public static Resource toResource(Reader reader, List<Origin> origins) {
+        Map<?, ?> log = (Map<?, ?>)((Map<?, ?>)new JSON().parse(new JSON.ReaderSource(reader))).get("log");
+        Object[] pages = (Object[])log.get("pages");
+        String pageId = pages == null || pages.length == 0 ? null : (String)((Map<?, ?>)pages[0]).get("id");
+
+        List<Entry> entries = new ArrayList<>();
+        int invalid = 0;
+        for (Object object : (Object[])log.get("entries")) {
+            Map<?, ?> map = (Map<?, ?>)object;
+            if (pageId != null && map.containsKey("pageref") && !pageId.equals(map.get("pageref"))) {
+                continue;
+            }
+            try {
+                Entry entry = Entry.from(map);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            } catch (IllegalArgumentException x) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("skipping HAR entry with invalid URL {}", ((Map<?, ?>)map.get("request")).get("url"), x);
+                }
+                ++invalid;
+            }
+        }
+        if (invalid > 0) {
+            LOGGER.info("skipped {} HAR entries with invalid URLs", invalid);
+        }
+        entries.sort(Comparator.comparingDouble(entry -> entry.start));
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("no HTTP entries in HAR file");
+        }
+
+        Entry root = entries.get(0);
+        String rootOrigin = origin(root.uri);
+        for (Entry entry : entries) {
+            if (!rootOrigin.equals(origin(entry.uri))) {
+                String scheme = entry.uri.getScheme().toLowerCase(Locale.ENGLISH);
+                String host = entry.uri.getHost().toLowerCase(Locale.ENGLISH);
+                int port = port(entry.uri);
+                Origin origin = origins.stream()
+                        .filter(o -> o.matches(scheme, host, port))
+                        .findFirst()
+                        .orElse(null);
+                if (origin == null) {
+                    // Named after the host, or also the port if the host has several origins.
+                    String name = host;
+                    if (origins.stream().anyMatch(o -> o.getName().equals(host))) {
+                        name = host + ":" + port;
+                    }
+                    origin = new Origin(name, scheme, host, port);
+                    origins.add(origin);
+                }
+                entry.resource.origin(origin.getName());
+            }
+        }
+
+        for (int i = 1; i < entries.size(); ++i) {
+            Entry entry = entries.get(i);
+            Entry parent = findParent(entries, i);
+            (parent == null ? root : parent).resource.resources(entry.resource);
+        }
+        return root.resource;
+    }
+
+    private static Entry findParent(List<Entry> entries, int index) {
+        Entry entry = entries.get(index);
+        for (String initiator : entry.initiators) {
+            // The latest entry with the initiator URL that started before.
+            for (int i = index - 1; i >= 0; --i) {
+                Entry candidate = entries.get(i);
+                if (candidate.start < entry.start && candidate.url.equals(initiator)) {
+                    return candidate;
+                }
+            }
+        }
+        Entry result = null;
+        for (int i = 0; i < index; ++i) {
+            Entry candidate = entries.get(i);
+            if ((i == 0 || candidate.initiating) && candidate.end <= entry.start && (result == null || candidate.end > result.end)) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    private static String origin(URI uri) {
+        return uri.getScheme().toLowerCase(Locale.ENGLISH) + "://" + uri.getHost().toLowerCase(Locale.ENGLISH) + ":" + port(uri);
+    }
+
+    private static int port(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return port;
+    }
+
+    private static class Entry {
+        private final List<String> initiators = new ArrayList<>();
+        private final Resource resource = new Resource();
+        private String url;
+        private URI uri;
+        private double start;
+        private double end;
+        private boolean initiating;
+
+        private static Entry from(Map<?, ?> map) {
+            Map<?, ?> request = (Map<?, ?>)map.get("request");
+            String url = (String)request.get("url");
+            URI uri = URI.create(url);
+            String scheme = uri.getScheme();
+            if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+                return null;
+            }
+            if (uri.getHost() == null) {
+                throw new IllegalArgumentException("no host in URL " + url);
+            }
+            Entry entry = new Entry();
+            entry.url = url;
+            entry.uri = uri;
+            entry.start = OffsetDateTime.parse((String)map.get("startedDateTime")).toInstant().toEpochMilli();
+            Object time = map.get("time");
+            entry.end = entry.start + (time instanceof Number ? ((Number)time).doubleValue() : 0);
+
+            Resource resource = entry.resource;
+            resource.method((String)request.get("method"));
+            String path = uri.getRawPath();
+            String query = uri.getRawQuery();
+            resource.path((path == null || path.isEmpty() ? "/" : path) + (query == null ? "" : "?" + query));
+            Object[] headers = (Object[])request.get("headers");
+            if (headers != null) {
+                for (Object object : headers) {
+                    Map<?, ?> header = (Map<?, ?>)object;
+                    String name = (String)header.get("name");
+                    String value = (String)header.get("value");
+                    if (HttpHeader.REFERER.is(name)) {
+                        entry.initiators.add(value);
+                    }
+                    if (!name.startsWith(":") && !SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ENGLISH))) {
+                        resource.requestHeader(name, value);
+                    }
+                }
+            }
+            long requestLength = asLong(request.get("bodySize"));
+            if (requestLength <= 0) {
+                Map<?, ?> postData = (Map<?, ?>)request.get("postData");
+                if (postData != null && postData.get("text") != null) {
+                    requestLength = ((String)postData.get("text")).getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+            resource.requestLength(Math.max(0, requestLength));
+            Map<?, ?> response = (Map<?, ?>)map.get("response");
+            if (response != null) {
+                Map<?, ?> content = (Map<?, ?>)response.get("content");
+                long responseLength = content == null ? -1 : asLong(content.get("size"));
+                if (responseLength < 0) {
+                    responseLength = asLong(response.get("bodySize"));
+                }
+                resource.responseLength(Math.max(0, responseLength));
+                String mimeType = content == null ? null : (String)content.get("mimeType");
+                if (mimeType != null) {
+                    mimeType = mimeType.toLowerCase(Locale.ENGLISH);
+                    entry.initiating = mimeType.contains("html") || mimeType.contains("css") || mimeType.contains("javascript");
+                }
+            }
+
+            // The initiator recorded by the browser takes precedence over the Referer.
+            Map<?, ?> initiator = (Map<?, ?>)map.get("_initiator");
+            if (initiator != null) {
+                List<String> initiators = new ArrayList<>();
+                Object initiatorURL = initiator.get("url");
+                if (initiatorURL != null) {
+                    initiators.add((String)initiatorURL);
+                }
+                addStackURLs((Map<?, ?>)initiator.get("stack"), initiators);
+                entry.initiators.addAll(0, initiators);
+            }
+            return entry;
+        }
+
+        private static void addStackURLs(Map<?, ?> stack, List<String> urls) {
+            while (stack != null) {
+                Object[] frames = (Object[])stack.get("callFrames");
+                if (frames != null) {
+                    for (Object frame : frames) {
+                        Object url = ((Map<?, ?>)frame).get("url");
+                        if (url instanceof String && !((String)url).isEmpty()) {
+                            urls.add((String)url);
+                        }
+                    }
+                }
+                stack = (Map<?, ?>)stack.get("parent");
+            }
+        }
+
+        private static long asLong(Object value) {
+            return value instanceof Number ? ((Number)value).longValue() : -1;
+        }
+    }
+}
@@ -28,6 +28,7 @@ public class HTTP2ClientTransportBuilder implements HTTPClientTransportBuilder {
     private int selectors = 1;
     private int sessionRecvWindow = 16 * 1024 * 1024;
     private int streamRecvWindow = 16 * 1024 * 1024;
+    private final HTTP2Statistics statistics = new HTTP2Statistics();
 
     /**
      * @param selectors the number of NIO selectors
@@ -68,6 +69,14 @@ public class HTTP2ClientTransportBuilder implements HTTPClientTransportBuilder {
         return streamRecvWindow;
     }
 
+    /**
+     * @return the flow control and stream concurrency statistics
+     * of the transports built by this builder
+     */
+    public HTTP2Statistics getStatistics() {
+        return statistics;
+    }
+
     @Override
     public String getType() {
         return TYPE;
@@ -79,6 +88,7 @@ public class HTTP2ClientTransportBuilder implements HTTPClientTransportBuilder {
         http2Client.setInitialSessionRecvWindow(getSessionRecvWindow());
         http2Client.setInitialStreamRecvWindow(getStreamRecvWindow());
         http2Client.setSelectors(getSelectors());
+        http2Client.setFlowControlStrategyFactory(() -> new HTTP2Statistics.StatisticsFlowControlStrategy(statistics));
         return new HttpClientTransportOverHTTP2(http2Client);
     }
 
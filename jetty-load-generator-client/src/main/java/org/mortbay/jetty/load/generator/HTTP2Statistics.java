@@ -0,0 +1,194 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.HTTP2Stream;
+import org.eclipse.jetty.http2.ISession;
+import org.eclipse.jetty.http2.IStream;
+
+/**
+ * <p>Statistics about HTTP/2 flow control and stream concurrency,
+ * gathered across all the sessions of the {@link HTTP2ClientTransportBuilder HTTP/2 transport}.</p>
+ * <p>The stall times are the times sessions and streams could not send data
+ * because their flow control send window was exhausted.
+ * The minimum receive windows tell whether the server could have been stalled
+ * by the load generator receive windows, in which case they reach zero.</p>
+ * <p>Statistics are gathered without locks, by the threads that process
+ * HTTP/2 frames, and can be read at any time.</p>
+ *
+ * @see HTTP2ClientTransportBuilder#getStatistics()
+ */
+public class HTTP2Statistics {
+    private final LongAdder sessionStalls = new LongAdder();
+    private final LongAdder sessionStallTime = new LongAdder();
+    private final LongAdder streamStalls = new LongAdder();
+    private final LongAdder streamStallTime = new LongAdder();
+    private final AtomicInteger maxConcurrentStreams = new AtomicInteger();
+    private final AtomicInteger serverMaxConcurrentStreams = new AtomicInteger(-1);
+    private final AtomicInteger serverInitialStreamWindow = new AtomicInteger(-1);
+    private final AtomicInteger minSessionRecvWindow = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger minStreamRecvWindow = new AtomicInteger(Integer.MAX_VALUE);
+
+    /**
+     * @return the number of times a session send window has been exhausted
+     */
+    public long getSessionStalls() {
+        return sessionStalls.longValue();
+    }
+
+    /**
+     * @return the cumulative time sessions have been stalled by flow control, in nanoseconds
+     */
+    public long getSessionStallTime() {
+        return sessionStallTime.longValue();
+    }
+
+    /**
+     * @return the number of times a stream send window has been exhausted
+     */
+    public long getStreamStalls() {
+        return streamStalls.longValue();
+    }
+
+    /**
+     * @return the cumulative time streams have been stalled by flow control, in nanoseconds
+     */
+    public long getStreamStallTime() {
+        return streamStallTime.longValue();
+    }
+
+    /**
+     * @return the maximum number of concurrent streams opened in a single session
+     */
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams.get();
+    }
+
+    /**
+     * @return the max number of concurrent streams allowed by the server via
+     * {@code SETTINGS_MAX_CONCURRENT_STREAMS}, or -1 if no stream has been opened
+     */
+    public int getServerMaxConcurrentStreams() {
+        return serverMaxConcurrentStreams.get();
+    }
+
+    /**
+     * @return the initial stream send window, as set by the server via
+     * {@code SETTINGS_INITIAL_WINDOW_SIZE}, or -1 if no stream has been opened
+     */
+    public int getServerInitialStreamWindow() {
+        return serverInitialStreamWindow.get();
+    }
+
+    /**
+     * @return the minimum session receive window observed when receiving data, or -1 if no data has been received
+     */
+    public int getMinSessionRecvWindow() {
+        int result = minSessionRecvWindow.get();
+        return result == Integer.MAX_VALUE ? -1 : result;
+    }
+
+    /**
+     * @return the minimum stream receive window observed when receiving data, or -1 if no data has been received
+     */
+    public int getMinStreamRecvWindow() {
+        int result = minStreamRecvWindow.get();
+        return result == Integer.MAX_VALUE ? -1 : result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%x[sessionStalls=%d,streamStalls=%d]", getClass().getSimpleName(), hashCode(), getSessionStalls(), getStreamStalls());
+    }
+
+    /**
+     * <p>A flow control strategy that records the flow control
+     * events of a session into {@link HTTP2Statistics}.</p>
+     */
+    static class StatisticsFlowControlStrategy extends BufferingFlowControlStrategy {
+        private final Map<IStream, Long> streamStalls = new ConcurrentHashMap<>();
+        private final HTTP2Statistics statistics;
+        private volatile long sessionStall;
+
+        StatisticsFlowControlStrategy(HTTP2Statistics statistics) {
+            super(0.5F);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public void onStreamCreated(IStream stream) {
+            super.onStreamCreated(stream);
+            ISession session = stream.getSession();
+            if (session instanceof HTTP2Session) {
+                HTTP2Session http2Session = (HTTP2Session)session;
+                statistics.serverMaxConcurrentStreams.set(http2Session.getMaxLocalStreams());
+                statistics.maxConcurrentStreams.accumulateAndGet(http2Session.getStreamCount(), Math::max);
+            }
+            statistics.serverInitialStreamWindow.set(getInitialStreamSendWindow());
+        }
+
+        @Override
+        public void onStreamDestroyed(IStream stream) {
+            super.onStreamDestroyed(stream);
+            streamStalls.remove(stream);
+        }
+
+        @Override
+        public void onDataReceived(ISession session, IStream stream, int length) {
+            super.onDataReceived(session, stream, length);
+            if (session instanceof HTTP2Session) {
+                statistics.minSessionRecvWindow.accumulateAndGet(((HTTP2Session)session).getRecvWindow(), Math::min);
+            }
+            if (stream instanceof HTTP2Stream) {
+                statistics.minStreamRecvWindow.accumulateAndGet(((HTTP2Stream)stream).getRecvWindow(), Math::min);
+            }
+        }
+
+        @Override
+        protected void onSessionStalled(ISession session) {
+            super.onSessionStalled(session);
+            statistics.sessionStalls.increment();
+            sessionStall = System.nanoTime();
+        }
+
+        @Override
+        protected void onSessionUnstalled(ISession session) {
+            super.onSessionUnstalled(session);
+            statistics.sessionStallTime.add(System.nanoTime() - sessionStall);
+        }
+
+        @Override
+        protected void onStreamStalled(IStream stream) {
+            super.onStreamStalled(stream);
+            statistics.streamStalls.increment();
+            streamStalls.put(stream, System.nanoTime());
+        }
+
+        @Override
+        protected void onStreamUnstalled(IStream stream) {
+            super.onStreamUnstalled(stream);
+            Long stall = streamStalls.remove(stream);
+            if (stall != null) {
+                statistics.streamStallTime.add(System.nanoTime() - stall);
+            }
+        }
+    }
+}
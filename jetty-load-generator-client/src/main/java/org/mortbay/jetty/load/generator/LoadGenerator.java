@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EventListener;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -33,18 +34,29 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import org.eclipse.jetty.client.ConnectionPool;
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpDestination;
 import org.eclipse.jetty.client.HttpRequest;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
+import org.eclipse.jetty.client.api.Destination;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.CountingCallback;
+import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.SocketAddressResolver;
 import org.eclipse.jetty.util.ajax.JSON;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -116,15 +128,33 @@ public class LoadGenerator extends ContainerLifeCycle {
 
     private final Config config;
     private final CyclicBarrier barrier;
+    private final LongAdder sentRequests = new LongAdder();
+    private final LongAdder completedRequests = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final LongAdder sentResources = new LongAdder();
+    private final LongAdder schedulingLag = new LongAdder();
+    private final AtomicInteger senderThreads = new AtomicInteger();
+    private final Scenario[] scenarios;
+    private final AliasSampler scenarioSampler;
+    private final Feeder[] feeders;
+    private Map<Resource, RequestTemplate> templates = Map.of();
+    private List<String> extracted = List.of();
+    private Map<Resource, int[]> extractorIndexes = Map.of();
+    private Replay.EntryReader replayReader;
     private ExecutorService executorService;
     private volatile boolean interrupted;
+    private volatile boolean ended;
 
     LoadGenerator(Config config) {
         this.config = config;
         this.barrier = new CyclicBarrier(config.threads);
+        this.scenarios = config.getScenarios().toArray(new Scenario[0]);
+        this.scenarioSampler = scenarios.length == 0 ? null : new AliasSampler(Arrays.stream(scenarios).mapToInt(Scenario::getWeight).toArray());
+        this.feeders = config.getFeeders().toArray(new Feeder[0]);
         addBean(config);
         addBean(config.getExecutor());
         addBean(config.getScheduler());
+        Arrays.stream(feeders).forEach(this::addBean);
     }
 
     private CompletableFuture<Void> spawn() {
@@ -140,9 +170,88 @@ public class LoadGenerator extends ContainerLifeCycle {
 
     @Override
     protected void doStart() throws Exception {
-        executorService = Executors.newCachedThreadPool();
+        executorService = Executors.newCachedThreadPool(task -> new Thread(task, getSenderThreadNamePrefix() + senderThreads.incrementAndGet()));
         interrupted = false;
+        ended = false;
+        sentRequests.reset();
+        completedRequests.reset();
+        rejectedRequests.reset();
+        sentResources.reset();
+        schedulingLag.reset();
+        checkOrigins(config.getResource());
+        config.getScenarios().forEach(scenario -> checkOrigins(scenario.getResource()));
         super.doStart();
+        List<String> extracted = new ArrayList<>();
+        Map<Resource, int[]> extractorIndexes = new IdentityHashMap<>();
+        collectExtracted(config.getResource(), extracted, extractorIndexes);
+        config.getScenarios().forEach(scenario -> collectExtracted(scenario.getResource(), extracted, extractorIndexes));
+        this.extracted = extracted;
+        this.extractorIndexes = extractorIndexes;
+        // Feeders are started, so their columns are known.
+        Map<Resource, RequestTemplate> templates = new IdentityHashMap<>();
+        if (feeders.length > 0 || !extracted.isEmpty()) {
+            parseTemplates(config.getResource(), templates);
+            config.getScenarios().forEach(scenario -> parseTemplates(scenario.getResource(), templates));
+        }
+        this.templates = templates;
+        // The log is read once, the sender threads share the reader.
+        Replay replay = config.getReplay();
+        replayReader = replay == null ? null : replay.newEntryReader();
+    }
+
+    private void checkOrigins(Resource resource) {
+        String origin = resource.getOrigin();
+        if (origin != null && config.findOrigin(origin) == null) {
+            throw new IllegalArgumentException("unknown origin " + origin + " for " + resource);
+        }
+        resource.getResources().forEach(this::checkOrigins);
+    }
+
+    private void collectExtracted(Resource resource, List<String> extracted, Map<Resource, int[]> extractorIndexes) {
+        List<Extractor> extractors = resource.getExtractors();
+        if (!extractors.isEmpty()) {
+            // Indexed like the extractors, so that the session values
+            // are resolved once rather than for every response.
+            int[] indexes = new int[extractors.size()];
+            for (int i = 0; i < indexes.length; ++i) {
+                String name = extractors.get(i).getName();
+                int index = extracted.indexOf(name);
+                if (index < 0) {
+                    index = extracted.size();
+                    extracted.add(name);
+                }
+                indexes[i] = index;
+            }
+            extractorIndexes.put(resource, indexes);
+        }
+        resource.getResources().forEach(child -> collectExtracted(child, extracted, extractorIndexes));
+    }
+
+    private void parseTemplates(Resource resource, Map<Resource, RequestTemplate> templates) {
+        Template path = Template.parse(resource.getPath(), feeders, extracted, true);
+        List<String> headerNames = new ArrayList<>();
+        List<Template> headerValues = new ArrayList<>();
+        for (HttpField field : resource.getRequestHeaders()) {
+            Template value = Template.parse(field.getValue(), feeders, extracted, false);
+            if (value != null) {
+                headerNames.add(field.getName());
+                headerValues.add(value);
+            }
+        }
+        if (path != null || !headerNames.isEmpty()) {
+            templates.put(resource, new RequestTemplate(path, headerNames.toArray(new String[0]), headerValues.toArray(new Template[0])));
+        }
+        resource.getResources().forEach(child -> parseTemplates(child, templates));
+    }
+
+    private void fillTemplates(Request request, Resource.Info info, Session session) {
+        Map<Resource, RequestTemplate> templates = this.templates;
+        if (!templates.isEmpty()) {
+            RequestTemplate template = templates.get(info.getResource());
+            if (template != null) {
+                template.fill(request, feeders, info.getRecords(), session);
+            }
+        }
     }
 
     private void halt() {
@@ -154,6 +263,10 @@ public class LoadGenerator extends ContainerLifeCycle {
         super.doStop();
         interrupt();
         executorService.shutdown();
+        if (replayReader != null) {
+            replayReader.close();
+            replayReader = null;
+        }
     }
 
     /**
@@ -163,6 +276,13 @@ public class LoadGenerator extends ContainerLifeCycle {
         return config;
     }
 
+    /**
+     * @return the name prefix of the threads that send the resource trees
+     */
+    public String getSenderThreadNamePrefix() {
+        return String.format("%s@%x-sender-", getClass().getSimpleName(), hashCode());
+    }
+
     /**
      * <p>Begins the load generation, as configured with the Builder.</p>
      *
@@ -215,6 +335,152 @@ public class LoadGenerator extends ContainerLifeCycle {
         return interrupted;
     }
 
+    /**
+     * <p>Ends gracefully the load generation, as if the configured
+     * iterations or running time were exhausted.</p>
+     * <p>No more resource trees are sent after the warmup, and the CompletableFuture
+     * returned by {@link #begin()} is completed normally when the resource trees
+     * already sent are complete.</p>
+     */
+    @ManagedOperation(value = "Ends this LoadGenerator", impact = "ACTION")
+    public void end() {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("ending {}", this);
+        }
+        ended = true;
+    }
+
+    boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * <p>Returns the number of requests sent, including warmup requests.</p>
+     * <p>Requests for resources pushed by the server are not counted.</p>
+     *
+     * @return the number of requests sent
+     */
+    @ManagedAttribute("The number of requests sent")
+    public long getSentRequests() {
+        return sentRequests.longValue();
+    }
+
+    /**
+     * @return the number of requests sent whose response completed, successfully or not
+     */
+    @ManagedAttribute("The number of requests completed")
+    public long getCompletedRequests() {
+        return completedRequests.longValue();
+    }
+
+    /**
+     * @return the number of requests sent whose response is not yet completed
+     */
+    @ManagedAttribute("The number of requests in flight")
+    public long getInFlightRequests() {
+        // Read completed first, so the result is never negative.
+        long completed = getCompletedRequests();
+        return Math.max(0, getSentRequests() - completed);
+    }
+
+    /**
+     * <p>Returns the number of requests rejected by the load generator itself,
+     * typically because the destination queue exceeded the
+     * {@link Builder#maxRequestsQueued(int) maximum number of queued requests}.</p>
+     *
+     * @return the number of requests rejected by the load generator
+     */
+    @ManagedAttribute("The number of requests rejected by the load generator")
+    public long getRejectedRequests() {
+        return rejectedRequests.longValue();
+    }
+
+    /**
+     * @return the number of resource trees sent, including warmup resource trees
+     */
+    @ManagedAttribute("The number of resource trees sent")
+    public long getSentResources() {
+        return sentResources.longValue();
+    }
+
+    /**
+     * <p>Returns the cumulative scheduling lag, in nanoseconds.</p>
+     * <p>The scheduling lag of a resource tree is how late it has been sent
+     * with respect to the pacing schedule determined by the
+     * {@link Builder#resourceRate(int) resource rate}.
+     * When the sender threads cannot keep up with the resource rate, because
+     * they do not get enough CPU or because sending takes too long, the
+     * scheduling lag grows; dividing the difference of two values of the
+     * scheduling lag by the difference of the corresponding values of
+     * {@link #getSentResources()} gives the average scheduling lag.</p>
+     *
+     * @return the cumulative scheduling lag, in nanoseconds
+     */
+    @ManagedAttribute("The cumulative scheduling lag in nanoseconds")
+    public long getSchedulingLag() {
+        return schedulingLag.longValue();
+    }
+
+    /**
+     * @return the number of requests queued, waiting for a connection, across all destinations
+     */
+    @ManagedAttribute("The number of requests queued")
+    public long getQueuedRequests() {
+        long result = 0;
+        for (HttpClient client : getBeans(HttpClient.class)) {
+            for (Destination destination : client.getDestinations()) {
+                if (destination instanceof HttpDestination) {
+                    result += ((HttpDestination)destination).getQueuedRequestCount();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * <p>Returns the number of requests queued in destinations whose connections are
+     * all opened and multiplexed at their maximum, that is, for HTTP/2, the number of
+     * requests waiting because of the server {@code SETTINGS_MAX_CONCURRENT_STREAMS}.</p>
+     *
+     * @return the number of requests queued, waiting for a stream, across all destinations
+     */
+    @ManagedAttribute("The number of requests queued waiting for a stream")
+    public long getStreamQueuedRequests() {
+        long result = 0;
+        for (HttpClient client : getBeans(HttpClient.class)) {
+            for (Destination destination : client.getDestinations()) {
+                if (destination instanceof HttpDestination) {
+                    HttpDestination httpDestination = (HttpDestination)destination;
+                    ConnectionPool pool = httpDestination.getConnectionPool();
+                    if (pool instanceof MultiplexConnectionPool) {
+                        MultiplexConnectionPool multiplexPool = (MultiplexConnectionPool)pool;
+                        // With all connections opened, requests only queue when all streams are in use.
+                        if (multiplexPool.getPendingConnectionCount() == 0 && multiplexPool.getConnectionCount() >= multiplexPool.getMaxConnectionCount()) {
+                            result += httpDestination.getQueuedRequestCount();
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of requests queued in the destination with the largest queue
+     */
+    @ManagedAttribute("The max number of requests queued per destination")
+    public int getMaxDestinationQueuedRequests() {
+        int result = 0;
+        for (HttpClient client : getBeans(HttpClient.class)) {
+            for (Destination destination : client.getDestinations()) {
+                if (destination instanceof HttpDestination) {
+                    result = Math.max(result, ((HttpDestination)destination).getQueuedRequestCount());
+                }
+            }
+        }
+        return result;
+    }
+
     private CompletableFuture<Void> process() {
         // The implementation of this method may look unnecessary complicated.
         // The reason is that Callbacks propagate completion inwards,
@@ -228,12 +494,14 @@ public class LoadGenerator extends ContainerLifeCycle {
         HttpClient[] clients = new HttpClient[config.getUsersPerThread()];
 
         // This is the callback to use for warmup iterations.
-        int warmupIterations = config.getWarmupIterationsPerThread();
+        // Replays have no warmup iterations.
+        Replay replay = config.getReplay();
+        int warmupIterations = replay == null ? config.getWarmupIterationsPerThread() : 0;
         WarmupCallback warmupCallback = new WarmupCallback(anyFailure, warmupIterations);
 
         try {
             // Wait for all the sender threads to arrive here.
-            awaitBarrier();
+            int senderIndex = awaitBarrier();
 
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("sender thread running");
@@ -242,96 +510,17 @@ public class LoadGenerator extends ContainerLifeCycle {
             Collection<Connection.Listener> connectionListeners = getBeans(Connection.Listener.class);
             for (int i = 0; i < clients.length; ++i) {
                 HttpClient client = clients[i] = newHttpClient(getConfig());
+                // Each client is a virtual user with its own session.
+                client.setCookieStore(new Session(extracted.size(), config.getMaxRequestsPerUser()));
                 connectionListeners.forEach(client::addBean);
                 addManaged(client);
             }
 
-            int rate = config.getResourceRate();
-            long period = rate > 0 ? TimeUnit.SECONDS.toNanos(config.getThreads()) / rate : 0;
-            long rateRampUpPeriod = TimeUnit.SECONDS.toNanos(config.getRateRampUpPeriod());
-
-            long runFor = config.getRunFor();
-            int iterations = runFor > 0 ? 0 : config.getIterationsPerThread();
-
-            long total = 0;
-            long unsent = 0;
-            int clientIndex = 0;
-            boolean warmup = true;
-            long begin = System.nanoTime();
-            long warmupWait = 0;
-
-            send:
-            while (true) {
-                // Typically only one batch is sent.
-                // However, for high rates the period may be smaller than the
-                // timer resolution so the sleep may last more than expected.
-                // Also in case of GC pauses time may be lost.
-                // To compensate for oversleeping, the batch is adjusted.
-                long batch = 1;
-                if (period > 0) {
-                    TimeUnit.NANOSECONDS.sleep(period);
-                    long elapsed = System.nanoTime() - begin - warmupWait;
-                    long expected = Math.round((double)elapsed / period);
-                    if (rateRampUpPeriod > 0 && elapsed < rateRampUpPeriod) {
-                        long send = Math.round(0.5D * elapsed * elapsed / rateRampUpPeriod / period);
-                        unsent = expected - send;
-                        expected = send;
-                    } else {
-                        expected -= unsent;
-                    }
-                    batch = expected - total;
-                    total = expected;
-                }
-
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("sending batch: {} resources", batch);
-                }
-
-                while (batch > 0) {
-                    Callback callback;
-                    boolean lastIteration = false;
-                    if (warmup) {
-                        if (warmupIterations == 0) {
-                            warmup = false;
-                            long start = System.nanoTime();
-                            warmupCallback.join();
-                            warmupWait = System.nanoTime() - start;
-                            continue;
-                        } else {
-                            --warmupIterations;
-                            callback = warmupCallback;
-                        }
-                    } else {
-                        if (iterations > 0) {
-                            lastIteration = --iterations == 0;
-                        } else {
-                            lastIteration = runFor > 0 && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) >= runFor;
-                        }
-                        Callback.Completable promise = new Callback.Completable();
-                        callback = promise;
-                        // Fail fast in case of failures.
-                        allPromises.add(promise.exceptionally(x -> {
-                            anyFailure.completeExceptionally(x);
-                            return null;
-                        }));
-                    }
-
-                    HttpClient client = clients[clientIndex];
-                    sendResourceTree(client, config.getResource(), warmup, callback);
-                    --batch;
-
-                    if (lastIteration || anyFailure.isCompletedExceptionally()) {
-                        break send;
-                    }
-
-                    if (isInterrupted()) {
-                        throw new InterruptedException("sender thread interrupted");
-                    }
-
-                    if (++clientIndex == clients.length) {
-                        clientIndex = 0;
-                    }
-                }
+            if (replay == null) {
+                send(clients, warmupCallback, allPromises, anyFailure);
+            } else {
+                warmupCallback.join();
+                replay(replay, clients, allPromises, anyFailure);
             }
         } catch (Throwable x) {
             if (LOGGER.isDebugEnabled()) {
@@ -374,8 +563,181 @@ public class LoadGenerator extends ContainerLifeCycle {
                 }, executorService);
     }
 
+    private void send(HttpClient[] clients, WarmupCallback warmupCallback, List<CompletableFuture<Void>> allPromises, Callback.Completable anyFailure) throws InterruptedException {
+        int warmupIterations = config.getWarmupIterationsPerThread();
+        int rate = config.getResourceRate();
+        long period = rate > 0 ? TimeUnit.SECONDS.toNanos(config.getThreads()) / rate : 0;
+        long rateRampUpPeriod = TimeUnit.SECONDS.toNanos(config.getRateRampUpPeriod());
+
+        long runFor = config.getRunFor();
+        int iterations = runFor > 0 ? 0 : config.getIterationsPerThread();
+
+        long total = 0;
+        long unsent = 0;
+        int clientIndex = 0;
+        boolean warmup = true;
+        long begin = System.nanoTime();
+        long warmupWait = 0;
+
+        while (true) {
+            // Typically only one batch is sent.
+            // However, for high rates the period may be smaller than the
+            // timer resolution so the sleep may last more than expected.
+            // Also in case of GC pauses time may be lost.
+            // To compensate for oversleeping, the batch is adjusted.
+            long batch = 1;
+            boolean rampingUp = false;
+            if (period > 0) {
+                TimeUnit.NANOSECONDS.sleep(period);
+                long elapsed = System.nanoTime() - begin - warmupWait;
+                long expected = Math.round((double)elapsed / period);
+                rampingUp = rateRampUpPeriod > 0 && elapsed < rateRampUpPeriod;
+                if (rampingUp) {
+                    long send = Math.round(0.5D * elapsed * elapsed / rateRampUpPeriod / period);
+                    unsent = expected - send;
+                    expected = send;
+                } else {
+                    expected -= unsent;
+                }
+                batch = expected - total;
+                total = expected;
+            }
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("sending batch: {} resources", batch);
+            }
+
+            while (batch > 0) {
+                Callback callback;
+                boolean lastIteration = false;
+                if (warmup) {
+                    if (warmupIterations == 0) {
+                        warmup = false;
+                        long start = System.nanoTime();
+                        warmupCallback.join();
+                        warmupWait = System.nanoTime() - start;
+                        continue;
+                    } else {
+                        --warmupIterations;
+                        callback = warmupCallback;
+                    }
+                } else {
+                    if (isEnded()) {
+                        return;
+                    }
+                    if (iterations > 0) {
+                        lastIteration = --iterations == 0;
+                    } else {
+                        lastIteration = runFor > 0 && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) >= runFor;
+                    }
+                    Callback.Completable promise = new Callback.Completable();
+                    callback = promise;
+                    // Fail fast in case of failures.
+                    allPromises.add(promise.exceptionally(x -> {
+                        anyFailure.completeExceptionally(x);
+                        return null;
+                    }));
+                }
+
+                // A resource is on schedule if it is sent within its pacing slot,
+                // i.e. within half a period of its nominal time; beyond that it is late.
+                if (period > 0 && !rampingUp) {
+                    long slotEnd = (total - batch + 1 + unsent) * period + period / 2;
+                    long elapsed = System.nanoTime() - begin - warmupWait;
+                    schedulingLag.add(Math.max(0, elapsed - slotEnd));
+                }
+                sentResources.increment();
+                HttpClient client = clients[clientIndex];
+                if (scenarioSampler == null) {
+                    sendResourceTree(client, null, config.getResource(), warmup, callback);
+                } else {
+                    Scenario scenario = scenarios[scenarioSampler.sample(ThreadLocalRandom.current())];
+                    sendResourceTree(client, scenario, scenario.getResource(), warmup, callback);
+                }
+                --batch;
+
+                if (lastIteration || anyFailure.isCompletedExceptionally()) {
+                    return;
+                }
+
+                if (isInterrupted()) {
+                    throw new InterruptedException("sender thread interrupted");
+                }
+
+                if (++clientIndex == clients.length) {
+                    clientIndex = 0;
+                }
+            }
+        }
+    }
+
+    private void replay(Replay replay, HttpClient[] clients, List<CompletableFuture<Void>> allPromises, Callback.Completable anyFailure) throws Exception {
+        long runFor = config.getRunFor();
+        double speed = replay.getSpeed();
+        int clientIndex = 0;
+        long begin = System.nanoTime();
+        // A log may have millions of entries, so rather than a promise
+        // per resource tree, the outstanding trees are counted, plus one
+        // for this sender, and a single promise completes when none is left.
+        Callback.Completable promise = new Callback.Completable();
+        // Fail fast in case of failures.
+        allPromises.add(promise.exceptionally(x -> {
+            anyFailure.completeExceptionally(x);
+            return null;
+        }));
+        AtomicLong outstanding = new AtomicLong(1);
+        Callback callback = Callback.from(() -> {
+            if (outstanding.decrementAndGet() == 0) {
+                promise.succeeded();
+            }
+        }, promise::failed);
+        try {
+            while (true) {
+                Replay.Entry entry = replayReader.next();
+                if (entry == null) {
+                    return;
+                }
+
+                long elapsed = System.nanoTime() - begin;
+                if (runFor > 0 && TimeUnit.NANOSECONDS.toSeconds(elapsed) >= runFor) {
+                    return;
+                }
+
+                // Scale the original inter-arrival times.
+                long due = Math.round(entry.getOffset() / speed);
+                if (due > elapsed) {
+                    TimeUnit.NANOSECONDS.sleep(due - elapsed);
+                } else {
+                    schedulingLag.add(elapsed - due);
+                }
+
+                if (isEnded()) {
+                    return;
+                }
+
+                outstanding.incrementAndGet();
+                sentResources.increment();
+                sendResourceTree(clients[clientIndex], null, entry.getResource(), false, callback);
+
+                if (anyFailure.isCompletedExceptionally()) {
+                    return;
+                }
+
+                if (isInterrupted()) {
+                    throw new InterruptedException("sender thread interrupted");
+                }
+
+                if (++clientIndex == clients.length) {
+                    clientIndex = 0;
+                }
+            }
+        } finally {
+            callback.succeeded();
+        }
+    }
+
     protected HttpClient newHttpClient(Config config) {
-        HttpClient httpClient = new HttpClient(config.getHttpClientTransportBuilder().build(), config.getSslContextFactory());
+        HttpClient httpClient = new ConnectTimingHttpClient(config);
         httpClient.setExecutor(config.getExecutor());
         httpClient.setScheduler(config.getScheduler());
         httpClient.setMaxConnectionsPerDestination(config.getChannelsPerUser());
@@ -399,8 +761,10 @@ public class LoadGenerator extends ContainerLifeCycle {
     }
 
     protected Request newRequest(HttpClient client, Config config, Resource resource) {
-        Request request = client.newRequest(config.getHost(), config.getPort())
-                .scheme(config.getScheme())
+        String originName = resource.getOrigin();
+        Origin origin = originName == null ? null : config.findOrigin(originName);
+        Request request = (origin == null ? client.newRequest(config.getHost(), config.getPort()).scheme(config.getScheme()) :
+                client.newRequest(origin.getHost(), origin.getPort()).scheme(origin.getScheme()))
                 .attribute(Resource.class.getName(), resource)
                 .method(resource.getMethod())
                 .path(resource.getPath());
@@ -413,9 +777,17 @@ public class LoadGenerator extends ContainerLifeCycle {
         return request;
     }
 
-    private void sendResourceTree(HttpClient client, Resource resource, boolean warmup, Callback callback) {
+    private void sendResourceTree(HttpClient client, Scenario scenario, Resource resource, boolean warmup, Callback callback) {
         int nodes = resource.descendantCount();
-        Resource.Info info = resource.newInfo(this);
+        Resource.Info info = resource.newInfo(this, scenario);
+        if (feeders.length > 0) {
+            // All the resources of the tree use the same records.
+            int[] records = new int[feeders.length];
+            for (int i = 0; i < feeders.length; ++i) {
+                records[i] = feeders[i].next();
+            }
+            info.setRecords(records);
+        }
         CountingCallback treeCallback = new CountingCallback(new Callback() {
             @Override
             public void succeeded() {
@@ -522,6 +894,29 @@ public class LoadGenerator extends ContainerLifeCycle {
         }
     }
 
+    private void fireConnectEvent(HttpDestination destination, long connectTime, Throwable failure) {
+        Origin origin = null;
+        for (Origin candidate : config.getOrigins()) {
+            if (candidate.matches(destination.getScheme(), destination.getHost(), destination.getPort())) {
+                origin = candidate;
+                break;
+            }
+        }
+        Origin connectOrigin = origin;
+        config.getListeners().stream()
+                .filter(l -> l instanceof ConnectListener)
+                .map(l -> (ConnectListener)l)
+                .forEach(l -> invokeConnectListener(l, connectOrigin, connectTime, failure));
+    }
+
+    private void invokeConnectListener(ConnectListener listener, Origin origin, long connectTime, Throwable failure) {
+        try {
+            listener.onConnect(this, origin, connectTime, failure);
+        } catch (Throwable x) {
+            LOGGER.info("ignored failure while invoking listener {}", listener, x);
+        }
+    }
+
     private void fireResourceNodeEvent(Resource.Info info) {
         config.getResourceListeners().stream()
                 .filter(l -> l instanceof Resource.NodeListener)
@@ -556,12 +951,17 @@ public class LoadGenerator extends ContainerLifeCycle {
         private final Queue<Resource.Info> queue = new ArrayDeque<>();
         private final Set<URI> pushCache = Collections.newSetFromMap(new ConcurrentHashMap<>());
         private final HttpClient client;
+        private final Session session;
+        private final Slots treeSlots;
         private final boolean warmup;
         private final CountingCallback callback;
         private boolean active;
 
         private Sender(HttpClient client, boolean warmup, CountingCallback callback) {
             this.client = client;
+            this.session = (Session)client.getCookieStore();
+            int maxRequestsPerTree = config.getMaxRequestsPerTree();
+            this.treeSlots = maxRequestsPerTree > 0 ? new Slots(maxRequestsPerTree) : null;
             this.warmup = warmup;
             this.callback = callback;
         }
@@ -599,66 +999,169 @@ public class LoadGenerator extends ContainerLifeCycle {
         private void send(List<Resource.Info> resources) {
             try {
                 for (Resource.Info info : resources) {
-                    Resource resource = info.getResource();
-                    if (resource.getPath() != null) {
-                        HttpRequest httpRequest = (HttpRequest)newRequest(client, config, resource);
-
-                        if (pushCache.contains(httpRequest.getURI())) {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("skip sending pushed {}", info);
-                            }
-                        } else {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("sending {}{}", warmup ? "warmup " : "", info);
+                    Delay delay = info.getResource().getDelay();
+                    if (delay == null) {
+                        send(info);
+                    } else {
+                        schedule(delay, () -> {
+                            try {
+                                send(info);
+                            } catch (Throwable x) {
+                                callback.failed(x);
                             }
+                        });
+                    }
+                }
+            } catch (Throwable x) {
+                callback.failed(x);
+            }
+        }
 
-                            httpRequest.pushListener((request, pushed) -> {
-                                URI pushedURI = pushed.getURI();
-                                Resource child = resource.findDescendant(pushedURI);
-                                if (child != null && pushCache.add(pushedURI)) {
-                                    Resource.Info pushedInfo = child.newInfo(LoadGenerator.this);
-                                    if (LOGGER.isDebugEnabled()) {
-                                        LOGGER.debug("pushed {}", pushedInfo);
-                                    }
-                                    pushedInfo.setRequestTime(System.nanoTime());
-                                    pushedInfo.setPushed(true);
-                                    return new ResponseHandler(pushedInfo);
-                                } else {
-                                    return null;
-                                }
-                            });
-
-                            Request request = config.getRequestListeners().stream()
-                                    .reduce(httpRequest, Request::listener, (r1, r2) -> r1);
-                            info.setRequestTime(System.nanoTime());
-                            request.send(new ResponseHandler(info));
-                        }
+        private void send(Resource.Info info) {
+            Resource resource = info.getResource();
+            if (resource.getPath() != null) {
+                HttpRequest httpRequest = (HttpRequest)newRequest(client, config, resource);
+                fillTemplates(httpRequest, info, session);
+
+                if (pushCache.contains(httpRequest.getURI())) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("skip sending pushed {}", info);
+                    }
+                } else {
+                    Slots userSlots = session.getSlots(resource.getOrigin());
+                    if (treeSlots == null && userSlots == null) {
+                        send(info, httpRequest);
                     } else {
-                        // Don't fire the resource event for "group" resources.
-                        callback.succeeded();
-                        sendChildren(resource);
+                        // Like browsers, wait for a slot of the tree, then for a slot of the user for the origin.
+                        info.setQueueTime(System.nanoTime());
+                        acquire(treeSlots, () -> acquire(userSlots, () -> send(info, httpRequest)));
+                    }
+                }
+            } else {
+                // Don't fire the resource event for "group" resources.
+                callback.succeeded();
+                sendChildren(info);
+            }
+        }
+
+        private void send(Resource.Info info, HttpRequest httpRequest) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("sending {}{}", warmup ? "warmup " : "", info);
+            }
+
+            Resource resource = info.getResource();
+            httpRequest.pushListener((request, pushed) -> {
+                URI pushedURI = pushed.getURI();
+                Resource child = resource.findDescendant(pushedURI);
+                if (child != null && pushCache.add(pushedURI)) {
+                    Resource.Info pushedInfo = info.newChildInfo(child);
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("pushed {}", pushedInfo);
+                    }
+                    pushedInfo.setRequestTime(System.nanoTime());
+                    pushedInfo.setPushed(true);
+                    return new ResponseHandler(pushedInfo);
+                } else {
+                    return null;
+                }
+            });
+
+            Request request = config.getRequestListeners().stream()
+                    .reduce(httpRequest, Request::listener, (r1, r2) -> r1);
+            info.setRequestTime(System.nanoTime());
+            sentRequests.increment();
+            request.send(new ResponseHandler(info));
+        }
+
+        private void acquire(Slots slots, Runnable task) {
+            if (slots == null) {
+                task.run();
+            } else {
+                // A queued task is run by the thread that releases
+                // the slot, so its failures must fail this tree.
+                boolean acquired = slots.acquire(() -> {
+                    try {
+                        task.run();
+                    } catch (Throwable x) {
+                        callback.failed(x);
                     }
+                });
+                if (acquired) {
+                    task.run();
                 }
+            }
+        }
+
+        private void release(Resource.Info info) {
+            Slots userSlots = session.getSlots(info.getResource().getOrigin());
+            if (userSlots != null) {
+                userSlots.release();
+            }
+            if (treeSlots != null) {
+                treeSlots.release();
+            }
+        }
+
+        private void schedule(Delay delay, Runnable task) {
+            long millis = delay.sample(ThreadLocalRandom.current());
+            if (millis <= 0) {
+                task.run();
+            } else {
+                // Do not block, the task runs when the delay expires.
+                // The client scheduler is the configured one, if any,
+                // and it is shared, so the task is only dispatched to
+                // the executor to not delay the other scheduled tasks.
+                client.getScheduler().schedule(() -> execute(task), millis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void execute(Runnable task) {
+            try {
+                client.getExecutor().execute(task);
             } catch (Throwable x) {
                 callback.failed(x);
             }
         }
 
-        private void sendChildren(Resource resource) {
-            List<Resource> children = resource.getResources();
-            if (!children.isEmpty()) {
-                offer(children.stream()
-                        .map(child -> child.newInfo(LoadGenerator.this))
-                        .collect(Collectors.toList()));
-                send();
+        private void sendChildren(Resource.Info info) {
+            Resource resource = info.getResource();
+            if (!resource.getResources().isEmpty()) {
+                Delay delay = resource.getChildrenDelay();
+                if (delay == null) {
+                    offerChildren(info);
+                } else {
+                    try {
+                        schedule(delay, () -> {
+                            try {
+                                offerChildren(info);
+                            } catch (Throwable x) {
+                                callback.failed(x);
+                            }
+                        });
+                    } catch (Throwable x) {
+                        callback.failed(x);
+                    }
+                }
             }
         }
 
+        private void offerChildren(Resource.Info info) {
+            offer(info.getResource().getResources().stream()
+                    .map(info::newChildInfo)
+                    .collect(Collectors.toList()));
+            send();
+        }
+
         private class ResponseHandler extends Response.Listener.Adapter {
             private final Resource.Info info;
+            private final Extractor.Scanner[] scanners;
+            private final int[] indexes;
 
             private ResponseHandler(Resource.Info info) {
                 this.info = info;
+                // Resources without extractors are not indexed.
+                this.indexes = extractorIndexes.get(info.getResource());
+                this.scanners = indexes == null ? null : new Extractor.Scanner[indexes.length];
             }
 
             @Override
@@ -667,15 +1170,58 @@ public class LoadGenerator extends ContainerLifeCycle {
                 info.setLatencyTime(System.nanoTime());
             }
 
+            @Override
+            public void onHeaders(Response response) {
+                if (scanners != null) {
+                    List<Extractor> extractors = info.getResource().getExtractors();
+                    for (int i = 0; i < scanners.length; ++i) {
+                        Extractor extractor = extractors.get(i);
+                        String header = extractor.getHeader();
+                        if (header == null) {
+                            scanners[i] = extractor.newScanner();
+                        } else {
+                            String value = response.getHeaders().get(header);
+                            if (value != null) {
+                                session.setValue(indexes[i], value);
+                            }
+                        }
+                    }
+                }
+            }
+
             @Override
             public void onContent(Response response, ByteBuffer buffer) {
                 // Record content length.
                 info.addContent(buffer.remaining());
+                if (scanners != null) {
+                    for (Extractor.Scanner scanner : scanners) {
+                        if (scanner != null) {
+                            scanner.scan(buffer);
+                        }
+                    }
+                }
+            }
+
+            private void extract() {
+                for (int i = 0; i < scanners.length; ++i) {
+                    Extractor.Scanner scanner = scanners[i];
+                    String value = scanner == null ? null : scanner.getValue();
+                    if (value != null) {
+                        session.setValue(indexes[i], value);
+                    }
+                }
             }
 
             @Override
             public void onComplete(Result result) {
                 info.setResponseTime(System.nanoTime());
+                // Extract before sending the children, which may use the values.
+                if (scanners != null) {
+                    extract();
+                }
+                if (!info.isPushed()) {
+                    completedRequests.increment();
+                }
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("completed {}{}: {}", warmup ? "warmup " : "", info, result);
                 }
@@ -683,15 +1229,22 @@ public class LoadGenerator extends ContainerLifeCycle {
                     info.setStatus(result.getResponse().getStatus());
                 } else {
                     Throwable failure = result.getFailure();
+                    if (failure instanceof RejectedExecutionException) {
+                        rejectedRequests.increment();
+                    }
                     info.setFailure(failure);
                 }
                 if (!warmup) {
                     fireResourceNodeEvent(info);
                 }
+                if (!info.isPushed()) {
+                    // Hand over the slots to the requests waiting for them.
+                    release(info);
+                }
                 // Succeed the callback even in case of
                 // failures to continue the load generation.
                 callback.succeeded();
-                sendChildren(info.getResource());
+                sendChildren(info);
             }
         }
     }
@@ -709,6 +1262,8 @@ public class LoadGenerator extends ContainerLifeCycle {
         protected long runFor = 0;
         protected int usersPerThread = 1;
         protected int channelsPerUser = 1024;
+        protected int maxRequestsPerUser = 0;
+        protected int maxRequestsPerTree = 0;
         protected int resourceRate = 1;
         protected long rateRampUpPeriod = 0;
         protected String scheme = "http";
@@ -720,6 +1275,10 @@ public class LoadGenerator extends ContainerLifeCycle {
         protected Executor executor;
         protected SocketAddressResolver socketAddressResolver = new SocketAddressResolver.Sync();
         protected Resource resource = new Resource("/");
+        protected final List<Scenario> scenarios = new ArrayList<>();
+        protected final List<Feeder> feeders = new ArrayList<>();
+        protected final List<Origin> origins = new ArrayList<>();
+        protected Replay replay;
         protected final List<Listener> listeners = new ArrayList<>();
         protected final List<Request.Listener> requestListeners = new ArrayList<>();
         protected final List<Resource.Listener> resourceListeners = new ArrayList<>();
@@ -758,6 +1317,16 @@ public class LoadGenerator extends ContainerLifeCycle {
             return channelsPerUser;
         }
 
+        @ManagedAttribute("Maximum number of in-flight requests per user, or zero for no limit")
+        public int getMaxRequestsPerUser() {
+            return maxRequestsPerUser;
+        }
+
+        @ManagedAttribute("Maximum number of in-flight requests per resource tree, or zero for no limit")
+        public int getMaxRequestsPerTree() {
+            return maxRequestsPerTree;
+        }
+
         @ManagedAttribute("Send rate in resource trees per second")
         public int getResourceRate() {
             return resourceRate;
@@ -807,6 +1376,68 @@ public class LoadGenerator extends ContainerLifeCycle {
             return resource;
         }
 
+        /**
+         * @return the weighted scenarios, or an empty list if every iteration sends the {@link #getResource() root resource}
+         */
+        public List<Scenario> getScenarios() {
+            return scenarios;
+        }
+
+        /**
+         * @return the feeders of the resource path and request header templates
+         */
+        public List<Feeder> getFeeders() {
+            return feeders;
+        }
+
+        /**
+         * @return the origins that resources may be sent to, in addition to the default origin
+         */
+        public List<Origin> getOrigins() {
+            return origins;
+        }
+
+        /**
+         * @param name the origin name
+         * @return the origin with the given name, or null if no such origin is configured
+         */
+        public Origin findOrigin(String name) {
+            for (Origin origin : origins) {
+                if (origin.getName().equals(name)) {
+                    return origin;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the replay configuration, or null if resources are sent at the resource rate
+         */
+        public Replay getReplay() {
+            return replay;
+        }
+
+        /**
+         * <p>Returns the average number of resource nodes sent per iteration,
+         * which is the number of nodes of the {@link #getResource() root resource},
+         * or the average of the number of nodes of the scenarios, weighted by the
+         * scenario weights.</p>
+         *
+         * @return the average number of resource nodes sent per iteration
+         */
+        public double getResourceNodesPerIteration() {
+            if (scenarios.isEmpty()) {
+                return resource.descendantCount();
+            }
+            long weights = 0;
+            double nodes = 0;
+            for (Scenario scenario : scenarios) {
+                weights += scenario.getWeight();
+                nodes += (double)scenario.getWeight() * scenario.getResource().descendantCount();
+            }
+            return nodes / weights;
+        }
+
         @ManagedAttribute("Maximum number of queued requests")
         public int getMaxRequestsQueued() {
             return maxRequestsQueued;
@@ -847,6 +1478,8 @@ public class LoadGenerator extends ContainerLifeCycle {
             out.add("runFor", getRunFor());
             out.add("usersPerThread", getUsersPerThread());
             out.add("channelsPerUser", getChannelsPerUser());
+            out.add("maxRequestsPerUser", getMaxRequestsPerUser());
+            out.add("maxRequestsPerTree", getMaxRequestsPerTree());
             out.add("resourceRate", getResourceRate());
             out.add("rateRampUpPeriod", getRateRampUpPeriod());
             out.add("scheme", getScheme());
@@ -854,6 +1487,10 @@ public class LoadGenerator extends ContainerLifeCycle {
             out.add("port", getPort());
             out.add("transport", getHttpClientTransportBuilder());
             out.add("resource", getResource());
+            out.add("scenarios", getScenarios());
+            out.add("feeders", getFeeders());
+            out.add("origins", getOrigins());
+            out.add("replay", getReplay());
             out.add("maxRequestsQueued", getMaxRequestsQueued());
             out.add("connectBlocking", isConnectBlocking());
             out.add("connectTimeout", getConnectTimeout());
@@ -868,6 +1505,8 @@ public class LoadGenerator extends ContainerLifeCycle {
             runFor = asLong(map, "runFor");
             usersPerThread = asInt(map, "usersPerThread");
             channelsPerUser = asInt(map, "channelsPerUser");
+            maxRequestsPerUser = asInt(map, "maxRequestsPerUser");
+            maxRequestsPerTree = asInt(map, "maxRequestsPerTree");
             resourceRate = asInt(map, "resourceRate");
             rateRampUpPeriod = asLong(map, "rateRampUpPeriod");
             scheme = asString(map, "scheme", "http");
@@ -875,6 +1514,13 @@ public class LoadGenerator extends ContainerLifeCycle {
             port = asInt(map, "port");
             httpClientTransportBuilder = asTransport(map);
             resource = asResource(map);
+            scenarios.clear();
+            scenarios.addAll(asScenarios(map));
+            feeders.clear();
+            feeders.addAll(asFeeders(map));
+            origins.clear();
+            origins.addAll(asOrigins(map));
+            replay = asReplay(map);
             maxRequestsQueued = asInt(map, "maxRequestsQueued");
             connectBlocking = map.get("connectBlocking") == Boolean.TRUE;
             connectTimeout = asInt(map, "connectTimeout");
@@ -930,6 +1576,55 @@ public class LoadGenerator extends ContainerLifeCycle {
             return result;
         }
 
+        private List<Scenario> asScenarios(Map<?, ?> map) {
+            List<Scenario> result = new ArrayList<>();
+            Object obj = map.get("scenarios");
+            if (obj instanceof Object[]) {
+                for (Object element : (Object[])obj) {
+                    Scenario scenario = new Scenario();
+                    scenario.fromJSON((Map<?, ?>)element);
+                    result.add(scenario);
+                }
+            }
+            return result;
+        }
+
+        private List<Feeder> asFeeders(Map<?, ?> map) {
+            List<Feeder> result = new ArrayList<>();
+            Object obj = map.get("feeders");
+            if (obj instanceof Object[]) {
+                for (Object element : (Object[])obj) {
+                    Feeder feeder = new Feeder();
+                    feeder.fromJSON((Map<?, ?>)element);
+                    result.add(feeder);
+                }
+            }
+            return result;
+        }
+
+        private List<Origin> asOrigins(Map<?, ?> map) {
+            List<Origin> result = new ArrayList<>();
+            Object obj = map.get("origins");
+            if (obj instanceof Object[]) {
+                for (Object element : (Object[])obj) {
+                    Origin origin = new Origin();
+                    origin.fromJSON((Map<?, ?>)element);
+                    result.add(origin);
+                }
+            }
+            return result;
+        }
+
+        private Replay asReplay(Map<?, ?> map) {
+            Object obj = map.get("replay");
+            if (obj instanceof Map) {
+                Replay result = new Replay();
+                result.fromJSON((Map<?, ?>)obj);
+                return result;
+            }
+            return null;
+        }
+
         private Resource asResource(Map<?, ?> map) {
             Object obj = map.get("resource");
             if (obj == null) {
@@ -1048,6 +1743,45 @@ public class LoadGenerator extends ContainerLifeCycle {
             return this;
         }
 
+        /**
+         * <p>Configures the maximum number of requests that a user has in-flight
+         * to each {@link #origin(String, String, String, int) origin}, across all
+         * the resource trees it is sending.</p>
+         * <p>Differently from {@link #channelsPerUser(int)}, that limits the connections
+         * but lets {@code HttpClient} queue the excess requests, requests beyond this
+         * limit are not sent until an in-flight request completes, like browsers do,
+         * so that the response times do not include the time spent waiting.
+         * The time spent waiting is reported to {@link Resource.Info#getQueueTime()}.</p>
+         *
+         * @param maxRequestsPerUser the maximum number of in-flight requests per user, or zero for no limit
+         * @return this Builder
+         * @see #maxRequestsPerTree(int)
+         */
+        public Builder maxRequestsPerUser(int maxRequestsPerUser) {
+            if (maxRequestsPerUser < 0) {
+                throw new IllegalArgumentException();
+            }
+            this.maxRequestsPerUser = maxRequestsPerUser;
+            return this;
+        }
+
+        /**
+         * <p>Configures the maximum number of requests of a resource tree that are in-flight.</p>
+         * <p>When a resource completes, its children are sent up to this limit, and the
+         * remaining children are sent as the in-flight requests of the tree complete.</p>
+         *
+         * @param maxRequestsPerTree the maximum number of in-flight requests per resource tree, or zero for no limit
+         * @return this Builder
+         * @see #maxRequestsPerUser(int)
+         */
+        public Builder maxRequestsPerTree(int maxRequestsPerTree) {
+            if (maxRequestsPerTree < 0) {
+                throw new IllegalArgumentException();
+            }
+            this.maxRequestsPerTree = maxRequestsPerTree;
+            return this;
+        }
+
         /**
          * <p>The total request rate of the resource tree generated by the LoadGenerator.</p>
          * <p>For a resource tree made of just one resource, this value is effectively the HTTP request rate.</p>
@@ -1162,6 +1896,75 @@ public class LoadGenerator extends ContainerLifeCycle {
             return this;
         }
 
+        /**
+         * <p>Adds a weighted scenario to the workload mix.</p>
+         * <p>When scenarios are configured, every iteration sends the resource tree
+         * of one scenario, chosen at random with a probability proportional to the
+         * scenario weight, rather than the {@link #resource(Resource) root resource}.</p>
+         *
+         * @param name the scenario name
+         * @param weight the scenario weight, relative to the weights of the other scenarios
+         * @param resource the scenario root resource
+         * @return this Builder
+         */
+        public Builder scenario(String name, int weight, Resource resource) {
+            this.scenarios.add(new Scenario(name, weight, resource));
+            return this;
+        }
+
+        /**
+         * <p>Adds a feeder of the resource path and request header templates.</p>
+         * <p>Resource paths and request header values may contain {@code {column}}
+         * variables, that are filled with the values of the feeder columns.</p>
+         *
+         * @param feeder the feeder to add
+         * @return this Builder
+         * @see Feeder
+         */
+        public Builder feeder(Feeder feeder) {
+            this.feeders.add(feeder);
+            return this;
+        }
+
+        /**
+         * <p>Adds an origin that resources may be sent to, rather than to the
+         * configured {@link #scheme(String) scheme}, {@link #host(String) host}
+         * and {@link #port(int) port}.</p>
+         * <p>Resources name the origin they are sent to via {@link Resource#origin(String)};
+         * every origin has its own connection pool, and the
+         * {@link #maxRequestsPerUser(int) in-flight requests limit} applies per origin.</p>
+         *
+         * @param name the origin name
+         * @param scheme the origin scheme
+         * @param host the origin host
+         * @param port the origin port
+         * @return this Builder
+         * @see Origin
+         */
+        public Builder origin(String name, String scheme, String host, int port) {
+            if (findOrigin(name) != null) {
+                throw new IllegalArgumentException("duplicate origin: " + name);
+            }
+            this.origins.add(new Origin(name, scheme, host, port));
+            return this;
+        }
+
+        /**
+         * <p>Replays the requests recorded in a log file, rather than sending
+         * the {@link #resource(Resource) resource} at the {@link #resourceRate(int) resource rate}.</p>
+         * <p>The requests of the log are distributed across the sender threads and their users;
+         * the replay ends at the end of the log, or after the {@link #runFor(long, TimeUnit) run time}.
+         * Iterations and warmup iterations are ignored.</p>
+         *
+         * @param replay the replay configuration
+         * @return this Builder
+         * @see Replay
+         */
+        public Builder replay(Replay replay) {
+            this.replay = replay;
+            return this;
+        }
+
         /**
          * @param maxRequestsQueued same as {@link HttpClient#setMaxRequestsQueuedPerDestination(int)}
          * @return this Builder
@@ -1233,6 +2036,30 @@ public class LoadGenerator extends ContainerLifeCycle {
         }
     }
 
+    /**
+     * <p>The templates of the path and request headers of a resource.</p>
+     */
+    private static class RequestTemplate {
+        private final Template path;
+        private final String[] headerNames;
+        private final Template[] headerValues;
+
+        private RequestTemplate(Template path, String[] headerNames, Template[] headerValues) {
+            this.path = path;
+            this.headerNames = headerNames;
+            this.headerValues = headerValues;
+        }
+
+        private void fill(Request request, Feeder[] feeders, int[] records, Session session) {
+            if (path != null) {
+                request.path(path.fill(feeders, records, session));
+            }
+            for (int i = 0; i < headerNames.length; ++i) {
+                request.getHeaders().put(headerNames[i], headerValues[i].fill(feeders, records, session));
+            }
+        }
+    }
+
     /**
      * <p>A generic listener for LoadGenerator events.</p>
      */
@@ -1297,6 +2124,64 @@ public class LoadGenerator extends ContainerLifeCycle {
         void onComplete(LoadGenerator generator);
     }
 
+    /**
+     * <p>A listener for the LoadGenerator "connect" event.</p>
+     * <p>The "connect" event is emitted when a connection to the server
+     * has been opened, or when it failed to be opened.</p>
+     * <p>Connect events are emitted by the HttpClient threads, so
+     * listeners should be quick and must not block.</p>
+     */
+    public interface ConnectListener extends Listener {
+        /**
+         * <p>Callback method invoked when the "connect" event is emitted.</p>
+         *
+         * @param generator the load generator
+         * @param connectTime the time, in nanoseconds, from when the connection was requested,
+         * including the resolution of the server address, to when it was opened or failed
+         * @param failure the connect failure, or null if the connection was opened
+         */
+        void onConnect(LoadGenerator generator, long connectTime, Throwable failure);
+
+        /**
+         * <p>Callback method invoked when the "connect" event is emitted,
+         * with the origin the connection is opened to.</p>
+         * <p>This implementation calls {@link #onConnect(LoadGenerator, long, Throwable)}.</p>
+         *
+         * @param generator the load generator
+         * @param origin the origin of the connection, or null for the default origin
+         * @param connectTime the time, in nanoseconds, from when the connection was requested,
+         * including the resolution of the server address, to when it was opened or failed
+         * @param failure the connect failure, or null if the connection was opened
+         */
+        default void onConnect(LoadGenerator generator, Origin origin, long connectTime, Throwable failure) {
+            onConnect(generator, connectTime, failure);
+        }
+    }
+
+    private class ConnectTimingHttpClient extends HttpClient {
+        private ConnectTimingHttpClient(Config config) {
+            super(config.getHttpClientTransportBuilder().build(), config.getSslContextFactory());
+        }
+
+        @Override
+        protected void newConnection(HttpDestination destination, Promise<org.eclipse.jetty.client.api.Connection> promise) {
+            long begin = System.nanoTime();
+            super.newConnection(destination, new Promise<>() {
+                @Override
+                public void succeeded(org.eclipse.jetty.client.api.Connection connection) {
+                    fireConnectEvent(destination, System.nanoTime() - begin, null);
+                    promise.succeeded(connection);
+                }
+
+                @Override
+                public void failed(Throwable x) {
+                    fireConnectEvent(destination, System.nanoTime() - begin, x);
+                    promise.failed(x);
+                }
+            });
+        }
+    }
+
     private class WarmupCallback extends Callback.Nested {
         private final CountDownLatch latch;
         private final Callback counter;
@@ -0,0 +1,120 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.Objects;
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A named origin, that is a scheme, host and port, that {@link Resource}s
+ * may be sent to instead of the {@link LoadGenerator.Config#getHost() configured host}.</p>
+ * <p>Origins model pages that fetch their resources from multiple hosts,
+ * for example a CDN host for the static resources and an API host:</p>
+ * <pre>
+ * LoadGenerator.builder()
+ *     .host("www.example.com")
+ *     .origin("cdn", "https", "cdn.example.com", 443)
+ *     .resource(new Resource("/index.html",
+ *         new Resource("/style.css").origin("cdn")))
+ * </pre>
+ * <p>Resources that do not name an origin are sent to the {@link #DEFAULT default origin}.</p>
+ */
+public class Origin implements JSON.Convertible {
+    /**
+     * <p>The name of the default origin, made of the configured scheme, host and port.</p>
+     */
+    public static final String DEFAULT = "default";
+
+    private String name;
+    private String scheme;
+    private String host;
+    private int port;
+
+    public Origin() {
+    }
+
+    public Origin(String name, String scheme, String host, int port) {
+        if (DEFAULT.equals(name)) {
+            throw new IllegalArgumentException("reserved origin name: " + name);
+        }
+        if (port <= 0) {
+            throw new IllegalArgumentException("invalid origin port: " + port);
+        }
+        this.name = Objects.requireNonNull(name);
+        this.scheme = Objects.requireNonNull(scheme);
+        this.host = Objects.requireNonNull(host);
+        this.port = port;
+    }
+
+    /**
+     * @return the origin name, referenced by {@link Resource#getOrigin()}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the origin scheme, either {@code http} or {@code https}
+     */
+    public String getScheme() {
+        return scheme;
+    }
+
+    /**
+     * @return the origin host
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return the origin port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @param scheme the scheme to match
+     * @param host the host to match
+     * @param port the port to match
+     * @return whether this origin has the given scheme, host and port
+     */
+    public boolean matches(String scheme, String host, int port) {
+        return getPort() == port && getScheme().equalsIgnoreCase(scheme) && getHost().equalsIgnoreCase(host);
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("name", getName());
+        out.add("scheme", getScheme());
+        out.add("host", getHost());
+        out.add("port", getPort());
+    }
+
+    @Override
+    public void fromJSON(Map map) {
+        name = (String)map.get("name");
+        scheme = (String)map.get("scheme");
+        host = (String)map.get("host");
+        port = ((Number)map.get("port")).intValue();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%h{%s=%s://%s:%d}", getClass().getSimpleName(), hashCode(), getName(), getScheme(), getHost(), getPort());
+    }
+}
@@ -0,0 +1,276 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Configuration to replay the requests recorded in a log file,
+ * with the original inter-arrival times scaled by a speed factor.</p>
+ * <p>The log file may be in one of these formats, optionally gzipped
+ * (with the {@code .gz} file extension):</p>
+ * <ul>
+ * <li>JSON lines (with the {@code .jsonl} or {@code .json} file extension),
+ * where each line is a JSON object with the {@code timestamp} of the request,
+ * either in milliseconds since the epoch or in ISO-8601 format, the {@code method}
+ * (defaults to GET), the {@code path}, the request {@code headers} as a JSON
+ * object, and the request {@code bodySize}</li>
+ * <li>NCSA common or combined access log format otherwise, where the request
+ * method and path are taken from the request line, the response size is
+ * requested via {@link Resource#RESPONSE_LENGTH}, and, for the combined format,
+ * the {@code Referer} and {@code User-Agent} headers are replayed</li>
+ * </ul>
+ * <p>The log file is read line by line, once for all the sender threads,
+ * so that arbitrarily large logs are replayed in constant memory; lines
+ * that cannot be parsed are skipped.</p>
+ */
+public class Replay implements JSON.Convertible {
+    private static final Logger LOGGER = Log.getLogger(Replay.class);
+    private static final DateTimeFormatter NCSA_TIMESTAMP = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+    private String path;
+    private double speed = 1;
+
+    public Replay() {
+    }
+
+    /**
+     * @param path the path of the log file
+     * @param speed the speed factor, for example 2 to replay the requests twice as fast
+     */
+    public Replay(String path, double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("invalid replay speed: " + speed);
+        }
+        this.path = Objects.requireNonNull(path);
+        this.speed = speed;
+    }
+
+    /**
+     * @return the path of the log file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the speed factor
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * <p>Returns a reader of the entries of the log file.</p>
+     * <p>The reader may be shared by concurrent senders, so that the log file
+     * is read and parsed only once: each entry is returned to only one sender,
+     * and the entry offsets are relative to the timestamp of the first entry
+     * of the log file.</p>
+     *
+     * @return a reader of the log entries
+     * @throws IOException if the log file cannot be opened
+     */
+    EntryReader newEntryReader() throws IOException {
+        String name = path.toLowerCase(Locale.ENGLISH);
+        InputStream input = Files.newInputStream(Path.of(path));
+        if (name.endsWith(".gz")) {
+            input = new GZIPInputStream(input, 64 * 1024);
+            name = name.substring(0, name.length() - 3);
+        }
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".json");
+        return new EntryReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024), json);
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("path", getPath());
+        out.add("speed", getSpeed());
+    }
+
+    @Override
+    public void fromJSON(Map map) {
+        path = (String)map.get("path");
+        Number speed = (Number)map.get("speed");
+        this.speed = speed == null ? 1 : speed.doubleValue();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%h{%s,speed=%s}", getClass().getSimpleName(), hashCode(), getPath(), getSpeed());
+    }
+
+    /**
+     * <p>A log entry, with the resource to request and when to request it.</p>
+     */
+    static class Entry {
+        private final long offset;
+        private final Resource resource;
+
+        private Entry(long offset, Resource resource) {
+            this.offset = offset;
+            this.resource = resource;
+        }
+
+        /**
+         * @return the time of this entry, in nanoseconds, relative to the first entry of the log
+         */
+        long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the resource to request
+         */
+        Resource getResource() {
+            return resource;
+        }
+    }
+
+    /**
+     * <p>Reads the log file line by line; the entries are returned in log order
+     * to the concurrent callers of {@link #next()}.</p>
+     */
+    static class EntryReader implements Closeable {
+        private final BufferedReader reader;
+        private final boolean json;
+        private long lineIndex = -1;
+        private long baseNanos = Long.MIN_VALUE;
+        private String lastTimestamp;
+        private long lastTimestampNanos;
+
+        private EntryReader(BufferedReader reader, boolean json) {
+            this.reader = reader;
+            this.json = json;
+        }
+
+        /**
+         * @return the next entry, or null if the end of the log file has been reached
+         * @throws IOException if the log file cannot be read
+         */
+        synchronized Entry next() throws IOException {
+            while (true) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                ++lineIndex;
+                Resource resource = new Resource();
+                long nanos;
+                try {
+                    nanos = json ? parseJSON(line, resource) : parseNCSA(line, resource);
+                } catch (Throwable x) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("skipping unparseable line {}: {}", lineIndex + 1, line, x);
+                    }
+                    continue;
+                }
+                if (baseNanos == Long.MIN_VALUE) {
+                    baseNanos = nanos;
+                }
+                return new Entry(nanos - baseNanos, resource);
+            }
+        }
+
+        private long parseJSON(String line, Resource resource) {
+            Map<?, ?> map = (Map<?, ?>)new JSON().parse(new JSON.StringSource(line));
+            Object method = map.get("method");
+            if (method != null) {
+                resource.method((String)method);
+            }
+            resource.path((String)Objects.requireNonNull(map.get("path")));
+            Object headers = map.get("headers");
+            if (headers instanceof Map) {
+                ((Map<?, ?>)headers).forEach((name, value) -> resource.requestHeader((String)name, String.valueOf(value)));
+            }
+            Object bodySize = map.get("bodySize");
+            if (bodySize instanceof Number) {
+                resource.requestLength(((Number)bodySize).longValue());
+            }
+            Object timestamp = map.get("timestamp");
+            if (timestamp instanceof Number) {
+                return Math.round(((Number)timestamp).doubleValue() * 1_000_000D);
+            }
+            Instant instant = Instant.parse((String)timestamp);
+            return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+        }
+
+        private long parseNCSA(String line, Resource resource) {
+            // host ident user [10/Oct/2000:13:55:36 -0700] "GET /index.html HTTP/1.1" 200 2326 "referer" "user-agent"
+            int timestampStart = line.indexOf('[');
+            int timestampEnd = line.indexOf(']', timestampStart);
+            int requestStart = line.indexOf('"', timestampEnd);
+            int requestEnd = line.indexOf('"', requestStart + 1);
+            if (timestampStart < 0 || timestampEnd < 0 || requestStart < 0 || requestEnd < 0) {
+                throw new IllegalArgumentException("invalid NCSA line");
+            }
+            String[] request = line.substring(requestStart + 1, requestEnd).split(" ");
+            resource.method(request[0]);
+            resource.path(request[1]);
+            String[] fields = line.substring(requestEnd + 1).trim().split(" ", 3);
+            if (fields.length > 1 && !"-".equals(fields[1])) {
+                resource.responseLength(Long.parseLong(fields[1]));
+            }
+            if (fields.length > 2) {
+                String rest = fields[2];
+                int refererEnd = rest.indexOf('"', 1);
+                int userAgentStart = rest.indexOf('"', refererEnd + 1);
+                int userAgentEnd = rest.lastIndexOf('"');
+                if (rest.startsWith("\"") && refererEnd > 0) {
+                    String referer = rest.substring(1, refererEnd);
+                    if (!"-".equals(referer)) {
+                        resource.requestHeader(HttpHeader.REFERER.asString(), referer);
+                    }
+                    if (userAgentStart > 0 && userAgentEnd > userAgentStart) {
+                        String userAgent = rest.substring(userAgentStart + 1, userAgentEnd);
+                        if (!"-".equals(userAgent)) {
+                            resource.requestHeader(HttpHeader.USER_AGENT.asString(), userAgent);
+                        }
+                    }
+                }
+            }
+            // Consecutive lines often have the same timestamp, avoid parsing it again.
+            String timestamp = line.substring(timestampStart + 1, timestampEnd);
+            if (!timestamp.equals(lastTimestamp)) {
+                lastTimestampNanos = TimeUnit.SECONDS.toNanos(OffsetDateTime.parse(timestamp, NCSA_TIMESTAMP).toEpochSecond());
+                lastTimestamp = timestamp;
+            }
+            return lastTimestampNanos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -41,10 +41,14 @@ public class Resource implements JSON.Convertible {
 
     private final List<Resource> resources = new ArrayList<>();
     private final HttpFields requestHeaders = new HttpFields();
+    private final List<Extractor> extractors = new ArrayList<>();
     private String method = HttpMethod.GET.asString();
+    private String origin;
     private String path;
     private long requestLength;
     private long responseLength;
+    private Delay delay;
+    private Delay childrenDelay;
 
     public Resource() {
         this((String)null);
@@ -149,6 +153,80 @@ public class Resource implements JSON.Convertible {
         return responseLength;
     }
 
+    /**
+     * <p>Sets the name of the {@link Origin} this resource request is sent to.</p>
+     * <p>The origin must be {@link LoadGenerator.Builder#origin(String, String, String, int) configured}
+     * in the load generator; children resources do not inherit the origin.</p>
+     *
+     * @param origin the origin name, or null to send this resource request to the default origin
+     * @return this Resource
+     */
+    public Resource origin(String origin) {
+        this.origin = origin;
+        return this;
+    }
+
+    /**
+     * @return the origin name, or null if this resource request is sent to the default origin
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * <p>Sets the delay before sending this resource request, measured from the
+     * moment the resource could be sent: the beginning of the resource tree for
+     * the root resource, or the completion of the parent resource (and of the
+     * parent {@link #childrenDelay(Delay) children delay}) for children resources.</p>
+     *
+     * @param delay the delay before sending this resource request, or null for no delay
+     * @return this Resource
+     */
+    public Resource delay(Delay delay) {
+        this.delay = delay;
+        return this;
+    }
+
+    public Delay getDelay() {
+        return delay;
+    }
+
+    /**
+     * <p>Sets the delay between the completion of this resource response and the
+     * sending of the children resources, for example to model the time a browser
+     * takes to parse and render this resource before fetching its sub-resources.</p>
+     *
+     * @param childrenDelay the delay before sending the children resources, or null for no delay
+     * @return this Resource
+     */
+    public Resource childrenDelay(Delay childrenDelay) {
+        this.childrenDelay = childrenDelay;
+        return this;
+    }
+
+    public Delay getChildrenDelay() {
+        return childrenDelay;
+    }
+
+    /**
+     * <p>Adds extractors of values from the response to this resource request,
+     * to fill the variables of the resources sent afterwards by the same user.</p>
+     *
+     * @param extractors the extractors to add
+     * @return this Resource
+     */
+    public Resource extractors(Extractor... extractors) {
+        this.extractors.addAll(List.of(extractors));
+        return this;
+    }
+
+    /**
+     * @return the extractors of values from the response to this resource request
+     */
+    public List<Extractor> getExtractors() {
+        return extractors;
+    }
+
     /**
      * <p>Adds children resources.</p>
      *
@@ -208,7 +286,11 @@ public class Resource implements JSON.Convertible {
     }
 
     Info newInfo(LoadGenerator generator) {
-        return new Info(generator, this);
+        return newInfo(generator, null);
+    }
+
+    Info newInfo(LoadGenerator generator, Scenario scenario) {
+        return new Info(generator, scenario, this);
     }
 
     @Override
@@ -217,6 +299,10 @@ public class Resource implements JSON.Convertible {
         if (method != null) {
             out.add("method", method);
         }
+        String origin = getOrigin();
+        if (origin != null) {
+            out.add("origin", origin);
+        }
         String path = getPath();
         if (path == null) {
             path = "/";
@@ -228,6 +314,18 @@ public class Resource implements JSON.Convertible {
         if (requestHeaders != null) {
             out.add("requestHeaders", toMap(requestHeaders));
         }
+        List<Extractor> extractors = getExtractors();
+        if (!extractors.isEmpty()) {
+            out.add("extractors", extractors);
+        }
+        Delay delay = getDelay();
+        if (delay != null) {
+            out.add("delay", delay);
+        }
+        Delay childrenDelay = getChildrenDelay();
+        if (childrenDelay != null) {
+            out.add("childrenDelay", childrenDelay);
+        }
         List<Resource> resources = getResources();
         if (resources != null) {
             out.add("resources", resources);
@@ -240,6 +338,7 @@ public class Resource implements JSON.Convertible {
         if (method != null) {
             method(method);
         }
+        origin((String)map.get("origin"));
         String path = (String)map.get("path");
         if (path == null) {
             path = "/";
@@ -256,9 +355,38 @@ public class Resource implements JSON.Convertible {
         @SuppressWarnings("unchecked")
         Map<String, Object> requestHeaders = (Map<String, Object>)map.get("requestHeaders");
         requestHeaders(toHttpFields(requestHeaders));
+        extractors(toExtractors(path, map.get("extractors")));
+        delay(toDelay(map.get("delay")));
+        childrenDelay(toDelay(map.get("childrenDelay")));
         resources(toResources(map.get("resources")));
     }
 
+    private static Delay toDelay(Object object) {
+        if (object instanceof Map) {
+            Delay delay = new Delay();
+            delay.fromJSON((Map<?, ?>)object);
+            return delay;
+        }
+        return null;
+    }
+
+    private static Extractor[] toExtractors(String path, Object objects) {
+        if (objects instanceof Object[]) {
+            return Arrays.stream((Object[])objects)
+                    .map(object -> {
+                        Extractor extractor = new Extractor();
+                        try {
+                            extractor.fromJSON((Map<?, ?>)object);
+                        } catch (IllegalArgumentException x) {
+                            throw new IllegalArgumentException(x.getMessage() + " of resource " + path, x);
+                        }
+                        return extractor;
+                    })
+                    .toArray(Extractor[]::new);
+        }
+        return new Extractor[0];
+    }
+
     private static Map<String, Object> toMap(HttpFields fields) {
         return fields.stream()
                 .collect(Collectors.toMap(HttpField::getName, HttpField::getValues));
@@ -313,7 +441,9 @@ public class Resource implements JSON.Convertible {
      */
     public static class Info {
         private final LoadGenerator generator;
+        private final Scenario scenario;
         private final Resource resource;
+        private long queueTime;
         private long requestTime;
         private long latencyTime;
         private long responseTime;
@@ -322,9 +452,11 @@ public class Resource implements JSON.Convertible {
         private boolean pushed;
         private int status;
         private Throwable failure;
+        private int[] records;
 
-        private Info(LoadGenerator generator, Resource resource) {
+        private Info(LoadGenerator generator, Scenario scenario, Resource resource) {
             this.generator = generator;
+            this.scenario = scenario;
             this.resource = resource;
         }
 
@@ -332,6 +464,13 @@ public class Resource implements JSON.Convertible {
             return generator;
         }
 
+        /**
+         * @return the scenario this resource belongs to, or null if no scenarios are configured
+         */
+        public Scenario getScenario() {
+            return scenario;
+        }
+
         /**
          * @return the corresponding Resource
          */
@@ -339,6 +478,46 @@ public class Resource implements JSON.Convertible {
             return resource;
         }
 
+        /**
+         * @param child a child resource of this resource
+         * @return a new Info for the given child resource, with the same scenario and feeder records
+         */
+        Info newChildInfo(Resource child) {
+            Info info = child.newInfo(generator, scenario);
+            info.records = records;
+            return info;
+        }
+
+        /**
+         * @return the index of the record of each {@link LoadGenerator.Config#getFeeders() feeder}
+         * used to fill the resource templates, or null if no feeders are configured
+         */
+        public int[] getRecords() {
+            return records;
+        }
+
+        void setRecords(int[] records) {
+            this.records = records;
+        }
+
+        /**
+         * <p>Returns the time, in ns, the request started to wait for an in-flight slot.</p>
+         * <p>The time spent waiting for a slot is the difference between the
+         * {@link #getRequestTime() request time} and the queue time.</p>
+         *
+         * @return the time, in ns, the request started to wait for an in-flight slot,
+         * or zero if no in-flight limits are configured
+         * @see LoadGenerator.Builder#maxRequestsPerUser(int)
+         * @see LoadGenerator.Builder#maxRequestsPerTree(int)
+         */
+        public long getQueueTime() {
+            return queueTime;
+        }
+
+        void setQueueTime(long queueTime) {
+            this.queueTime = queueTime;
+        }
+
         /**
          * @return the time, in ns, the request is being sent
          */
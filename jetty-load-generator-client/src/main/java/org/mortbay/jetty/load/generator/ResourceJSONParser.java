@@ -0,0 +1,453 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.jetty.http.HttpField;
+
+/**
+ * <p>A streaming parser of {@link Resource} trees in the JSON format
+ * produced by {@link Resource#toJSON(org.eclipse.jetty.util.ajax.JSON.Output)}.</p>
+ * <p>Differently from parsing with {@link org.eclipse.jetty.util.ajax.JSON}
+ * and then converting via {@link Resource#fromJSON(Map)}, this parser builds
+ * the {@code Resource} objects directly while reading characters, without
+ * creating intermediate maps and arrays, so that resource trees with hundreds
+ * of thousands of nodes can be loaded quickly and with a small heap.</p>
+ * <p>Methods and request header fields are interned, so that resources with
+ * the same request headers share the same {@link HttpField} instances.</p>
+ * <p>A ResourceJSONParser instance is not thread-safe and should be used
+ * to parse only one resource tree.</p>
+ */
+public class ResourceJSONParser {
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<String, HttpField> fields = new HashMap<>();
+    private final StringBuilder builder = new StringBuilder();
+    private final char[] buffer = new char[8192];
+    private Reader reader;
+    private int index;
+    private int limit;
+    private int resources;
+
+    /**
+     * @param reader the reader of the JSON resource tree
+     * @return the root of the resource tree
+     * @throws IOException if the JSON cannot be read
+     * @throws IllegalArgumentException if the JSON is invalid
+     */
+    public Resource parse(Reader reader) throws IOException {
+        this.reader = reader;
+        Resource result = parseResource();
+        if (skipWhitespace() >= 0) {
+            throw newInvalidJSON("trailing characters");
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of resources parsed
+     */
+    public int getResourceCount() {
+        return resources;
+    }
+
+    /**
+     * @return the number of distinct request header fields
+     */
+    public int getHeaderFieldCount() {
+        return fields.size();
+    }
+
+    private Resource parseResource() throws IOException {
+        expect('{');
+        ++resources;
+        Resource resource = new Resource();
+        String path = null;
+        if (skipWhitespace() == '}') {
+            next();
+        } else {
+            while (true) {
+                String key = parseString();
+                expect(':');
+                switch (key) {
+                    case "method":
+                        String method = parseNullableString();
+                        if (method != null) {
+                            resource.method(intern(method));
+                        }
+                        break;
+                    case "origin":
+                        String origin = parseNullableString();
+                        resource.origin(origin == null ? null : intern(origin));
+                        break;
+                    case "path":
+                        path = parseNullableString();
+                        break;
+                    case "requestLength":
+                        resource.requestLength(parseLong());
+                        break;
+                    case "responseLength":
+                        resource.responseLength(parseLong());
+                        break;
+                    case "requestHeaders":
+                        parseRequestHeaders(resource);
+                        break;
+                    case "extractors":
+                        parseExtractors(resource);
+                        break;
+                    case "delay":
+                        resource.delay(parseDelay());
+                        break;
+                    case "childrenDelay":
+                        resource.childrenDelay(parseDelay());
+                        break;
+                    case "resources":
+                        parseResources(resource);
+                        break;
+                    default:
+                        skipValue();
+                        break;
+                }
+                if (!more('}')) {
+                    break;
+                }
+            }
+        }
+        // Same as Resource.fromJSON().
+        resource.path(path == null ? "/" : path);
+        return resource;
+    }
+
+    private void parseResources(Resource resource) throws IOException {
+        if (parseNull()) {
+            return;
+        }
+        expect('[');
+        if (skipWhitespace() == ']') {
+            next();
+            return;
+        }
+        while (true) {
+            resource.resources(parseResource());
+            if (!more(']')) {
+                return;
+            }
+        }
+    }
+
+    private void parseExtractors(Resource resource) throws IOException {
+        if (parseNull()) {
+            return;
+        }
+        expect('[');
+        if (skipWhitespace() == ']') {
+            next();
+            return;
+        }
+        while (true) {
+            Extractor extractor = new Extractor();
+            extractor.fromJSON(parseFlatObject());
+            resource.extractors(extractor);
+            if (!more(']')) {
+                return;
+            }
+        }
+    }
+
+    private Delay parseDelay() throws IOException {
+        if (parseNull()) {
+            return null;
+        }
+        Delay delay = new Delay();
+        delay.fromJSON(parseFlatObject());
+        return delay;
+    }
+
+    /**
+     * <p>Parses a JSON object whose values are strings, numbers or nulls.</p>
+     * <p>Such objects, such as extractors and delays, are small and rare
+     * with respect to resources, so they are parsed into a map.</p>
+     */
+    private Map<String, Object> parseFlatObject() throws IOException {
+        Map<String, Object> map = new HashMap<>();
+        expect('{');
+        if (skipWhitespace() == '}') {
+            next();
+            return map;
+        }
+        while (true) {
+            String key = parseString();
+            expect(':');
+            int c = skipWhitespace();
+            if (c == '"') {
+                map.put(key, parseString());
+            } else if (c == 'n') {
+                parseNull();
+            } else {
+                String number = parseScalar();
+                try {
+                    map.put(key, Long.parseLong(number));
+                } catch (NumberFormatException x) {
+                    map.put(key, Double.parseDouble(number));
+                }
+            }
+            if (!more('}')) {
+                return map;
+            }
+        }
+    }
+
+    private void parseRequestHeaders(Resource resource) throws IOException {
+        if (parseNull()) {
+            return;
+        }
+        expect('{');
+        if (skipWhitespace() == '}') {
+            next();
+            return;
+        }
+        while (true) {
+            String name = parseString();
+            expect(':');
+            String value;
+            if (skipWhitespace() == '[') {
+                // Multiple values are joined, same as Resource.fromJSON().
+                next();
+                StringBuilder values = new StringBuilder();
+                if (skipWhitespace() == ']') {
+                    next();
+                } else {
+                    while (true) {
+                        if (values.length() > 0) {
+                            values.append(',');
+                        }
+                        values.append(parseScalar());
+                        if (!more(']')) {
+                            break;
+                        }
+                    }
+                }
+                value = values.toString();
+            } else {
+                value = parseScalar();
+            }
+            resource.getRequestHeaders().put(field(name, value));
+            if (!more('}')) {
+                return;
+            }
+        }
+    }
+
+    private HttpField field(String name, String value) {
+        builder.setLength(0);
+        String key = builder.append(name).append('\n').append(value).toString();
+        return fields.computeIfAbsent(key, k -> new HttpField(intern(name), intern(value)));
+    }
+
+    private String intern(String string) {
+        String result = strings.putIfAbsent(string, string);
+        return result == null ? string : result;
+    }
+
+    /**
+     * @param close the closing character of the current object or array
+     * @return true if there are more elements, false if the closing character was read
+     */
+    private boolean more(char close) throws IOException {
+        int c = skipWhitespace();
+        next();
+        if (c == ',') {
+            return true;
+        }
+        if (c == close) {
+            return false;
+        }
+        throw newInvalidJSON("expected ',' or '" + close + "'");
+    }
+
+    private String parseScalar() throws IOException {
+        int c = skipWhitespace();
+        if (c == '"') {
+            return parseString();
+        }
+        // Numbers and literals, as they appear in the JSON.
+        builder.setLength(0);
+        while (c >= 0 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+            builder.append((char)next());
+            c = peek();
+        }
+        return builder.toString();
+    }
+
+    private boolean parseNull() throws IOException {
+        if (skipWhitespace() == 'n') {
+            expectLiteral("null");
+            return true;
+        }
+        return false;
+    }
+
+    private String parseNullableString() throws IOException {
+        return parseNull() ? null : parseString();
+    }
+
+    private long parseLong() throws IOException {
+        if (parseNull()) {
+            return 0;
+        }
+        String number = parseScalar();
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException x) {
+            return (long)Double.parseDouble(number);
+        }
+    }
+
+    private String parseString() throws IOException {
+        expect('"');
+        builder.setLength(0);
+        while (true) {
+            int c = next();
+            if (c < 0) {
+                throw newInvalidJSON("unterminated string");
+            }
+            if (c == '"') {
+                return builder.toString();
+            }
+            if (c == '\\') {
+                c = next();
+                switch (c) {
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; ++i) {
+                            int digit = Character.digit(next(), 16);
+                            if (digit < 0) {
+                                throw newInvalidJSON("invalid unicode escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        builder.append((char)code);
+                        break;
+                    default:
+                        if (c < 0) {
+                            throw newInvalidJSON("unterminated string");
+                        }
+                        builder.append((char)c);
+                        break;
+                }
+            } else {
+                builder.append((char)c);
+            }
+        }
+    }
+
+    private void skipValue() throws IOException {
+        int c = skipWhitespace();
+        if (c == '"') {
+            parseString();
+        } else if (c == '{' || c == '[') {
+            next();
+            int depth = 1;
+            while (depth > 0) {
+                c = skipWhitespace();
+                if (c == '"') {
+                    parseString();
+                    continue;
+                }
+                if (c < 0) {
+                    throw newInvalidJSON("unterminated value");
+                }
+                next();
+                if (c == '{' || c == '[') {
+                    ++depth;
+                } else if (c == '}' || c == ']') {
+                    --depth;
+                }
+            }
+        } else {
+            parseScalar();
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (skipWhitespace() != expected) {
+            throw newInvalidJSON("expected '" + expected + "'");
+        }
+        next();
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); ++i) {
+            if (next() != literal.charAt(i)) {
+                throw newInvalidJSON("expected " + literal);
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c < 0 || !Character.isWhitespace(c)) {
+                return c;
+            }
+            next();
+        }
+    }
+
+    private int peek() throws IOException {
+        if (index == limit && !fill()) {
+            return -1;
+        }
+        return buffer[index];
+    }
+
+    private int next() throws IOException {
+        if (index == limit && !fill()) {
+            return -1;
+        }
+        return buffer[index++];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer);
+        if (read <= 0) {
+            return false;
+        }
+        index = 0;
+        limit = read;
+        return true;
+    }
+
+    private IllegalArgumentException newInvalidJSON(String message) {
+        return new IllegalArgumentException("invalid resource JSON after " + resources + " resource(s): " + message);
+    }
+}
@@ -0,0 +1,84 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.Map;
+import java.util.Objects;
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>A named {@link Resource} tree with a weight, part of a workload mix.</p>
+ * <p>When scenarios are {@link LoadGenerator.Builder#scenario(String, int, Resource) configured},
+ * every iteration of the load generator sends the resource tree of one scenario,
+ * chosen at random with a probability proportional to the scenario weight.</p>
+ */
+public class Scenario implements JSON.Convertible {
+    private String name;
+    private int weight;
+    private Resource resource;
+
+    public Scenario() {
+    }
+
+    public Scenario(String name, int weight, Resource resource) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("invalid scenario weight: " + weight);
+        }
+        this.name = Objects.requireNonNull(name);
+        this.weight = weight;
+        this.resource = Objects.requireNonNull(resource);
+    }
+
+    /**
+     * @return the scenario name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the scenario weight, relative to the weights of the other scenarios
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the scenario root resource
+     */
+    public Resource getResource() {
+        return resource;
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("name", getName());
+        out.add("weight", getWeight());
+        out.add("resource", getResource());
+    }
+
+    @Override
+    public void fromJSON(Map map) {
+        name = (String)map.get("name");
+        weight = ((Number)map.get("weight")).intValue();
+        resource = new Resource();
+        resource.fromJSON((Map<?, ?>)map.get("resource"));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%h{%s,weight=%d,%s}", getClass().getSimpleName(), hashCode(), getName(), getWeight(), getResource());
+    }
+}
@@ -0,0 +1,140 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.net.CookieStore;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>The session state of a virtual user, that is of one {@code HttpClient}:
+ * the cookies, the values taken from responses by {@link Extractor}s and
+ * the slots of the in-flight requests to each {@link Origin}.</p>
+ * <p>The session is the cookie store of the user's {@code HttpClient}.
+ * Since a user has typically few cookies, cookies are kept in a small list
+ * rather than in the per-URI and per-domain indexes of the JDK's default
+ * cookie store; domain matching is performed here, while path matching is
+ * performed by {@code HttpClient}.</p>
+ */
+class Session implements CookieStore {
+    private final List<HttpCookie> cookies = new ArrayList<>();
+    private final AtomicReferenceArray<String> values;
+    private final Map<String, Slots> slots = new ConcurrentHashMap<>();
+    private final int maxRequests;
+
+    /**
+     * @param variables the number of extractor variables
+     * @param maxRequests the maximum number of in-flight requests per origin, or zero for no limit
+     */
+    Session(int variables, int maxRequests) {
+        this.values = new AtomicReferenceArray<>(variables);
+        this.maxRequests = maxRequests;
+    }
+
+    /**
+     * @param origin the origin name, or null for the default origin
+     * @return the in-flight request slots of the user for the origin, or null if the user has no limit
+     */
+    Slots getSlots(String origin) {
+        if (maxRequests <= 0) {
+            return null;
+        }
+        return slots.computeIfAbsent(origin == null ? Origin.DEFAULT : origin, key -> new Slots(maxRequests));
+    }
+
+    /**
+     * @param variable the variable index
+     * @return the last value extracted for the variable, or null
+     */
+    String getValue(int variable) {
+        return values.get(variable);
+    }
+
+    void setValue(int variable, String value) {
+        values.set(variable, value);
+    }
+
+    @Override
+    public void add(URI uri, HttpCookie cookie) {
+        Objects.requireNonNull(cookie);
+        synchronized (cookies) {
+            cookies.removeIf(existing -> existing.equals(cookie));
+            // A cookie with max age 0 deletes the existing cookie.
+            if (cookie.getMaxAge() != 0) {
+                cookies.add(cookie);
+            }
+        }
+    }
+
+    @Override
+    public List<HttpCookie> get(URI uri) {
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        String host = uri.getHost();
+        synchronized (cookies) {
+            if (cookies.isEmpty()) {
+                return List.of();
+            }
+            List<HttpCookie> result = new ArrayList<>(cookies.size());
+            cookies.removeIf(HttpCookie::hasExpired);
+            for (HttpCookie cookie : cookies) {
+                if ((secure || !cookie.getSecure()) && domainMatches(cookie, host)) {
+                    result.add(cookie);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static boolean domainMatches(HttpCookie cookie, String host) {
+        // CookieManager sets the domain of host-only cookies to the request host.
+        String domain = cookie.getDomain();
+        return domain == null || HttpCookie.domainMatches(domain, host);
+    }
+
+    @Override
+    public List<HttpCookie> getCookies() {
+        synchronized (cookies) {
+            cookies.removeIf(HttpCookie::hasExpired);
+            return new ArrayList<>(cookies);
+        }
+    }
+
+    @Override
+    public List<URI> getURIs() {
+        return List.of();
+    }
+
+    @Override
+    public boolean remove(URI uri, HttpCookie cookie) {
+        synchronized (cookies) {
+            return cookies.remove(cookie);
+        }
+    }
+
+    @Override
+    public boolean removeAll() {
+        synchronized (cookies) {
+            boolean result = !cookies.isEmpty();
+            cookies.clear();
+            return result;
+        }
+    }
+}
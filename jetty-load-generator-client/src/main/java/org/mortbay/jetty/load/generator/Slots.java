@@ -0,0 +1,80 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * <p>A limit on the number of in-flight requests that does not block.</p>
+ * <p>A task that cannot acquire a slot is queued, and it is run when a
+ * slot is released, in the order it was queued, by the releasing thread.</p>
+ */
+class Slots {
+    private final Queue<Runnable> waiters = new ArrayDeque<>();
+    private int available;
+
+    /**
+     * @param slots the number of slots
+     */
+    Slots(int slots) {
+        if (slots < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.available = slots;
+    }
+
+    /**
+     * <p>Acquires a slot for the given task.</p>
+     *
+     * @param task the task to run when a slot is released, if no slot is available now
+     * @return true if a slot was acquired and the caller must run the task,
+     * false if the task has been queued
+     */
+    boolean acquire(Runnable task) {
+        synchronized (this) {
+            if (available > 0) {
+                --available;
+                return true;
+            }
+            waiters.offer(task);
+            return false;
+        }
+    }
+
+    /**
+     * <p>Releases a slot, handing it over to the first queued task, if any.</p>
+     */
+    void release() {
+        Runnable task;
+        synchronized (this) {
+            task = waiters.poll();
+            if (task == null) {
+                ++available;
+                return;
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * @return the number of tasks waiting for a slot
+     */
+    int getWaiters() {
+        synchronized (this) {
+            return waiters.size();
+        }
+    }
+}
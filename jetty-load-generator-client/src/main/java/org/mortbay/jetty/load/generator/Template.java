@@ -0,0 +1,174 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A string with {@code {column}} variables, filled with the values of
+ * the records of {@link Feeder}s, or with {@code {name}} variables, filled
+ * with the values taken from responses by {@link Extractor}s.</p>
+ * <p>Templates are parsed once, so that filling them only appends the literal
+ * parts and the values read from the feeders to a {@code StringBuilder}.</p>
+ * <p>Feeder values are inserted verbatim, while extracted values, that are taken
+ * from responses as they are, are percent-encoded when filling a path, so that
+ * for example the {@code +} and {@code /} characters of base64 tokens are
+ * not decoded as a space or as a path separator by the server.</p>
+ * <p>Braces that do not enclose the name of a feeder column or of an extractor
+ * variable, for example in a JSON request header value, are literal text.</p>
+ */
+class Template {
+    private static final Logger LOGGER = Log.getLogger(Template.class);
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final String[] literals;
+    private final int[] variableFeeders;
+    private final int[] variableColumns;
+    private final int length;
+    private final boolean encode;
+
+    private Template(String[] literals, int[] variableFeeders, int[] variableColumns, int length, boolean encode) {
+        this.literals = literals;
+        this.variableFeeders = variableFeeders;
+        this.variableColumns = variableColumns;
+        this.length = length;
+        this.encode = encode;
+    }
+
+    static Template parse(String text, Feeder[] feeders) {
+        return parse(text, feeders, List.of(), false);
+    }
+
+    /**
+     * @param text the template text
+     * @param feeders the feeders whose columns can be referenced by the template
+     * @param extracted the names of the extractor variables that can be referenced by the template
+     * @param encode whether the extracted values are percent-encoded, as needed in paths
+     * @return a Template, or null if the text has no variables
+     */
+    static Template parse(String text, Feeder[] feeders, List<String> extracted, boolean encode) {
+        if (text == null || text.indexOf('{') < 0) {
+            return null;
+        }
+        List<String> literals = new ArrayList<>();
+        List<int[]> variables = new ArrayList<>();
+        int length = 0;
+        int index = 0;
+        // The start of the current literal part.
+        int literalStart = 0;
+        while (true) {
+            int open = text.indexOf('{', index);
+            int close = open < 0 ? -1 : text.indexOf('}', open);
+            if (close < 0) {
+                String literal = text.substring(literalStart);
+                literals.add(literal);
+                length += literal.length();
+                break;
+            }
+            int[] variable = resolve(text.substring(open + 1, close), feeders, extracted);
+            if (variable == null) {
+                LOGGER.info("no feeder column or extractor for '{}' in {}, left as literal text", text.substring(open, close + 1), text);
+                // Skip only the open brace, so that it may be
+                // followed by a variable, for example in "{{id}}".
+                index = open + 1;
+                continue;
+            }
+            String literal = text.substring(literalStart, open);
+            literals.add(literal);
+            length += literal.length();
+            variables.add(variable);
+            index = literalStart = close + 1;
+        }
+        if (variables.isEmpty()) {
+            return null;
+        }
+        int[] feederIndexes = new int[variables.size()];
+        int[] columnIndexes = new int[variables.size()];
+        for (int i = 0; i < variables.size(); ++i) {
+            feederIndexes[i] = variables.get(i)[0];
+            columnIndexes[i] = variables.get(i)[1];
+        }
+        // Estimate 16 characters per value.
+        return new Template(literals.toArray(new String[0]), feederIndexes, columnIndexes, length + 16 * variables.size(), encode);
+    }
+
+    private static int[] resolve(String variable, Feeder[] feeders, List<String> extracted) {
+        for (int f = 0; f < feeders.length; ++f) {
+            int column = feeders[f].getColumns().indexOf(variable);
+            if (column >= 0) {
+                return new int[]{f, column};
+            }
+        }
+        // Extractor variables have a negative feeder index.
+        int index = extracted.indexOf(variable);
+        if (index >= 0) {
+            return new int[]{-1, index};
+        }
+        return null;
+    }
+
+    String fill(Feeder[] feeders, int[] records) {
+        return fill(feeders, records, null);
+    }
+
+    /**
+     * @param feeders the feeders
+     * @param records the record index of each feeder
+     * @param session the session with the extracted values, or null
+     * @return the template filled with the values of the given records and session
+     */
+    String fill(Feeder[] feeders, int[] records, Session session) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < variableColumns.length; ++i) {
+            builder.append(literals[i]);
+            int feeder = variableFeeders[i];
+            if (feeder < 0) {
+                // Not extracted yet is the empty string.
+                String value = session == null ? null : session.getValue(variableColumns[i]);
+                if (value != null) {
+                    if (encode) {
+                        encode(builder, value);
+                    } else {
+                        builder.append(value);
+                    }
+                }
+            } else {
+                feeders[feeder].append(builder, records[feeder], variableColumns[i]);
+            }
+        }
+        builder.append(literals[variableColumns.length]);
+        return builder.toString();
+    }
+
+    /**
+     * <p>Appends the given value, percent-encoding all the characters but the
+     * unreserved ones of RFC 3986, so that the value is safe both in a path
+     * segment and in a query parameter.</p>
+     */
+    private static void encode(StringBuilder builder, String value) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '.' || c == '_' || c == '~') {
+                builder.append((char)c);
+            } else {
+                builder.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>Samples ranks from a Zipf distribution, where rank {@code k} has
+ * probability proportional to {@code 1 / k^exponent}, in constant time,
+ * without allocation and without tables, so that it is suitable also
+ * for millions of ranks.</p>
+ * <p>Uses the rejection-inversion method described in W. Hörmann and
+ * G. Derflinger, "Rejection-inversion to generate variates from monotone
+ * discrete distributions", ACM TOMACS 6 (1996).</p>
+ */
+class ZipfSampler {
+    private final int ranks;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralRanks;
+    private final double threshold;
+
+    ZipfSampler(int ranks, double exponent) {
+        if (ranks <= 0) {
+            throw new IllegalArgumentException("invalid ranks: " + ranks);
+        }
+        if (!(exponent >= 0)) {
+            throw new IllegalArgumentException("invalid exponent: " + exponent);
+        }
+        this.ranks = ranks;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralRanks = hIntegral(ranks + 0.5);
+        this.threshold = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * @param random the random number generator
+     * @return a random rank between 1 and the number of ranks, inclusive
+     */
+    int sample(ThreadLocalRandom random) {
+        while (true) {
+            double u = hIntegralRanks + random.nextDouble() * (hIntegralX1 - hIntegralRanks);
+            double x = hIntegralInverse(u);
+            int k = (int)(x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > ranks) {
+                k = ranks;
+            }
+            if (k - x <= threshold || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if (t < -1) {
+            // Limit value to the range [-1, +inf), rounding errors may produce smaller values.
+            t = -1;
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    /**
+     * @return {@code log(1 + x) / x}, also for values of {@code x} close to zero
+     */
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * @return {@code (exp(x) - 1) / x}, also for values of {@code x} close to zero
+     */
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
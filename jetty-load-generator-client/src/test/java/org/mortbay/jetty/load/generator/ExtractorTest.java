@@ -0,0 +1,99 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExtractorTest {
+    private static String scan(Extractor extractor, String... chunks) {
+        Extractor.Scanner scanner = extractor.newScanner();
+        for (String chunk : chunks) {
+            ByteBuffer buffer = ByteBuffer.wrap(chunk.getBytes(StandardCharsets.UTF_8));
+            scanner.scan(buffer);
+            // The content is not consumed.
+            Assert.assertEquals(0, buffer.position());
+        }
+        return scanner.getValue();
+    }
+
+    @Test
+    public void testBody() {
+        Extractor extractor = Extractor.body("token", "\"token\":\"", "\"");
+        Assert.assertEquals("abc", scan(extractor, "{\"token\":\"abc\"}"));
+        // Boundaries split across chunks.
+        Assert.assertEquals("abc", scan(extractor, "{\"tok", "en\":", "\"a", "bc", "\"}"));
+        // The first match wins.
+        Assert.assertEquals("1", scan(extractor, "\"token\":\"1\",\"token\":\"2\""));
+        // Not found, or not terminated.
+        Assert.assertNull(scan(extractor, "{\"id\":\"abc\"}"));
+        Assert.assertNull(scan(extractor, "{\"token\":\"abc"));
+        // Non-ASCII values.
+        Assert.assertEquals("café", scan(extractor, "\"token\":\"caf", "é\""));
+    }
+
+    @Test
+    public void testPartialBoundaryMatches() {
+        // The left boundary starts within a partial match.
+        Extractor extractor = Extractor.body("v", "aab", "]]");
+        Assert.assertEquals("x]y", scan(extractor, "aaa", "abx]y]]"));
+        Assert.assertEquals("", scan(extractor, "aab]]"));
+    }
+
+    @Test
+    public void testTooLong() {
+        Extractor extractor = Extractor.body("v", "<", ">");
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < Extractor.MAX_VALUE_LENGTH; ++i) {
+            value.append('x');
+        }
+        Assert.assertEquals(value.toString(), scan(extractor, "<" + value, ">"));
+        Assert.assertNull(scan(extractor, "<" + value + "x", ">"));
+    }
+
+    @Test
+    public void testJSON() {
+        Resource resource = new Resource("/login", new Resource("/api/{token}"))
+                .extractors(Extractor.body("token", "\"token\":\"", "\""), Extractor.header("csrf", "X-CSRF"));
+        String json = new JSON().toJSON(resource);
+        Resource copy = new Resource();
+        copy.fromJSON((Map<?, ?>)new JSON().parse(new JSON.StringSource(json)));
+        Assert.assertEquals(json, new JSON().toJSON(copy));
+        Assert.assertEquals("abc", scan(copy.getExtractors().get(0), "\"token\":\"abc\""));
+        Assert.assertEquals("X-CSRF", copy.getExtractors().get(1).getHeader());
+        Assert.assertTrue(copy.getResources().get(0).getExtractors().isEmpty());
+    }
+
+    @Test
+    public void testJSONInvalid() {
+        assertInvalid("{\"path\":\"/login\",\"extractors\":[{\"left\":\"<\",\"right\":\">\"}]}", "'name'");
+        assertInvalid("{\"path\":\"/login\",\"extractors\":[{\"name\":\"token\",\"right\":\">\"}]}", "'left'");
+        assertInvalid("{\"path\":\"/login\",\"extractors\":[{\"name\":\"token\",\"left\":\"<\"}]}", "'right'");
+    }
+
+    private static void assertInvalid(String json, String field) {
+        try {
+            new Resource().fromJSON((Map<?, ?>)new JSON().parse(new JSON.StringSource(json)));
+            Assert.fail();
+        } catch (IllegalArgumentException x) {
+            Assert.assertTrue(x.getMessage(), x.getMessage().contains(field));
+            Assert.assertTrue(x.getMessage(), x.getMessage().contains("/login"));
+        }
+    }
+}
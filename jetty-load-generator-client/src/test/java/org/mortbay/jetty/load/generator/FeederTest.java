@@ -0,0 +1,162 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FeederTest {
+    private Path write(String suffix, String content) throws Exception {
+        Path path = Files.createTempFile(Path.of("target"), "jlg-feeder-", suffix);
+        path.toFile().deleteOnExit();
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+        return path;
+    }
+
+    @Test
+    public void testCSV() throws Exception {
+        Path path = write(".csv", "id,term\r\n1,foo\r\n2,café\r\n3,\r\n");
+        Feeder feeder = new Feeder(path.toString(), Feeder.Mode.CIRCULAR);
+        feeder.start();
+        Assert.assertEquals(List.of("id", "term"), feeder.getColumns());
+        Assert.assertEquals(3, feeder.getRecords());
+        Assert.assertEquals("1", feeder.value(0, 0));
+        Assert.assertEquals("café", feeder.value(1, 1));
+        Assert.assertEquals("", feeder.value(2, 1));
+        feeder.stop();
+    }
+
+    @Test
+    public void testLines() throws Exception {
+        Path path = write(".txt", "a,b\nc");
+        Feeder feeder = new Feeder("term", path.toString(), Feeder.Mode.CIRCULAR);
+        feeder.start();
+        Assert.assertEquals(List.of("term"), feeder.getColumns());
+        Assert.assertEquals(2, feeder.getRecords());
+        // Commas are not separators in line-delimited files.
+        Assert.assertEquals("a,b", feeder.value(0, 0));
+        Assert.assertEquals("c", feeder.value(1, 0));
+        feeder.stop();
+    }
+
+    @Test
+    public void testModes() throws Exception {
+        int records = 100;
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < records; ++i) {
+            content.append(i).append("\n");
+        }
+        Path path = write(".txt", content.toString());
+
+        Feeder circular = new Feeder(path.toString(), Feeder.Mode.CIRCULAR);
+        circular.start();
+        for (int i = 0; i < 3 * records; ++i) {
+            Assert.assertEquals(i % records, circular.next());
+        }
+        circular.stop();
+
+        Feeder random = new Feeder(path.toString(), Feeder.Mode.RANDOM);
+        random.start();
+        Set<Integer> indexes = new HashSet<>();
+        for (int i = 0; i < 10 * records; ++i) {
+            int index = random.next();
+            Assert.assertTrue(index >= 0 && index < records);
+            indexes.add(index);
+        }
+        Assert.assertTrue(indexes.size() > records / 2);
+        random.stop();
+
+        Feeder sequential = new Feeder(path.toString(), Feeder.Mode.SEQUENTIAL);
+        sequential.start();
+        for (int i = 0; i < records; ++i) {
+            Assert.assertEquals(i, sequential.next());
+        }
+        Assert.assertThrows(IllegalStateException.class, sequential::next);
+        sequential.stop();
+    }
+
+    @Test
+    public void testZipf() throws Exception {
+        int records = 1000;
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < records; ++i) {
+            content.append("/item/").append(i).append("\n");
+        }
+        Path path = write(".txt", content.toString());
+
+        Feeder zipf = new Feeder(path.toString(), Feeder.Mode.ZIPF, 1);
+        zipf.start();
+        int samples = 100_000;
+        int[] counts = new int[records];
+        for (int i = 0; i < samples; ++i) {
+            ++counts[zipf.next()];
+        }
+        zipf.stop();
+
+        // The probability of rank k is 1 / (k * H(1000)), with H(1000) ~= 7.485.
+        double harmonic = 0;
+        for (int k = 1; k <= records; ++k) {
+            harmonic += 1D / k;
+        }
+        for (int k = 1; k <= 3; ++k) {
+            double expected = samples / (k * harmonic);
+            // Allow 5 standard deviations.
+            double tolerance = 5 * Math.sqrt(expected);
+            Assert.assertEquals(expected, counts[k - 1], tolerance);
+        }
+        Assert.assertTrue(counts[0] > counts[9]);
+        Assert.assertTrue(counts[9] > counts[99]);
+
+        // A zero exponent is the uniform distribution.
+        Feeder uniform = new Feeder(path.toString(), Feeder.Mode.ZIPF, 0);
+        uniform.start();
+        Set<Integer> indexes = new HashSet<>();
+        for (int i = 0; i < 10 * records; ++i) {
+            int index = uniform.next();
+            Assert.assertTrue(index >= 0 && index < records);
+            indexes.add(index);
+        }
+        Assert.assertTrue(indexes.size() > records / 2);
+        uniform.stop();
+    }
+
+    @Test
+    public void testTemplate() throws Exception {
+        Path ids = write(".csv", "id,color\n42,red\n");
+        Path terms = write(".txt", "jetty\n");
+        Feeder idFeeder = new Feeder(ids.toString(), Feeder.Mode.CIRCULAR);
+        idFeeder.start();
+        Feeder termFeeder = new Feeder("term", terms.toString(), Feeder.Mode.CIRCULAR);
+        termFeeder.start();
+        Feeder[] feeders = {idFeeder, termFeeder};
+
+        Assert.assertNull(Template.parse("/static", feeders));
+        Template template = Template.parse("/item/{id}?q={term}&c={color}", feeders);
+        Assert.assertEquals("/item/42?q=jetty&c=red", template.fill(feeders, new int[]{0, 0}));
+        // Braces that do not reference a column are literal text.
+        Assert.assertNull(Template.parse("/api/{literal}", feeders));
+        Assert.assertEquals("{\"id\":42}", Template.parse("{\"id\":{id}}", feeders).fill(feeders, new int[]{0, 0}));
+        Assert.assertEquals("/{unknown}/{42}", Template.parse("/{unknown}/{{id}}", feeders).fill(feeders, new int[]{0, 0}));
+
+        idFeeder.stop();
+        termFeeder.stop();
+    }
+}
@@ -16,6 +16,7 @@ package org.mortbay.jetty.load.generator;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -30,6 +31,7 @@ import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.junit.After;
 import org.junit.Assert;
@@ -39,12 +41,14 @@ public class HTTP2LoadGeneratorTest {
     private Server server;
     private ServerConnector connector;
     private ServerConnector tlsConnector;
+    private HTTP2CServerConnectionFactory h2c;
 
     private void startServer(Handler handler) throws Exception {
         server = new Server();
 
         HttpConfiguration httpConfig = new HttpConfiguration();
-        connector = new ServerConnector(server, 1, 1, new HTTP2CServerConnectionFactory(httpConfig));
+        h2c = new HTTP2CServerConnectionFactory(httpConfig);
+        connector = new ServerConnector(server, 1, 1, h2c);
         server.addConnector(connector);
 
         HttpConfiguration httpsConfig = new HttpConfiguration(httpConfig);
@@ -139,4 +143,52 @@ public class HTTP2LoadGeneratorTest {
         Assert.assertEquals(1, sent.get());
         Assert.assertEquals(2, pushed.get());
     }
+
+    @Test
+    public void testHTTP2Statistics() throws Exception {
+        startServer(new TestHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+                IO.copy(request.getInputStream(), IO.getNullStream());
+                super.handle(target, jettyRequest, request, response);
+            }
+        });
+        // Small server windows stall the request content, and a
+        // single stream per connection queues the resource children.
+        h2c.setInitialSessionRecvWindow(64 * 1024);
+        h2c.setInitialStreamRecvWindow(16 * 1024);
+        h2c.setMaxConcurrentStreams(1);
+
+        HTTP2ClientTransportBuilder transportBuilder = new HTTP2ClientTransportBuilder();
+        AtomicReference<LoadGenerator> generatorRef = new AtomicReference<>();
+        AtomicLong streamQueued = new AtomicLong();
+        Resource resource = new Resource("/", new Resource("/1"), new Resource("/2"), new Resource("/3"))
+                .method("POST")
+                .requestLength(128 * 1024)
+                .responseLength(4 * 1024);
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(transportBuilder)
+                .channelsPerUser(1)
+                .iterationsPerThread(5)
+                .resource(resource)
+                .requestListener(new Request.Listener.Adapter() {
+                    @Override
+                    public void onQueued(Request request) {
+                        streamQueued.accumulateAndGet(generatorRef.get().getStreamQueuedRequests(), Math::max);
+                    }
+                })
+                .build();
+        generatorRef.set(loadGenerator);
+        loadGenerator.begin().get(15, TimeUnit.SECONDS);
+
+        HTTP2Statistics statistics = transportBuilder.getStatistics();
+        Assert.assertEquals(1, statistics.getServerMaxConcurrentStreams());
+        Assert.assertEquals(1, statistics.getMaxConcurrentStreams());
+        Assert.assertEquals(16 * 1024, statistics.getServerInitialStreamWindow());
+        Assert.assertTrue(statistics.getStreamStalls() > 0);
+        Assert.assertTrue(statistics.getStreamStallTime() > 0);
+        Assert.assertTrue(statistics.getMinStreamRecvWindow() >= 0);
+        Assert.assertTrue(streamQueued.get() > 0);
+    }
 }
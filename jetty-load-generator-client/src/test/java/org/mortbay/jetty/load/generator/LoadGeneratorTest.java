@@ -16,9 +16,12 @@ package org.mortbay.jetty.load.generator;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
@@ -27,9 +30,11 @@ import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import javax.management.ObjectName;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -45,6 +50,7 @@ import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.util.SocketAddressResolver;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
@@ -194,6 +200,35 @@ public class LoadGeneratorTest {
         }).get(5, TimeUnit.SECONDS);
     }
 
+    @Test
+    public void testEnd() throws Exception {
+        startServer(new TestHandler());
+
+        CountDownLatch endLatch = new CountDownLatch(1);
+        CountDownLatch completeLatch = new CountDownLatch(1);
+        LoadGenerator loadGenerator = new LoadGenerator.Builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                // Iterate forever.
+                .iterationsPerThread(0)
+                .resourceRate(5)
+                .listener((LoadGenerator.EndListener)generator -> endLatch.countDown())
+                .listener((LoadGenerator.CompleteListener)generator -> completeLatch.countDown())
+                .build();
+        CompletableFuture<Void> cf = loadGenerator.begin();
+
+        Thread.sleep(1000);
+
+        loadGenerator.end();
+
+        // Ending is graceful, so the load generation completes normally.
+        cf.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(endLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(completeLatch.await(5, TimeUnit.SECONDS));
+        long sent = loadGenerator.getSentRequests();
+        Assert.assertTrue(String.valueOf(sent), sent > 0 && sent < 10);
+    }
+
     @Test
     public void testInterruptAfterResourceComplete() throws Exception {
         startServer(new AbstractHandler() {
@@ -640,6 +675,341 @@ public class LoadGeneratorTest {
         Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testWeightedScenarios() throws Exception {
+        startServer(new TestHandler());
+
+        int iterations = 400;
+        Map<String, LongAdder> scenarioNodes = new ConcurrentHashMap<>();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .resourceRate(0)
+                .iterationsPerThread(iterations)
+                .scenario("browse", 3, new Resource("/browse", new Resource("/browse/image")))
+                .scenario("buy", 1, new Resource("/buy"))
+                .resourceListener((Resource.NodeListener)info -> scenarioNodes.computeIfAbsent(info.getScenario().getName(), name -> new LongAdder()).increment())
+                .build();
+
+        loadGenerator.begin().get(15, TimeUnit.SECONDS);
+
+        long browse = scenarioNodes.get("browse").longValue() / 2;
+        long buy = scenarioNodes.get("buy").longValue();
+        Assert.assertEquals(iterations, browse + buy);
+        // Expected 300 with a standard deviation of ~8.7.
+        Assert.assertTrue(String.valueOf(browse), browse > 250 && browse < 350);
+        Assert.assertEquals(1.75D, loadGenerator.getConfig().getResourceNodesPerIteration(), 0.001D);
+    }
+
+    @Test
+    public void testFeederTemplates() throws Exception {
+        Queue<String> requests = new ConcurrentLinkedDeque<>();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) {
+                jettyRequest.setHandled(true);
+                requests.add(request.getRequestURI() + "?" + request.getQueryString() + " " + request.getHeader("X-User"));
+            }
+        });
+
+        Path data = Files.createTempFile(Path.of("target"), "jlg-feeder-", ".csv");
+        data.toFile().deleteOnExit();
+        Files.writeString(data, "id,user\n1,alice\n2,bob\n3,carol\n");
+        int iterations = 6;
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .resourceRate(0)
+                .iterationsPerThread(iterations)
+                .feeder(new Feeder(data.toString(), Feeder.Mode.CIRCULAR))
+                .resource(new Resource("/item/{id}?v=1", new Resource("/item/{id}/image?v=1")).requestHeader("X-User", "{user}"))
+                .build();
+
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(2 * iterations, requests.size());
+        for (String user : List.of("alice", "bob", "carol")) {
+            String id = String.valueOf(List.of("alice", "bob", "carol").indexOf(user) + 1);
+            Assert.assertEquals(2, requests.stream().filter(("/item/" + id + "?v=1 " + user)::equals).count());
+            // Children share the record of the parent, but not its headers.
+            Assert.assertEquals(2, requests.stream().filter(("/item/" + id + "/image?v=1 null")::equals).count());
+        }
+    }
+
+    @Test
+    public void testSessionExtractors() throws Exception {
+        AtomicInteger sessions = new AtomicInteger();
+        Queue<String> results = new ConcurrentLinkedDeque<>();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                jettyRequest.setHandled(true);
+                if ("/login".equals(target)) {
+                    int session = sessions.incrementAndGet();
+                    response.addHeader("Set-Cookie", "sid=" + session + "; Path=/");
+                    response.setHeader("X-CSRF", "csrf-" + session);
+                    response.setContentType("application/json");
+                    // Split the token across content chunks, base64-like
+                    // characters must be percent-encoded in the query.
+                    response.getOutputStream().print("{\"user\":\"u\",\"token\":\"to");
+                    response.flushBuffer();
+                    response.getOutputStream().print("k+" + session + "=\",\"n\":1}");
+                } else {
+                    javax.servlet.http.Cookie[] cookies = request.getCookies();
+                    String session = cookies == null ? null : cookies[0].getValue();
+                    String expected = "/api tok+" + session + "= csrf-" + session;
+                    String actual = target + " " + request.getParameter("token") + " " + request.getHeader("X-CSRF-Token");
+                    results.add(expected.equals(actual) ? "ok" : actual + " for session " + session);
+                }
+            }
+        });
+
+        int users = 4;
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .resourceRate(0)
+                .usersPerThread(users)
+                // One resource tree per user.
+                .iterationsPerThread(users)
+                .resource(new Resource("/login",
+                        new Resource("/api?token={token}").requestHeader("X-CSRF-Token", "{csrf}"))
+                        .extractors(Extractor.body("token", "\"token\":\"", "\""), Extractor.header("csrf", "X-CSRF")))
+                .build();
+
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(users, sessions.get());
+        Assert.assertEquals(Collections.nCopies(users, "ok"), new ArrayList<>(results));
+    }
+
+    @Test
+    public void testDelays() throws Exception {
+        Map<String, Long> requestTimes = new ConcurrentHashMap<>();
+        Queue<String> sendThreads = new ConcurrentLinkedDeque<>();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) {
+                jettyRequest.setHandled(true);
+                requestTimes.put(target, System.nanoTime());
+            }
+        });
+
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .resourceRate(0)
+                .iterationsPerThread(1)
+                .resource(new Resource("/",
+                        new Resource("/fast"),
+                        new Resource("/slow").delay(Delay.constant(300)))
+                        .delay(Delay.constant(100))
+                        .childrenDelay(Delay.constant(200)))
+                .scheduler(new ScheduledExecutorScheduler("delays-scheduler", false))
+                .requestListener(new Request.Listener.Adapter() {
+                    @Override
+                    public void onQueued(Request request) {
+                        sendThreads.add(Thread.currentThread().getName());
+                    }
+                })
+                .build();
+
+        long begin = System.nanoTime();
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(3, requestTimes.size());
+        long root = requestTimes.get("/");
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(root - begin) >= 100);
+        long fast = TimeUnit.NANOSECONDS.toMillis(requestTimes.get("/fast") - root);
+        Assert.assertTrue(String.valueOf(fast), fast >= 200 && fast < 500);
+        long slow = TimeUnit.NANOSECONDS.toMillis(requestTimes.get("/slow") - root);
+        Assert.assertTrue(String.valueOf(slow), slow >= 500);
+        // Delayed requests are sent by the executor, not by the shared scheduler.
+        Assert.assertEquals(3, sendThreads.size());
+        Assert.assertTrue(sendThreads.toString(), sendThreads.stream().noneMatch(name -> name.startsWith("delays-scheduler")));
+    }
+
+    @Test
+    public void testMaxRequestsPerTree() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        startServer(new ConcurrencyHandler(concurrent, maxConcurrent));
+
+        int maxRequests = 3;
+        Queue<Resource.Info> infos = new ConcurrentLinkedDeque<>();
+        Resource[] children = new Resource[10];
+        for (int i = 0; i < children.length; ++i) {
+            children[i] = new Resource("/" + i);
+        }
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .resourceRate(0)
+                .iterationsPerThread(1)
+                .maxRequestsPerTree(maxRequests)
+                .resource(new Resource("/", children))
+                .resourceListener((Resource.NodeListener)infos::add)
+                .build();
+
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(children.length + 1, infos.size());
+        Assert.assertEquals(maxRequests, maxConcurrent.get());
+        infos.forEach(info -> Assert.assertNotEquals(0, info.getQueueTime()));
+        // The last children waited for the first children to complete.
+        Assert.assertTrue(infos.stream().anyMatch(info -> info.getRequestTime() - info.getQueueTime() >= TimeUnit.MILLISECONDS.toNanos(ConcurrencyHandler.SLEEP)));
+    }
+
+    @Test
+    public void testMaxRequestsPerUser() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        startServer(new ConcurrencyHandler(concurrent, maxConcurrent));
+
+        int maxRequests = 2;
+        int iterations = 4;
+        LongAdder nodes = new LongAdder();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .resourceRate(0)
+                .iterationsPerThread(iterations)
+                .maxRequestsPerUser(maxRequests)
+                .maxRequestsPerTree(3)
+                .resource(new Resource("/", new Resource("/1"), new Resource("/2"), new Resource("/3")))
+                .resourceListener((Resource.NodeListener)info -> nodes.increment())
+                .build();
+
+        loadGenerator.begin().get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(iterations * 4, nodes.longValue());
+        // The trees run concurrently, but the user limit applies to all of them.
+        Assert.assertEquals(maxRequests, maxConcurrent.get());
+    }
+
+    @Test
+    public void testOrigins() throws Exception {
+        Map<String, String> hosts = new ConcurrentHashMap<>();
+        startServer(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) {
+                jettyRequest.setHandled(true);
+                hosts.put(target, request.getServerName());
+            }
+        });
+
+        Queue<Origin> connectOrigins = new ConcurrentLinkedDeque<>();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .origin("api", "http", "127.0.0.1", connector.getLocalPort())
+                .resourceRate(0)
+                .iterationsPerThread(1)
+                .resource(new Resource("/",
+                        new Resource("/style.css"),
+                        new Resource("/api").origin("api")))
+                .listener(new LoadGenerator.ConnectListener() {
+                    @Override
+                    public void onConnect(LoadGenerator generator, long connectTime, Throwable failure) {
+                    }
+
+                    @Override
+                    public void onConnect(LoadGenerator generator, Origin origin, long connectTime, Throwable failure) {
+                        connectOrigins.add(origin == null ? new Origin() : origin);
+                    }
+                })
+                .build();
+
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals("localhost", hosts.get("/"));
+        Assert.assertEquals("localhost", hosts.get("/style.css"));
+        Assert.assertEquals("127.0.0.1", hosts.get("/api"));
+        // One connection to the default origin and one to the "api" origin.
+        Assert.assertEquals(1, connectOrigins.stream().filter(origin -> origin.getName() == null).count());
+        Assert.assertEquals(1, connectOrigins.stream().filter(origin -> "api".equals(origin.getName())).count());
+    }
+
+    @Test
+    public void testUnknownOrigin() throws Exception {
+        startServer(new TestHandler());
+
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .resource(new Resource("/", new Resource("/api").origin("api")))
+                .build();
+
+        try {
+            loadGenerator.begin().get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException x) {
+            Assert.assertTrue(x.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        startServer(new TestHandler());
+
+        int requests = 20;
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < requests; ++i) {
+            // Requests spread over 1 second.
+            log.append("{\"timestamp\":").append(1000 + i * 50).append(",\"path\":\"/").append(i).append("\"}\n");
+        }
+        Path path = Files.createTempFile(Path.of("target"), "jlg-replay-", ".jsonl");
+        path.toFile().deleteOnExit();
+        Files.writeString(path, log);
+
+        Queue<String> paths = new ConcurrentLinkedDeque<>();
+        LoadGenerator loadGenerator = LoadGenerator.builder()
+                .port(connector.getLocalPort())
+                .httpClientTransportBuilder(clientTransportBuilder)
+                .threads(2)
+                .usersPerThread(2)
+                // Ignored when replaying.
+                .warmupIterationsPerThread(10)
+                .iterationsPerThread(1)
+                .replay(new Replay(path.toString(), 2))
+                .resourceListener((Resource.NodeListener)info -> paths.add(info.getResource().getPath()))
+                .build();
+
+        long begin = System.nanoTime();
+        loadGenerator.begin().get(5, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        Assert.assertEquals(requests, paths.size());
+        Assert.assertEquals(requests, paths.stream().distinct().count());
+        // The log spans 950 ms, replayed twice as fast.
+        Assert.assertTrue(String.valueOf(elapsed), elapsed >= 450 && elapsed < 2000);
+    }
+
+    private static class ConcurrencyHandler extends AbstractHandler {
+        private static final long SLEEP = 50;
+
+        private final AtomicInteger concurrent;
+        private final AtomicInteger maxConcurrent;
+
+        private ConcurrencyHandler(AtomicInteger concurrent, AtomicInteger maxConcurrent) {
+            this.concurrent = concurrent;
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        @Override
+        public void handle(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+            jettyRequest.setHandled(true);
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(SLEEP);
+            } catch (InterruptedException x) {
+                throw new InterruptedIOException();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+
     private enum TransportType {
         H1C, H2C
     }
@@ -0,0 +1,139 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.eclipse.jetty.http.HttpHeader;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReplayTest {
+    private Path write(String suffix, String content) throws Exception {
+        Path path = Files.createTempFile(Path.of("target"), "jlg-replay-", suffix);
+        path.toFile().deleteOnExit();
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+        return path;
+    }
+
+    private List<Replay.Entry> readAll(Replay replay) throws Exception {
+        try (Replay.EntryReader reader = replay.newEntryReader()) {
+            return readAll(reader);
+        }
+    }
+
+    private List<Replay.Entry> readAll(Replay.EntryReader reader) throws Exception {
+        List<Replay.Entry> result = new ArrayList<>();
+        while (true) {
+            Replay.Entry entry = reader.next();
+            if (entry == null) {
+                return result;
+            }
+            result.add(entry);
+        }
+    }
+
+    @Test
+    public void testNCSACombined() throws Exception {
+        Path path = write(".log", "" +
+                "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /index.html HTTP/1.1\" 200 2326 \"http://example.com/\" \"Mozilla/5.0 (X11)\"\n" +
+                "garbage\n" +
+                "127.0.0.1 - - [10/Oct/2000:13:55:38 -0700] \"POST /form?a=1 HTTP/1.1\" 302 - \"-\" \"-\"\n" +
+                "127.0.0.1 - - [10/Oct/2000:13:55:38 -0700] \"GET /common HTTP/1.0\" 200 10\n");
+        List<Replay.Entry> entries = readAll(new Replay(path.toString(), 1));
+        Assert.assertEquals(3, entries.size());
+
+        Replay.Entry first = entries.get(0);
+        Assert.assertEquals(0, first.getOffset());
+        Resource resource = first.getResource();
+        Assert.assertEquals("GET", resource.getMethod());
+        Assert.assertEquals("/index.html", resource.getPath());
+        Assert.assertEquals(2326, resource.getResponseLength());
+        Assert.assertEquals("http://example.com/", resource.getRequestHeaders().get(HttpHeader.REFERER));
+        Assert.assertEquals("Mozilla/5.0 (X11)", resource.getRequestHeaders().get(HttpHeader.USER_AGENT));
+
+        Replay.Entry second = entries.get(1);
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(2), second.getOffset());
+        Assert.assertEquals("POST", second.getResource().getMethod());
+        Assert.assertEquals("/form?a=1", second.getResource().getPath());
+        Assert.assertEquals(0, second.getResource().getRequestHeaders().size());
+
+        Assert.assertEquals("/common", entries.get(2).getResource().getPath());
+    }
+
+    @Test
+    public void testGzippedJSONLines() throws Exception {
+        Path path = Files.createTempFile(Path.of("target"), "jlg-replay-", ".jsonl.gz");
+        path.toFile().deleteOnExit();
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(path))) {
+            output.write(("" +
+                    "{\"timestamp\":1000.5,\"path\":\"/a\",\"headers\":{\"X-Id\":\"1\"}}\n" +
+                    "{\"timestamp\":\"1970-01-01T00:00:01.250Z\",\"method\":\"PUT\",\"path\":\"/b\",\"bodySize\":64}\n" +
+                    "{\"timestamp\":1500,\"path\":\"/c\"}\n").getBytes(StandardCharsets.UTF_8));
+        }
+        List<Replay.Entry> entries = readAll(new Replay(path.toString(), 1));
+        Assert.assertEquals(3, entries.size());
+        Assert.assertEquals("1", entries.get(0).getResource().getRequestHeaders().get("X-Id"));
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(250) - 500_000, entries.get(1).getOffset());
+        Assert.assertEquals("PUT", entries.get(1).getResource().getMethod());
+        Assert.assertEquals(64, entries.get(1).getResource().getRequestLength());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(500) - 500_000, entries.get(2).getOffset());
+    }
+
+    @Test
+    public void testSharedReader() throws Exception {
+        StringBuilder content = new StringBuilder("not json\n");
+        int count = 1000;
+        for (int i = 0; i < count; ++i) {
+            content.append("{\"timestamp\":").append(1000 + i).append(",\"path\":\"/").append(i).append("\"}\n");
+        }
+        Path path = write(".jsonl", content.toString());
+        Replay replay = new Replay(path.toString(), 1);
+        try (Replay.EntryReader reader = replay.newEntryReader()) {
+            // Concurrent senders share the reader, each entry is returned once.
+            CompletableFuture<List<Replay.Entry>> other = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return readAll(reader);
+                } catch (Exception x) {
+                    throw new CompletionException(x);
+                }
+            });
+            List<Replay.Entry> entries = new ArrayList<>(readAll(reader));
+            entries.addAll(other.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(count, entries.size());
+            Assert.assertEquals(count, entries.stream().map(entry -> entry.getResource().getPath()).distinct().count());
+            // The offsets are relative to the first entry.
+            Assert.assertEquals(0, entries.stream().mapToLong(Replay.Entry::getOffset).min().orElseThrow());
+            Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(count - 1), entries.stream().mapToLong(Replay.Entry::getOffset).max().orElseThrow());
+        }
+    }
+
+    @Test
+    public void testJSONDefaultSpeed() {
+        Replay replay = new Replay();
+        replay.fromJSON(Map.of("path", "access.log"));
+        Assert.assertEquals("access.log", replay.getPath());
+        Assert.assertEquals(1, replay.getSpeed(), 0);
+    }
+}
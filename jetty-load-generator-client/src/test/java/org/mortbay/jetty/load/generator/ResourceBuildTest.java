@@ -17,12 +17,20 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 import groovy.lang.GroovyShell;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.ajax.JSON;
 import org.eclipse.jetty.xml.XmlConfiguration;
 import org.junit.Assert;
 import org.junit.Test;
@@ -83,6 +91,34 @@ public class ResourceBuildTest {
         assertWebsiteTree(sample);
     }
 
+    @Test
+    public void testDelaysWithXML() throws Exception {
+        URL xml = Thread.currentThread().getContextClassLoader().getResource("delay_profile.xml");
+        Resource resource = (Resource)new XmlConfiguration(Objects.requireNonNull(org.eclipse.jetty.util.resource.Resource.newResource(xml))).configure();
+        Delay childrenDelay = resource.getChildrenDelay();
+        Assert.assertEquals(Delay.Distribution.EXPONENTIAL, childrenDelay.getDistribution());
+        Assert.assertEquals(100, childrenDelay.getMin());
+        Assert.assertEquals(200, childrenDelay.getMean());
+        Assert.assertEquals(1000, childrenDelay.getMax());
+        Assert.assertNull(resource.getDelay());
+        Delay delay = resource.getResources().get(0).getDelay();
+        Assert.assertEquals(Delay.Distribution.UNIFORM, delay.getDistribution());
+        for (int i = 0; i < 100; ++i) {
+            long millis = delay.sample(ThreadLocalRandom.current());
+            Assert.assertTrue(millis >= 10 && millis <= 20);
+            millis = childrenDelay.sample(ThreadLocalRandom.current());
+            Assert.assertTrue(millis >= 100 && millis <= 1000);
+        }
+
+        // Delays survive the JSON format.
+        String json = new JSON().toJSON(resource);
+        Resource copy = new ResourceJSONParser().parse(new StringReader(json));
+        Assert.assertEquals(json, new JSON().toJSON(copy));
+        copy = new Resource();
+        copy.fromJSON((Map<?, ?>)new JSON().parse(new JSON.StringSource(json)));
+        Assert.assertEquals(json, new JSON().toJSON(copy));
+    }
+
     @Test
     public void testWebsiteTreeWithGroovy() throws Exception {
         try (InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("website_profile.groovy")) {
@@ -91,6 +127,84 @@ public class ResourceBuildTest {
         }
     }
 
+    @Test
+    public void testWebsiteTreeWithJSONParser() throws Exception {
+        Resource sample = new Resource(
+                new Resource("/index.html",
+                        new Resource("/style.css",
+                                new Resource("/logo.gif"),
+                                new Resource("/spacer.png")
+                        ),
+                        new Resource("/fancy.css"),
+                        new Resource("/script.js",
+                                new Resource("/library.js"),
+                                new Resource("/morestuff.js")
+                        ),
+                        new Resource("/anotherScript.js"),
+                        new Resource("/iframeContents.html"),
+                        new Resource("/moreIframeContents.html"),
+                        new Resource("/favicon.ico")
+                ));
+        String json = new JSON().toJSON(sample);
+
+        ResourceJSONParser parser = new ResourceJSONParser();
+        Resource parsed = parser.parse(new StringReader(json));
+
+        assertWebsiteTree(parsed);
+        Assert.assertEquals(sample.descendantCount(), parser.getResourceCount());
+        Assert.assertEquals(json, new JSON().toJSON(parsed));
+    }
+
+    @Test
+    public void testJSONParser() throws Exception {
+        String json = "" +
+                "{\n" +
+                "  \"method\": \"POST\",\n" +
+                "  \"path\": \"/api?q=\\\"a\\u00e8\\\"\",\n" +
+                "  \"requestLength\": 1,\n" +
+                "  \"responseLength\": 2.0,\n" +
+                "  \"unknown\": {\"x\": [1, {\"y\": \"}\"}], \"z\": null},\n" +
+                "  \"requestHeaders\": {\"Accept\": [\"text/html\", \"*/*\"], \"Foo\": [\"Bar\"]},\n" +
+                "  \"extractors\": [{\"name\": \"csrf\", \"header\": \"X-CSRF\"}, {\"name\": \"t\", \"left\": \"<\", \"right\": \">\"}],\n" +
+                "  \"resources\": [\n" +
+                "    {\"path\": \"/a\", \"origin\": \"cdn\", \"requestHeaders\": {\"Foo\": [\"Bar\"]}},\n" +
+                "    {\"path\": \"b\", \"method\": \"POST\", \"resources\": null},\n" +
+                "    {}\n" +
+                "  ]\n" +
+                "}";
+
+        ResourceJSONParser parser = new ResourceJSONParser();
+        Resource resource = parser.parse(new StringReader(json));
+
+        Resource expected = new Resource();
+        expected.fromJSON((Map<?, ?>)new JSON().parse(new JSON.StringSource(json)));
+        Assert.assertEquals(new JSON().toJSON(expected), new JSON().toJSON(resource));
+
+        Assert.assertEquals(4, parser.getResourceCount());
+        Assert.assertEquals("POST", resource.getMethod());
+        Assert.assertEquals("/api?q=\"a\u00e8\"", resource.getPath());
+        Assert.assertEquals(1, resource.getRequestLength());
+        Assert.assertEquals(2, resource.getResponseLength());
+        Assert.assertEquals("text/html,*/*", resource.getRequestHeaders().get("Accept"));
+        Assert.assertEquals(2, resource.getExtractors().size());
+        List<Resource> children = resource.getResources();
+        Assert.assertEquals(3, children.size());
+        Assert.assertEquals("cdn", children.get(0).getOrigin());
+        Assert.assertNull(children.get(1).getOrigin());
+        Assert.assertEquals("/b", children.get(1).getPath());
+        Assert.assertEquals("/", children.get(2).getPath());
+
+        // Equal header fields and methods are shared.
+        Assert.assertEquals(2, parser.getHeaderFieldCount());
+        Assert.assertSame(resource.getRequestHeaders().getField("Foo"), children.get(0).getRequestHeaders().getField("Foo"));
+        Assert.assertSame(resource.getMethod(), children.get(1).getMethod());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJSONParserInvalid() throws Exception {
+        new ResourceJSONParser().parse(new StringReader("{\"path\": \"/\", \"resources\": [{\"path\": \"/a\"}"));
+    }
+
     private static String read(InputStream input) throws IOException {
         try (BufferedReader buffer = new BufferedReader(new InputStreamReader(input))) {
             return buffer.lines().collect(Collectors.joining(System.lineSeparator()));
@@ -143,4 +257,56 @@ public class ResourceBuildTest {
         Assert.assertEquals("/favicon.ico", sample.getResources().get(0)
                 .getResources().get(6).getPath());
     }
+
+    @Test
+    public void testHARImport() throws Exception {
+        Resource root;
+        List<Origin> origins = new ArrayList<>();
+        try (InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("website_page.har")) {
+            root = HARImporter.toResource(new InputStreamReader(Objects.requireNonNull(inputStream), StandardCharsets.UTF_8), origins);
+        }
+
+        // Only the HTTP entries of the first page with a valid URL are imported.
+        Assert.assertEquals(7, root.descendantCount());
+        Assert.assertEquals("/index.html", root.getPath());
+        Assert.assertEquals(10240, root.getResponseLength());
+        Assert.assertEquals("Mozilla/5.0", root.getRequestHeaders().get(HttpHeader.USER_AGENT));
+        Assert.assertEquals(1, root.getRequestHeaders().size());
+
+        // The stylesheet and the scripts are initiated by the document parser.
+        Assert.assertEquals(3, root.getResources().size());
+        Resource css = root.getResources().get(0);
+        Assert.assertEquals("/style.css", css.getPath());
+        Assert.assertNull(css.getOrigin());
+        Resource script = root.getResources().get(1);
+        Assert.assertEquals("/app.js", script.getPath());
+
+        // Other origins are named after their host.
+        Resource lib = root.getResources().get(2);
+        Assert.assertEquals("/lib.js", lib.getPath());
+        Assert.assertEquals("cdn.other.com", lib.getOrigin());
+        Assert.assertEquals(1, origins.size());
+        Origin cdn = origins.get(0);
+        Assert.assertEquals("cdn.other.com", cdn.getName());
+        Assert.assertTrue(cdn.matches("https", "cdn.other.com", 443));
+
+        // The font is initiated by the stylesheet, from the Referer.
+        Assert.assertEquals(1, css.getResources().size());
+        Assert.assertEquals("/font.woff2", css.getResources().get(0).getPath());
+
+        // The XHR is initiated by the script, from the initiator stack,
+        // while the image is assigned to the script from the timings.
+        Assert.assertEquals(2, script.getResources().size());
+        Resource xhr = script.getResources().get(0);
+        Assert.assertEquals("POST", xhr.getMethod());
+        Assert.assertEquals("/api/data?v=2", xhr.getPath());
+        Assert.assertEquals(7, xhr.getRequestLength());
+        Assert.assertEquals(1234, xhr.getResponseLength());
+        Assert.assertEquals("/logo.png", script.getResources().get(1).getPath());
+
+        // The tree survives the JSON format.
+        Resource copy = new Resource();
+        copy.fromJSON((Map<?, ?>)new JSON().parse(new JSON.StringSource(new JSON().toJSON(root))));
+        Assert.assertEquals(7, copy.descendantCount());
+    }
 }
@@ -0,0 +1,484 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.listeners;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.Resource;
+import org.mortbay.jetty.load.generator.Scenario;
+
+/**
+ * <p>A load generator listener that logs one fixed-size binary record per
+ * completed request to memory-mapped segment files, for offline analysis.</p>
+ * <p>Histograms only retain the distribution of response times, while the event
+ * log retains every request, without holding them in heap.
+ * Each request atomically reserves a slot in the log, and its record is written
+ * directly to the mapped memory, so recording is lock-free and allocation-free;
+ * only mapping a new segment, once every {@link #getSegmentSize() segment size}
+ * bytes, is done under a lock.</p>
+ * <p>Usage:</p>
+ * <pre>
+ * EventLogListener eventLog = new EventLogListener(Path.of("/tmp/events"));
+ * LoadGenerator generator = LoadGenerator.builder()
+ *     ...
+ *     .listener(eventLog)
+ *     .resourceListener(eventLog)
+ *     .build();
+ *
+ * ...
+ *
+ * EventLogListener.read(Path.of("/tmp/events"), record -&gt; ...);
+ * </pre>
+ * <p>Segment files are named {@code events-NNNNNN.bin}; each segment file has a
+ * {@value #HEADER_SIZE} bytes header followed by {@value #RECORD_SIZE} bytes records.
+ * The resource index of a record is the index of the resource in the depth-first,
+ * pre-order, traversal of the resource tree of the load generator configuration,
+ * the root resource having index {@code 0}; the resources are listed in the
+ * {@value #RESOURCES_FILE} file.</p>
+ */
+public class EventLogListener implements LoadGenerator.BeginListener, LoadGenerator.CompleteListener, Resource.NodeListener {
+    /**
+     * <p>The size in bytes of the segment file header.</p>
+     * <pre>
+     * int  magic ("JLGE")
+     * int  version
+     * int  record size
+     * int  header size
+     * int  segment index
+     * int  reserved
+     * long record count, or -1 if the segment was not closed
+     * long epoch nanoseconds of the base nano time
+     * long base nano time
+     * </pre>
+     */
+    public static final int HEADER_SIZE = 64;
+    /**
+     * <p>The size in bytes of a record.</p>
+     * <pre>
+     * int   resource index
+     * short status
+     * byte  failure cause ordinal + 1, or 0 if the request succeeded
+     * byte  flags (0x01 pushed, 0x80 valid)
+     * long  request time (nanoTime)
+     * long  latency time (nanoTime)
+     * long  response time (nanoTime)
+     * long  tree time (nanoTime)
+     * long  content length
+     * </pre>
+     */
+    public static final int RECORD_SIZE = 48;
+    /**
+     * <p>The name of the file that lists, one per line in resource index order,
+     * the method and path of the resources.</p>
+     */
+    public static final String RESOURCES_FILE = "resources.txt";
+    private static final Logger LOG = Log.getLogger(EventLogListener.class);
+    private static final int MAGIC = 0x4A_4C_47_45;
+    private static final int VERSION = 1;
+    private static final int COUNT_OFFSET = 24;
+    private static final byte PUSHED = 0x01;
+    private static final byte VALID = (byte)0x80;
+    private static final FailureCause[] FAILURE_CAUSES = FailureCause.values();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Path directory;
+    private final int segmentSize;
+    private final int recordsPerSegment;
+    private final AtomicReferenceArray<MappedByteBuffer> segments;
+    private final AtomicIntegerArray completed;
+    private volatile Map<Resource, Integer> resourceIndexes = Map.of();
+    private long baseEpochNanos;
+    private long baseNanoTime;
+
+    /**
+     * <p>Creates an event log listener with 64 MiB segments, for at most 4096 segments.</p>
+     *
+     * @param directory the directory where segment files are written
+     */
+    public EventLogListener(Path directory) {
+        this(directory, 64 * 1024 * 1024, 4096);
+    }
+
+    /**
+     * @param directory the directory where segment files are written
+     * @param segmentSize the size in bytes of a segment file
+     * @param maxSegments the max number of segment files, after which records are dropped
+     */
+    public EventLogListener(Path directory, int segmentSize, int maxSegments) {
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = (segmentSize - HEADER_SIZE) / RECORD_SIZE;
+        this.segmentSize = HEADER_SIZE + recordsPerSegment * RECORD_SIZE;
+        this.segments = new AtomicReferenceArray<>(maxSegments);
+        this.completed = new AtomicIntegerArray(maxSegments);
+    }
+
+    /**
+     * @return the directory where segment files are written
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the size in bytes of a segment file
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return the number of records logged
+     */
+    public long getRecords() {
+        return Math.min(sequence.get(), (long)recordsPerSegment * segments.length());
+    }
+
+    /**
+     * @return the number of records dropped because the max number of segments was exceeded
+     */
+    public long getDroppedRecords() {
+        return dropped.get();
+    }
+
+    @Override
+    public void onBegin(LoadGenerator generator) {
+        Map<Resource, Integer> indexes = new IdentityHashMap<>();
+        index(generator.getConfig().getResource(), indexes);
+        for (Scenario scenario : generator.getConfig().getScenarios()) {
+            index(scenario.getResource(), indexes);
+        }
+        resourceIndexes = indexes;
+        baseEpochNanos = toEpochNanos(Instant.now());
+        baseNanoTime = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            // Remove the segments of a previous run.
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "events-*.bin")) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            String[] lines = new String[indexes.size()];
+            indexes.forEach((resource, index) -> lines[index] = resource.getMethod() + " " + resource.getPath());
+            Files.write(directory.resolve(RESOURCES_FILE), Arrays.asList(lines), StandardCharsets.UTF_8);
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    private static void index(Resource resource, Map<Resource, Integer> indexes) {
+        indexes.put(resource, indexes.size());
+        for (Resource child : resource.getResources()) {
+            index(child, indexes);
+        }
+    }
+
+    @Override
+    public void onResourceNode(Resource.Info info) {
+        long seq = sequence.getAndIncrement();
+        int segmentIndex = (int)(seq / recordsPerSegment);
+        if (segmentIndex >= segments.length()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        MappedByteBuffer segment = segment(segmentIndex);
+        if (segment == null) {
+            dropped.incrementAndGet();
+            return;
+        }
+        int offset = HEADER_SIZE + (int)(seq % recordsPerSegment) * RECORD_SIZE;
+        Integer resourceIndex = resourceIndexes.get(info.getResource());
+        Throwable failure = info.getFailure();
+        // Absolute puts do not modify the buffer position,
+        // so concurrent writes to different records are safe.
+        segment.putInt(offset, resourceIndex == null ? -1 : resourceIndex);
+        segment.putShort(offset + 4, (short)info.getStatus());
+        segment.put(offset + 6, failure == null ? 0 : (byte)(FailureCause.of(failure).ordinal() + 1));
+        segment.putLong(offset + 8, info.getRequestTime());
+        segment.putLong(offset + 16, info.getLatencyTime());
+        segment.putLong(offset + 24, info.getResponseTime());
+        segment.putLong(offset + 32, info.getTreeTime());
+        segment.putLong(offset + 40, info.getContentLength());
+        // Written last, so that readers can detect incomplete records.
+        segment.put(offset + 7, (byte)(VALID | (info.isPushed() ? PUSHED : 0)));
+        if (completed.incrementAndGet(segmentIndex) == recordsPerSegment) {
+            // The segment is full, release it so that it can be unmapped.
+            segment.putLong(COUNT_OFFSET, recordsPerSegment);
+            segments.set(segmentIndex, null);
+        }
+    }
+
+    private MappedByteBuffer segment(int index) {
+        MappedByteBuffer segment = segments.get(index);
+        if (segment != null) {
+            return segment;
+        }
+        synchronized (this) {
+            segment = segments.get(index);
+            if (segment == null && completed.get(index) < recordsPerSegment) {
+                try {
+                    segment = map(index);
+                    segments.set(index, segment);
+                } catch (IOException x) {
+                    LOG.warn("could not map event log segment {}", index, x);
+                }
+            }
+            return segment;
+        }
+    }
+
+    private MappedByteBuffer map(int index) throws IOException {
+        Path file = directory.resolve(String.format("events-%06d.bin", index));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // The mapping remains valid after the channel is closed.
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            segment.putInt(0, MAGIC);
+            segment.putInt(4, VERSION);
+            segment.putInt(8, RECORD_SIZE);
+            segment.putInt(12, HEADER_SIZE);
+            segment.putInt(16, index);
+            segment.putLong(COUNT_OFFSET, -1);
+            segment.putLong(32, baseEpochNanos);
+            segment.putLong(40, baseNanoTime);
+            return segment;
+        }
+    }
+
+    @Override
+    public void onComplete(LoadGenerator generator) {
+        long records = getRecords();
+        for (int i = 0; i < segments.length(); ++i) {
+            MappedByteBuffer segment = segments.get(i);
+            if (segment != null) {
+                long count = Math.max(0, Math.min(recordsPerSegment, records - (long)i * recordsPerSegment));
+                segment.putLong(COUNT_OFFSET, count);
+                segment.force();
+                segments.set(i, null);
+            }
+        }
+        if (dropped.get() > 0) {
+            LOG.warn("dropped {} event log records, max segments {} exceeded", dropped.get(), segments.length());
+        }
+    }
+
+    /**
+     * <p>Reads the records of the event log in the given directory, in segment order.</p>
+     * <p>The same {@link Record} instance is passed to the consumer for every record,
+     * so it must not be retained.</p>
+     *
+     * @param directory the directory containing the segment files
+     * @param consumer the consumer of the records
+     * @throws IOException if the segment files cannot be read
+     */
+    public static void read(Path directory, Consumer<Record> consumer) throws IOException {
+        for (Path file : getSegmentFiles(directory)) {
+            readSegment(file, consumer);
+        }
+    }
+
+    /**
+     * @param directory the directory containing the segment files
+     * @return the segment files in the given directory, in segment order
+     * @throws IOException if the directory cannot be read
+     */
+    public static List<Path> getSegmentFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "events-*.bin")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * <p>Reads the records of the given segment file.</p>
+     * <p>Segment files are independent, so they can be read concurrently.
+     * The same {@link Record} instance is passed to the consumer for every record,
+     * so it must not be retained.</p>
+     *
+     * @param file the segment file
+     * @param consumer the consumer of the records
+     * @throws IOException if the segment file cannot be read
+     * @see #getSegmentFiles(Path)
+     */
+    public static void readSegment(Path file, Consumer<Record> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (segment.getInt(0) != MAGIC) {
+                throw new IOException("Invalid event log segment " + file);
+            }
+            int recordSize = segment.getInt(8);
+            int headerSize = segment.getInt(12);
+            long count = segment.getLong(COUNT_OFFSET);
+            Record record = new Record();
+            record.segment = segment;
+            record.baseEpochNanos = segment.getLong(32);
+            record.baseNanoTime = segment.getLong(40);
+            for (long i = 0; count < 0 || i < count; ++i) {
+                long offset = headerSize + i * recordSize;
+                if (offset + recordSize > segment.limit()) {
+                    break;
+                }
+                record.offset = (int)offset;
+                // Segments not closed (for example, if the JVM crashed)
+                // have no record count, so stop at the first invalid record.
+                if ((segment.get(record.offset + 7) & VALID) == 0) {
+                    if (count < 0) {
+                        break;
+                    }
+                    continue;
+                }
+                consumer.accept(record);
+            }
+        }
+    }
+
+    private static long toEpochNanos(Instant instant) {
+        return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+    }
+
+    /**
+     * <p>A view over a record of the event log.</p>
+     *
+     * @see #read(Path, Consumer)
+     */
+    public static class Record {
+        private ByteBuffer segment;
+        private int offset;
+        private long baseEpochNanos;
+        private long baseNanoTime;
+
+        private Record() {
+        }
+
+        /**
+         * @return the index of the resource in the resource tree, or -1 if unknown
+         */
+        public int getResourceIndex() {
+            return segment.getInt(offset);
+        }
+
+        /**
+         * @return the response status code, or 0 if the request failed before receiving a response
+         */
+        public int getStatus() {
+            return segment.getShort(offset + 4);
+        }
+
+        /**
+         * @return the failure cause, or null if the request did not fail
+         */
+        public FailureCause getFailureCause() {
+            int code = segment.get(offset + 6);
+            return code == 0 ? null : FAILURE_CAUSES[code - 1];
+        }
+
+        /**
+         * @return whether the resource was pushed by the server
+         */
+        public boolean isPushed() {
+            return (segment.get(offset + 7) & PUSHED) != 0;
+        }
+
+        /**
+         * @return the time the request was sent, in nanoseconds, as returned by {@link System#nanoTime()}
+         * @see Resource.Info#getRequestTime()
+         */
+        public long getRequestTime() {
+            return segment.getLong(offset + 8);
+        }
+
+        /**
+         * @return the time the response headers were received, in nanoseconds
+         * @see Resource.Info#getLatencyTime()
+         */
+        public long getLatencyTime() {
+            return segment.getLong(offset + 16);
+        }
+
+        /**
+         * @return the time the response was completed, in nanoseconds
+         * @see Resource.Info#getResponseTime()
+         */
+        public long getResponseTime() {
+            return segment.getLong(offset + 24);
+        }
+
+        /**
+         * @return the time the resource tree was completed, in nanoseconds
+         * @see Resource.Info#getTreeTime()
+         */
+        public long getTreeTime() {
+            return segment.getLong(offset + 32);
+        }
+
+        /**
+         * @return the response content length
+         */
+        public long getContentLength() {
+            return segment.getLong(offset + 40);
+        }
+
+        /**
+         * @return the time the request was sent, in nanoseconds since the load generation began
+         */
+        public long getElapsedTime() {
+            return getRequestTime() - baseNanoTime;
+        }
+
+        /**
+         * @return the time the request was sent, in nanoseconds since the epoch
+         */
+        public long getRequestEpochNanos() {
+            return baseEpochNanos + getRequestTime() - baseNanoTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%x[resource=%d,status=%d,failure=%s,response=%dus]",
+                    getClass().getSimpleName(),
+                    hashCode(),
+                    getResourceIndex(),
+                    getStatus(),
+                    getFailureCause(),
+                    TimeUnit.NANOSECONDS.toMicros(getResponseTime() - getRequestTime()));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.listeners;
+
+import java.io.EOFException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import javax.net.ssl.SSLException;
+
+/**
+ * <p>The cause of a request failure, used to tell apart failures
+ * caused by the server from failures caused by the load generator.</p>
+ *
+ * @see #of(Throwable)
+ */
+public enum FailureCause {
+    /**
+     * <p>The TCP connection was refused by the server.</p>
+     */
+    CONNECT_REFUSED("connectRefused"),
+    /**
+     * <p>The TCP connection could not be established within the connect timeout.</p>
+     */
+    CONNECT_TIMEOUT("connectTimeout"),
+    /**
+     * <p>The request or the connection was idle for longer than the idle timeout.</p>
+     */
+    IDLE_TIMEOUT("idleTimeout"),
+    /**
+     * <p>The TLS handshake, or the TLS processing, failed.</p>
+     */
+    TLS("tls"),
+    /**
+     * <p>The connection or the HTTP/2 stream was reset or closed by the peer.</p>
+     */
+    RESET("reset"),
+    /**
+     * <p>The request was rejected by the load generator, typically because
+     * the destination queue exceeded the maximum number of queued requests.</p>
+     */
+    REJECTED("rejected"),
+    /**
+     * <p>Any other failure.</p>
+     */
+    OTHER("other");
+
+    private final String name;
+
+    FailureCause(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name of this failure cause, as used in JSON reports
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * <p>Classifies the given failure, walking its cause chain.</p>
+     *
+     * @param failure the request failure
+     * @return the cause of the failure
+     */
+    public static FailureCause of(Throwable failure) {
+        for (Throwable x = failure; x != null; x = x.getCause() == x ? null : x.getCause()) {
+            FailureCause cause = classify(x);
+            if (cause != null) {
+                return cause;
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * @param name the name of the failure cause
+     * @return the failure cause with the given name, or null if there is no such failure cause
+     * @see #getName()
+     */
+    public static FailureCause from(String name) {
+        for (FailureCause cause : values()) {
+            if (cause.getName().equals(name)) {
+                return cause;
+            }
+        }
+        return null;
+    }
+
+    private static FailureCause classify(Throwable failure) {
+        // Order matters, as some exceptions are subclasses of others.
+        if (failure instanceof ConnectException) {
+            // The OS may time out the connect before the load generator does.
+            String message = failure.getMessage();
+            boolean timedOut = message != null && message.toLowerCase(Locale.ENGLISH).contains("timed out");
+            return timedOut ? CONNECT_TIMEOUT : CONNECT_REFUSED;
+        }
+        if (failure instanceof SocketTimeoutException) {
+            // Both blocking and non-blocking connect timeouts.
+            return CONNECT_TIMEOUT;
+        }
+        if (failure instanceof TimeoutException) {
+            return IDLE_TIMEOUT;
+        }
+        if (failure instanceof SSLException) {
+            return TLS;
+        }
+        if (failure instanceof RejectedExecutionException) {
+            return REJECTED;
+        }
+        // Covers Jetty's EofException and closed HTTP/1.1 connections.
+        if (failure instanceof EOFException || failure instanceof ClosedChannelException) {
+            return RESET;
+        }
+        String message = failure.getMessage();
+        if (message != null) {
+            message = message.toLowerCase(Locale.ENGLISH);
+            // Covers "Connection reset", "Broken pipe" and HTTP/2 stream resets.
+            if (message.contains("reset") || message.contains("broken pipe")) {
+                return RESET;
+            }
+        }
+        return null;
+    }
+}
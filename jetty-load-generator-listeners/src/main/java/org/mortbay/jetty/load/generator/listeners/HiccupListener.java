@@ -0,0 +1,339 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.listeners;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+
+/**
+ * <p>A load generator listener that records the stalls of the load generator JVM
+ * (for example, due to GC or safepoint pauses) during the load generation recording.</p>
+ * <p>A dedicated thread repeatedly sleeps for the {@link #getResolution() resolution}
+ * and records how much longer than expected it slept, in the same way as
+ * <a href="https://github.com/giltene/jHiccup">jHiccup</a> does.
+ * A stall of the load generator delays the processing of responses, and therefore
+ * shows up as response time, although the server under test is not responsible for it.</p>
+ * <p>The hiccups are correlated with the {@link ReportListener.Interval}s, so that
+ * intervals whose response times may have been distorted by the load generator
+ * can be spotted.</p>
+ * <p>Usage:</p>
+ * <pre>
+ * ReportListener reportListener = new ReportListener();
+ * reportListener.setSamplePeriod(1000);
+ * HiccupListener hiccupListener = new HiccupListener();
+ * reportListener.addBean(hiccupListener);
+ *
+ * LoadGenerator generator = LoadGenerator.builder()
+ *     ...
+ *     // The hiccup listener must be added after the report listener.
+ *     .listener(reportListener)
+ *     .listener(hiccupListener)
+ *     .resourceListener(reportListener)
+ *     .build();
+ *
+ * ...
+ *
+ * HiccupListener.Hiccups hiccups = hiccupListener.whenComplete().join();
+ * </pre>
+ */
+public class HiccupListener implements LoadGenerator.ReadyListener, LoadGenerator.CompleteListener, ReportListener.IntervalListener {
+    private static final Logger LOG = Log.getLogger(HiccupListener.class);
+
+    private final CompletableFuture<Hiccups> promise = new CompletableFuture<>();
+    private final AtomicLong totalHiccupTime = new AtomicLong();
+    private final List<IntervalHiccups> intervals = Collections.synchronizedList(new ArrayList<>());
+    private final long resolution;
+    private final Recorder recorder;
+    private final Histogram histogram;
+    private final Histogram unattributed;
+    private Histogram intervalHistogram;
+    private long unattributedTime;
+    private long drainedTime;
+    private volatile Thread thread;
+    private volatile long readyTime;
+
+    /**
+     * <p>Creates a hiccup listener with a resolution of 1 millisecond.</p>
+     */
+    public HiccupListener() {
+        this(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * @param resolution the sleep period of the hiccup recording thread, in nanoseconds
+     */
+    public HiccupListener(long resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("Invalid resolution " + resolution);
+        }
+        this.resolution = resolution;
+        long highest = TimeUnit.MINUTES.toNanos(1);
+        this.recorder = new Recorder(TimeUnit.MICROSECONDS.toNanos(1), highest, 3);
+        this.histogram = new Histogram(TimeUnit.MICROSECONDS.toNanos(1), highest, 3);
+        this.unattributed = new Histogram(TimeUnit.MICROSECONDS.toNanos(1), highest, 3);
+    }
+
+    /**
+     * @return the sleep period of the hiccup recording thread, in nanoseconds
+     */
+    public long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return a CompletableFuture that is completed with the hiccups recorded during the load generation
+     */
+    public CompletableFuture<Hiccups> whenComplete() {
+        return promise;
+    }
+
+    @Override
+    public void onReady(LoadGenerator generator) {
+        readyTime = System.nanoTime();
+        Thread thread = new Thread(this::record, "hiccup-recorder");
+        thread.setDaemon(true);
+        this.thread = thread;
+        thread.start();
+    }
+
+    private void record() {
+        Thread current = Thread.currentThread();
+        while (thread == current) {
+            long begin = System.nanoTime();
+            LockSupport.parkNanos(resolution);
+            long hiccup = Math.max(0, System.nanoTime() - begin - resolution);
+            // Correct for coordinated omission: a long hiccup
+            // would have delayed the measurements in between.
+            recorder.recordValueWithExpectedInterval(hiccup, resolution);
+            if (hiccup > 0) {
+                totalHiccupTime.addAndGet(hiccup);
+            }
+        }
+    }
+
+    @Override
+    public void onInterval(ReportListener.Interval interval) {
+        IntervalHiccups result;
+        synchronized (this) {
+            drain();
+            result = new IntervalHiccups(resolution, interval, unattributed, unattributedTime);
+            unattributed.reset();
+            unattributedTime = 0;
+        }
+        intervals.add(result);
+        if (result.isDistorted() && LOG.isDebugEnabled()) {
+            LOG.debug("load generator hiccups may have distorted {}", result);
+        }
+    }
+
+    @Override
+    public void onComplete(LoadGenerator generator) {
+        Thread thread = this.thread;
+        this.thread = null;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException x) {
+                LOG.ignore(x);
+            }
+        }
+        Hiccups hiccups;
+        synchronized (this) {
+            drain();
+            hiccups = new Hiccups(histogram.copy(), totalHiccupTime.get(), System.nanoTime() - readyTime, new ArrayList<>(intervals));
+        }
+        promise.complete(hiccups);
+    }
+
+    private void drain() {
+        // Called with the lock held.
+        // The recorder is reset every time getIntervalHistogram() is called.
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        histogram.add(intervalHistogram);
+        unattributed.add(intervalHistogram);
+        long total = totalHiccupTime.get();
+        unattributedTime += total - drainedTime;
+        drainedTime = total;
+    }
+
+    /**
+     * <p>The hiccups recorded during a load generation.</p>
+     */
+    public static class Hiccups {
+        private final Histogram histogram;
+        private final long totalHiccupTime;
+        private final long recordingTime;
+        private final List<IntervalHiccups> intervals;
+
+        private Hiccups(Histogram histogram, long totalHiccupTime, long recordingTime, List<IntervalHiccups> intervals) {
+            this.histogram = histogram;
+            this.totalHiccupTime = totalHiccupTime;
+            this.recordingTime = recordingTime;
+            this.intervals = Collections.unmodifiableList(intervals);
+        }
+
+        /**
+         * @return the histogram of the hiccups, in nanoseconds
+         */
+        public Histogram getHistogram() {
+            return histogram;
+        }
+
+        /**
+         * @return the total time the load generator was stalled, in nanoseconds
+         */
+        public long getTotalHiccupTime() {
+            return totalHiccupTime;
+        }
+
+        /**
+         * @return the percentage of the recording time the load generator was stalled
+         */
+        public double getStalledPercent() {
+            return recordingTime == 0 ? 0 : 100D * totalHiccupTime / recordingTime;
+        }
+
+        /**
+         * @return the hiccups correlated with each {@link ReportListener.Interval}
+         */
+        public List<IntervalHiccups> getIntervals() {
+            return intervals;
+        }
+
+        /**
+         * @return the intervals whose response times may have been distorted by the load generator hiccups
+         */
+        public List<IntervalHiccups> getDistortedIntervals() {
+            List<IntervalHiccups> result = new ArrayList<>();
+            for (IntervalHiccups interval : intervals) {
+                if (interval.isDistorted()) {
+                    result.add(interval);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * <p>The hiccups recorded during a {@link ReportListener.Interval}.</p>
+     * <p>An interval is deemed distorted when the maximum hiccup is at least
+     * 10% of the 99th percentile response time of the interval, and at least
+     * the resolution of the hiccup recording (shorter hiccups are just the
+     * imprecision of the thread scheduler): in this case the
+     * response time percentiles of the interval may measure the load generator
+     * rather than the server, and the maximum hiccup gives an estimate of the error.</p>
+     */
+    public static class IntervalHiccups {
+        private static final double DISTORTION_RATIO = 0.1;
+
+        private final Instant beginInstant;
+        private final Duration duration;
+        private final long resolution;
+        private final long responseTimeP99;
+        private final long responseTimeMax;
+        private final long hiccupP99;
+        private final long hiccupMax;
+        private final long hiccupTime;
+
+        private IntervalHiccups(long resolution, ReportListener.Interval interval, Histogram hiccups, long hiccupTime) {
+            this.resolution = resolution;
+            this.beginInstant = interval.getBeginInstant();
+            this.duration = interval.getDuration();
+            this.responseTimeP99 = interval.getResponseTimeP99();
+            this.responseTimeMax = interval.getResponseTimeMax();
+            this.hiccupP99 = hiccups.getValueAtPercentile(99);
+            this.hiccupMax = hiccups.getMaxValue();
+            this.hiccupTime = hiccupTime;
+        }
+
+        /**
+         * @return the Instant the interval begins
+         */
+        public Instant getBeginInstant() {
+            return beginInstant;
+        }
+
+        /**
+         * @return the Duration of the interval
+         */
+        public Duration getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return the 99th percentile response time of the interval, in nanoseconds
+         */
+        public long getResponseTimeP99() {
+            return responseTimeP99;
+        }
+
+        /**
+         * @return the maximum response time of the interval, in nanoseconds
+         */
+        public long getResponseTimeMax() {
+            return responseTimeMax;
+        }
+
+        /**
+         * @return the 99th percentile hiccup of the interval, in nanoseconds
+         */
+        public long getHiccupP99() {
+            return hiccupP99;
+        }
+
+        /**
+         * @return the maximum hiccup of the interval, in nanoseconds
+         */
+        public long getHiccupMax() {
+            return hiccupMax;
+        }
+
+        /**
+         * @return the total time the load generator was stalled in the interval, in nanoseconds
+         */
+        public long getHiccupTime() {
+            return hiccupTime;
+        }
+
+        /**
+         * @return whether the response times of the interval may have been distorted by the load generator hiccups
+         */
+        public boolean isDistorted() {
+            return hiccupMax >= resolution && hiccupMax >= responseTimeP99 * DISTORTION_RATIO;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%x[%s,%dms,hiccup_max=%dus,response_p99=%dus]",
+                    getClass().getSimpleName(),
+                    hashCode(),
+                    getBeginInstant(),
+                    getDuration().toMillis(),
+                    TimeUnit.NANOSECONDS.toMicros(getHiccupMax()),
+                    TimeUnit.NANOSECONDS.toMicros(getResponseTimeP99()));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.listeners;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * <p>Reads the number of threads and of file descriptors of the load generator process.</p>
+ * <p>On Linux the values are read from {@code /proc/self}; on other platforms the thread
+ * count is read from the JVM and the file descriptor count is not available.</p>
+ */
+class ProcessStats {
+    private static final Path STATUS = Path.of("/proc/self/status");
+    private static final Path FDS = Path.of("/proc/self/fd");
+
+    private ProcessStats() {
+    }
+
+    /**
+     * @return the number of threads of the load generator process
+     */
+    static int getThreadCount() {
+        try {
+            List<String> lines = Files.readAllLines(STATUS, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.startsWith("Threads:")) {
+                    return Integer.parseInt(line.substring("Threads:".length()).trim());
+                }
+            }
+        } catch (IOException | RuntimeException x) {
+            // Fall through.
+        }
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    /**
+     * @return the number of open file descriptors of the load generator process, or -1 if not available
+     */
+    static int getFileDescriptorCount() {
+        if (!Files.isDirectory(FDS)) {
+            return -1;
+        }
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(FDS)) {
+            int result = 0;
+            for (Path ignored : fds) {
+                ++result;
+            }
+            // Do not count the file descriptor opened to list the directory.
+            return result - 1;
+        } catch (IOException | RuntimeException x) {
+            return -1;
+        }
+    }
+}
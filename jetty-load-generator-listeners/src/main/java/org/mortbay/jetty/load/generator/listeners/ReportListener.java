@@ -14,15 +14,35 @@
 package org.mortbay.jetty.load.generator.listeners;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EventListener;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import org.HdrHistogram.Histogram;
@@ -32,8 +52,18 @@ import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.ConnectionStatistics;
 import org.eclipse.jetty.util.ajax.JSON;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.mortbay.jetty.load.generator.Feeder;
+import org.mortbay.jetty.load.generator.HTTP2ClientTransportBuilder;
+import org.mortbay.jetty.load.generator.HTTP2Statistics;
+import org.mortbay.jetty.load.generator.HTTPClientTransportBuilder;
 import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.Origin;
 import org.mortbay.jetty.load.generator.Resource;
+import org.mortbay.jetty.load.generator.Scenario;
 
 /**
  * <p>A load generator listener that reports information about a load run.</p>
@@ -60,12 +90,39 @@ import org.mortbay.jetty.load.generator.Resource;
  *
  * System.err.printf("max response time: %d", report.getResponseTimeHistogram().getMaxValue());
  * </pre>
+ * <p>The report listener may also sample the load generation periodically, see
+ * {@link #setSamplePeriod(long)}; every sample produces an {@link Interval} that
+ * is notified to {@link IntervalListener}s added as beans of the report listener.
+ * Sampling only reads lock-free counters and drains the histogram recorder,
+ * so it does not affect the threads that send requests and receive responses.</p>
  */
-public class ReportListener extends ContainerLifeCycle implements LoadGenerator.BeginListener, LoadGenerator.ReadyListener, LoadGenerator.EndListener, LoadGenerator.CompleteListener, Resource.NodeListener, Connection.Listener {
+public class ReportListener extends ContainerLifeCycle implements LoadGenerator.BeginListener, LoadGenerator.ReadyListener, LoadGenerator.EndListener, LoadGenerator.CompleteListener, LoadGenerator.ConnectListener, Resource.NodeListener, Resource.TreeListener, Connection.Listener {
+    private static final Logger LOG = Log.getLogger(ReportListener.class);
+
     private final Report report = new Report();
     private final CompletableFuture<Report> reportPromise = new CompletableFuture<>();
     private final ConnectionStatistics connectionStats = new ConnectionStatistics();
+    private final Map<Connection, Long> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final Recorder connectTimeRecorder = new Recorder(3);
+    private final Recorder connectionLifetimeRecorder = new Recorder(3);
+    private final Recorder connectionRequestsRecorder = new Recorder(3);
+    private final Recorder slotWaitTimeRecorder = new Recorder(3);
+    private final Scheduler sampler = new ScheduledExecutorScheduler("report-listener-sampler", true);
+    private final ThreadCPUSampler threadCPUSampler = new ThreadCPUSampler();
     private final Recorder recorder;
+    private final Histogram histogram;
+    private Histogram intervalHistogram;
+    private Sample readySample;
+    private Sample lastSample;
+    private volatile LoadGenerator generator;
+    private volatile HTTP2Statistics http2Statistics;
+    private volatile Map<Scenario, ScenarioMetrics> scenarioMetrics = Map.of();
+    private volatile Map<String, OriginMetrics> originMetrics = Map.of();
+    private volatile HitDistribution[] hitDistributions = new HitDistribution[0];
+    private volatile long samplePeriod;
+    private volatile boolean recordResponseTimes = true;
+    private volatile Scheduler.Task sampleTask;
 
     /**
      * <p>Creates a report listener that records values between 1 microsecond and 1 minute with 3 digit precision.</p>
@@ -85,7 +142,51 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
      */
     public ReportListener(long lowestDiscernibleValue, long highestTrackableValue, int numberOfSignificantValueDigits) {
         recorder = new Recorder(lowestDiscernibleValue, highestTrackableValue, numberOfSignificantValueDigits);
+        histogram = new Histogram(lowestDiscernibleValue, highestTrackableValue, numberOfSignificantValueDigits);
         addBean(connectionStats);
+        addBean(sampler);
+    }
+
+    /**
+     * @return the sample period in milliseconds, or zero if periodic sampling is disabled
+     */
+    public long getSamplePeriod() {
+        return samplePeriod;
+    }
+
+    /**
+     * <p>Sets the period of the samples taken during the load generation recording.</p>
+     * <p>Each sample produces an {@link Interval} that is notified to {@link IntervalListener}s
+     * and that is stored in the {@link Report#getIntervals() report}.
+     * When the sample period is zero, only one sample is taken, at the end of the recording.</p>
+     *
+     * @param samplePeriod the sample period in milliseconds, or zero to disable periodic sampling
+     */
+    public void setSamplePeriod(long samplePeriod) {
+        if (samplePeriod < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.samplePeriod = samplePeriod;
+    }
+
+    /**
+     * @return whether response times are recorded
+     */
+    public boolean isRecordResponseTimes() {
+        return recordResponseTimes;
+    }
+
+    /**
+     * <p>Sets whether response times are recorded.</p>
+     * <p>Loaders, that impose a load on the server but leave to a probe the
+     * recording of response times, may disable the recording of response
+     * times and only record counters.</p>
+     *
+     * @param recordResponseTimes whether response times are recorded
+     * @see Report#compose(Report, Report)
+     */
+    public void setRecordResponseTimes(boolean recordResponseTimes) {
+        this.recordResponseTimes = recordResponseTimes;
     }
 
     /**
@@ -248,14 +349,69 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
 
     @Override
     public void onBegin(LoadGenerator generator) {
+        this.generator = generator;
+        LoadGenerator.Config config = generator.getConfig();
+        report.health.nominalRequestRate = config.getResourceRate() * config.getResourceNodesPerIteration();
+        HTTPClientTransportBuilder transportBuilder = config.getHttpClientTransportBuilder();
+        if (transportBuilder instanceof HTTP2ClientTransportBuilder) {
+            HTTP2ClientTransportBuilder http2Builder = (HTTP2ClientTransportBuilder)transportBuilder;
+            http2Statistics = http2Builder.getStatistics();
+            report.http2.sessionRecvWindow = http2Builder.getSessionRecvWindow();
+            report.http2.streamRecvWindow = http2Builder.getStreamRecvWindow();
+        }
+        Map<Scenario, ScenarioMetrics> scenarioMetrics = new IdentityHashMap<>();
+        for (Scenario scenario : config.getScenarios()) {
+            ScenarioMetrics metrics = new ScenarioMetrics(scenario.getName(), scenario.getWeight());
+            metrics.recorder = new Recorder(3);
+            scenarioMetrics.put(scenario, metrics);
+            report.scenarios.put(scenario.getName(), metrics);
+        }
+        this.scenarioMetrics = scenarioMetrics;
+        Map<String, OriginMetrics> originMetrics = new HashMap<>();
+        if (!config.getOrigins().isEmpty()) {
+            List<OriginMetrics> origins = new ArrayList<>();
+            origins.add(new OriginMetrics(Origin.DEFAULT, config.getScheme(), config.getHost(), config.getPort()));
+            config.getOrigins().forEach(origin -> origins.add(new OriginMetrics(origin.getName(), origin.getScheme(), origin.getHost(), origin.getPort())));
+            for (OriginMetrics metrics : origins) {
+                metrics.recorder = new Recorder(3);
+                metrics.connectTimeRecorder = new Recorder(3);
+                originMetrics.put(metrics.getName(), metrics);
+                report.origins.put(metrics.getName(), metrics);
+            }
+        }
+        this.originMetrics = originMetrics;
+        // Indexed like the feeders, and so like the records of Resource.Info.
+        List<Feeder> feeders = config.getFeeders();
+        HitDistribution[] hitDistributions = new HitDistribution[feeders.size()];
+        for (int i = 0; i < hitDistributions.length; ++i) {
+            Feeder feeder = feeders.get(i);
+            if (feeder.getMode() == Feeder.Mode.ZIPF) {
+                HitDistribution hits = new HitDistribution(feeder.getName(), feeder.getRecords(), feeder.getExponent());
+                hitDistributions[i] = hits;
+                report.hitDistributions.put(hits.getName(), hits);
+            }
+        }
+        this.hitDistributions = hitDistributions;
         report.beginInstant = Instant.now();
         report.beginTime = System.nanoTime();
     }
 
     @Override
     public void onReady(LoadGenerator generator) {
-        report.readyTime = System.nanoTime();
-        report.readyCPUTime = getProcessCPUTime();
+        // Sending resumes after the ready listeners return, so the
+        // baselines, that may be slow to sample, are not recorded.
+        long readyCPUTime = getProcessCPUTime();
+        synchronized (this) {
+            // Establish the baseline of the thread CPU times.
+            threadCPUSampler.sample(generator, 0);
+            report.readyTime = System.nanoTime();
+            report.readyCPUTime = readyCPUTime;
+            lastSample = readySample = newSample(report.readyTime, report.readyCPUTime);
+        }
+        long period = getSamplePeriod();
+        if (period > 0) {
+            scheduleSample(TimeUnit.MILLISECONDS.toNanos(period), 1);
+        }
     }
 
     @Override
@@ -265,35 +421,325 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
 
     @Override
     public void onComplete(LoadGenerator generator) {
+        Scheduler.Task task = sampleTask;
+        if (task != null) {
+            task.cancel();
+        }
         report.completeTime = System.nanoTime();
         report.completeCPUTime = getProcessCPUTime();
-        // The histogram is reset every time getIntervalHistogram() is called.
-        report.histogram = recorder.getIntervalHistogram();
-        report.sentBytes = connectionStats.getSentBytes();
-        report.recvBytes = connectionStats.getReceivedBytes();
+        Interval interval;
+        synchronized (this) {
+            interval = sample(report.completeTime, report.completeCPUTime);
+            Sample ready = readySample;
+            Sample complete = lastSample;
+            if (ready != null) {
+                report.health.nominalRequestRate = nominalRequestRate(generator.getConfig(), report.endTime - report.readyTime);
+                long resources = complete.sentResources - ready.sentResources;
+                report.health.schedulingLag = resources == 0 ? 0 : (complete.schedulingLag - ready.schedulingLag) / resources;
+                report.health.rejectedRequests = complete.rejectedRequests - ready.rejectedRequests;
+                completeHTTP2Metrics(ready, complete);
+            }
+            // Stop periodic sampling, if not already stopped.
+            lastSample = null;
+            report.histogram = histogram;
+            completeConnectionMetrics(report.completeTime);
+            report.slotWaitTimeHistogram = slotWaitTimeRecorder.getIntervalHistogram();
+            scenarioMetrics.values().forEach(metrics -> metrics.responseTimeHistogram = metrics.recorder.getIntervalHistogram());
+            originMetrics.values().forEach(metrics -> {
+                metrics.responseTimeHistogram = metrics.recorder.getIntervalHistogram();
+                metrics.connectTimeHistogram = metrics.connectTimeRecorder.getIntervalHistogram();
+            });
+        }
+        notifyInterval(interval);
+        report.sentBytes = interval.sentBytes;
+        report.recvBytes = interval.recvBytes;
         reportPromise.complete(report);
     }
 
+    /**
+     * <p>Returns the average nominal request rate over the given recording duration.</p>
+     * <p>During the rate ramp-up the rate grows linearly from zero, so if the ramp-up overlaps
+     * the recording, the average nominal request rate is less than the configured rate.
+     * The ramp-up starts when the sender threads start sending, which is the ready event
+     * if there is no warmup; with warmup, the ramp-up has already progressed at the ready
+     * event, so the average nominal request rate is underestimated, which is conservative.</p>
+     */
+    private static double nominalRequestRate(LoadGenerator.Config config, long duration) {
+        double rate = config.getResourceRate() * config.getResourceNodesPerIteration();
+        long rampUp = TimeUnit.SECONDS.toNanos(config.getRateRampUpPeriod());
+        if (rate <= 0 || rampUp <= 0 || duration <= 0) {
+            return rate;
+        }
+        // The integral of the nominal rate, i.e. the nominal number of requests.
+        double requests = duration < rampUp ? 0.5D * duration * duration / rampUp : duration - 0.5D * rampUp;
+        return rate * requests / duration;
+    }
+
+    private void completeConnectionMetrics(long time) {
+        // Connections that are still open are accounted up to now,
+        // otherwise with persistent connections there would be no data.
+        connections.forEach((connection, openTime) -> {
+            if (connections.remove(connection, openTime)) {
+                openConnections.decrementAndGet();
+                recordConnectionClose(connection, time - openTime);
+            }
+        });
+        ConnectionMetrics metrics = report.connections;
+        metrics.connectTimeHistogram = connectTimeRecorder.getIntervalHistogram();
+        metrics.lifetimeHistogram = connectionLifetimeRecorder.getIntervalHistogram();
+        metrics.requestsHistogram = connectionRequestsRecorder.getIntervalHistogram();
+    }
+
+    private void completeHTTP2Metrics(Sample ready, Sample complete) {
+        HTTP2Statistics statistics = http2Statistics;
+        if (statistics != null) {
+            HTTP2Metrics metrics = report.http2;
+            metrics.sessionStalls = complete.sessionStalls - ready.sessionStalls;
+            metrics.sessionStallTime = complete.sessionStallTime - ready.sessionStallTime;
+            metrics.streamStalls = complete.streamStalls - ready.streamStalls;
+            metrics.streamStallTime = complete.streamStallTime - ready.streamStallTime;
+            metrics.maxConcurrentStreams = statistics.getMaxConcurrentStreams();
+            metrics.serverMaxConcurrentStreams = statistics.getServerMaxConcurrentStreams();
+            metrics.serverInitialStreamWindow = statistics.getServerInitialStreamWindow();
+            metrics.minSessionRecvWindow = statistics.getMinSessionRecvWindow();
+            metrics.minStreamRecvWindow = statistics.getMinStreamRecvWindow();
+        }
+    }
+
+    private void scheduleSample(long period, long count) {
+        // Schedule at a fixed rate from the ready time, to avoid drifting.
+        long delay = report.readyTime + count * period - System.nanoTime();
+        sampleTask = sampler.schedule(() -> onSample(period, count), Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+    private void onSample(long period, long count) {
+        Interval interval;
+        synchronized (this) {
+            if (lastSample == null) {
+                return;
+            }
+            interval = sample(System.nanoTime(), getProcessCPUTime());
+        }
+        notifyInterval(interval);
+        scheduleSample(period, count + 1);
+    }
+
+    private Interval sample(long time, long cpuTime) {
+        // Called with the lock held, only by the sampler
+        // thread or by the thread that completes the recording.
+        Sample sample = newSample(time, cpuTime);
+        Sample previous = lastSample;
+        if (previous == null) {
+            previous = new Sample(report.readyTime, report.readyCPUTime);
+        }
+        // Connections may be closed while sampling, so make sure the values never decrease.
+        sample.sentBytes = Math.max(previous.sentBytes, sample.sentBytes);
+        sample.recvBytes = Math.max(previous.recvBytes, sample.recvBytes);
+        // The recorder is reset every time getIntervalHistogram() is called.
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        histogram.add(intervalHistogram);
+        if (histogram.getStartTimeStamp() == Long.MAX_VALUE) {
+            histogram.setStartTimeStamp(intervalHistogram.getStartTimeStamp());
+        }
+        histogram.setEndTimeStamp(intervalHistogram.getEndTimeStamp());
+        Interval interval = new Interval(report, previous, sample, intervalHistogram);
+        interval.threadCPUTimes.putAll(threadCPUSampler.sample(generator, interval.cpuTime));
+        synchronized (report.threadCPUTimes) {
+            interval.threadCPUTimes.forEach((group, groupCPUTime) -> report.threadCPUTimes.merge(group, groupCPUTime, Long::sum));
+        }
+        GeneratorHealth health = report.health;
+        health.maxSchedulingLag = Math.max(health.maxSchedulingLag, interval.schedulingLag);
+        health.maxQueuedRequests = Math.max(health.maxQueuedRequests, sample.queuedRequests);
+        health.maxDestinationQueuedRequests = Math.max(health.maxDestinationQueuedRequests, sample.destinationQueuedRequests);
+        health.maxThreads = Math.max(health.maxThreads, sample.threads);
+        health.maxFileDescriptors = Math.max(health.maxFileDescriptors, sample.fileDescriptors);
+        report.http2.maxStreamQueuedRequests = Math.max(report.http2.maxStreamQueuedRequests, sample.streamQueuedRequests);
+        lastSample = sample;
+        report.intervals.add(interval);
+        return interval;
+    }
+
+    private Sample newSample(long time, long cpuTime) {
+        LoadGenerator generator = this.generator;
+        Sample sample = new Sample(time, cpuTime);
+        sample.sentRequests = generator == null ? 0 : generator.getSentRequests();
+        sample.inFlightRequests = generator == null ? 0 : generator.getInFlightRequests();
+        if (generator != null) {
+            sample.sentResources = generator.getSentResources();
+            sample.schedulingLag = generator.getSchedulingLag();
+            sample.rejectedRequests = generator.getRejectedRequests();
+            sample.queuedRequests = generator.getQueuedRequests();
+            sample.destinationQueuedRequests = generator.getMaxDestinationQueuedRequests();
+            sample.streamQueuedRequests = generator.getStreamQueuedRequests();
+        }
+        HTTP2Statistics http2Statistics = this.http2Statistics;
+        if (http2Statistics != null) {
+            sample.sessionStalls = http2Statistics.getSessionStalls();
+            sample.sessionStallTime = http2Statistics.getSessionStallTime();
+            sample.streamStalls = http2Statistics.getStreamStalls();
+            sample.streamStallTime = http2Statistics.getStreamStallTime();
+        }
+        sample.threads = ProcessStats.getThreadCount();
+        sample.fileDescriptors = ProcessStats.getFileDescriptorCount();
+        sample.responses1xx = report.getResponses1xx();
+        sample.responses2xx = report.getResponses2xx();
+        sample.responses3xx = report.getResponses3xx();
+        sample.responses4xx = report.getResponses4xx();
+        sample.responses5xx = report.getResponses5xx();
+        sample.failures = report.getFailures();
+        sample.openedConnections = report.connections.getOpenedConnections();
+        sample.closedConnections = report.connections.getClosedConnections();
+        sample.connections = openConnections.get();
+        // ConnectionStatistics only accounts bytes of closed connections.
+        long sentBytes = connectionStats.getSentBytes();
+        long recvBytes = connectionStats.getReceivedBytes();
+        for (Connection connection : connections.keySet()) {
+            sentBytes += connection.getBytesOut();
+            recvBytes += connection.getBytesIn();
+        }
+        sample.sentBytes = sentBytes;
+        sample.recvBytes = recvBytes;
+        return sample;
+    }
+
+    private void notifyInterval(Interval interval) {
+        for (IntervalListener listener : getBeans(IntervalListener.class)) {
+            try {
+                listener.onInterval(interval);
+            } catch (Throwable x) {
+                LOG.info("ignored failure while invoking listener {}", listener, x);
+            }
+        }
+    }
+
     @Override
     public void onResourceNode(Resource.Info info) {
-        if (info.getFailure() == null) {
+        Scenario scenario = info.getScenario();
+        ScenarioMetrics scenarioMetrics = scenario == null ? null : this.scenarioMetrics.get(scenario);
+        OriginMetrics originMetrics = findOriginMetrics(info.getResource().getOrigin());
+        long queueTime = info.getQueueTime();
+        if (queueTime != 0 && info.getRequestTime() != 0) {
+            slotWaitTimeRecorder.recordValue(info.getRequestTime() - queueTime);
+        }
+        Throwable failure = info.getFailure();
+        if (failure == null) {
             recordResponseGroup(info);
-            long responseTime = info.getResponseTime() - info.getRequestTime();
-            recorder.recordValue(responseTime);
+            report.statusCodes.increment(info.getStatus());
+            if (recordResponseTimes) {
+                long responseTime = info.getResponseTime() - info.getRequestTime();
+                recorder.recordValue(responseTime);
+                if (scenarioMetrics != null) {
+                    scenarioMetrics.recorder.recordValue(responseTime);
+                }
+                if (originMetrics != null) {
+                    originMetrics.recorder.recordValue(responseTime);
+                }
+            }
             report.responseContent.add(info.getContentLength());
+            if (scenarioMetrics != null) {
+                scenarioMetrics.responses.increment();
+            }
+            if (originMetrics != null) {
+                originMetrics.responses.increment();
+            }
         } else {
             report.failures.increment();
+            report.failureCauses[FailureCause.of(failure).ordinal()].increment();
+            if (scenarioMetrics != null) {
+                scenarioMetrics.failures.increment();
+            }
+            if (originMetrics != null) {
+                originMetrics.failures.increment();
+            }
+        }
+    }
+
+    private OriginMetrics findOriginMetrics(String origin) {
+        Map<String, OriginMetrics> originMetrics = this.originMetrics;
+        if (originMetrics.isEmpty()) {
+            return null;
+        }
+        return originMetrics.get(origin == null ? Origin.DEFAULT : origin);
+    }
+
+    @Override
+    public void onResourceTree(Resource.Info info) {
+        Scenario scenario = info.getScenario();
+        if (scenario != null) {
+            ScenarioMetrics scenarioMetrics = this.scenarioMetrics.get(scenario);
+            if (scenarioMetrics != null) {
+                scenarioMetrics.trees.increment();
+            }
         }
+        int[] records = info.getRecords();
+        if (records != null) {
+            HitDistribution[] hitDistributions = this.hitDistributions;
+            for (int i = 0; i < hitDistributions.length && i < records.length; ++i) {
+                HitDistribution hits = hitDistributions[i];
+                if (hits != null) {
+                    hits.record(records[i]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onConnect(LoadGenerator generator, long connectTime, Throwable failure) {
+        if (failure == null) {
+            connectTimeRecorder.recordValue(connectTime);
+        } else {
+            report.connections.connectFailures.increment();
+        }
+    }
+
+    @Override
+    public void onConnect(LoadGenerator generator, Origin origin, long connectTime, Throwable failure) {
+        OriginMetrics originMetrics = findOriginMetrics(origin == null ? null : origin.getName());
+        if (originMetrics != null) {
+            if (failure == null) {
+                originMetrics.connections.increment();
+                originMetrics.connectTimeRecorder.recordValue(connectTime);
+            } else {
+                originMetrics.connectFailures.increment();
+            }
+        }
+        onConnect(generator, connectTime, failure);
     }
 
     @Override
     public void onOpened(Connection connection) {
         connectionStats.onOpened(connection);
+        connections.put(connection, System.nanoTime());
+        int open = openConnections.incrementAndGet();
+        // Connections are accounted until the recording completes.
+        if (report.completeTime == 0) {
+            report.connections.openedConnections.increment();
+            report.connections.maxConnections.accumulateAndGet(open, Math::max);
+        }
     }
 
     @Override
     public void onClosed(Connection connection) {
+        Long openTime = connections.remove(connection);
         connectionStats.onClosed(connection);
+        // The connection is recorded by whoever removes it, either
+        // here or when the recording completes, so that it is not lost.
+        if (openTime != null) {
+            openConnections.decrementAndGet();
+            if (report.completeTime == 0) {
+                report.connections.closedConnections.increment();
+            }
+            recordConnectionClose(connection, System.nanoTime() - openTime);
+        }
+    }
+
+    private void recordConnectionClose(Connection connection, long lifetime) {
+        connectionLifetimeRecorder.recordValue(lifetime);
+        // Not all connection implementations count the messages.
+        long requests = connection.getMessagesOut();
+        if (requests >= 0) {
+            connectionRequestsRecorder.recordValue(requests);
+        }
     }
 
     private void recordResponseGroup(Resource.Info info) {
@@ -336,7 +782,18 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
         private final LongAdder responses5xx = new LongAdder();
         private final LongAdder responseContent = new LongAdder();
         private final LongAdder failures = new LongAdder();
+        private final StatusCodeCounters statusCodes = new StatusCodeCounters();
+        private final LongAdder[] failureCauses = new LongAdder[FailureCause.values().length];
+        private final List<Interval> intervals = Collections.synchronizedList(new ArrayList<>());
+        private final GeneratorHealth health = new GeneratorHealth(this);
+        private final ConnectionMetrics connections = new ConnectionMetrics();
+        private final HTTP2Metrics http2 = new HTTP2Metrics();
+        private final Map<String, ScenarioMetrics> scenarios = new LinkedHashMap<>();
+        private final Map<String, OriginMetrics> origins = new LinkedHashMap<>();
+        private final Map<String, HitDistribution> hitDistributions = new LinkedHashMap<>();
+        private final Map<String, Long> threadCPUTimes = ThreadCPUSampler.newGroups();
         private volatile Histogram histogram;
+        private volatile Histogram slotWaitTimeHistogram = ConnectionMetrics.newHistogram();
         private volatile Instant beginInstant;
         private volatile long beginTime;
         private volatile long readyTime;
@@ -346,6 +803,111 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
         private volatile long completeCPUTime;
         private volatile long sentBytes;
         private volatile long recvBytes;
+        private volatile int availableProcessors = Runtime.getRuntime().availableProcessors();
+
+        public Report() {
+            for (int i = 0; i < failureCauses.length; ++i) {
+                failureCauses[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * <p>Merges the given reports into a new report, typically to aggregate
+         * the reports of multiple load generators that run concurrently.</p>
+         * <p>Counters, bytes and CPU time are summed, and the response time histograms are added,
+         * so that the percentiles of the merged report are exact.
+         * The recording window of the merged report spans from the earliest
+         * {@link LoadGenerator.ReadyListener ready event} to the latest
+         * {@link LoadGenerator.CompleteListener complete event}, so that
+         * rates are computed over the union of the recording windows.</p>
+         * <p>Intervals are aligned by their distance from the earliest ready event and merged;
+         * the response time percentiles of a merged interval are the maximum of the
+         * percentiles of the intervals it is made of.</p>
+         *
+         * @param reports the reports to merge
+         * @return a new report that merges the given reports
+         */
+        public static Report merge(List<Report> reports) {
+            return merge(reports, false);
+        }
+
+        /**
+         * <p>Composes the report of a loader and the report of a probe that ran
+         * concurrently in the same process.</p>
+         * <p>The loader is expected to not record response times (see
+         * {@link ReportListener#setRecordResponseTimes(boolean)}), so that the
+         * composed response times are those of the probe, while the counters
+         * and rates are those of the whole load.
+         * Since both reports sample the CPU of the same process, the composed
+         * CPU times are those sampled by the loader; likewise, since the probe
+         * is expected to end when the loader ends, the composed recording
+         * window is that of the loader.</p>
+         *
+         * @param loader the report of the loader
+         * @param probe the report of the probe
+         * @return a new report composing the loader and probe reports
+         */
+        public static Report compose(Report loader, Report probe) {
+            return merge(List.of(loader, probe), true);
+        }
+
+        private static Report merge(List<Report> reports, boolean sameProcess) {
+            if (reports.isEmpty()) {
+                throw new IllegalArgumentException("no reports to merge");
+            }
+            // In the same process, the probe ends when the loader ends,
+            // so the recording window is that of the loader.
+            List<Report> windows = sameProcess ? reports.subList(0, 1) : reports;
+            Instant beginInstant = windows.stream().map(Report::getBeginInstant).min(Instant::compareTo).get();
+            Instant readyInstant = windows.stream().map(Report::getReadyInstant).min(Instant::compareTo).get();
+            Instant endInstant = windows.stream().map(Report::getEndInstant).max(Instant::compareTo).get();
+            Instant completeInstant = windows.stream().map(Report::getCompleteInstant).max(Instant::compareTo).get();
+            Report result = new Report();
+            result.beginInstant = beginInstant;
+            result.readyTime = Duration.between(beginInstant, readyInstant).toNanos();
+            result.endTime = Duration.between(beginInstant, endInstant).toNanos();
+            result.completeTime = Duration.between(beginInstant, completeInstant).toNanos();
+            result.availableProcessors = 0;
+            Histogram histogram = null;
+            for (Report report : reports) {
+                result.responses1xx.add(report.getResponses1xx());
+                result.responses2xx.add(report.getResponses2xx());
+                result.responses3xx.add(report.getResponses3xx());
+                result.responses4xx.add(report.getResponses4xx());
+                result.responses5xx.add(report.getResponses5xx());
+                result.responseContent.add(report.responseContent.longValue());
+                result.failures.add(report.getFailures());
+                report.getStatusCodes().forEach(result.statusCodes::add);
+                report.getFailureCauses().forEach((cause, count) -> result.failureCauses[cause.ordinal()].add(count));
+                result.sentBytes += report.sentBytes;
+                result.recvBytes += report.recvBytes;
+                // In the same process, CPU is sampled by the first report.
+                if (!sameProcess || report == reports.get(0)) {
+                    result.completeCPUTime += report.completeCPUTime - report.readyCPUTime;
+                    result.availableProcessors += report.getAvailableProcessors();
+                    report.getThreadCPUTimes().forEach((group, cpuTime) -> result.threadCPUTimes.merge(group, cpuTime, Long::sum));
+                }
+                Histogram responseTimes = report.getResponseTimeHistogram();
+                if (histogram == null) {
+                    histogram = responseTimes.copy();
+                    histogram.setAutoResize(true);
+                } else {
+                    histogram.add(responseTimes);
+                    histogram.setStartTimeStamp(Math.min(histogram.getStartTimeStamp(), responseTimes.getStartTimeStamp()));
+                    histogram.setEndTimeStamp(Math.max(histogram.getEndTimeStamp(), responseTimes.getEndTimeStamp()));
+                }
+            }
+            result.histogram = histogram;
+            reports.forEach(report -> result.slotWaitTimeHistogram.add(report.getSlotWaitTimeHistogram()));
+            result.intervals.addAll(Interval.merge(readyInstant, reports, sameProcess));
+            GeneratorHealth.merge(result.health, reports);
+            ConnectionMetrics.merge(result.connections, reports);
+            HTTP2Metrics.merge(result.http2, reports);
+            ScenarioMetrics.merge(result.scenarios, reports);
+            OriginMetrics.merge(result.origins, reports);
+            HitDistribution.merge(result.hitDistributions, reports);
+            return result;
+        }
 
         /**
          * @return the Instant of the load generation {@link LoadGenerator.BeginListener begin event}
@@ -354,6 +916,20 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
             return beginInstant;
         }
 
+        /**
+         * @return the Instant of the load generation {@link LoadGenerator.ReadyListener ready event}
+         */
+        public Instant getReadyInstant() {
+            return beginInstant.plusNanos(readyTime - beginTime);
+        }
+
+        /**
+         * @return the Instant of the load generation {@link LoadGenerator.EndListener end event}
+         */
+        public Instant getEndInstant() {
+            return beginInstant.plusNanos(endTime - beginTime);
+        }
+
         /**
          * @return the Instant of the load generation {@link LoadGenerator.CompleteListener complete event}
          */
@@ -384,18 +960,51 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
             return histogram;
         }
 
+        /**
+         * <p>Returns the slot wait time histogram.</p>
+         * <p>The slot wait time is the time a request waits for an in-flight slot
+         * of its resource tree and of its user before being sent, in nanoseconds.</p>
+         * <p>The histogram is empty when no in-flight limits are configured.</p>
+         *
+         * @return the slot wait time histogram
+         * @see LoadGenerator.Builder#maxRequestsPerUser(int)
+         * @see LoadGenerator.Builder#maxRequestsPerTree(int)
+         */
+        public Histogram getSlotWaitTimeHistogram() {
+            return slotWaitTimeHistogram;
+        }
+
+        /**
+         * <p>Returns the number of requests, either successful or failed.</p>
+         * <p>The number of requests is computed from the counters rather than from the
+         * response time histogram, so that it is accurate also when response times are
+         * {@link ReportListener#setRecordResponseTimes(boolean) not recorded}.</p>
+         *
+         * @return the number of requests
+         */
+        public long getRequests() {
+            return getResponses() + getFailures();
+        }
+
         /**
          * @return the request rate, in requests/s
          */
         public double getRequestRate() {
-            return nanoRate(getResponseTimeHistogram().getTotalCount(), endTime - readyTime);
+            return nanoRate(getRequests(), endTime - readyTime);
+        }
+
+        /**
+         * @return the number of responses, of any status code
+         */
+        public long getResponses() {
+            return getResponses1xx() + getResponses2xx() + getResponses3xx() + getResponses4xx() + getResponses5xx();
         }
 
         /**
          * @return the response rate in responses/s
          */
         public double getResponseRate() {
-            return nanoRate(getResponseTimeHistogram().getTotalCount(), getRecordingNanos());
+            return nanoRate(getResponses(), getRecordingNanos());
         }
 
         /**
@@ -454,6 +1063,44 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
             return failures.longValue();
         }
 
+        /**
+         * @param cause the failure cause
+         * @return the number of failures with the given cause
+         */
+        public long getFailures(FailureCause cause) {
+            return failureCauses[cause.ordinal()].longValue();
+        }
+
+        /**
+         * @return the number of failures by cause, only for causes that occurred
+         */
+        public Map<FailureCause, Long> getFailureCauses() {
+            Map<FailureCause, Long> result = new EnumMap<>(FailureCause.class);
+            for (FailureCause cause : FailureCause.values()) {
+                long count = getFailures(cause);
+                if (count > 0) {
+                    result.put(cause, count);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @param status the HTTP status code
+         * @return the number of HTTP responses with the given status code
+         */
+        public long getResponses(int status) {
+            return statusCodes.get(status);
+        }
+
+        /**
+         * @return the number of HTTP responses by status code, sorted by
+         * status code, only for status codes that have been received
+         */
+        public Map<Integer, Long> getStatusCodes() {
+            return statusCodes.toMap();
+        }
+
         /**
          * <p>Returns the average CPU load during recording.</p>
          * <p>This is the CPU time for the load generator JVM, across all cores, divided by the recording duration.</p>
@@ -469,6 +1116,102 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
             return elapsedTime == 0 ? 0 : 100D * (completeCPUTime - readyCPUTime) / elapsedTime;
         }
 
+        /**
+         * @return the number of processors available to the load generator,
+         * or the sum of the processors available to the load generators of a merged report
+         */
+        public int getAvailableProcessors() {
+            return availableProcessors;
+        }
+
+        /**
+         * <p>Returns the CPU time of the load generator threads during recording, grouped by
+         * thread role: {@code sender}, {@code executor} (including the selector threads),
+         * {@code scheduler}, {@code other}, and {@code jvm} for the CPU time not accounted
+         * by Java threads, such as GC and JIT compiler threads.</p>
+         * <p>The thread groups that use most CPU indicate whether to add sender
+         * threads or executor threads when the load generator tops out.</p>
+         *
+         * @return the CPU time in nanoseconds, by thread group
+         */
+        public Map<String, Long> getThreadCPUTimes() {
+            synchronized (threadCPUTimes) {
+                return new LinkedHashMap<>(threadCPUTimes);
+            }
+        }
+
+        /**
+         * @param group the thread group
+         * @return the average CPU load of the given thread group during recording, across all cores
+         * @see #getThreadCPUTimes()
+         * @see #getAverageCPUPercent()
+         */
+        public double getThreadCPUPercent(String group) {
+            long elapsedTime = getRecordingNanos();
+            return elapsedTime == 0 ? 0 : 100D * getThreadCPUTimes().getOrDefault(group, 0L) / elapsedTime;
+        }
+
+        /**
+         * @return the load generator health information
+         */
+        public GeneratorHealth getGeneratorHealth() {
+            return health;
+        }
+
+        /**
+         * @return the metrics about the connections opened by the load generator
+         */
+        public ConnectionMetrics getConnectionMetrics() {
+            return connections;
+        }
+
+        /**
+         * @return the HTTP/2 flow control and stream concurrency metrics
+         */
+        public HTTP2Metrics getHTTP2Metrics() {
+            return http2;
+        }
+
+        /**
+         * @return the metrics of each scenario, by scenario name, or an empty map if no scenarios are configured
+         */
+        public Map<String, ScenarioMetrics> getScenarioMetrics() {
+            return scenarios;
+        }
+
+        /**
+         * <p>Returns the metrics of each {@link Origin}, by origin name.</p>
+         * <p>The requests to the configured scheme, host and port are accounted
+         * to the {@link Origin#DEFAULT default origin}.</p>
+         *
+         * @return the metrics of each origin, by origin name, or an empty map if no origins are configured
+         */
+        public Map<String, OriginMetrics> getOriginMetrics() {
+            return origins;
+        }
+
+        /**
+         * @return the hit distribution of each {@link Feeder.Mode#ZIPF} feeder, by feeder name,
+         * or an empty map if no such feeders are configured
+         */
+        public Map<String, HitDistribution> getHitDistributions() {
+            return hitDistributions;
+        }
+
+        /**
+         * <p>Returns the intervals sampled during the load generation recording.</p>
+         * <p>If periodic sampling is disabled, there is only one interval
+         * spanning the whole recording.</p>
+         *
+         * @return the intervals sampled during the load generation recording
+         * @see ReportListener#setSamplePeriod(long)
+         */
+        public List<Interval> getIntervals() {
+            synchronized (intervals) {
+                return new ArrayList<>(intervals);
+            }
+        }
+
         private long getRecordingNanos() {
             return completeTime - readyTime;
         }
@@ -480,30 +1223,1921 @@ public class ReportListener extends ContainerLifeCycle implements LoadGenerator.
         @Override
         public void toJSON(JSON.Output out) {
             out.add("beginInstant", getBeginInstant().atZone(ZoneOffset.UTC).toString());
+            out.add("readyInstant", getReadyInstant().atZone(ZoneOffset.UTC).toString());
+            out.add("endInstant", getEndInstant().atZone(ZoneOffset.UTC).toString());
             out.add("completeInstant", getCompleteInstant().atZone(ZoneOffset.UTC).toString());
             out.add("recordingDuration", getRecordingDuration().toMillis());
-            out.add("availableProcessors", Runtime.getRuntime().availableProcessors());
+            out.add("availableProcessors", getAvailableProcessors());
+            out.add("cpuTime", completeCPUTime - readyCPUTime);
             out.add("averageCPUPercent", getAverageCPUPercent());
+            out.add("threadCPUTime", getThreadCPUTimes());
             out.add("requestRate", getRequestRate());
             out.add("responseRate", getResponseRate());
             out.add("sentBytesRate", getSentBytesRate());
             out.add("receivedBytesRate", getReceivedBytesRate());
+            out.add("sentBytes", sentBytes);
+            out.add("receivedBytes", recvBytes);
+            out.add("responseContent", responseContent.longValue());
             out.add("failures", getFailures());
             out.add("1xx", getResponses1xx());
             out.add("2xx", getResponses2xx());
             out.add("3xx", getResponses3xx());
             out.add("4xx", getResponses4xx());
             out.add("5xx", getResponses5xx());
+            Map<String, Long> statusCodes = new LinkedHashMap<>();
+            getStatusCodes().forEach((code, count) -> statusCodes.put(String.valueOf(code), count));
+            out.add("statusCodes", statusCodes);
+            Map<String, Long> failureCauses = new LinkedHashMap<>();
+            getFailureCauses().forEach((cause, count) -> failureCauses.put(cause.getName(), count));
+            out.add("failureCauses", failureCauses);
+            out.add("histogram", toHistogramLog(getResponseTimeHistogram()));
+            out.add("slotWaitTimeHistogram", toHistogramLog(getSlotWaitTimeHistogram()));
+            out.add("generatorHealth", getGeneratorHealth());
+            out.add("connections", getConnectionMetrics());
+            out.add("http2", getHTTP2Metrics());
+            out.add("scenarios", getScenarioMetrics().values());
+            out.add("origins", getOriginMetrics().values());
+            out.add("hitDistributions", getHitDistributions().values());
+            out.add("intervals", getIntervals());
+        }
+
+        @Override
+        public void fromJSON(Map map) {
+            beginInstant = asInstant(map, "beginInstant");
+            beginTime = 0;
+            completeTime = Duration.between(beginInstant, asInstant(map, "completeInstant")).toNanos();
+            histogram = asHistogram(map.get("histogram"));
+            if (map.containsKey("slotWaitTimeHistogram")) {
+                slotWaitTimeHistogram = asHistogram(map.get("slotWaitTimeHistogram"));
+            }
+            long totalCount = histogram.getTotalCount();
+            if (map.containsKey("readyInstant")) {
+                readyTime = Duration.between(beginInstant, asInstant(map, "readyInstant")).toNanos();
+                endTime = Duration.between(beginInstant, asInstant(map, "endInstant")).toNanos();
+                completeCPUTime = asLong(map, "cpuTime");
+                sentBytes = asLong(map, "sentBytes");
+                recvBytes = asLong(map, "receivedBytes");
+            } else {
+                // Reports written by previous versions only have the
+                // recording duration and the rates, with lesser precision.
+                readyTime = completeTime - TimeUnit.MILLISECONDS.toNanos(asLong(map, "recordingDuration"));
+                double requestRate = asDouble(map, "requestRate");
+                endTime = requestRate == 0 ? completeTime : readyTime + (long)(totalCount * 1_000_000_000D / requestRate);
+                long recordingNanos = getRecordingNanos();
+                completeCPUTime = (long)(asDouble(map, "averageCPUPercent") * recordingNanos / 100);
+                sentBytes = (long)(asDouble(map, "sentBytesRate") * recordingNanos / 1_000_000_000D);
+                recvBytes = (long)(asDouble(map, "receivedBytesRate") * recordingNanos / 1_000_000_000D);
+            }
+            readyCPUTime = 0;
+            availableProcessors = (int)asLong(map, "availableProcessors");
+            responses1xx.add(asLong(map, "1xx"));
+            responses2xx.add(asLong(map, "2xx"));
+            responses3xx.add(asLong(map, "3xx"));
+            responses4xx.add(asLong(map, "4xx"));
+            responses5xx.add(asLong(map, "5xx"));
+            responseContent.add(asLong(map, "responseContent"));
+            failures.add(asLong(map, "failures"));
+            Object codes = map.get("statusCodes");
+            if (codes instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>)codes).entrySet()) {
+                    statusCodes.add(Integer.parseInt(entry.getKey().toString()), ((Number)entry.getValue()).longValue());
+                }
+            }
+            Object causes = map.get("failureCauses");
+            if (causes instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>)causes).entrySet()) {
+                    FailureCause cause = FailureCause.from(entry.getKey().toString());
+                    failureCauses[(cause == null ? FailureCause.OTHER : cause).ordinal()].add(((Number)entry.getValue()).longValue());
+                }
+            }
+            readThreadCPUTimes(map, threadCPUTimes);
+            Object health = map.get("generatorHealth");
+            if (health instanceof Map) {
+                this.health.fromJSON((Map<?, ?>)health);
+            }
+            Object connections = map.get("connections");
+            if (connections instanceof Map) {
+                this.connections.fromJSON((Map<?, ?>)connections);
+            }
+            Object http2 = map.get("http2");
+            if (http2 instanceof Map) {
+                this.http2.fromJSON((Map<?, ?>)http2);
+            }
+            Object scenarios = map.get("scenarios");
+            if (scenarios instanceof Object[]) {
+                for (Object object : (Object[])scenarios) {
+                    ScenarioMetrics metrics = new ScenarioMetrics();
+                    metrics.fromJSON((Map<?, ?>)object);
+                    addScenarioMetrics(metrics);
+                }
+            }
+            Object origins = map.get("origins");
+            if (origins instanceof Object[]) {
+                for (Object object : (Object[])origins) {
+                    OriginMetrics metrics = new OriginMetrics();
+                    metrics.fromJSON((Map<?, ?>)object);
+                    addOriginMetrics(metrics);
+                }
+            }
+            Object hitDistributions = map.get("hitDistributions");
+            if (hitDistributions instanceof Object[]) {
+                for (Object object : (Object[])hitDistributions) {
+                    HitDistribution hits = new HitDistribution();
+                    hits.fromJSON((Map<?, ?>)object);
+                    addHitDistribution(hits);
+                }
+            }
+            Object intervals = map.get("intervals");
+            if (intervals instanceof Object[]) {
+                for (Object object : (Object[])intervals) {
+                    Interval interval = new Interval();
+                    interval.fromJSON((Map)object);
+                    this.intervals.add(interval);
+                }
+            }
+        }
+
+        void write(DataOutput output) throws IOException {
+            // Times are relative to the begin time.
+            StatsFile.writeVarLong(output, beginInstant.getEpochSecond());
+            StatsFile.writeVarLong(output, beginInstant.getNano());
+            StatsFile.writeVarLong(output, readyTime - beginTime);
+            StatsFile.writeVarLong(output, endTime - beginTime);
+            StatsFile.writeVarLong(output, completeTime - beginTime);
+            StatsFile.writeVarLong(output, completeCPUTime - readyCPUTime);
+            StatsFile.writeVarLong(output, sentBytes);
+            StatsFile.writeVarLong(output, recvBytes);
+            StatsFile.writeVarLong(output, responseContent.longValue());
+            StatsFile.writeVarLong(output, getAvailableProcessors());
+            StatsFile.writeVarLong(output, getResponses1xx());
+            StatsFile.writeVarLong(output, getResponses2xx());
+            StatsFile.writeVarLong(output, getResponses3xx());
+            StatsFile.writeVarLong(output, getResponses4xx());
+            StatsFile.writeVarLong(output, getResponses5xx());
+            StatsFile.writeVarLong(output, getFailures());
+        }
+
+        void read(DataInput input) throws IOException {
+            beginInstant = Instant.ofEpochSecond(StatsFile.readVarLong(input), StatsFile.readVarLong(input));
+            beginTime = 0;
+            readyTime = StatsFile.readVarLong(input);
+            endTime = StatsFile.readVarLong(input);
+            completeTime = StatsFile.readVarLong(input);
+            readyCPUTime = 0;
+            completeCPUTime = StatsFile.readVarLong(input);
+            sentBytes = StatsFile.readVarLong(input);
+            recvBytes = StatsFile.readVarLong(input);
+            responseContent.add(StatsFile.readVarLong(input));
+            availableProcessors = (int)StatsFile.readVarLong(input);
+            responses1xx.add(StatsFile.readVarLong(input));
+            responses2xx.add(StatsFile.readVarLong(input));
+            responses3xx.add(StatsFile.readVarLong(input));
+            responses4xx.add(StatsFile.readVarLong(input));
+            responses5xx.add(StatsFile.readVarLong(input));
+            failures.add(StatsFile.readVarLong(input));
+        }
+
+        void writeStatusCodes(DataOutput output) throws IOException {
+            Map<Integer, Long> codes = getStatusCodes();
+            StatsFile.writeVarLong(output, codes.size());
+            for (Map.Entry<Integer, Long> entry : codes.entrySet()) {
+                StatsFile.writeVarLong(output, entry.getKey());
+                StatsFile.writeVarLong(output, entry.getValue());
+            }
+        }
+
+        void readStatusCodes(DataInput input) throws IOException {
+            long size = StatsFile.readVarLong(input);
+            for (long i = 0; i < size; ++i) {
+                statusCodes.add((int)StatsFile.readVarLong(input), StatsFile.readVarLong(input));
+            }
+        }
+
+        void writeFailureCauses(DataOutput output) throws IOException {
+            // Write the names rather than the ordinals, so that causes can be added.
+            Map<FailureCause, Long> causes = getFailureCauses();
+            StatsFile.writeVarLong(output, causes.size());
+            for (Map.Entry<FailureCause, Long> entry : causes.entrySet()) {
+                output.writeUTF(entry.getKey().getName());
+                StatsFile.writeVarLong(output, entry.getValue());
+            }
+        }
+
+        void readFailureCauses(DataInput input) throws IOException {
+            long size = StatsFile.readVarLong(input);
+            for (long i = 0; i < size; ++i) {
+                FailureCause cause = FailureCause.from(input.readUTF());
+                failureCauses[(cause == null ? FailureCause.OTHER : cause).ordinal()].add(StatsFile.readVarLong(input));
+            }
+        }
+
+        void writeThreadCPUTimes(DataOutput output) throws IOException {
+            writeThreadCPUTimes(output, getThreadCPUTimes());
+        }
+
+        void readThreadCPUTimes(DataInput input) throws IOException {
+            readThreadCPUTimes(input, threadCPUTimes);
+        }
+
+        private static void writeThreadCPUTimes(DataOutput output, Map<String, Long> cpuTimes) throws IOException {
+            StatsFile.writeVarLong(output, cpuTimes.size());
+            for (Map.Entry<String, Long> entry : cpuTimes.entrySet()) {
+                output.writeUTF(entry.getKey());
+                StatsFile.writeVarLong(output, entry.getValue());
+            }
+        }
+
+        private static void readThreadCPUTimes(DataInput input, Map<String, Long> cpuTimes) throws IOException {
+            long size = StatsFile.readVarLong(input);
+            for (long i = 0; i < size; ++i) {
+                cpuTimes.merge(ThreadCPUSampler.group(input.readUTF()), StatsFile.readVarLong(input), Long::sum);
+            }
+        }
+
+        private static void readThreadCPUTimes(Map<?, ?> map, Map<String, Long> cpuTimes) {
+            Object times = map.get("threadCPUTime");
+            if (times instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>)times).entrySet()) {
+                    cpuTimes.merge(ThreadCPUSampler.group(entry.getKey().toString()), ((Number)entry.getValue()).longValue(), Long::sum);
+                }
+            }
+        }
+
+        void setResponseTimeHistogram(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        void setSlotWaitTimeHistogram(Histogram histogram) {
+            this.slotWaitTimeHistogram = histogram;
+        }
+
+        void addInterval(Interval interval) {
+            intervals.add(interval);
+        }
+
+        void addScenarioMetrics(ScenarioMetrics metrics) {
+            scenarios.put(metrics.getName(), metrics);
+        }
+
+        void addOriginMetrics(OriginMetrics metrics) {
+            origins.put(metrics.getName(), metrics);
+        }
+
+        void addHitDistribution(HitDistribution hits) {
+            hitDistributions.put(hits.getName(), hits);
+        }
+
+        private static String toHistogramLog(Histogram histogram) {
             ByteArrayOutputStream histogramOutput = new ByteArrayOutputStream();
             HistogramLogWriter hw = new HistogramLogWriter(histogramOutput);
-            hw.outputIntervalHistogram(getResponseTimeHistogram());
+            hw.outputIntervalHistogram(histogram);
             hw.close();
-            out.add("histogram", histogramOutput.toString(StandardCharsets.UTF_8));
+            return histogramOutput.toString(StandardCharsets.UTF_8);
         }
 
-        @Override
-        public void fromJSON(Map map) {
-            throw new UnsupportedOperationException();
+        private static Histogram asHistogram(Object histogram) {
+            // The histogram is a HistogramLogWriter interval line:
+            // startTime,intervalLength,maxValue,compressedHistogram with times in seconds.
+            // HistogramLogReader truncates the times when converting them to milliseconds,
+            // so the line is parsed here to round them instead.
+            if (histogram instanceof String) {
+                String[] parts = ((String)histogram).trim().split(",");
+                if (parts.length == 4) {
+                    try {
+                        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(parts[3]));
+                        Histogram result = Histogram.decodeFromCompressedByteBuffer(buffer, 0);
+                        long startTimeStamp = Math.round(Double.parseDouble(parts[0]) * 1000);
+                        result.setStartTimeStamp(startTimeStamp);
+                        result.setEndTimeStamp(startTimeStamp + Math.round(Double.parseDouble(parts[1]) * 1000));
+                        return result;
+                    } catch (DataFormatException | IllegalArgumentException x) {
+                        throw new IllegalArgumentException("invalid histogram: " + histogram, x);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("invalid histogram: " + histogram);
+        }
+
+        private static Instant asInstant(Map<?, ?> map, String name) {
+            Object obj = map.get(name);
+            if (obj == null) {
+                throw new IllegalArgumentException("missing " + name);
+            }
+            return ZonedDateTime.parse(obj.toString()).toInstant();
+        }
+
+        private static long asLong(Map<?, ?> map, String name) {
+            Object obj = map.get(name);
+            if (obj instanceof Number) {
+                return ((Number)obj).longValue();
+            }
+            return 0;
+        }
+
+        private static double asDouble(Map<?, ?> map, String name) {
+            Object obj = map.get(name);
+            if (obj instanceof Number) {
+                return ((Number)obj).doubleValue();
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * <p>The values sampled over a time interval of the load generation recording.</p>
+     * <p>Counts and rates refer to the interval only, while the number of requests in flight
+     * and the CPU load refer to the end and to the whole duration of the interval, respectively.</p>
+     *
+     * @see ReportListener#setSamplePeriod(long)
+     */
+    public static class Interval implements JSON.Convertible {
+        private Instant beginInstant;
+        private long durationNanos;
+        private long requests;
+        private long inFlightRequests;
+        private long responses1xx;
+        private long responses2xx;
+        private long responses3xx;
+        private long responses4xx;
+        private long responses5xx;
+        private long failures;
+        private long sentBytes;
+        private long recvBytes;
+        private long intervalSentBytes;
+        private long intervalRecvBytes;
+        private long cpuTime;
+        private long responseTimeCount;
+        private long responseTimeP50;
+        private long responseTimeP99;
+        private long responseTimeMax;
+        private long queuedRequests;
+        private long schedulingLag;
+        private int threads;
+        private int fileDescriptors;
+        private long openedConnections;
+        private long closedConnections;
+        private long connections;
+        private long streamQueuedRequests;
+        private long sessionStallTime;
+        private long streamStallTime;
+        private final Map<String, Long> threadCPUTimes = ThreadCPUSampler.newGroups();
+
+        public Interval() {
+        }
+
+        private Interval(Report report, Sample previous, Sample current, Histogram histogram) {
+            beginInstant = report.beginInstant.plusNanos(previous.time - report.beginTime);
+            durationNanos = current.time - previous.time;
+            requests = current.sentRequests - previous.sentRequests;
+            inFlightRequests = current.inFlightRequests;
+            responses1xx = current.responses1xx - previous.responses1xx;
+            responses2xx = current.responses2xx - previous.responses2xx;
+            responses3xx = current.responses3xx - previous.responses3xx;
+            responses4xx = current.responses4xx - previous.responses4xx;
+            responses5xx = current.responses5xx - previous.responses5xx;
+            failures = current.failures - previous.failures;
+            sentBytes = current.sentBytes;
+            recvBytes = current.recvBytes;
+            intervalSentBytes = current.sentBytes - previous.sentBytes;
+            intervalRecvBytes = current.recvBytes - previous.recvBytes;
+            cpuTime = current.cpuTime - previous.cpuTime;
+            responseTimeCount = histogram.getTotalCount();
+            responseTimeP50 = histogram.getValueAtPercentile(50);
+            responseTimeP99 = histogram.getValueAtPercentile(99);
+            responseTimeMax = histogram.getMaxValue();
+            queuedRequests = current.queuedRequests;
+            long resources = current.sentResources - previous.sentResources;
+            schedulingLag = resources == 0 ? 0 : (current.schedulingLag - previous.schedulingLag) / resources;
+            threads = current.threads;
+            fileDescriptors = current.fileDescriptors;
+            openedConnections = current.openedConnections - previous.openedConnections;
+            closedConnections = current.closedConnections - previous.closedConnections;
+            connections = current.connections;
+            streamQueuedRequests = current.streamQueuedRequests;
+            sessionStallTime = current.sessionStallTime - previous.sessionStallTime;
+            streamStallTime = current.streamStallTime - previous.streamStallTime;
+        }
+
+        private static List<Interval> merge(Instant readyInstant, List<Report> reports, boolean sameProcess) {
+            // Use the sample period of the first report that has been sampled periodically.
+            long period = reports.stream()
+                    .map(Report::getIntervals)
+                    .filter(intervals -> intervals.size() > 1)
+                    .mapToLong(intervals -> intervals.get(0).durationNanos)
+                    .findFirst()
+                    .orElse(0);
+            // Sort by alignment slot, then merge the intervals of the same slot.
+            SortedMap<Long, Interval> slots = new TreeMap<>();
+            for (Report report : reports) {
+                for (Interval interval : report.getIntervals()) {
+                    long offset = Duration.between(readyInstant, interval.getBeginInstant()).toNanos();
+                    long slot = period == 0 ? 0 : Math.round((double)offset / period);
+                    // The first report's interval, if any, is the first merge argument.
+                    slots.merge(slot, interval, (i1, i2) -> merge(i1, i2, sameProcess));
+                }
+            }
+            return new ArrayList<>(slots.values());
+        }
+
+        /**
+         * <p>Merges the given intervals, typically the intervals sampled at the same
+         * time by multiple load generators that run concurrently, into one interval.</p>
+         * <p>Counts are summed, while the response time percentiles of the
+         * merged interval are the maximum of the percentiles of the given intervals.</p>
+         *
+         * @param intervals the intervals to merge
+         * @return an interval that merges the given intervals
+         */
+        public static Interval merge(List<Interval> intervals) {
+            if (intervals.isEmpty()) {
+                throw new IllegalArgumentException("no intervals to merge");
+            }
+            return intervals.stream().reduce((i1, i2) -> merge(i1, i2, false)).get();
+        }
+
+        /**
+         * <p>Composes the interval of a loader and the interval of a probe,
+         * sampled at the same time in the same process.</p>
+         *
+         * @param loader the interval of the loader
+         * @param probe the interval of the probe
+         * @return an interval composing the loader and probe intervals
+         * @see Report#compose(Report, Report)
+         */
+        public static Interval compose(Interval loader, Interval probe) {
+            return merge(loader, probe, true);
+        }
+
+        private static Interval merge(Interval i1, Interval i2, boolean sameProcess) {
+            Interval result = new Interval();
+            result.beginInstant = i1.getBeginInstant().isBefore(i2.getBeginInstant()) ? i1.getBeginInstant() : i2.getBeginInstant();
+            Instant endInstant = i1.getEndInstant().isAfter(i2.getEndInstant()) ? i1.getEndInstant() : i2.getEndInstant();
+            result.durationNanos = Duration.between(result.beginInstant, endInstant).toNanos();
+            result.requests = i1.requests + i2.requests;
+            result.inFlightRequests = i1.inFlightRequests + i2.inFlightRequests;
+            result.responses1xx = i1.responses1xx + i2.responses1xx;
+            result.responses2xx = i1.responses2xx + i2.responses2xx;
+            result.responses3xx = i1.responses3xx + i2.responses3xx;
+            result.responses4xx = i1.responses4xx + i2.responses4xx;
+            result.responses5xx = i1.responses5xx + i2.responses5xx;
+            result.failures = i1.failures + i2.failures;
+            result.sentBytes = i1.sentBytes + i2.sentBytes;
+            result.recvBytes = i1.recvBytes + i2.recvBytes;
+            result.intervalSentBytes = i1.intervalSentBytes + i2.intervalSentBytes;
+            result.intervalRecvBytes = i1.intervalRecvBytes + i2.intervalRecvBytes;
+            result.cpuTime = sameProcess ? i1.cpuTime : i1.cpuTime + i2.cpuTime;
+            result.responseTimeCount = i1.responseTimeCount + i2.responseTimeCount;
+            result.responseTimeP50 = Math.max(i1.responseTimeP50, i2.responseTimeP50);
+            result.responseTimeP99 = Math.max(i1.responseTimeP99, i2.responseTimeP99);
+            result.responseTimeMax = Math.max(i1.responseTimeMax, i2.responseTimeMax);
+            result.queuedRequests = i1.queuedRequests + i2.queuedRequests;
+            result.schedulingLag = Math.max(i1.schedulingLag, i2.schedulingLag);
+            result.threads = sameProcess ? i1.threads : i1.threads + i2.threads;
+            result.fileDescriptors = sameProcess ? i1.fileDescriptors : i1.fileDescriptors + i2.fileDescriptors;
+            result.openedConnections = i1.openedConnections + i2.openedConnections;
+            result.closedConnections = i1.closedConnections + i2.closedConnections;
+            result.connections = i1.connections + i2.connections;
+            result.streamQueuedRequests = i1.streamQueuedRequests + i2.streamQueuedRequests;
+            result.sessionStallTime = i1.sessionStallTime + i2.sessionStallTime;
+            result.streamStallTime = i1.streamStallTime + i2.streamStallTime;
+            i1.threadCPUTimes.forEach((group, cpuTime) -> result.threadCPUTimes.merge(group, cpuTime, Long::sum));
+            if (!sameProcess) {
+                i2.threadCPUTimes.forEach((group, cpuTime) -> result.threadCPUTimes.merge(group, cpuTime, Long::sum));
+            }
+            return result;
+        }
+
+        /**
+         * @return the Instant this interval begins
+         */
+        public Instant getBeginInstant() {
+            return beginInstant;
+        }
+
+        /**
+         * @return the Instant this interval ends
+         */
+        public Instant getEndInstant() {
+            return beginInstant.plusNanos(durationNanos);
+        }
+
+        /**
+         * @return the Duration of this interval
+         */
+        public Duration getDuration() {
+            return Duration.ofNanos(durationNanos);
+        }
+
+        /**
+         * @return the number of requests sent in this interval
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return the request rate in this interval, in requests/s
+         */
+        public double getRequestRate() {
+            return Report.nanoRate(getRequests(), durationNanos);
+        }
+
+        /**
+         * @return the number of responses received in this interval
+         */
+        public long getResponses() {
+            return responses1xx + responses2xx + responses3xx + responses4xx + responses5xx;
+        }
+
+        /**
+         * @return the response rate in this interval, in responses/s
+         */
+        public double getResponseRate() {
+            return Report.nanoRate(getResponses(), durationNanos);
+        }
+
+        /**
+         * @return the number of requests in flight at the end of this interval
+         */
+        public long getInFlightRequests() {
+            return inFlightRequests;
+        }
+
+        /**
+         * @return the number of HTTP 1xx responses in this interval
+         */
+        public long getResponses1xx() {
+            return responses1xx;
+        }
+
+        /**
+         * @return the number of HTTP 2xx responses in this interval
+         */
+        public long getResponses2xx() {
+            return responses2xx;
+        }
+
+        /**
+         * @return the number of HTTP 3xx responses in this interval
+         */
+        public long getResponses3xx() {
+            return responses3xx;
+        }
+
+        /**
+         * @return the number of HTTP 4xx responses in this interval
+         */
+        public long getResponses4xx() {
+            return responses4xx;
+        }
+
+        /**
+         * @return the number of HTTP 5xx responses in this interval
+         */
+        public long getResponses5xx() {
+            return responses5xx;
+        }
+
+        /**
+         * @return the number of failures in this interval
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the number of bytes sent in this interval
+         */
+        public long getSentBytes() {
+            return intervalSentBytes;
+        }
+
+        /**
+         * @return the rate of bytes sent in this interval, in bytes/s
+         */
+        public double getSentBytesRate() {
+            return Report.nanoRate(getSentBytes(), durationNanos);
+        }
+
+        /**
+         * @return the number of bytes received in this interval
+         */
+        public long getReceivedBytes() {
+            return intervalRecvBytes;
+        }
+
+        /**
+         * @return the rate of bytes received in this interval, in bytes/s
+         */
+        public double getReceivedBytesRate() {
+            return Report.nanoRate(getReceivedBytes(), durationNanos);
+        }
+
+        /**
+         * @return the average CPU load in this interval
+         * @see Report#getAverageCPUPercent()
+         */
+        public double getAverageCPUPercent() {
+            return durationNanos == 0 ? 0 : 100D * cpuTime / durationNanos;
+        }
+
+        /**
+         * @return the number of response times recorded in this interval
+         */
+        public long getResponseTimeCount() {
+            return responseTimeCount;
+        }
+
+        /**
+         * @return the median response time in this interval, in nanoseconds
+         */
+        public long getResponseTimeP50() {
+            return responseTimeP50;
+        }
+
+        /**
+         * @return the 99th percentile response time in this interval, in nanoseconds
+         */
+        public long getResponseTimeP99() {
+            return responseTimeP99;
+        }
+
+        /**
+         * @return the maximum response time in this interval, in nanoseconds
+         */
+        public long getResponseTimeMax() {
+            return responseTimeMax;
+        }
+
+        /**
+         * @return the number of requests queued, waiting for a connection, at the end of this interval
+         */
+        public long getQueuedRequests() {
+            return queuedRequests;
+        }
+
+        /**
+         * @return the average scheduling lag in this interval, in nanoseconds
+         * @see LoadGenerator#getSchedulingLag()
+         */
+        public long getSchedulingLag() {
+            return schedulingLag;
+        }
+
+        /**
+         * @return the CPU time of the load generator threads in this interval, in nanoseconds, by thread group
+         * @see Report#getThreadCPUTimes()
+         */
+        public Map<String, Long> getThreadCPUTimes() {
+            return Collections.unmodifiableMap(threadCPUTimes);
+        }
+
+        /**
+         * @param group the thread group
+         * @return the average CPU load of the given thread group in this interval, across all cores
+         */
+        public double getThreadCPUPercent(String group) {
+            return durationNanos == 0 ? 0 : 100D * threadCPUTimes.getOrDefault(group, 0L) / durationNanos;
+        }
+
+        /**
+         * @return the number of threads of the load generator process at the end of this interval
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * @return the number of file descriptors of the load generator process
+         * at the end of this interval, or -1 if not available
+         */
+        public int getFileDescriptors() {
+            return fileDescriptors;
+        }
+
+        /**
+         * @return the number of connections opened in this interval
+         */
+        public long getOpenedConnections() {
+            return openedConnections;
+        }
+
+        /**
+         * @return the rate of connections opened in this interval, in connections/s
+         */
+        public double getOpenedConnectionRate() {
+            return Report.nanoRate(getOpenedConnections(), durationNanos);
+        }
+
+        /**
+         * @return the number of connections closed in this interval
+         */
+        public long getClosedConnections() {
+            return closedConnections;
+        }
+
+        /**
+         * @return the rate of connections closed in this interval, in connections/s
+         */
+        public double getClosedConnectionRate() {
+            return Report.nanoRate(getClosedConnections(), durationNanos);
+        }
+
+        /**
+         * @return the number of open connections at the end of this interval
+         */
+        public long getConnections() {
+            return connections;
+        }
+
+        /**
+         * @return the number of requests queued, waiting for a stream, at the end of this interval
+         * @see LoadGenerator#getStreamQueuedRequests()
+         */
+        public long getStreamQueuedRequests() {
+            return streamQueuedRequests;
+        }
+
+        /**
+         * @return the time HTTP/2 sessions have been stalled by flow control in this interval, in nanoseconds
+         * @see HTTP2Statistics#getSessionStallTime()
+         */
+        public long getSessionStallTime() {
+            return sessionStallTime;
+        }
+
+        /**
+         * @return the time HTTP/2 streams have been stalled by flow control in this interval, in nanoseconds
+         * @see HTTP2Statistics#getStreamStallTime()
+         */
+        public long getStreamStallTime() {
+            return streamStallTime;
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("beginInstant", getBeginInstant().atZone(ZoneOffset.UTC).toString());
+            out.add("endInstant", getEndInstant().atZone(ZoneOffset.UTC).toString());
+            out.add("duration", getDuration().toMillis());
+            out.add("requests", getRequests());
+            out.add("inFlightRequests", getInFlightRequests());
+            out.add("failures", getFailures());
+            out.add("1xx", getResponses1xx());
+            out.add("2xx", getResponses2xx());
+            out.add("3xx", getResponses3xx());
+            out.add("4xx", getResponses4xx());
+            out.add("5xx", getResponses5xx());
+            out.add("sentBytes", getSentBytes());
+            out.add("receivedBytes", getReceivedBytes());
+            out.add("cpuTime", cpuTime);
+            out.add("averageCPUPercent", getAverageCPUPercent());
+            out.add("responseTimeCount", getResponseTimeCount());
+            out.add("responseTimeP50", getResponseTimeP50());
+            out.add("responseTimeP99", getResponseTimeP99());
+            out.add("responseTimeMax", getResponseTimeMax());
+            out.add("queuedRequests", getQueuedRequests());
+            out.add("schedulingLag", getSchedulingLag());
+            out.add("threads", getThreads());
+            out.add("fileDescriptors", getFileDescriptors());
+            out.add("threadCPUTime", getThreadCPUTimes());
+            out.add("openedConnections", getOpenedConnections());
+            out.add("closedConnections", getClosedConnections());
+            out.add("connections", getConnections());
+            out.add("streamQueuedRequests", getStreamQueuedRequests());
+            out.add("sessionStallTime", getSessionStallTime());
+            out.add("streamStallTime", getStreamStallTime());
+        }
+
+        @Override
+        public void fromJSON(Map map) {
+            beginInstant = Report.asInstant(map, "beginInstant");
+            durationNanos = Duration.between(beginInstant, Report.asInstant(map, "endInstant")).toNanos();
+            requests = Report.asLong(map, "requests");
+            inFlightRequests = Report.asLong(map, "inFlightRequests");
+            failures = Report.asLong(map, "failures");
+            responses1xx = Report.asLong(map, "1xx");
+            responses2xx = Report.asLong(map, "2xx");
+            responses3xx = Report.asLong(map, "3xx");
+            responses4xx = Report.asLong(map, "4xx");
+            responses5xx = Report.asLong(map, "5xx");
+            intervalSentBytes = sentBytes = Report.asLong(map, "sentBytes");
+            intervalRecvBytes = recvBytes = Report.asLong(map, "receivedBytes");
+            cpuTime = Report.asLong(map, "cpuTime");
+            responseTimeCount = Report.asLong(map, "responseTimeCount");
+            responseTimeP50 = Report.asLong(map, "responseTimeP50");
+            responseTimeP99 = Report.asLong(map, "responseTimeP99");
+            responseTimeMax = Report.asLong(map, "responseTimeMax");
+            queuedRequests = Report.asLong(map, "queuedRequests");
+            schedulingLag = Report.asLong(map, "schedulingLag");
+            threads = (int)Report.asLong(map, "threads");
+            fileDescriptors = (int)Report.asLong(map, "fileDescriptors");
+            Report.readThreadCPUTimes(map, threadCPUTimes);
+            openedConnections = Report.asLong(map, "openedConnections");
+            closedConnections = Report.asLong(map, "closedConnections");
+            connections = Report.asLong(map, "connections");
+            streamQueuedRequests = Report.asLong(map, "streamQueuedRequests");
+            sessionStallTime = Report.asLong(map, "sessionStallTime");
+            streamStallTime = Report.asLong(map, "streamStallTime");
+        }
+
+        void write(DataOutput output) throws IOException {
+            StatsFile.writeVarLong(output, beginInstant.getEpochSecond());
+            StatsFile.writeVarLong(output, beginInstant.getNano());
+            StatsFile.writeVarLong(output, durationNanos);
+            StatsFile.writeVarLong(output, requests);
+            StatsFile.writeVarLong(output, inFlightRequests);
+            StatsFile.writeVarLong(output, responses1xx);
+            StatsFile.writeVarLong(output, responses2xx);
+            StatsFile.writeVarLong(output, responses3xx);
+            StatsFile.writeVarLong(output, responses4xx);
+            StatsFile.writeVarLong(output, responses5xx);
+            StatsFile.writeVarLong(output, failures);
+            StatsFile.writeVarLong(output, intervalSentBytes);
+            StatsFile.writeVarLong(output, intervalRecvBytes);
+            StatsFile.writeVarLong(output, cpuTime);
+            StatsFile.writeVarLong(output, responseTimeCount);
+            StatsFile.writeVarLong(output, responseTimeP50);
+            StatsFile.writeVarLong(output, responseTimeP99);
+            StatsFile.writeVarLong(output, responseTimeMax);
+            StatsFile.writeVarLong(output, queuedRequests);
+            StatsFile.writeVarLong(output, schedulingLag);
+            StatsFile.writeVarLong(output, threads);
+            StatsFile.writeVarLong(output, fileDescriptors);
+            Report.writeThreadCPUTimes(output, threadCPUTimes);
+            StatsFile.writeVarLong(output, openedConnections);
+            StatsFile.writeVarLong(output, closedConnections);
+            StatsFile.writeVarLong(output, connections);
+            StatsFile.writeVarLong(output, streamQueuedRequests);
+            StatsFile.writeVarLong(output, sessionStallTime);
+            StatsFile.writeVarLong(output, streamStallTime);
+        }
+
+        static Interval read(DataInputStream input) throws IOException {
+            Interval result = new Interval();
+            result.beginInstant = Instant.ofEpochSecond(StatsFile.readVarLong(input), StatsFile.readVarLong(input));
+            result.durationNanos = StatsFile.readVarLong(input);
+            result.requests = StatsFile.readVarLong(input);
+            result.inFlightRequests = StatsFile.readVarLong(input);
+            result.responses1xx = StatsFile.readVarLong(input);
+            result.responses2xx = StatsFile.readVarLong(input);
+            result.responses3xx = StatsFile.readVarLong(input);
+            result.responses4xx = StatsFile.readVarLong(input);
+            result.responses5xx = StatsFile.readVarLong(input);
+            result.failures = StatsFile.readVarLong(input);
+            result.intervalSentBytes = result.sentBytes = StatsFile.readVarLong(input);
+            result.intervalRecvBytes = result.recvBytes = StatsFile.readVarLong(input);
+            result.cpuTime = StatsFile.readVarLong(input);
+            result.responseTimeCount = StatsFile.readVarLong(input);
+            result.responseTimeP50 = StatsFile.readVarLong(input);
+            result.responseTimeP99 = StatsFile.readVarLong(input);
+            result.responseTimeMax = StatsFile.readVarLong(input);
+            // Fields added after the first version of the binary format.
+            if (input.available() > 0) {
+                result.queuedRequests = StatsFile.readVarLong(input);
+                result.schedulingLag = StatsFile.readVarLong(input);
+                result.threads = (int)StatsFile.readVarLong(input);
+                result.fileDescriptors = (int)StatsFile.readVarLong(input);
+            }
+            if (input.available() > 0) {
+                Report.readThreadCPUTimes(input, result.threadCPUTimes);
+            }
+            if (input.available() > 0) {
+                result.openedConnections = StatsFile.readVarLong(input);
+                result.closedConnections = StatsFile.readVarLong(input);
+                result.connections = StatsFile.readVarLong(input);
+            }
+            if (input.available() > 0) {
+                result.streamQueuedRequests = StatsFile.readVarLong(input);
+                result.sessionStallTime = StatsFile.readVarLong(input);
+                result.streamStallTime = StatsFile.readVarLong(input);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%x[%s,%dms]", getClass().getSimpleName(), hashCode(), getBeginInstant(), getDuration().toMillis());
+        }
+    }
+
+    /**
+     * <p>Information about the health of the load generator, to detect load runs
+     * where the load generator itself, rather than the server, limited the throughput.</p>
+     * <p>The load generator is deemed saturated when:</p>
+     * <ul>
+     * <li>the request rate is less than 95% of the nominal request rate, or</li>
+     * <li>the average {@link LoadGenerator#getSchedulingLag() scheduling lag} is more than 1 ms, or</li>
+     * <li>requests have been {@link LoadGenerator#getRejectedRequests() rejected} by the load generator, or</li>
+     * <li>the load generator CPU load is more than 90% of the available processors.</li>
+     * </ul>
+     * <p>Maximum values are sampled at every {@link Interval}, so periodic
+     * sampling should be enabled to have accurate maximum values.</p>
+     *
+     * @see ReportListener#setSamplePeriod(long)
+     */
+    public static class GeneratorHealth implements JSON.Convertible {
+        private static final double MIN_RATE_RATIO = 0.95;
+        private static final long MAX_SCHEDULING_LAG = TimeUnit.MILLISECONDS.toNanos(1);
+        private static final double MAX_CPU_RATIO = 0.9;
+
+        private final Report report;
+        private volatile double nominalRequestRate;
+        private volatile long schedulingLag;
+        private volatile long maxSchedulingLag;
+        private volatile long rejectedRequests;
+        private volatile long maxQueuedRequests;
+        private volatile long maxDestinationQueuedRequests;
+        private volatile int maxThreads;
+        private volatile int maxFileDescriptors;
+
+        private GeneratorHealth(Report report) {
+            this.report = report;
+        }
+
+        private static void merge(GeneratorHealth result, List<Report> reports) {
+            result.maxFileDescriptors = -1;
+            for (Report report : reports) {
+                GeneratorHealth health = report.getGeneratorHealth();
+                result.nominalRequestRate += health.getNominalRequestRate();
+                result.schedulingLag = Math.max(result.schedulingLag, health.getSchedulingLag());
+                result.maxSchedulingLag = Math.max(result.maxSchedulingLag, health.getMaxSchedulingLag());
+                result.rejectedRequests += health.getRejectedRequests();
+                result.maxQueuedRequests += health.getMaxQueuedRequests();
+                result.maxDestinationQueuedRequests = Math.max(result.maxDestinationQueuedRequests, health.getMaxDestinationQueuedRequests());
+                result.maxThreads = Math.max(result.maxThreads, health.getMaxThreads());
+                result.maxFileDescriptors = Math.max(result.maxFileDescriptors, health.getMaxFileDescriptors());
+            }
+        }
+
+        /**
+         * <p>The nominal request rate is averaged over the recording, so that
+         * a rate ramp-up overlapping the recording lowers the nominal request rate.</p>
+         *
+         * @return the nominal request rate, in requests/s, or zero if the request rate is not limited
+         */
+        public double getNominalRequestRate() {
+            return nominalRequestRate;
+        }
+
+        /**
+         * @return the average scheduling lag during the recording, in nanoseconds
+         * @see LoadGenerator#getSchedulingLag()
+         */
+        public long getSchedulingLag() {
+            return schedulingLag;
+        }
+
+        /**
+         * @return the maximum average scheduling lag of the intervals, in nanoseconds
+         */
+        public long getMaxSchedulingLag() {
+            return maxSchedulingLag;
+        }
+
+        /**
+         * @return the number of requests rejected by the load generator during the recording
+         */
+        public long getRejectedRequests() {
+            return rejectedRequests;
+        }
+
+        /**
+         * @return the maximum number of requests queued, across all destinations
+         */
+        public long getMaxQueuedRequests() {
+            return maxQueuedRequests;
+        }
+
+        /**
+         * @return the maximum number of requests queued in a single destination
+         */
+        public long getMaxDestinationQueuedRequests() {
+            return maxDestinationQueuedRequests;
+        }
+
+        /**
+         * @return the maximum number of threads of the load generator process
+         */
+        public int getMaxThreads() {
+            return maxThreads;
+        }
+
+        /**
+         * @return the maximum number of file descriptors of the load generator process, or -1 if not available
+         */
+        public int getMaxFileDescriptors() {
+            return maxFileDescriptors;
+        }
+
+        /**
+         * @return the load generator CPU time per request, in nanoseconds
+         */
+        public long getCPUTimePerRequest() {
+            long requests = report.getRequests();
+            return requests == 0 ? 0 : (report.completeCPUTime - report.readyCPUTime) / requests;
+        }
+
+        /**
+         * @return the reasons why the load generator is deemed saturated, or an empty list if it is healthy
+         */
+        public List<String> getReasons() {
+            List<String> result = new ArrayList<>();
+            double nominalRate = getNominalRequestRate();
+            double requestRate = report.getRequestRate();
+            if (nominalRate > 0 && requestRate < nominalRate * MIN_RATE_RATIO) {
+                result.add(String.format("request rate %.3f requests/s is below the nominal request rate %.3f requests/s", requestRate, nominalRate));
+            }
+            if (getSchedulingLag() > MAX_SCHEDULING_LAG) {
+                result.add(String.format("average scheduling lag %.3f ms is above %d ms", getSchedulingLag() / 1_000_000D, TimeUnit.NANOSECONDS.toMillis(MAX_SCHEDULING_LAG)));
+            }
+            if (getRejectedRequests() > 0) {
+                result.add(String.format("%d requests rejected by the load generator, max requests queued exceeded", getRejectedRequests()));
+            }
+            double cpuLoad = report.getAverageCPUPercent();
+            double maxCPULoad = report.getAvailableProcessors() * 100 * MAX_CPU_RATIO;
+            if (cpuLoad > maxCPULoad) {
+                result.add(String.format("average cpu load %.3f%% is above %.0f%%", cpuLoad, maxCPULoad));
+            }
+            return result;
+        }
+
+        /**
+         * @return whether the load generator limited the throughput of the load run
+         * @see #getReasons()
+         */
+        public boolean isSaturated() {
+            return !getReasons().isEmpty();
+        }
+
+        void write(DataOutput output) throws IOException {
+            output.writeDouble(nominalRequestRate);
+            StatsFile.writeVarLong(output, schedulingLag);
+            StatsFile.writeVarLong(output, maxSchedulingLag);
+            StatsFile.writeVarLong(output, rejectedRequests);
+            StatsFile.writeVarLong(output, maxQueuedRequests);
+            StatsFile.writeVarLong(output, maxDestinationQueuedRequests);
+            StatsFile.writeVarLong(output, maxThreads);
+            StatsFile.writeVarLong(output, maxFileDescriptors);
+        }
+
+        void read(DataInput input) throws IOException {
+            nominalRequestRate = input.readDouble();
+            schedulingLag = StatsFile.readVarLong(input);
+            maxSchedulingLag = StatsFile.readVarLong(input);
+            rejectedRequests = StatsFile.readVarLong(input);
+            maxQueuedRequests = StatsFile.readVarLong(input);
+            maxDestinationQueuedRequests = StatsFile.readVarLong(input);
+            maxThreads = (int)StatsFile.readVarLong(input);
+            maxFileDescriptors = (int)StatsFile.readVarLong(input);
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("verdict", isSaturated() ? "saturated" : "healthy");
+            out.add("reasons", getReasons());
+            out.add("nominalRequestRate", getNominalRequestRate());
+            out.add("schedulingLag", getSchedulingLag());
+            out.add("maxSchedulingLag", getMaxSchedulingLag());
+            out.add("rejectedRequests", getRejectedRequests());
+            out.add("maxQueuedRequests", getMaxQueuedRequests());
+            out.add("maxDestinationQueuedRequests", getMaxDestinationQueuedRequests());
+            out.add("cpuTimePerRequest", getCPUTimePerRequest());
+            out.add("maxThreads", getMaxThreads());
+            out.add("maxFileDescriptors", getMaxFileDescriptors());
+        }
+
+        @Override
+        public void fromJSON(Map map) {
+            // The verdict and the reasons are computed.
+            nominalRequestRate = Report.asDouble(map, "nominalRequestRate");
+            schedulingLag = Report.asLong(map, "schedulingLag");
+            maxSchedulingLag = Report.asLong(map, "maxSchedulingLag");
+            rejectedRequests = Report.asLong(map, "rejectedRequests");
+            maxQueuedRequests = Report.asLong(map, "maxQueuedRequests");
+            maxDestinationQueuedRequests = Report.asLong(map, "maxDestinationQueuedRequests");
+            maxThreads = (int)Report.asLong(map, "maxThreads");
+            maxFileDescriptors = (int)Report.asLong(map, "maxFileDescriptors");
+        }
+    }
+
+    /**
+     * <p>Metrics about the connections opened by the load generator, to verify
+     * how the server handles connections, for example its idle timeout or
+     * the maximum number of requests it allows per connection.</p>
+     * <p>Connections are accounted from the {@link LoadGenerator.BeginListener begin event},
+     * so that connections opened during warmup are included.
+     * Connections that are still open when the recording completes are accounted in the
+     * lifetime and requests histograms with the values they have at that time.</p>
+     */
+    public static class ConnectionMetrics implements JSON.Convertible {
+        private final LongAdder openedConnections = new LongAdder();
+        private final LongAdder closedConnections = new LongAdder();
+        private final LongAdder connectFailures = new LongAdder();
+        private final AtomicInteger maxConnections = new AtomicInteger();
+        private volatile Histogram connectTimeHistogram = newHistogram();
+        private volatile Histogram lifetimeHistogram = newHistogram();
+        private volatile Histogram requestsHistogram = newHistogram();
+
+        private ConnectionMetrics() {
+        }
+
+        private static void merge(ConnectionMetrics result, List<Report> reports) {
+            for (Report report : reports) {
+                ConnectionMetrics metrics = report.getConnectionMetrics();
+                result.openedConnections.add(metrics.getOpenedConnections());
+                result.closedConnections.add(metrics.getClosedConnections());
+                result.connectFailures.add(metrics.getConnectFailures());
+                // The load generators run concurrently, so their connections add up.
+                result.maxConnections.addAndGet(metrics.getMaxConnections());
+                result.connectTimeHistogram.add(metrics.getConnectTimeHistogram());
+                result.lifetimeHistogram.add(metrics.getLifetimeHistogram());
+                result.requestsHistogram.add(metrics.getRequestsHistogram());
+            }
+        }
+
+        private static Histogram newHistogram() {
+            Histogram result = new Histogram(3);
+            result.setStartTimeStamp(0);
+            result.setEndTimeStamp(0);
+            return result;
+        }
+
+        /**
+         * @return the number of connections opened
+         */
+        public long getOpenedConnections() {
+            return openedConnections.longValue();
+        }
+
+        /**
+         * @return the number of connections closed before the recording completed
+         */
+        public long getClosedConnections() {
+            return closedConnections.longValue();
+        }
+
+        /**
+         * @return the number of connections that failed to be opened
+         */
+        public long getConnectFailures() {
+            return connectFailures.longValue();
+        }
+
+        /**
+         * @return the maximum number of concurrently open connections
+         */
+        public int getMaxConnections() {
+            return maxConnections.get();
+        }
+
+        /**
+         * <p>Returns the connect time histogram.</p>
+         * <p>The connect time is the time between a connection is requested,
+         * including the resolution of the server address, to the time the
+         * connection is opened, in nanoseconds.</p>
+         *
+         * @return the connect time histogram
+         * @see LoadGenerator.ConnectListener
+         */
+        public Histogram getConnectTimeHistogram() {
+            return connectTimeHistogram;
+        }
+
+        /**
+         * @return the histogram of the connection lifetimes, in nanoseconds
+         */
+        public Histogram getLifetimeHistogram() {
+            return lifetimeHistogram;
+        }
+
+        /**
+         * <p>Returns the histogram of the number of requests sent per connection.</p>
+         * <p>The histogram is empty when the connections do not count the
+         * requests they send, as it is the case for HTTP/2.</p>
+         *
+         * @return the histogram of the number of requests sent per connection
+         */
+        public Histogram getRequestsHistogram() {
+            return requestsHistogram;
+        }
+
+        void write(DataOutput output) throws IOException {
+            StatsFile.writeVarLong(output, getOpenedConnections());
+            StatsFile.writeVarLong(output, getClosedConnections());
+            StatsFile.writeVarLong(output, getConnectFailures());
+            StatsFile.writeVarLong(output, getMaxConnections());
+            StatsFile.writeHistogram(output, getConnectTimeHistogram());
+            StatsFile.writeHistogram(output, getLifetimeHistogram());
+            StatsFile.writeHistogram(output, getRequestsHistogram());
+        }
+
+        void read(DataInput input) throws IOException {
+            openedConnections.add(StatsFile.readVarLong(input));
+            closedConnections.add(StatsFile.readVarLong(input));
+            connectFailures.add(StatsFile.readVarLong(input));
+            maxConnections.set((int)StatsFile.readVarLong(input));
+            connectTimeHistogram = StatsFile.readHistogram(input);
+            lifetimeHistogram = StatsFile.readHistogram(input);
+            requestsHistogram = StatsFile.readHistogram(input);
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("openedConnections", getOpenedConnections());
+            out.add("closedConnections", getClosedConnections());
+            out.add("connectFailures", getConnectFailures());
+            out.add("maxConnections", getMaxConnections());
+            out.add("connectTimeHistogram", Report.toHistogramLog(getConnectTimeHistogram()));
+            out.add("lifetimeHistogram", Report.toHistogramLog(getLifetimeHistogram()));
+            out.add("requestsHistogram", Report.toHistogramLog(getRequestsHistogram()));
+        }
+
+        @Override
+        public void fromJSON(Map map) {
+            openedConnections.add(Report.asLong(map, "openedConnections"));
+            closedConnections.add(Report.asLong(map, "closedConnections"));
+            connectFailures.add(Report.asLong(map, "connectFailures"));
+            maxConnections.set((int)Report.asLong(map, "maxConnections"));
+            connectTimeHistogram = Report.asHistogram(map.get("connectTimeHistogram"));
+            lifetimeHistogram = Report.asHistogram(map.get("lifetimeHistogram"));
+            requestsHistogram = Report.asHistogram(map.get("requestsHistogram"));
+        }
+    }
+
+    /**
+     * <p>Metrics about HTTP/2 flow control and stream concurrency, to tell whether the
+     * throughput of an HTTP/2 load run is limited by flow control or by the server.</p>
+     * <p>The load generator is limited by flow control when the sessions or the
+     * streams are stalled, or by the server max concurrent streams when requests
+     * are queued waiting for a stream; the server may be limited by the load
+     * generator receive windows when the minimum receive windows reach zero.</p>
+     * <p>The metrics are only available when the load generator uses the
+     * {@link HTTP2ClientTransportBuilder HTTP/2 transport}.</p>
+     *
+     * @see HTTP2Statistics
+     */
+    public static class HTTP2Metrics implements JSON.Convertible {
+        private volatile long sessionStalls;
+        private volatile long sessionStallTime;
+        private volatile long streamStalls;
+        private volatile long streamStallTime;
+        private volatile long maxStreamQueuedRequests;
+        private volatile int maxConcurrentStreams;
+        private volatile int serverMaxConcurrentStreams = -1;
+        private volatile int serverInitialStreamWindow = -1;
+        private volatile int sessionRecvWindow = -1;
+        private volatile int streamRecvWindow = -1;
+        private volatile int minSessionRecvWindow = -1;
+        private volatile int minStreamRecvWindow = -1;
+
+        private HTTP2Metrics() {
+        }
+
+        private static void merge(HTTP2Metrics result, List<Report> reports) {
+            for (Report report : reports) {
+                HTTP2Metrics metrics = report.getHTTP2Metrics();
+                result.sessionStalls += metrics.getSessionStalls();
+                result.sessionStallTime += metrics.getSessionStallTime();
+                result.streamStalls += metrics.getStreamStalls();
+                result.streamStallTime += metrics.getStreamStallTime();
+                result.maxStreamQueuedRequests += metrics.getMaxStreamQueuedRequests();
+                result.maxConcurrentStreams = Math.max(result.maxConcurrentStreams, metrics.getMaxConcurrentStreams());
+                result.serverMaxConcurrentStreams = Math.max(result.serverMaxConcurrentStreams, metrics.getServerMaxConcurrentStreams());
+                result.serverInitialStreamWindow = Math.max(result.serverInitialStreamWindow, metrics.getServerInitialStreamWindow());
+                result.sessionRecvWindow = Math.max(result.sessionRecvWindow, metrics.getSessionRecvWindow());
+                result.streamRecvWindow = Math.max(result.streamRecvWindow, metrics.getStreamRecvWindow());
+                result.minSessionRecvWindow = minWindow(result.minSessionRecvWindow, metrics.getMinSessionRecvWindow());
+                result.minStreamRecvWindow = minWindow(result.minStreamRecvWindow, metrics.getMinStreamRecvWindow());
+            }
+        }
+
+        private static int minWindow(int w1, int w2) {
+            // A negative window means that it is not available.
+            if (w1 < 0) {
+                return w2;
+            }
+            if (w2 < 0) {
+                return w1;
+            }
+            return Math.min(w1, w2);
+        }
+
+        /**
+         * @return the number of times a session send window has been exhausted during recording
+         */
+        public long getSessionStalls() {
+            return sessionStalls;
+        }
+
+        /**
+         * @return the time sessions have been stalled by flow control during recording, in nanoseconds
+         */
+        public long getSessionStallTime() {
+            return sessionStallTime;
+        }
+
+        /**
+         * @return the number of times a stream send window has been exhausted during recording
+         */
+        public long getStreamStalls() {
+            return streamStalls;
+        }
+
+        /**
+         * @return the time streams have been stalled by flow control during recording, in nanoseconds
+         */
+        public long getStreamStallTime() {
+            return streamStallTime;
+        }
+
+        /**
+         * @return the maximum number of requests queued, waiting for a stream
+         * @see LoadGenerator#getStreamQueuedRequests()
+         */
+        public long getMaxStreamQueuedRequests() {
+            return maxStreamQueuedRequests;
+        }
+
+        /**
+         * @return the maximum number of concurrent streams opened in a single session
+         */
+        public int getMaxConcurrentStreams() {
+            return maxConcurrentStreams;
+        }
+
+        /**
+         * @return the server {@code SETTINGS_MAX_CONCURRENT_STREAMS}, or -1 if not available
+         */
+        public int getServerMaxConcurrentStreams() {
+            return serverMaxConcurrentStreams;
+        }
+
+        /**
+         * @return the server initial stream window, or -1 if not available
+         */
+        public int getServerInitialStreamWindow() {
+            return serverInitialStreamWindow;
+        }
+
+        /**
+         * @return the load generator session receive window, or -1 if not available
+         */
+        public int getSessionRecvWindow() {
+            return sessionRecvWindow;
+        }
+
+        /**
+         * @return the load generator stream receive window, or -1 if not available
+         */
+        public int getStreamRecvWindow() {
+            return streamRecvWindow;
+        }
+
+        /**
+         * @return the minimum session receive window observed, or -1 if not available
+         */
+        public int getMinSessionRecvWindow() {
+            return minSessionRecvWindow;
+        }
+
+        /**
+         * @return the minimum stream receive window observed, or -1 if not available
+         */
+        public int getMinStreamRecvWindow() {
+            return minStreamRecvWindow;
+        }
+
+        void write(DataOutput output) throws IOException {
+            StatsFile.writeVarLong(output, sessionStalls);
+            StatsFile.writeVarLong(output, sessionStallTime);
+            StatsFile.writeVarLong(output, streamStalls);
+            StatsFile.writeVarLong(output, streamStallTime);
+            StatsFile.writeVarLong(output, maxStreamQueuedRequests);
+            StatsFile.writeVarLong(output, maxConcurrentStreams);
+            StatsFile.writeVarLong(output, serverMaxConcurrentStreams);
+            StatsFile.writeVarLong(output, serverInitialStreamWindow);
+            StatsFile.writeVarLong(output, sessionRecvWindow);
+            StatsFile.writeVarLong(output, streamRecvWindow);
+            StatsFile.writeVarLong(output, minSessionRecvWindow);
+            StatsFile.writeVarLong(output, minStreamRecvWindow);
+        }
+
+        void read(DataInput input) throws IOException {
+            sessionStalls = StatsFile.readVarLong(input);
+            sessionStallTime = StatsFile.readVarLong(input);
+            streamStalls = StatsFile.readVarLong(input);
+            streamStallTime = StatsFile.readVarLong(input);
+            maxStreamQueuedRequests = StatsFile.readVarLong(input);
+            maxConcurrentStreams = (int)StatsFile.readVarLong(input);
+            serverMaxConcurrentStreams = (int)StatsFile.readVarLong(input);
+            serverInitialStreamWindow = (int)StatsFile.readVarLong(input);
+            sessionRecvWindow = (int)StatsFile.readVarLong(input);
+            streamRecvWindow = (int)StatsFile.readVarLong(input);
+            minSessionRecvWindow = (int)StatsFile.readVarLong(input);
+            minStreamRecvWindow = (int)StatsFile.readVarLong(input);
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("sessionStalls", getSessionStalls());
+            out.add("sessionStallTime", getSessionStallTime());
+            out.add("streamStalls", getStreamStalls());
+            out.add("streamStallTime", getStreamStallTime());
+            out.add("maxStreamQueuedRequests", getMaxStreamQueuedRequests());
+            out.add("maxConcurrentStreams", getMaxConcurrentStreams());
+            out.add("serverMaxConcurrentStreams", getServerMaxConcurrentStreams());
+            out.add("serverInitialStreamWindow", getServerInitialStreamWindow());
+            out.add("sessionRecvWindow", getSessionRecvWindow());
+            out.add("streamRecvWindow", getStreamRecvWindow());
+            out.add("minSessionRecvWindow", getMinSessionRecvWindow());
+            out.add("minStreamRecvWindow", getMinStreamRecvWindow());
+        }
+
+        @Override
+        public void fromJSON(Map map) {
+            sessionStalls = Report.asLong(map, "sessionStalls");
+            sessionStallTime = Report.asLong(map, "sessionStallTime");
+            streamStalls = Report.asLong(map, "streamStalls");
+            streamStallTime = Report.asLong(map, "streamStallTime");
+            maxStreamQueuedRequests = Report.asLong(map, "maxStreamQueuedRequests");
+            maxConcurrentStreams = (int)Report.asLong(map, "maxConcurrentStreams");
+            serverMaxConcurrentStreams = (int)Report.asLong(map, "serverMaxConcurrentStreams");
+            serverInitialStreamWindow = (int)Report.asLong(map, "serverInitialStreamWindow");
+            sessionRecvWindow = (int)Report.asLong(map, "sessionRecvWindow");
+            streamRecvWindow = (int)Report.asLong(map, "streamRecvWindow");
+            minSessionRecvWindow = (int)Report.asLong(map, "minSessionRecvWindow");
+            minStreamRecvWindow = (int)Report.asLong(map, "minStreamRecvWindow");
+        }
+    }
+
+    /**
+     * <p>Metrics about a {@link Scenario} of a workload mix, so that the
+     * scenarios can be compared, and their actual mix verified.</p>
+     * <p>The response time histogram is empty if the
+     * {@link #setRecordResponseTimes(boolean) recording of response times} is disabled.</p>
+     */
+    public static class ScenarioMetrics implements JSON.Convertible {
+        private final LongAdder trees = new LongAdder();
+        private final LongAdder responses = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private String name;
+        private int weight;
+        private volatile Histogram responseTimeHistogram = ConnectionMetrics.newHistogram();
+        private Recorder recorder;
+
+        private ScenarioMetrics() {
+        }
+
+        private ScenarioMetrics(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        private static void merge(Map<String, ScenarioMetrics> result, List<Report> reports) {
+            for (Report report : reports) {
+                for (ScenarioMetrics metrics : report.getScenarioMetrics().values()) {
+                    ScenarioMetrics merged = result.computeIfAbsent(metrics.getName(), name -> new ScenarioMetrics(name, metrics.getWeight()));
+                    merged.trees.add(metrics.getResourceTrees());
+                    merged.responses.add(metrics.getResponses());
+                    merged.failures.add(metrics.getFailures());
+                    merged.responseTimeHistogram.add(metrics.getResponseTimeHistogram());
+                }
+            }
+        }
+
+        /**
+         * @return the scenario name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the scenario weight
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return the number of resource trees of this scenario that completed successfully
+         */
+        public long getResourceTrees() {
+            return trees.longValue();
+        }
+
+        /**
+         * @return the number of responses to the requests of this scenario
+         */
+        public long getResponses() {
+            return responses.longValue();
+        }
+
+        /**
+         * @return the number of failed requests of this scenario
+         */
+        public long getFailures() {
+            return failures.longValue();
+        }
+
+        /**
+         * @return the response time histogram of the requests of this scenario, in nanoseconds
+         */
+        public Histogram getResponseTimeHistogram() {
+            return responseTimeHistogram;
+        }
+
+        void write(DataOutput output) throws IOException {
+            output.writeUTF(getName());
+            StatsFile.writeVarLong(output, getWeight());
+            StatsFile.writeVarLong(output, getResourceTrees());
+            StatsFile.writeVarLong(output, getResponses());
+            StatsFile.writeVarLong(output, getFailures());
+            StatsFile.writeHistogram(output, getResponseTimeHistogram());
+        }
+
+        static ScenarioMetrics read(DataInput input) throws IOException {
+            ScenarioMetrics result = new ScenarioMetrics(input.readUTF(), (int)StatsFile.readVarLong(input));
+            result.trees.add(StatsFile.readVarLong(input));
+            result.responses.add(StatsFile.readVarLong(input));
+            result.failures.add(StatsFile.readVarLong(input));
+            result.responseTimeHistogram = StatsFile.readHistogram(input);
+            return result;
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("name", getName());
+            out.add("weight", getWeight());
+            out.add("resourceTrees", getResourceTrees());
+            out.add("responses", getResponses());
+            out.add("failures", getFailures());
+            out.add("responseTimeHistogram", Report.toHistogramLog(getResponseTimeHistogram()));
+        }
+
+        @Override
+        public void fromJSON(Map map) {
+            name = (String)map.get("name");
+            weight = (int)Report.asLong(map, "weight");
+            trees.add(Report.asLong(map, "resourceTrees"));
+            responses.add(Report.asLong(map, "responses"));
+            failures.add(Report.asLong(map, "failures"));
+            responseTimeHistogram = Report.asHistogram(map.get("responseTimeHistogram"));
+        }
+    }
+
+    /**
+     * <p>Metrics about the requests and the connections to an {@link Origin},
+     * since connection costs and response times differ per origin, for example
+     * between a CDN host and an API host.</p>
+     */
+    public static class OriginMetrics implements JSON.Convertible {
+        private final LongAdder responses = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder connections = new LongAdder();
+        private final LongAdder connectFailures = new LongAdder();
+        private String name;
+        private String scheme;
+        private String host;
+        private int port;
+        private volatile Histogram responseTimeHistogram = ConnectionMetrics.newHistogram();
+        private volatile Histogram connectTimeHistogram = ConnectionMetrics.newHistogram();
+        private Recorder recorder;
+        private Recorder connectTimeRecorder;
+
+        private OriginMetrics() {
+        }
+
+        private OriginMetrics(String name, String scheme, String host, int port) {
+            this.name = name;
+            this.scheme = scheme;
+            this.host = host;
+            this.port = port;
+        }
+
+        private static void merge(Map<String, OriginMetrics> result, List<Report> reports) {
+            for (Report report : reports) {
+                for (OriginMetrics metrics : report.getOriginMetrics().values()) {
+                    OriginMetrics merged = result.computeIfAbsent(metrics.getName(), name -> new OriginMetrics(name, metrics.getScheme(), metrics.getHost(), metrics.getPort()));
+                    merged.responses.add(metrics.getResponses());
+                    merged.failures.add(metrics.getFailures());
+                    merged.connections.add(metrics.getConnections());
+                    merged.connectFailures.add(metrics.getConnectFailures());
+                    merged.responseTimeHistogram.add(metrics.getResponseTimeHistogram());
+                    merged.connectTimeHistogram.add(metrics.getConnectTimeHistogram());
+                }
+            }
+        }
+
+        /**
+         * @return the origin name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the origin scheme
+         */
+        public String getScheme() {
+            return scheme;
+        }
+
+        /**
+         * @return the origin host
+         */
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * @return the origin port
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * @return the number of responses to the requests to this origin
+         */
+        public long getResponses() {
+            return responses.longValue();
+        }
+
+        /**
+         * @return the number of failed requests to this origin
+         */
+        public long getFailures() {
+            return failures.longValue();
+        }
+
+        /**
+         * @return the number of connections opened to this origin
+         */
+        public long getConnections() {
+            return connections.longValue();
+        }
+
+        /**
+         * @return the number of connections to this origin that failed to be opened
+         */
+        public long getConnectFailures() {
+            return connectFailures.longValue();
+        }
+
+        /**
+         * @return the response time histogram of the requests to this origin, in nanoseconds
+         */
+        public Histogram getResponseTimeHistogram() {
+            return responseTimeHistogram;
+        }
+
+        /**
+         * @return the connect time histogram of the connections to this origin, in nanoseconds
+         * @see ConnectionMetrics#getConnectTimeHistogram()
+         */
+        public Histogram getConnectTimeHistogram() {
+            return connectTimeHistogram;
+        }
+
+        void write(DataOutput output) throws IOException {
+            output.writeUTF(getName());
+            output.writeUTF(getScheme());
+            output.writeUTF(getHost());
+            StatsFile.writeVarLong(output, getPort());
+            StatsFile.writeVarLong(output, getResponses());
+            StatsFile.writeVarLong(output, getFailures());
+            StatsFile.writeVarLong(output, getConnections());
+            StatsFile.writeVarLong(output, getConnectFailures());
+            StatsFile.writeHistogram(output, getResponseTimeHistogram());
+            StatsFile.writeHistogram(output, getConnectTimeHistogram());
+        }
+
+        static OriginMetrics read(DataInput input) throws IOException {
+            OriginMetrics result = new OriginMetrics(input.readUTF(), input.readUTF(), input.readUTF(), (int)StatsFile.readVarLong(input));
+            result.responses.add(StatsFile.readVarLong(input));
+            result.failures.add(StatsFile.readVarLong(input));
+            result.connections.add(StatsFile.readVarLong(input));
+            result.connectFailures.add(StatsFile.readVarLong(input));
+            result.responseTimeHistogram = StatsFile.readHistogram(input);
+            result.connectTimeHistogram = StatsFile.readHistogram(input);
+            return result;
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("name", getName());
+            out.add("scheme", getScheme());
+            out.add("host", getHost());
+            out.add("port", getPort());
+            out.add("responses", getResponses());
+            out.add("failures", getFailures());
+            out.add("connections", getConnections());
+            out.add("connectFailures", getConnectFailures());
+            out.add("responseTimeHistogram", Report.toHistogramLog(getResponseTimeHistogram()));
+            out.add("connectTimeHistogram", Report.toHistogramLog(getConnectTimeHistogram()));
+        }
+
+        @Override
+        public void fromJSON(Map map) {
+            name = (String)map.get("name");
+            scheme = (String)map.get("scheme");
+            host = (String)map.get("host");
+            port = (int)Report.asLong(map, "port");
+            responses.add(Report.asLong(map, "responses"));
+            failures.add(Report.asLong(map, "failures"));
+            connections.add(Report.asLong(map, "connections"));
+            connectFailures.add(Report.asLong(map, "connectFailures"));
+            responseTimeHistogram = Report.asHistogram(map.get("responseTimeHistogram"));
+            connectTimeHistogram = Report.asHistogram(map.get("connectTimeHistogram"));
+        }
+    }
+
+    /**
+     * <p>The distribution of the hits on the records of a {@link Feeder.Mode#ZIPF}
+     * feeder, typically a URL catalog, to verify the hot/cold skew of the load.</p>
+     * <p>Hits are counted per resource tree and grouped by popularity rank in
+     * decades: the first bucket counts the hits on the most popular record, the
+     * second bucket the hits on the records with rank 2 to 10, the third bucket
+     * the hits on the records with rank 11 to 100, and so on.</p>
+     */
+    public static class HitDistribution implements JSON.Convertible {
+        private String name;
+        private int records;
+        private double exponent;
+        private LongAdder[] hits;
+
+        private HitDistribution() {
+        }
+
+        private HitDistribution(String name, int records, double exponent) {
+            this.name = name;
+            this.records = records;
+            this.exponent = exponent;
+            this.hits = newHits(records <= 0 ? 1 : bucketOf(records - 1) + 1);
+        }
+
+        private static LongAdder[] newHits(int buckets) {
+            LongAdder[] result = new LongAdder[buckets];
+            for (int i = 0; i < buckets; ++i) {
+                result[i] = new LongAdder();
+            }
+            return result;
+        }
+
+        private static int bucketOf(int record) {
+            long rank = record + 1L;
+            int bucket = 0;
+            for (long limit = 1; rank > limit; limit *= 10) {
+                ++bucket;
+            }
+            return bucket;
+        }
+
+        private static void merge(Map<String, HitDistribution> result, List<Report> reports) {
+            for (Report report : reports) {
+                for (HitDistribution hits : report.getHitDistributions().values()) {
+                    HitDistribution merged = result.computeIfAbsent(hits.getName(), name -> new HitDistribution(name, hits.getRecords(), hits.getExponent()));
+                    long[] counts = hits.getHits();
+                    for (int i = 0; i < counts.length && i < merged.hits.length; ++i) {
+                        merged.hits[i].add(counts[i]);
+                    }
+                }
+            }
+        }
+
+        private void record(int record) {
+            hits[bucketOf(record)].increment();
+        }
+
+        /**
+         * @return the feeder name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the number of records of the feeder
+         */
+        public int getRecords() {
+            return records;
+        }
+
+        /**
+         * @return the exponent of the Zipf distribution of the feeder
+         */
+        public double getExponent() {
+            return exponent;
+        }
+
+        /**
+         * @return the hits per popularity decade, where the bucket at index {@code i}
+         * counts the hits on the records with rank in {@code (10^(i-1), 10^i]}
+         */
+        public long[] getHits() {
+            long[] result = new long[hits.length];
+            for (int i = 0; i < result.length; ++i) {
+                result[i] = hits[i].longValue();
+            }
+            return result;
+        }
+
+        void write(DataOutput output) throws IOException {
+            output.writeUTF(getName());
+            StatsFile.writeVarLong(output, getRecords());
+            output.writeDouble(getExponent());
+            long[] counts = getHits();
+            StatsFile.writeVarLong(output, counts.length);
+            for (long count : counts) {
+                StatsFile.writeVarLong(output, count);
+            }
+        }
+
+        static HitDistribution read(DataInput input) throws IOException {
+            HitDistribution result = new HitDistribution();
+            result.name = input.readUTF();
+            result.records = (int)StatsFile.readVarLong(input);
+            result.exponent = input.readDouble();
+            result.hits = newHits((int)StatsFile.readVarLong(input));
+            for (LongAdder hits : result.hits) {
+                hits.add(StatsFile.readVarLong(input));
+            }
+            return result;
+        }
+
+        @Override
+        public void toJSON(JSON.Output out) {
+            out.add("name", getName());
+            out.add("records", getRecords());
+            out.add("exponent", getExponent());
+            out.add("hits", getHits());
+        }
+
+        @Override
+        public void fromJSON(Map map) {
+            name = (String)map.get("name");
+            records = (int)Report.asLong(map, "records");
+            exponent = ((Number)map.get("exponent")).doubleValue();
+            Object[] counts = (Object[])map.get("hits");
+            hits = newHits(counts.length);
+            for (int i = 0; i < counts.length; ++i) {
+                hits[i].add(((Number)counts[i]).longValue());
+            }
+        }
+    }
+
+    /**
+     * <p>Listener for {@link Interval} events.</p>
+     * <p>Interval listeners must be added as beans of the {@link ReportListener}:</p>
+     * <pre>
+     * ReportListener listener = new ReportListener();
+     * listener.setSamplePeriod(1000);
+     * listener.addBean((ReportListener.IntervalListener)interval -&gt; ...);
+     * </pre>
+     * <p>Interval events are emitted by a single thread.</p>
+     */
+    public interface IntervalListener extends EventListener {
+        /**
+         * <p>Callback method invoked when an interval has been sampled.</p>
+         *
+         * @param interval the interval just sampled
+         */
+        public void onInterval(Interval interval);
+    }
+
+    private static class Sample {
+        private final long time;
+        private final long cpuTime;
+        private long sentRequests;
+        private long inFlightRequests;
+        private long responses1xx;
+        private long responses2xx;
+        private long responses3xx;
+        private long responses4xx;
+        private long responses5xx;
+        private long failures;
+        private long sentBytes;
+        private long recvBytes;
+        private long sentResources;
+        private long schedulingLag;
+        private long rejectedRequests;
+        private long queuedRequests;
+        private long destinationQueuedRequests;
+        private int threads;
+        private int fileDescriptors;
+        private long openedConnections;
+        private long closedConnections;
+        private long connections;
+        private long streamQueuedRequests;
+        private long sessionStalls;
+        private long sessionStallTime;
+        private long streamStalls;
+        private long streamStallTime;
+
+        private Sample(long time, long cpuTime) {
+            this.time = time;
+            this.cpuTime = cpuTime;
         }
     }
 }
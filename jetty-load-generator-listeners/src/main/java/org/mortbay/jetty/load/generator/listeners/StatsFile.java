@@ -0,0 +1,375 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.listeners;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.ServerInfo;
+
+/**
+ * <p>The statistics of a load run: the load generator configuration,
+ * the optional {@link ServerInfo} of the server under test, and the
+ * {@link ReportListener.Report report}.</p>
+ * <p>Statistics can be written in JSON format, via {@link JSON#toJSON(Object)},
+ * or in a compact binary format via {@link #write(OutputStream)}, and can be
+ * read back from either format via {@link #read(InputStream)}:</p>
+ * <pre>
+ * try (OutputStream output = Files.newOutputStream(path)) {
+ *     new StatsFile(generator.getConfig(), null, report).write(output);
+ * }
+ *
+ * StatsFile stats = StatsFile.read(path);
+ * Histogram responseTimes = stats.getReport().getResponseTimeHistogram();
+ * </pre>
+ * <p>The binary format is made of the magic bytes {@code JLGS}, a version byte,
+ * and a sequence of sections, each made of a type byte, the varint length of the
+ * section payload, and the payload.
+ * The configuration and the server information are stored as UTF-8 JSON,
+ * histograms as their start and end timestamps followed by the varint length
+ * and the bytes of their HdrHistogram compressed encoding, while counters and
+ * intervals are stored as varints.
+ * Each section is buffered in memory to compute its length, then written to
+ * the stream; readers skip sections they do not know, so that new sections
+ * can be added.</p>
+ * <p>Version 1 of the format stored the response time histogram section
+ * without the varint length of the compressed encoding; it is still readable.</p>
+ */
+public class StatsFile implements JSON.Convertible {
+    private static final byte[] MAGIC = {'J', 'L', 'G', 'S'};
+    private static final int VERSION = 2;
+    private static final int END = 0;
+    private static final int CONFIG = 1;
+    private static final int SERVER_INFO = 2;
+    private static final int REPORT = 3;
+    private static final int HISTOGRAM = 4;
+    private static final int INTERVAL = 5;
+    private static final int STATUS_CODES = 6;
+    private static final int FAILURE_CAUSES = 7;
+    private static final int GENERATOR_HEALTH = 8;
+    private static final int THREAD_CPU_TIMES = 9;
+    private static final int CONNECTIONS = 10;
+    private static final int HTTP2 = 11;
+    private static final int SCENARIO = 12;
+    private static final int HIT_DISTRIBUTION = 13;
+    private static final int SLOT_WAIT_TIME = 14;
+    private static final int ORIGIN = 15;
+
+    private LoadGenerator.Config config;
+    private ServerInfo serverInfo;
+    private ReportListener.Report report;
+
+    public StatsFile() {
+    }
+
+    /**
+     * @param config the load generator configuration
+     * @param serverInfo the server information, or null if not available
+     * @param report the load generator report
+     */
+    public StatsFile(LoadGenerator.Config config, ServerInfo serverInfo, ReportListener.Report report) {
+        this.config = config;
+        this.serverInfo = serverInfo;
+        this.report = report;
+    }
+
+    /**
+     * @return the load generator configuration
+     */
+    public LoadGenerator.Config getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the server information, or null if not available
+     */
+    public ServerInfo getServerInfo() {
+        return serverInfo;
+    }
+
+    /**
+     * @return the load generator report
+     */
+    public ReportListener.Report getReport() {
+        return report;
+    }
+
+    /**
+     * <p>Writes these statistics in binary format to the given stream.</p>
+     * <p>The stream is flushed but not closed.</p>
+     *
+     * @param stream the stream to write to
+     * @throws IOException if the write fails
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+        output.write(MAGIC);
+        output.writeByte(VERSION);
+        JSON json = new JSON();
+        writeSection(output, CONFIG, section -> section.write(json.toJSON(config).getBytes(StandardCharsets.UTF_8)));
+        if (serverInfo != null) {
+            writeSection(output, SERVER_INFO, section -> section.write(json.toJSON(serverInfo).getBytes(StandardCharsets.UTF_8)));
+        }
+        writeSection(output, REPORT, report::write);
+        writeSection(output, STATUS_CODES, report::writeStatusCodes);
+        writeSection(output, FAILURE_CAUSES, report::writeFailureCauses);
+        writeSection(output, GENERATOR_HEALTH, report.getGeneratorHealth()::write);
+        writeSection(output, THREAD_CPU_TIMES, report::writeThreadCPUTimes);
+        writeSection(output, CONNECTIONS, report.getConnectionMetrics()::write);
+        writeSection(output, HTTP2, report.getHTTP2Metrics()::write);
+        for (ReportListener.ScenarioMetrics scenario : report.getScenarioMetrics().values()) {
+            writeSection(output, SCENARIO, scenario::write);
+        }
+        for (ReportListener.OriginMetrics origin : report.getOriginMetrics().values()) {
+            writeSection(output, ORIGIN, origin::write);
+        }
+        for (ReportListener.HitDistribution hits : report.getHitDistributions().values()) {
+            writeSection(output, HIT_DISTRIBUTION, hits::write);
+        }
+        writeSection(output, SLOT_WAIT_TIME, section -> writeHistogram(section, report.getSlotWaitTimeHistogram()));
+        writeSection(output, HISTOGRAM, section -> writeHistogram(section, report.getResponseTimeHistogram()));
+        for (ReportListener.Interval interval : report.getIntervals()) {
+            writeSection(output, INTERVAL, interval::write);
+        }
+        output.writeByte(END);
+        output.flush();
+    }
+
+    private static void writeSection(DataOutputStream output, int type, SectionWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        output.writeByte(type);
+        writeVarLong(output, bytes.size());
+        bytes.writeTo(output);
+    }
+
+    /**
+     * <p>Reads statistics in binary or JSON format from the given file.</p>
+     *
+     * @param path the file to read
+     * @return the statistics read from the file
+     * @throws IOException if the read fails or the file format is invalid
+     */
+    public static StatsFile read(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(path)) {
+            return read(input);
+        }
+    }
+
+    /**
+     * <p>Reads statistics in binary or JSON format from the given stream.</p>
+     *
+     * @param stream the stream to read from
+     * @return the statistics read from the stream
+     * @throws IOException if the read fails or the format is invalid
+     */
+    public static StatsFile read(InputStream stream) throws IOException {
+        BufferedInputStream input = new BufferedInputStream(stream);
+        input.mark(MAGIC.length);
+        byte[] magic = input.readNBytes(MAGIC.length);
+        input.reset();
+        StatsFile result = new StatsFile();
+        if (Arrays.equals(MAGIC, magic)) {
+            result.readBinary(new DataInputStream(input));
+        } else {
+            Object json = new JSON().parse(new JSON.ReaderSource(new InputStreamReader(input, StandardCharsets.UTF_8)));
+            if (!(json instanceof Map)) {
+                throw new IOException("invalid statistics format");
+            }
+            result.fromJSON((Map<?, ?>)json);
+        }
+        return result;
+    }
+
+    private void readBinary(DataInputStream input) throws IOException {
+        input.readFully(new byte[MAGIC.length]);
+        int version = input.readUnsignedByte();
+        if (version > VERSION) {
+            throw new IOException("unsupported statistics format version " + version);
+        }
+        report = new ReportListener.Report();
+        while (true) {
+            int type = input.readUnsignedByte();
+            if (type == END) {
+                break;
+            }
+            byte[] bytes = new byte[Math.toIntExact(readVarLong(input))];
+            input.readFully(bytes);
+            DataInputStream section = new DataInputStream(new ByteArrayInputStream(bytes));
+            switch (type) {
+                case CONFIG:
+                    config = new LoadGenerator.Config();
+                    config.fromJSON((Map<?, ?>)JSON.parse(new String(bytes, StandardCharsets.UTF_8)));
+                    break;
+                case SERVER_INFO:
+                    serverInfo = new ServerInfo();
+                    serverInfo.fromJSON((Map<?, ?>)JSON.parse(new String(bytes, StandardCharsets.UTF_8)));
+                    break;
+                case REPORT:
+                    report.read(section);
+                    break;
+                case HISTOGRAM:
+                    report.setResponseTimeHistogram(version == 1 ? readVersion1Histogram(section, bytes) : readHistogram(section));
+                    break;
+                case INTERVAL:
+                    report.addInterval(ReportListener.Interval.read(section));
+                    break;
+                case STATUS_CODES:
+                    report.readStatusCodes(section);
+                    break;
+                case FAILURE_CAUSES:
+                    report.readFailureCauses(section);
+                    break;
+                case GENERATOR_HEALTH:
+                    report.getGeneratorHealth().read(section);
+                    break;
+                case THREAD_CPU_TIMES:
+                    report.readThreadCPUTimes(section);
+                    break;
+                case CONNECTIONS:
+                    report.getConnectionMetrics().read(section);
+                    break;
+                case HTTP2:
+                    report.getHTTP2Metrics().read(section);
+                    break;
+                case SCENARIO:
+                    report.addScenarioMetrics(ReportListener.ScenarioMetrics.read(section));
+                    break;
+                case HIT_DISTRIBUTION:
+                    report.addHitDistribution(ReportListener.HitDistribution.read(section));
+                    break;
+                case ORIGIN:
+                    report.addOriginMetrics(ReportListener.OriginMetrics.read(section));
+                    break;
+                case SLOT_WAIT_TIME:
+                    report.setSlotWaitTimeHistogram(readHistogram(section));
+                    break;
+                default:
+                    // Unknown section, skip it.
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void toJSON(JSON.Output out) {
+        out.add("config", getConfig());
+        if (getServerInfo() != null) {
+            out.add("serverInfo", getServerInfo());
+        }
+        out.add("report", getReport());
+    }
+
+    @Override
+    public void fromJSON(Map map) {
+        config = new LoadGenerator.Config();
+        config.fromJSON((Map<?, ?>)map.get("config"));
+        Object info = map.get("serverInfo");
+        if (info instanceof Map) {
+            serverInfo = new ServerInfo();
+            serverInfo.fromJSON((Map<?, ?>)info);
+        }
+        report = new ReportListener.Report();
+        report.fromJSON((Map<?, ?>)map.get("report"));
+    }
+
+    static void writeVarLong(DataOutput output, long value) throws IOException {
+        // ZigZag encoding, so that small negative values are also compact.
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            output.writeByte((int)((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        output.writeByte((int)zigzag);
+    }
+
+    static long readVarLong(DataInput input) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            zigzag |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("invalid varint");
+    }
+
+    static void writeHistogram(DataOutput output, Histogram histogram) throws IOException {
+        output.writeLong(histogram.getStartTimeStamp());
+        output.writeLong(histogram.getEndTimeStamp());
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        writeVarLong(output, length);
+        output.write(buffer.array(), 0, length);
+    }
+
+    private static Histogram readVersion1Histogram(DataInput input, byte[] bytes) throws IOException {
+        // The compressed encoding takes the rest of the section.
+        long startTimeStamp = input.readLong();
+        long endTimeStamp = input.readLong();
+        try {
+            Histogram histogram = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes, 16, bytes.length - 16), 0);
+            histogram.setStartTimeStamp(startTimeStamp);
+            histogram.setEndTimeStamp(endTimeStamp);
+            return histogram;
+        } catch (DataFormatException x) {
+            throw new IOException(x);
+        }
+    }
+
+    static Histogram readHistogram(DataInput input) throws IOException {
+        long startTimeStamp = input.readLong();
+        long endTimeStamp = input.readLong();
+        byte[] bytes = new byte[Math.toIntExact(readVarLong(input))];
+        input.readFully(bytes);
+        try {
+            Histogram histogram = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+            histogram.setStartTimeStamp(startTimeStamp);
+            histogram.setEndTimeStamp(endTimeStamp);
+            return histogram;
+        } catch (DataFormatException x) {
+            throw new IOException(x);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%x[%s,%s]", getClass().getSimpleName(), hashCode(), getConfig(), getServerInfo());
+    }
+
+    @FunctionalInterface
+    private interface SectionWriter {
+        public void write(DataOutputStream output) throws IOException;
+    }
+}
@@ -0,0 +1,79 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.listeners;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Exact counters of HTTP response status codes.</p>
+ * <p>The counters are preallocated in a primitive array indexed by status code.
+ * The array is striped by thread, each stripe on its own cache lines, so that threads
+ * that concurrently receive responses with the same status code do not contend.</p>
+ * <p>Status codes outside of the range {@code [0, 600)} are counted as status code {@code 0}.</p>
+ */
+class StatusCodeCounters {
+    private static final int CODES = 600;
+    // Pad the stripes with a cache line, so that adjacent stripes do not share cache lines.
+    private static final int STRIDE = CODES + 8;
+
+    private final AtomicLongArray counters;
+    private final int mask;
+
+    StatusCodeCounters() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors()) {
+            stripes <<= 1;
+        }
+        counters = new AtomicLongArray(stripes * STRIDE);
+        mask = stripes - 1;
+    }
+
+    void increment(int code) {
+        int stripe = (int)Thread.currentThread().getId() & mask;
+        counters.getAndIncrement(stripe * STRIDE + index(code));
+    }
+
+    void add(int code, long delta) {
+        counters.getAndAdd(index(code), delta);
+    }
+
+    long get(int code) {
+        int index = index(code);
+        long result = 0;
+        for (int i = index; i < counters.length(); i += STRIDE) {
+            result += counters.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the non-zero counters, sorted by status code
+     */
+    Map<Integer, Long> toMap() {
+        Map<Integer, Long> result = new TreeMap<>();
+        for (int code = 0; code < CODES; ++code) {
+            long count = get(code);
+            if (count > 0) {
+                result.put(code, count);
+            }
+        }
+        return result;
+    }
+
+    private static int index(int code) {
+        return code >= 0 && code < CODES ? code : 0;
+    }
+}
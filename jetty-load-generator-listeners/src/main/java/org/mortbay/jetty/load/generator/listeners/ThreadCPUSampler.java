@@ -0,0 +1,158 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.listeners;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+
+/**
+ * <p>Samples the CPU time of the JVM threads via {@link ThreadMXBean},
+ * grouping the threads by their role in the load generator.</p>
+ * <p>Threads are grouped by name: the sender threads of the {@link LoadGenerator},
+ * the threads of the executors and of the schedulers of the {@code HttpClient}s.
+ * Selector threads are executor threads, and in Jetty a thread switches between
+ * selecting and processing many times per second, so their CPU time cannot be
+ * told apart from a sample and is accounted in the {@value #EXECUTOR} group.
+ * The CPU time of the process not accounted by any Java thread, typically GC and
+ * JIT compiler threads, is accounted in the {@value #JVM} group.</p>
+ */
+class ThreadCPUSampler {
+    static final String SENDER = "sender";
+    /**
+     * The group of the selector threads in statistics files written by previous
+     * versions, now accounted in the {@value #EXECUTOR} group.
+     */
+    static final String LEGACY_SELECTOR = "selector";
+    static final String EXECUTOR = "executor";
+    static final String SCHEDULER = "scheduler";
+    static final String OTHER = "other";
+    static final String JVM = "jvm";
+    private static final String[] GROUPS = {SENDER, EXECUTOR, SCHEDULER, OTHER, JVM};
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private Map<Long, Long> cpuTimes = new HashMap<>();
+
+    ThreadCPUSampler() {
+        try {
+            if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+                threads.setThreadCpuTimeEnabled(true);
+            }
+        } catch (UnsupportedOperationException | SecurityException x) {
+            // Thread CPU time not available.
+        }
+    }
+
+    /**
+     * @param group the thread group read from a statistics file
+     * @return the thread group to account the CPU time in
+     */
+    static String group(String group) {
+        return LEGACY_SELECTOR.equals(group) ? EXECUTOR : group;
+    }
+
+    static Map<String, Long> newGroups() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (String group : GROUPS) {
+            result.put(group, 0L);
+        }
+        return result;
+    }
+
+    /**
+     * @param generator the load generator, or null if not known
+     * @param processCPUTime the CPU time of the process since the previous sample
+     * @return the CPU time of each thread group since the previous sample
+     */
+    Map<String, Long> sample(LoadGenerator generator, long processCPUTime) {
+        Map<String, Long> result = newGroups();
+        if (!threads.isThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled()) {
+            return result;
+        }
+        List<String> executors = new ArrayList<>();
+        List<String> schedulers = new ArrayList<>();
+        String sender = null;
+        if (generator != null) {
+            sender = generator.getSenderThreadNamePrefix();
+            LoadGenerator.Config config = generator.getConfig();
+            addName(executors, config.getExecutor());
+            addName(schedulers, config.getScheduler());
+            for (HttpClient client : generator.getBeans(HttpClient.class)) {
+                addName(executors, client.getExecutor());
+                addName(schedulers, client.getScheduler());
+            }
+        }
+
+        long[] ids = threads.getAllThreadIds();
+        ThreadInfo[] infos = threads.getThreadInfo(ids);
+        Map<Long, Long> current = new HashMap<>(ids.length * 2);
+        long total = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            ThreadInfo info = infos[i];
+            long cpuTime = threads.getThreadCpuTime(ids[i]);
+            // The thread may have died in the meantime.
+            if (info == null || cpuTime < 0) {
+                continue;
+            }
+            current.put(ids[i], cpuTime);
+            long delta = Math.max(0, cpuTime - cpuTimes.getOrDefault(ids[i], 0L));
+            total += delta;
+            result.merge(group(info, sender, executors, schedulers), delta, Long::sum);
+        }
+        cpuTimes = current;
+        result.put(JVM, Math.max(0, processCPUTime - total));
+        return result;
+    }
+
+    private String group(ThreadInfo info, String sender, List<String> executors, List<String> schedulers) {
+        String name = info.getThreadName();
+        if (sender != null && name.startsWith(sender)) {
+            return SENDER;
+        }
+        for (String executor : executors) {
+            if (name.startsWith(executor)) {
+                return EXECUTOR;
+            }
+        }
+        for (String scheduler : schedulers) {
+            if (name.startsWith(scheduler)) {
+                return SCHEDULER;
+            }
+        }
+        return OTHER;
+    }
+
+    private static void addName(List<String> names, Executor executor) {
+        if (executor instanceof QueuedThreadPool) {
+            names.add(((QueuedThreadPool)executor).getName() + "-");
+        }
+    }
+
+    private static void addName(List<String> names, Scheduler scheduler) {
+        if (scheduler instanceof ScheduledExecutorScheduler) {
+            names.add(((ScheduledExecutorScheduler)scheduler).getName() + "-");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.starter;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * <p>Runs a load generator agent, that waits for a {@link CoordinateCommand coordinator}
+ * to push the load generator configuration and the instant at which the load run must start.</p>
+ * <pre>
+ * java -jar jetty-load-generator-starter.jar agent --host 10.0.0.1 --port 8090 --secret s3cr3t
+ * </pre>
+ * <p>The agent exposes the endpoints described in {@link AgentHandler}.</p>
+ * <p>The agent runs whatever load it is told to, so it listens on the loopback
+ * interface unless {@code --host} is specified, and it requires the coordinator
+ * to send the shared secret, specified with {@code --secret} or with the
+ * {@value #SECRET_ENV} environment variable, which keeps it out of the
+ * process command line.</p>
+ */
+@Parameters(commandDescription = "Runs a load generator agent driven by a coordinator")
+class AgentCommand {
+    static final String NAME = "agent";
+    static final String SECRET_ENV = "LOAD_GENERATOR_AGENT_SECRET";
+    private static final Logger LOGGER = Log.getLogger(AgentCommand.class);
+
+    @Parameter(names = {"--host"}, description = "The agent host or interface to listen on")
+    private String host = "127.0.0.1";
+
+    @Parameter(names = {"--port"}, description = "The agent port")
+    private int port = 8090;
+
+    @Parameter(names = {"--secret"}, description = "The secret shared with the coordinator, defaults to the " + SECRET_ENV + " environment variable")
+    private String secret;
+
+    @Parameter(names = {"--help"}, description = "Displays usage", help = true)
+    private boolean help;
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    String getSecret() {
+        return secret(secret);
+    }
+
+    boolean isHelp() {
+        return help;
+    }
+
+    void run() throws Exception {
+        start().join();
+    }
+
+    /**
+     * @return the started agent server
+     * @throws Exception if the agent server cannot be started
+     */
+    Server start() throws Exception {
+        String secret = getSecret();
+        if (secret == null) {
+            throw new IllegalArgumentException("missing agent secret, specify --secret or the " + SECRET_ENV + " environment variable");
+        }
+        QueuedThreadPool serverThreads = new QueuedThreadPool(8, 1);
+        serverThreads.setName("load-generator-agent");
+        Server server = new Server(serverThreads);
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        connector.setHost(host);
+        connector.setPort(port);
+        server.addConnector(connector);
+        server.setHandler(new AgentHandler(secret));
+        server.start();
+        LOGGER.info("load generator agent listening on {}:{}", host, connector.getLocalPort());
+        return server;
+    }
+
+    /**
+     * @param secret the secret specified on the command line, or null
+     * @return the given secret, or the secret from the environment, or null
+     */
+    static String secret(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            secret = System.getenv(SECRET_ENV);
+        }
+        return secret == null || secret.isEmpty() ? null : secret;
+    }
+}
@@ -0,0 +1,184 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+import org.mortbay.jetty.load.generator.listeners.StatsFile;
+
+/**
+ * <p>The endpoints of a load generator agent:</p>
+ * <ul>
+ * <li>{@code POST /run} with a JSON body containing the load generator {@code config},
+ * the {@code startTime} of the run in milliseconds since the epoch, and the
+ * {@code samplePeriod} of the intervals in milliseconds; replies {@code 202} or,
+ * if a run is already in progress, {@code 409}</li>
+ * <li>{@code GET /intervals?from=N} replies with the JSON intervals of the current
+ * run, starting from the {@code N}-th, and whether the run is complete</li>
+ * <li>{@code GET /report} replies with the binary {@link StatsFile} of the
+ * current run or, if the run is not complete, {@code 409}</li>
+ * </ul>
+ * <p>Requests without the shared secret in the {@value #SECRET_HEADER} header
+ * are replied with {@code 403}.</p>
+ */
+class AgentHandler extends AbstractHandler {
+    static final String SECRET_HEADER = "X-Load-Generator-Secret";
+    private static final Logger LOGGER = Log.getLogger(AgentHandler.class);
+
+    private final byte[] secret;
+    private Run run;
+
+    AgentHandler(String secret) {
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        jettyRequest.setHandled(true);
+        String requestSecret = request.getHeader(SECRET_HEADER);
+        // Constant time comparison, to not leak how much of the secret matched.
+        if (requestSecret == null || !MessageDigest.isEqual(secret, requestSecret.getBytes(StandardCharsets.UTF_8))) {
+            LOGGER.warn("rejected {} {} from {}: missing or wrong secret", request.getMethod(), target, request.getRemoteAddr());
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        if (HttpMethod.POST.is(request.getMethod()) && "/run".equals(target)) {
+            run(request, response);
+        } else if (HttpMethod.GET.is(request.getMethod()) && "/intervals".equals(target)) {
+            intervals(request, response);
+        } else if (HttpMethod.GET.is(request.getMethod()) && "/report".equals(target)) {
+            report(response);
+        } else {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    private void run(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Map<?, ?> body = (Map<?, ?>)new JSON().parse(new JSON.StringSource(IO.toString(request.getInputStream(), StandardCharsets.UTF_8)));
+        long startTime = ((Number)body.get("startTime")).longValue();
+        long samplePeriod = ((Number)body.get("samplePeriod")).longValue();
+        LoadGenerator.Builder builder = LoadGenerator.builder();
+        builder.fromJSON((Map<?, ?>)body.get("config"));
+        if ("https".equals(builder.getScheme())) {
+            builder.sslContextFactory(new SslContextFactory.Client(true));
+        }
+        ReportListener listener = new ReportListener();
+        listener.setSamplePeriod(samplePeriod);
+        builder.listener(listener).resourceListener(listener);
+        LoadGenerator generator = builder.build();
+        generator.addBean(listener);
+
+        Run newRun = new Run(generator.getConfig());
+        synchronized (this) {
+            if (run != null && !run.report.isDone()) {
+                response.setStatus(HttpServletResponse.SC_CONFLICT);
+                return;
+            }
+            run = newRun;
+        }
+        listener.addBean(newRun);
+
+        Thread thread = new Thread(() -> {
+            try {
+                long delay = startTime - System.currentTimeMillis();
+                LOGGER.info("load generation starting in {} ms", delay);
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                LoadGeneratorStarter.run(generator);
+                newRun.report.complete(listener.whenComplete().join());
+            } catch (Throwable x) {
+                LOGGER.warn("load generation failure", x);
+                newRun.report.completeExceptionally(x);
+            }
+        }, "load-generator-agent-run");
+        thread.start();
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+    }
+
+    private void intervals(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Run run = getRun();
+        if (run == null) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            return;
+        }
+        String from = request.getParameter("from");
+        // Read the completion before the intervals, so that
+        // when complete, all the intervals are replied.
+        boolean complete = run.report.isDone();
+        List<ReportListener.Interval> intervals;
+        synchronized (run.intervals) {
+            int size = run.intervals.size();
+            intervals = new ArrayList<>(run.intervals.subList(Math.min(from == null ? 0 : Integer.parseInt(from), size), size));
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("intervals", intervals);
+        result.put("complete", complete);
+        response.setContentType("application/json");
+        response.getOutputStream().write(new JSON().toJSON(result).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void report(HttpServletResponse response) throws IOException {
+        Run run = getRun();
+        if (run == null || !run.report.isDone()) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            return;
+        }
+        if (run.report.isCompletedExceptionally()) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        response.setContentType("application/octet-stream");
+        new StatsFile(run.config, null, run.report.join()).write(response.getOutputStream());
+    }
+
+    private synchronized Run getRun() {
+        return run;
+    }
+
+    private static class Run implements ReportListener.IntervalListener {
+        private final List<ReportListener.Interval> intervals = new ArrayList<>();
+        private final CompletableFuture<ReportListener.Report> report = new CompletableFuture<>();
+        private final LoadGenerator.Config config;
+
+        private Run(LoadGenerator.Config config) {
+            this.config = config;
+        }
+
+        @Override
+        public void onInterval(ReportListener.Interval interval) {
+            synchronized (intervals) {
+                intervals.add(interval);
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.mortbay.jetty.load.generator.listeners.EventLogListener;
+import org.mortbay.jetty.load.generator.listeners.FailureCause;
+
+/**
+ * <p>Analyzes offline the event log written via {@code --event-log-directory},
+ * computing response time histograms per time window, per resource, per status
+ * code and per phase of the requests.</p>
+ * <pre>
+ * java -jar jetty-load-generator-starter.jar analyze --from 720 --to 900 --resource /api/search /tmp/events
+ * </pre>
+ * <p>Segment files are analyzed in parallel, each into its own set of histograms
+ * that are then added together, so memory is bounded by the number of histograms
+ * rather than by the number of requests.</p>
+ * <p>The histograms can be exported as CSV (one line per histogram) or, for the
+ * time windows, as an HdrHistogram interval log.</p>
+ */
+@Parameters(commandDescription = "Analyzes the event log of a load run")
+class AnalyzeCommand {
+    static final String NAME = "analyze";
+    private static final Logger LOGGER = Log.getLogger(AnalyzeCommand.class);
+
+    @Parameter(description = "<event log directory>", required = true)
+    private List<String> directories = new ArrayList<>();
+
+    @Parameter(names = {"--window"}, description = "Time window length, in seconds")
+    private long window = 10;
+
+    @Parameter(names = {"--from"}, description = "Only analyze requests sent after this time, in seconds since the load generation began")
+    private long from;
+
+    @Parameter(names = {"--to"}, description = "Only analyze requests sent before this time, in seconds since the load generation began")
+    private long to = Long.MAX_VALUE;
+
+    @Parameter(names = {"--resource"}, description = "Only analyze requests for this resource path (or method and path)")
+    private String resource;
+
+    @Parameter(names = {"--status"}, description = "Only analyze responses with this status code")
+    private int status;
+
+    @Parameter(names = {"--phase"}, description = "The request phase to analyze per time window, resource and status (latency/content/response/tree)")
+    private String phase = Phase.RESPONSE.name;
+
+    @Parameter(names = {"--output"}, description = "Output file path")
+    private String output;
+
+    @Parameter(names = {"--output-format"}, description = "Output file format (csv/hlog)")
+    private String outputFormat = "csv";
+
+    @Parameter(names = {"--help"}, description = "Displays usage", help = true)
+    private boolean help;
+
+    boolean isHelp() {
+        return help;
+    }
+
+    void run() throws IOException {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Invalid window " + window);
+        }
+        Phase phase = Phase.from(this.phase);
+        Path directory = Path.of(directories.get(0));
+        List<String> resources = readResources(directory);
+        int resourceIndex = resource == null ? -1 : resourceIndex(resources, resource);
+        Filter filter = new Filter(TimeUnit.SECONDS.toNanos(from), to == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.SECONDS.toNanos(to), resourceIndex, status);
+
+        long windowNanos = TimeUnit.SECONDS.toNanos(window);
+        Analysis analysis = EventLogListener.getSegmentFiles(directory).parallelStream()
+                .map(file -> analyze(file, filter, phase, windowNanos))
+                .reduce(Analysis::merge)
+                .orElseGet(() -> new Analysis(phase, windowNanos));
+
+        display(analysis, resources);
+        if (output != null) {
+            Path outputPath = Path.of(output);
+            try (PrintStream out = new PrintStream(Files.newOutputStream(outputPath), false, StandardCharsets.UTF_8)) {
+                switch (outputFormat) {
+                    case "csv":
+                        writeCSV(out, analysis, resources);
+                        break;
+                    case "hlog":
+                        writeIntervalLog(out, analysis);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported output format " + outputFormat);
+                }
+            }
+            LOGGER.info("event log analysis saved to: {}", outputPath);
+        }
+    }
+
+    private static List<String> readResources(Path directory) throws IOException {
+        Path file = directory.resolve(EventLogListener.RESOURCES_FILE);
+        return Files.exists(file) ? Files.readAllLines(file, StandardCharsets.UTF_8) : List.of();
+    }
+
+    private static int resourceIndex(List<String> resources, String resource) {
+        for (int i = 0; i < resources.size(); ++i) {
+            String line = resources.get(i);
+            if (line.equals(resource) || line.substring(line.indexOf(' ') + 1).equals(resource)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown resource " + resource);
+    }
+
+    private static String resourceName(List<String> resources, int index) {
+        return index >= 0 && index < resources.size() ? resources.get(index) : "#" + index;
+    }
+
+    private static Analysis analyze(Path file, Filter filter, Phase phase, long windowNanos) {
+        Analysis analysis = new Analysis(phase, windowNanos);
+        try {
+            EventLogListener.readSegment(file, record -> {
+                if (filter.test(record)) {
+                    analysis.record(record);
+                }
+            });
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+        return analysis;
+    }
+
+    private void display(Analysis analysis, List<String> resources) {
+        LOGGER.info("");
+        LOGGER.info("----------------------------------------------------");
+        LOGGER.info("-------------  Load Generator Event Log  -----------");
+        LOGGER.info("----------------------------------------------------");
+        LOGGER.info("requests          : {}", analysis.requests);
+        LOGGER.info("failures          : {}", analysis.failures.values().stream().mapToLong(Long::longValue).sum());
+        analysis.failures.forEach((cause, count) -> LOGGER.info("  {}: {}", String.format("%-16s", cause.getName()), count));
+        LOGGER.info("{}", String.format("%-24s %10s %10s %10s %10s %10s", "phase (ms)", "count", "p50", "p99", "p999", "max"));
+        analysis.phases.forEach((phase, histogram) -> display(phase.name, histogram));
+        LOGGER.info("{}", String.format("%-24s %10s %10s %10s %10s %10s", analysis.phase.name + " by status (ms)", "count", "p50", "p99", "p999", "max"));
+        analysis.statuses.forEach((status, histogram) -> display(String.valueOf(status), histogram));
+        LOGGER.info("{}", String.format("%-24s %10s %10s %10s %10s %10s", analysis.phase.name + " by resource (ms)", "count", "p50", "p99", "p999", "max"));
+        analysis.resources.forEach((index, histogram) -> display(resourceName(resources, index), histogram));
+        LOGGER.info("{}", String.format("%-24s %10s %10s %10s %10s %10s", analysis.phase.name + " by window (ms)", "count", "p50", "p99", "p999", "max"));
+        analysis.windows.forEach((index, histogram) -> display(String.format("%ds-%ds", index * window, (index + 1) * window), histogram));
+        LOGGER.info("----------------------------------------------------");
+    }
+
+    private static void display(String name, Histogram histogram) {
+        LOGGER.info("{}", String.format("%-24s %10d %10s %10s %10s %10s",
+                name,
+                histogram.getTotalCount(),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue())));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1_000_000D);
+    }
+
+    private void writeCSV(PrintStream out, Analysis analysis, List<String> resources) {
+        out.println("dimension,key,count,min_us,mean_us,p50_us,p90_us,p99_us,p999_us,max_us");
+        analysis.phases.forEach((phase, histogram) -> writeCSV(out, "phase", phase.name, histogram));
+        analysis.statuses.forEach((status, histogram) -> writeCSV(out, "status", String.valueOf(status), histogram));
+        analysis.resources.forEach((index, histogram) -> writeCSV(out, "resource", resourceName(resources, index), histogram));
+        analysis.windows.forEach((index, histogram) -> writeCSV(out, "window", String.valueOf(index * window), histogram));
+    }
+
+    private static void writeCSV(PrintStream out, String dimension, String key, Histogram histogram) {
+        out.printf(Locale.ENGLISH, "%s,\"%s\",%d,%d,%.3f,%d,%d,%d,%d,%d%n",
+                dimension,
+                key.replace("\"", "\"\""),
+                histogram.getTotalCount(),
+                micros(histogram.getMinValue()),
+                histogram.getMean() / 1000,
+                micros(histogram.getValueAtPercentile(50)),
+                micros(histogram.getValueAtPercentile(90)),
+                micros(histogram.getValueAtPercentile(99)),
+                micros(histogram.getValueAtPercentile(99.9)),
+                micros(histogram.getMaxValue()));
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private void writeIntervalLog(PrintStream out, Analysis analysis) {
+        HistogramLogWriter writer = new HistogramLogWriter(out);
+        long beginMillis = TimeUnit.NANOSECONDS.toMillis(analysis.beginEpochNanos);
+        writer.outputStartTime(beginMillis);
+        writer.setBaseTime(beginMillis);
+        writer.outputLegend();
+        analysis.windows.forEach((index, histogram) -> {
+            // Timestamps are in seconds relative to the base time.
+            double start = index * analysis.windowNanos / 1_000_000_000D;
+            double end = start + analysis.windowNanos / 1_000_000_000D;
+            // Values are in nanoseconds, output them in milliseconds.
+            writer.outputIntervalHistogram(start, end, histogram, 1_000_000D);
+        });
+    }
+
+    /**
+     * <p>The phases of a request.</p>
+     */
+    private enum Phase {
+        /**
+         * <p>From the request begin to the response headers.</p>
+         */
+        LATENCY("latency", EventLogListener.Record::getRequestTime, EventLogListener.Record::getLatencyTime),
+        /**
+         * <p>From the response headers to the response end.</p>
+         */
+        CONTENT("content", EventLogListener.Record::getLatencyTime, EventLogListener.Record::getResponseTime),
+        /**
+         * <p>From the request begin to the response end.</p>
+         */
+        RESPONSE("response", EventLogListener.Record::getRequestTime, EventLogListener.Record::getResponseTime),
+        /**
+         * <p>From the request begin to the end of the resource subtree.</p>
+         */
+        TREE("tree", EventLogListener.Record::getRequestTime, EventLogListener.Record::getTreeTime);
+
+        private final String name;
+        private final ToLongFunction<EventLogListener.Record> begin;
+        private final ToLongFunction<EventLogListener.Record> end;
+
+        Phase(String name, ToLongFunction<EventLogListener.Record> begin, ToLongFunction<EventLogListener.Record> end) {
+            this.name = name;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        private long duration(EventLogListener.Record record) {
+            return end.applyAsLong(record) - begin.applyAsLong(record);
+        }
+
+        private static Phase from(String name) {
+            for (Phase phase : values()) {
+                if (phase.name.equals(name)) {
+                    return phase;
+                }
+            }
+            throw new IllegalArgumentException("Unknown phase " + name);
+        }
+    }
+
+    private static class Filter {
+        private final long from;
+        private final long to;
+        private final int resourceIndex;
+        private final int status;
+
+        private Filter(long from, long to, int resourceIndex, int status) {
+            this.from = from;
+            this.to = to;
+            this.resourceIndex = resourceIndex;
+            this.status = status;
+        }
+
+        private boolean test(EventLogListener.Record record) {
+            long elapsed = record.getElapsedTime();
+            if (elapsed < from || elapsed >= to) {
+                return false;
+            }
+            if (resourceIndex >= 0 && record.getResourceIndex() != resourceIndex) {
+                return false;
+            }
+            return status <= 0 || record.getStatus() == status;
+        }
+    }
+
+    private static class Analysis {
+        private final SortedMap<Long, Histogram> windows = new TreeMap<>();
+        private final SortedMap<Integer, Histogram> resources = new TreeMap<>();
+        private final SortedMap<Integer, Histogram> statuses = new TreeMap<>();
+        private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+        private final Map<FailureCause, Long> failures = new EnumMap<>(FailureCause.class);
+        private final Phase phase;
+        private final long windowNanos;
+        private long beginEpochNanos;
+        private long requests;
+
+        private Analysis(Phase phase, long windowNanos) {
+            this.phase = phase;
+            this.windowNanos = windowNanos;
+        }
+
+        private void record(EventLogListener.Record record) {
+            ++requests;
+            beginEpochNanos = record.getRequestEpochNanos() - record.getElapsedTime();
+            FailureCause failure = record.getFailureCause();
+            if (failure != null) {
+                failures.merge(failure, 1L, Long::sum);
+                return;
+            }
+            for (Phase phase : Phase.values()) {
+                long duration = phase.duration(record);
+                if (duration >= 0) {
+                    histogram(phases, phase).recordValue(duration);
+                }
+            }
+            long duration = phase.duration(record);
+            if (duration < 0) {
+                return;
+            }
+            histogram(windows, record.getElapsedTime() / windowNanos).recordValue(duration);
+            histogram(resources, record.getResourceIndex()).recordValue(duration);
+            histogram(statuses, record.getStatus()).recordValue(duration);
+        }
+
+        private static <K> Histogram histogram(Map<K, Histogram> histograms, K key) {
+            // Auto-resizing histograms only use the memory needed for the recorded range.
+            return histograms.computeIfAbsent(key, k -> new Histogram(3));
+        }
+
+        private static Analysis merge(Analysis a1, Analysis a2) {
+            a1.requests += a2.requests;
+            if (a1.beginEpochNanos == 0) {
+                a1.beginEpochNanos = a2.beginEpochNanos;
+            }
+            merge(a1.windows, a2.windows);
+            merge(a1.resources, a2.resources);
+            merge(a1.statuses, a2.statuses);
+            merge(a1.phases, a2.phases);
+            a2.failures.forEach((cause, count) -> a1.failures.merge(cause, count, Long::sum));
+            return a1;
+        }
+
+        private static <K> void merge(Map<K, Histogram> h1, Map<K, Histogram> h2) {
+            h2.forEach((key, histogram) -> histogram(h1, key).add(histogram));
+        }
+    }
+}
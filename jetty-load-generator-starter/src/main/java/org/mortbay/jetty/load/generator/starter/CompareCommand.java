@@ -0,0 +1,207 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+import org.mortbay.jetty.load.generator.listeners.StatsFile;
+
+/**
+ * <p>Compares the statistics file of a load run against the statistics file
+ * of a baseline load run, to detect performance regressions.</p>
+ * <pre>
+ * java -jar jetty-load-generator-starter.jar compare --baseline baseline.json current.json
+ * </pre>
+ * <p>The comparison checks the response rate, the response time percentiles and
+ * the error rate against configurable thresholds, and applies a one-sided
+ * Kolmogorov-Smirnov test to the response time histograms, to detect
+ * whether the current response times are stochastically larger than the baseline ones.</p>
+ * <p>The process exits with code {@value #REGRESSION_EXIT_CODE} if a regression is detected.</p>
+ */
+@Parameters(commandDescription = "Compares the statistics file of a load run against a baseline")
+class CompareCommand {
+    static final String NAME = "compare";
+    static final int REGRESSION_EXIT_CODE = 1;
+    private static final Logger LOGGER = Log.getLogger(CompareCommand.class);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    @Parameter(description = "<current statistics file>", required = true)
+    private List<String> files = new ArrayList<>();
+
+    @Parameter(names = {"--baseline"}, description = "Baseline statistics file", required = true)
+    private String baseline;
+
+    @Parameter(names = {"--max-rate-decrease"}, description = "Max response rate decrease, in percent")
+    private double maxRateDecrease = 5;
+
+    @Parameter(names = {"--max-percentile-increase"}, description = "Max response time percentiles increase, in percent")
+    private double maxPercentileIncrease = 10;
+
+    @Parameter(names = {"--max-error-rate-increase"}, description = "Max error rate increase, in percentage points")
+    private double maxErrorRateIncrease = 1;
+
+    @Parameter(names = {"--significance"}, description = "Significance level of the Kolmogorov-Smirnov test")
+    private double significance = 0.01;
+
+    @Parameter(names = {"--min-distance"}, description = "Min Kolmogorov-Smirnov distance between the response time distributions to report a regression")
+    private double minDistance = 0.05;
+
+    @Parameter(names = {"--help"}, description = "Displays usage", help = true)
+    private boolean help;
+
+    boolean isHelp() {
+        return help;
+    }
+
+    /**
+     * @return {@code 0} if no regression has been detected, or {@value #REGRESSION_EXIT_CODE}
+     * @throws IOException if the statistics files cannot be read
+     */
+    int run() throws IOException {
+        ReportListener.Report base = StatsFile.read(Path.of(baseline)).getReport();
+        ReportListener.Report current = StatsFile.read(Path.of(files.get(0))).getReport();
+        LOGGER.info("comparing {} against baseline {}", files.get(0), baseline);
+        LOGGER.info("{}", String.format("%-28s %14s %14s %10s  %s", "metric", "baseline", "current", "change", "verdict"));
+
+        boolean regression = false;
+        double baseRate = base.getResponseRate();
+        double currentRate = current.getResponseRate();
+        double rateChange = percentChange(baseRate, currentRate);
+        regression |= display("response rate (responses/s)", baseRate, currentRate, String.format("%+.2f%%", rateChange), -rateChange > maxRateDecrease);
+
+        Histogram baseHistogram = base.getResponseTimeHistogram();
+        Histogram currentHistogram = current.getResponseTimeHistogram();
+        for (double percentile : PERCENTILES) {
+            double basePercentile = baseHistogram.getValueAtPercentile(percentile) / 1_000_000D;
+            double currentPercentile = currentHistogram.getValueAtPercentile(percentile) / 1_000_000D;
+            double change = percentChange(basePercentile, currentPercentile);
+            regression |= display(String.format("response time p%s (ms)", format(percentile)), basePercentile, currentPercentile, String.format("%+.2f%%", change), change > maxPercentileIncrease);
+        }
+
+        double baseErrorRate = errorRate(base);
+        double currentErrorRate = errorRate(current);
+        double errorRateChange = currentErrorRate - baseErrorRate;
+        regression |= display("error rate (%)", baseErrorRate, currentErrorRate, String.format("%+.2fpp", errorRateChange), errorRateChange > maxErrorRateIncrease);
+
+        KolmogorovSmirnov ks = KolmogorovSmirnov.test(baseHistogram, currentHistogram);
+        boolean slower = ks.getPValue() < significance && ks.getDistance() > minDistance;
+        regression |= display("response time K-S distance", 0, ks.getDistance(), String.format("p=%.4f", ks.getPValue()), slower);
+
+        if (regression) {
+            LOGGER.warn("performance regression detected");
+            return REGRESSION_EXIT_CODE;
+        }
+        LOGGER.info("no performance regression detected");
+        return 0;
+    }
+
+    private static boolean display(String metric, double base, double current, String change, boolean regression) {
+        LOGGER.info("{}", String.format("%-28s %14.3f %14.3f %10s  %s", metric, base, current, change, regression ? "REGRESSION" : "ok"));
+        return regression;
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long)percentile) : String.valueOf(percentile).replace(".", "");
+    }
+
+    private static double percentChange(double base, double current) {
+        if (base == 0) {
+            return current == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return 100 * (current - base) / base;
+    }
+
+    private static double errorRate(ReportListener.Report report) {
+        long errors = report.getFailures() + report.getResponses5xx();
+        long requests = report.getRequests();
+        return requests == 0 ? 0 : 100D * errors / requests;
+    }
+
+    /**
+     * <p>The one-sided, two-sample, Kolmogorov-Smirnov test applied to histograms.</p>
+     * <p>The distance is the max difference between the baseline cumulative distribution
+     * and the current cumulative distribution, which is positive when the current
+     * values are larger than the baseline values.
+     * The histogram buckets determine the resolution of the cumulative distributions.</p>
+     */
+    static class KolmogorovSmirnov {
+        private final double distance;
+        private final double pValue;
+
+        private KolmogorovSmirnov(double distance, double pValue) {
+            this.distance = distance;
+            this.pValue = pValue;
+        }
+
+        static KolmogorovSmirnov test(Histogram baseline, Histogram current) {
+            long n1 = baseline.getTotalCount();
+            long n2 = current.getTotalCount();
+            if (n1 == 0 || n2 == 0) {
+                return new KolmogorovSmirnov(0, 1);
+            }
+            List<long[]> values1 = values(baseline);
+            List<long[]> values2 = values(current);
+            // Walk both cumulative distributions in value order.
+            long cumulative1 = 0;
+            long cumulative2 = 0;
+            double distance = 0;
+            int i1 = 0;
+            int i2 = 0;
+            while (i1 < values1.size() || i2 < values2.size()) {
+                long value1 = i1 < values1.size() ? values1.get(i1)[0] : Long.MAX_VALUE;
+                long value2 = i2 < values2.size() ? values2.get(i2)[0] : Long.MAX_VALUE;
+                long value = Math.min(value1, value2);
+                if (value1 == value) {
+                    cumulative1 += values1.get(i1++)[1];
+                }
+                if (value2 == value) {
+                    cumulative2 += values2.get(i2++)[1];
+                }
+                distance = Math.max(distance, (double)cumulative1 / n1 - (double)cumulative2 / n2);
+            }
+            // Asymptotic distribution of the one-sided statistic.
+            double effective = (double)n1 * n2 / (n1 + n2);
+            double pValue = Math.exp(-2 * effective * distance * distance);
+            return new KolmogorovSmirnov(distance, Math.min(1, pValue));
+        }
+
+        private static List<long[]> values(Histogram histogram) {
+            List<long[]> result = new ArrayList<>();
+            // The iteration values are reused by the iterator, so copy them.
+            for (HistogramIterationValue value : histogram.recordedValues()) {
+                // Use the highest equivalent value, so that the buckets
+                // of histograms with different precision are comparable.
+                result.add(new long[]{histogram.highestEquivalentValue(value.getValueIteratedTo()), value.getCountAtValueIteratedTo()});
+            }
+            return result;
+        }
+
+        double getDistance() {
+            return distance;
+        }
+
+        double getPValue() {
+            return pValue;
+        }
+    }
+}
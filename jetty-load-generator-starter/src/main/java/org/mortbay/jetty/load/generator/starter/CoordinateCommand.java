@@ -0,0 +1,199 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import com.beust.jcommander.Parameter;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.ServerInfo;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+import org.mortbay.jetty.load.generator.listeners.StatsFile;
+
+/**
+ * <p>Coordinates a load run across multiple {@link AgentCommand agents}.</p>
+ * <pre>
+ * java -jar jetty-load-generator-starter.jar coordinate --agents host1:8090,host2:8090 --agent-secret s3cr3t --host server --running-time 60 ...
+ * </pre>
+ * <p>The agents only accept requests with the secret they share with the coordinator,
+ * specified with {@code --agent-secret} or with the {@value AgentCommand#SECRET_ENV}
+ * environment variable.</p>
+ * <p>The load generator configuration is built from the same arguments of a single
+ * load generator run, and it is pushed to every agent, along with a start instant
+ * {@code --start-delay} milliseconds in the future, so that all agents start at the
+ * same time, provided that their clocks are synchronized.</p>
+ * <p>Every agent runs the whole configuration, so the load offered to the server
+ * is that of a single load generator run multiplied by the number of agents.</p>
+ * <p>While the agents run, their intervals are polled and, with {@code --live},
+ * merged and displayed; when the agents complete, their reports are merged
+ * like {@link MergeCommand} does.</p>
+ * <p>Options that only affect the load generator process, such as the probe,
+ * the event log, the hiccups recording, the metrics endpoint and JMX, are rejected.</p>
+ */
+class CoordinateCommand extends LoadGeneratorStarterArgs {
+    static final String NAME = "coordinate";
+    private static final Logger LOGGER = Log.getLogger(CoordinateCommand.class);
+    private static final long SAMPLE_PERIOD = 1000;
+
+    @Parameter(names = {"--agents"}, description = "Comma separated list of host:port of the agents", required = true)
+    private List<String> agents = new ArrayList<>();
+
+    @Parameter(names = {"--agent-secret"}, description = "The secret shared with the agents, defaults to the " + AgentCommand.SECRET_ENV + " environment variable")
+    private String agentSecret;
+
+    @Parameter(names = {"--start-delay"}, description = "Delay in milliseconds before the agents start, to absorb the configuration push")
+    private long startDelay = 2000;
+
+    List<String> getAgents() {
+        return agents;
+    }
+
+    String getAgentSecret() {
+        return AgentCommand.secret(agentSecret);
+    }
+
+    long getStartDelay() {
+        return startDelay;
+    }
+
+    /**
+     * <p>Rejects the options that apply to the load generator process rather than to the
+     * load generator configuration, since the configuration is all that is pushed to the agents.</p>
+     */
+    void checkOptions() {
+        List<String> unsupported = new ArrayList<>();
+        if (getProbeResourceRate() > 0) {
+            unsupported.add("--probe-resource-rate");
+        }
+        if (getEventLogDirectory() != null) {
+            unsupported.add("--event-log-directory");
+        }
+        if (isHiccups()) {
+            unsupported.add("--hiccups");
+        }
+        if (getMetricsPort() >= 0) {
+            unsupported.add("--metrics-port");
+        }
+        if (isJMX()) {
+            unsupported.add("--jmx");
+        }
+        if (!unsupported.isEmpty()) {
+            throw new IllegalArgumentException("options not supported by the " + NAME + " command: " + String.join(", ", unsupported));
+        }
+        if (getAgentSecret() == null) {
+            throw new IllegalArgumentException("missing agent secret, specify --agent-secret or the " + AgentCommand.SECRET_ENV + " environment variable");
+        }
+    }
+
+    void run() throws Exception {
+        checkOptions();
+        LoadGenerator.Config config = LoadGeneratorStarter.configure(this);
+        HttpClient httpClient = new HttpClient();
+        httpClient.setName("load-generator-coordinator");
+        httpClient.start();
+        String secret = getAgentSecret();
+        try {
+            long startTime = System.currentTimeMillis() + getStartDelay();
+            JSON json = new JSON();
+            String body = json.toJSON(Map.of("config", config, "startTime", startTime, "samplePeriod", SAMPLE_PERIOD));
+            for (String agent : agents) {
+                ContentResponse response = httpClient.POST("http://" + agent + "/run")
+                        .header(AgentHandler.SECRET_HEADER, secret)
+                        .content(new StringContentProvider("application/json", body, StandardCharsets.UTF_8))
+                        .timeout(getStartDelay(), TimeUnit.MILLISECONDS)
+                        .send();
+                if (response.getStatus() != HttpStatus.ACCEPTED_202) {
+                    throw new IllegalStateException("agent " + agent + " rejected the run: " + response.getStatus());
+                }
+            }
+            LOGGER.info("load generation on {} agents starting in {} ms", agents.size(), startTime - System.currentTimeMillis());
+
+            poll(httpClient, secret, isLive() ? new LiveDisplay(config) : null);
+
+            List<StatsFile> stats = new ArrayList<>();
+            for (String agent : agents) {
+                ContentResponse response = httpClient.newRequest("http://" + agent + "/report")
+                        .header(AgentHandler.SECRET_HEADER, secret)
+                        .send();
+                if (response.getStatus() != HttpStatus.OK_200) {
+                    throw new IllegalStateException("could not retrieve the report of agent " + agent + ": " + response.getStatus());
+                }
+                stats.add(StatsFile.read(new ByteArrayInputStream(response.getContent())));
+            }
+            StatsFile merged = MergeCommand.merge(agents, stats);
+            if (isDisplayStats()) {
+                LoadGeneratorStarter.displayReport(merged.getConfig(), merged.getReport());
+            }
+            String statsFile = getStatsFile();
+            if (statsFile != null) {
+                ServerInfo serverInfo = LoadGeneratorStarter.retrieveServerInfo(this);
+                LoadGeneratorStarter.writeStats(Path.of(statsFile), getStatsFormat(), new StatsFile(merged.getConfig(), serverInfo, merged.getReport()));
+                LOGGER.info("merged load generator report saved to: {}", statsFile);
+            }
+        } finally {
+            httpClient.stop();
+        }
+    }
+
+    private void poll(HttpClient httpClient, String secret, LiveDisplay display) throws Exception {
+        List<List<ReportListener.Interval>> intervals = new ArrayList<>();
+        agents.forEach(agent -> intervals.add(new ArrayList<>()));
+        int displayed = 0;
+        boolean complete = false;
+        while (!complete) {
+            Thread.sleep(SAMPLE_PERIOD);
+            complete = true;
+            for (int i = 0; i < agents.size(); ++i) {
+                List<ReportListener.Interval> agentIntervals = intervals.get(i);
+                ContentResponse response = httpClient.newRequest("http://" + agents.get(i) + "/intervals?from=" + agentIntervals.size())
+                        .header(AgentHandler.SECRET_HEADER, secret)
+                        .send();
+                if (response.getStatus() != HttpStatus.OK_200) {
+                    throw new IllegalStateException("could not retrieve the intervals of agent " + agents.get(i) + ": " + response.getStatus());
+                }
+                Map<?, ?> map = (Map<?, ?>)new JSON().parse(new JSON.StringSource(response.getContentAsString()));
+                for (Object object : (Object[])map.get("intervals")) {
+                    ReportListener.Interval interval = new ReportListener.Interval();
+                    interval.fromJSON((Map<?, ?>)object);
+                    agentIntervals.add(interval);
+                }
+                complete &= map.get("complete") == Boolean.TRUE;
+            }
+            if (display != null) {
+                // Agents start at the same instant with the same sample period,
+                // so the k-th intervals of all agents cover the same time span.
+                int available = intervals.stream().mapToInt(List::size).min().orElse(0);
+                for (; displayed < available; ++displayed) {
+                    int index = displayed;
+                    display.onInterval(ReportListener.Interval.merge(intervals.stream()
+                            .map(agentIntervals -> agentIntervals.get(index))
+                            .collect(Collectors.toList())));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.mortbay.jetty.load.generator.HARImporter;
+import org.mortbay.jetty.load.generator.Origin;
+import org.mortbay.jetty.load.generator.Resource;
+
+/**
+ * <p>Converts a browser HAR file into a resource tree in JSON format,
+ * that can be reviewed, edited and then used via {@code --resource-json-path}.</p>
+ * <pre>
+ * java -jar jetty-load-generator-starter.jar har --output resource.json page.har
+ * </pre>
+ * <p>The conversion is performed by {@link HARImporter}; without {@code --output},
+ * the resource tree is printed to the standard output.</p>
+ * <p>Resources from origins other than the page document origin refer to
+ * origins named after their host; the {@code --origin} options that define
+ * them are printed to the standard output, or to the standard error without
+ * {@code --output}.</p>
+ */
+@Parameters(commandDescription = "Converts a browser HAR file into a resource tree in JSON format")
+class HARCommand {
+    static final String NAME = "har";
+    private static final Logger LOGGER = Log.getLogger(HARCommand.class);
+
+    @Parameter(description = "<HAR file>", required = true)
+    private List<String> files = new ArrayList<>();
+
+    @Parameter(names = {"--output"}, description = "Resource JSON output file path")
+    private String output;
+
+    @Parameter(names = {"--help"}, description = "Displays usage", help = true)
+    private boolean help;
+
+    boolean isHelp() {
+        return help;
+    }
+
+    void run() throws IOException {
+        List<Origin> origins = new ArrayList<>();
+        Resource resource = LoadGeneratorStarterArgs.evaluateHAR(Path.of(files.get(0)), origins);
+        String json = new JSON().toJSON(resource);
+        PrintStream table;
+        if (output == null) {
+            System.out.println(json);
+            table = System.err;
+        } else {
+            Files.writeString(Path.of(output), json, StandardCharsets.UTF_8);
+            LOGGER.info("resource tree of {} resource(s) saved to: {}", resource.descendantCount(), output);
+            table = System.out;
+        }
+        for (Origin origin : origins) {
+            table.printf("--origin %s=%s://%s:%d%n", origin.getName(), origin.getScheme(), origin.getHost(), origin.getPort());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+
+/**
+ * <p>Displays in the terminal one line per {@link ReportListener.Interval},
+ * so that saturated or failing load runs can be spotted and aborted early.</p>
+ */
+class LiveDisplay implements ReportListener.IntervalListener {
+    private static final Logger LOGGER = Log.getLogger(LiveDisplay.class);
+    private static final int HEADER_LINES = 20;
+    private static final String FORMAT = "%8s %10s %10s %10s %8s %8s %9s %9s %9s %9s %8s %8s %8s %8s";
+
+    private final double nominalRequestRate;
+    private long elapsed;
+    private int lines;
+
+    LiveDisplay(LoadGenerator.Config config) {
+        this.nominalRequestRate = config.getResourceRate() * config.getResourceNodesPerIteration();
+    }
+
+    @Override
+    public void onInterval(ReportListener.Interval interval) {
+        // Interval events are emitted by a single thread, no need to synchronize.
+        if (lines++ % HEADER_LINES == 0) {
+            LOGGER.info(String.format(FORMAT, "time(s)", "nominal/s", "req/s", "resp/s", "inflight", "queued", "lag(ms)", "p50(ms)", "p99(ms)", "max(ms)", "fail", "4xx", "5xx", "cpu%"));
+        }
+        elapsed += interval.getDuration().toNanos();
+        LOGGER.info(String.format(FORMAT,
+                TimeUnit.NANOSECONDS.toSeconds(elapsed),
+                String.format("%.1f", nominalRequestRate),
+                String.format("%.1f", interval.getRequestRate()),
+                String.format("%.1f", interval.getResponseRate()),
+                interval.getInFlightRequests(),
+                interval.getQueuedRequests(),
+                millis(interval.getSchedulingLag()),
+                millis(interval.getResponseTimeP50()),
+                millis(interval.getResponseTimeP99()),
+                millis(interval.getResponseTimeMax()),
+                interval.getFailures(),
+                interval.getResponses4xx(),
+                interval.getResponses5xx(),
+                String.format("%.1f", interval.getAverageCPUPercent())));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1_000_000D);
+    }
+}
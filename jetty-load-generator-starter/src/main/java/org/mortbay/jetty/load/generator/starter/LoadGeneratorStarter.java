@@ -13,8 +13,10 @@
 
 package org.mortbay.jetty.load.generator.starter;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -22,20 +24,31 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
 import java.util.function.Supplier;
 import com.beust.jcommander.JCommander;
 import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.jmx.MBeanContainer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.toolchain.perf.HistogramSnapshot;
 import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.Scenario;
+import org.mortbay.jetty.load.generator.ServerInfo;
+import org.mortbay.jetty.load.generator.listeners.EventLogListener;
+import org.mortbay.jetty.load.generator.listeners.HiccupListener;
 import org.mortbay.jetty.load.generator.listeners.ReportListener;
+import org.mortbay.jetty.load.generator.listeners.StatsFile;
 
 /**
  * <p>A convenience class to run the load generator from the command line.</p>
@@ -47,36 +60,140 @@ public class LoadGeneratorStarter {
     private static final Logger LOGGER = Log.getLogger(LoadGeneratorStarter.class);
 
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && MergeCommand.NAME.equals(args[0])) {
+            MergeCommand command = new MergeCommand();
+            if (parseCommand(Arrays.copyOfRange(args, 1, args.length), command, command::isHelp)) {
+                command.run();
+            }
+            return;
+        }
+        if (args.length > 0 && CompareCommand.NAME.equals(args[0])) {
+            CompareCommand command = new CompareCommand();
+            if (parseCommand(Arrays.copyOfRange(args, 1, args.length), command, command::isHelp)) {
+                int exitCode = command.run();
+                if (exitCode != 0) {
+                    System.exit(exitCode);
+                }
+            }
+            return;
+        }
+        if (args.length > 0 && AnalyzeCommand.NAME.equals(args[0])) {
+            AnalyzeCommand command = new AnalyzeCommand();
+            if (parseCommand(Arrays.copyOfRange(args, 1, args.length), command, command::isHelp)) {
+                command.run();
+            }
+            return;
+        }
+        if (args.length > 0 && HARCommand.NAME.equals(args[0])) {
+            HARCommand command = new HARCommand();
+            if (parseCommand(Arrays.copyOfRange(args, 1, args.length), command, command::isHelp)) {
+                command.run();
+            }
+            return;
+        }
+        if (args.length > 0 && AgentCommand.NAME.equals(args[0])) {
+            AgentCommand command = new AgentCommand();
+            if (parseCommand(Arrays.copyOfRange(args, 1, args.length), command, command::isHelp)) {
+                command.run();
+            }
+            return;
+        }
+        if (args.length > 0 && CoordinateCommand.NAME.equals(args[0])) {
+            CoordinateCommand command = parse(Arrays.copyOfRange(args, 1, args.length), CoordinateCommand::new);
+            if (command != null) {
+                command.run();
+            }
+            return;
+        }
         LoadGeneratorStarterArgs starterArgs = parse(args);
         if (starterArgs == null) {
             return;
         }
         LoadGenerator.Builder builder = configure(starterArgs);
         ReportListener listener = new ReportListener();
-        LoadGenerator generator = builder
-                .listener(listener)
-                .resourceListener(listener)
-                .build();
+        builder.listener(listener).resourceListener(listener);
+        String eventLogDirectory = starterArgs.getEventLogDirectory();
+        if (eventLogDirectory != null) {
+            EventLogListener eventLog = new EventLogListener(Path.of(eventLogDirectory));
+            builder.listener(eventLog).resourceListener(eventLog);
+        }
+        HiccupListener hiccupListener = null;
+        if (starterArgs.isHiccups()) {
+            // Sample once per second to correlate hiccups with response times.
+            listener.setSamplePeriod(1000);
+            hiccupListener = new HiccupListener();
+            listener.addBean(hiccupListener);
+            // Must be notified after the ReportListener.
+            builder.listener(hiccupListener);
+        }
+        LoadGenerator probe = null;
+        ReportListener probeListener = null;
+        if (starterArgs.getProbeResourceRate() > 0) {
+            // Only the probe records response times.
+            listener.setRecordResponseTimes(false);
+            probeListener = new ReportListener();
+            probe = configureProbe(starterArgs)
+                    .listener(probeListener)
+                    .resourceListener(probeListener)
+                    .build();
+            probe.addBean(probeListener);
+            endWith(probe, builder);
+        }
+        LoadGenerator generator = builder.build();
         generator.addBean(listener);
+        // Live statistics are notified by the loader, or composed from the loader and the probe.
+        ContainerLifeCycle intervals = listener;
+        if (probe != null) {
+            ProbeComposer composer = new ProbeComposer();
+            listener.addBean(composer.getLoaderListener());
+            probeListener.addBean(composer.getProbeListener());
+            intervals = composer;
+        }
+        if (starterArgs.isLive()) {
+            listener.setSamplePeriod(1000);
+            intervals.addBean(new LiveDisplay(generator.getConfig()));
+        }
+        Server metricsServer = null;
+        int metricsPort = starterArgs.getMetricsPort();
+        if (metricsPort >= 0) {
+            listener.setSamplePeriod(1000);
+            metricsServer = startMetricsServer(metricsPort, generator.getConfig(), intervals);
+        }
+        if (probeListener != null) {
+            probeListener.setSamplePeriod(listener.getSamplePeriod());
+        }
         if (starterArgs.isJMX()) {
             MBeanContainer mbeanContainer = new MBeanContainer(ManagementFactory.getPlatformMBeanServer());
             generator.addBean(mbeanContainer);
         }
-        run(generator);
-        ReportListener.Report report = listener.whenComplete().join();
+        ReportListener.Report report;
+        try {
+            if (probe == null) {
+                run(generator);
+                report = listener.whenComplete().join();
+            } else {
+                LOGGER.info("probe config: {}", probe.getConfig());
+                CompletableFuture<Void> probeRun = probe.begin();
+                run(generator);
+                probeRun.join();
+                report = ReportListener.Report.compose(listener.whenComplete().join(), probeListener.whenComplete().join());
+            }
+        } finally {
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+        }
         if (starterArgs.isDisplayStats()) {
             displayReport(generator.getConfig(), report);
+            if (hiccupListener != null) {
+                displayHiccups(hiccupListener.whenComplete().join());
+            }
         }
         String statsFile = starterArgs.getStatsFile();
         if (statsFile != null) {
-            try (OutputStream output = Files.newOutputStream(Path.of(statsFile))) {
-                Map<String, Object> map = new HashMap<>();
-                map.put("config", generator.getConfig());
-                map.put("report", report);
-                JSON json = new JSON();
-                output.write(json.toJSON(map).getBytes(StandardCharsets.UTF_8));
-                LOGGER.info("load generator report saved to: {}", statsFile);
-            }
+            ServerInfo serverInfo = retrieveServerInfo(starterArgs);
+            writeStats(Path.of(statsFile), starterArgs.getStatsFormat(), new StatsFile(generator.getConfig(), serverInfo, report));
+            LOGGER.info("load generator report saved to: {}", statsFile);
         }
     }
 
@@ -111,6 +228,16 @@ public class LoadGeneratorStarter {
         return starterArgs;
     }
 
+    private static boolean parseCommand(String[] args, Object command, Supplier<Boolean> help) {
+        JCommander jCommander = new JCommander(command);
+        jCommander.parse(args);
+        if (help.get()) {
+            jCommander.usage();
+            return false;
+        }
+        return true;
+    }
+
     /**
      * <p>Creates a new LoadGenerator.Builder, configuring it from the given arguments holder.</p>
      *
@@ -120,13 +247,14 @@ public class LoadGeneratorStarter {
     public static LoadGenerator.Builder configure(LoadGeneratorStarterArgs starterArgs) {
         try {
             LoadGenerator.Builder builder = LoadGenerator.builder();
-            return builder
-                    .threads(starterArgs.getThreads())
+            builder.threads(starterArgs.getThreads())
                     .warmupIterationsPerThread(starterArgs.getWarmupIterations())
                     .iterationsPerThread(starterArgs.getIterations())
                     .runFor(starterArgs.getRunningTime(), starterArgs.getRunningTimeUnit())
                     .usersPerThread(starterArgs.getUsersPerThread())
                     .channelsPerUser(starterArgs.getChannelsPerUser())
+                    .maxRequestsPerUser(starterArgs.getMaxRequestsPerUser())
+                    .maxRequestsPerTree(starterArgs.getMaxRequestsPerTree())
                     .resource(starterArgs.getResource(builder))
                     .resourceRate(starterArgs.getResourceRate())
                     .rateRampUpPeriod(starterArgs.getRateRampUpPeriod())
@@ -141,11 +269,50 @@ public class LoadGeneratorStarter {
                     .idleTimeout(starterArgs.getIdleTimeout())
                     .executor(starterArgs.getExecutor())
                     .scheduler(starterArgs.getScheduler());
+            for (Scenario scenario : starterArgs.getScenarios()) {
+                builder.scenario(scenario.getName(), scenario.getWeight(), scenario.getResource());
+            }
+            starterArgs.getFeeders().forEach(builder::feeder);
+            starterArgs.getOrigins().forEach(origin -> builder.origin(origin.getName(), origin.getScheme(), origin.getHost(), origin.getPort()));
+            builder.replay(starterArgs.getReplay());
+            return builder;
         } catch (Exception x) {
             throw new RuntimeException(x);
         }
     }
 
+    /**
+     * <p>Creates a new LoadGenerator.Builder for a probe, configuring it from the given
+     * arguments holder, with the probe resource rate and one user.</p>
+     * <p>The probe has its own executor and scheduler, so that it is not
+     * affected by the saturation of those of the loader.</p>
+     *
+     * @param starterArgs the arguments holder
+     * @return a new LoadGenerator.Builder for a probe
+     */
+    static LoadGenerator.Builder configureProbe(LoadGeneratorStarterArgs starterArgs) {
+        return configure(starterArgs)
+                .threads(1)
+                .usersPerThread(1)
+                .resourceRate(starterArgs.getProbeResourceRate())
+                .rateRampUpPeriod(0)
+                // The probe sends the resource tree even when the loader replays a log.
+                .replay(null)
+                .executor(starterArgs.getExecutor("load-generator-probe-executor"))
+                .scheduler(starterArgs.getScheduler("load-generator-probe-scheduler"));
+    }
+
+    /**
+     * <p>Ends the given probe when the load generator built by the given loader builder ends,
+     * so that the probe does not outlive the loader, whatever iterations or running time.</p>
+     *
+     * @param probe the probe to end
+     * @param loader the loader builder
+     */
+    static void endWith(LoadGenerator probe, LoadGenerator.Builder loader) {
+        loader.listener((LoadGenerator.EndListener)generator -> probe.end());
+    }
+
     /**
      * <p>Runs a load generation, waiting indefinitely for completion.</p>
      *
@@ -164,7 +331,56 @@ public class LoadGeneratorStarter {
         }).join();
     }
 
-    private static void displayReport(LoadGenerator.Config config, ReportListener.Report report) {
+    private static Server startMetricsServer(int port, LoadGenerator.Config config, ContainerLifeCycle intervals) throws Exception {
+        QueuedThreadPool serverThreads = new QueuedThreadPool(8, 1);
+        serverThreads.setName("load-generator-metrics");
+        Server server = new Server(serverThreads);
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        connector.setPort(port);
+        server.addConnector(connector);
+        OpenMetricsHandler handler = new OpenMetricsHandler(config);
+        server.setHandler(handler);
+        intervals.addBean(handler);
+        server.start();
+        LOGGER.info("load generator metrics available at: http://{}:{}/metrics", connector.getHost() == null ? "localhost" : connector.getHost(), connector.getLocalPort());
+        return server;
+    }
+
+    static ServerInfo retrieveServerInfo(LoadGeneratorStarterArgs starterArgs) throws Exception {
+        String path = starterArgs.getServerInfoPath();
+        if (path == null) {
+            return null;
+        }
+        HttpClient httpClient = new HttpClient(starterArgs.getHttpClientTransportBuilder().build(), starterArgs.getSslContextFactory());
+        try {
+            httpClient.start();
+            URI uri = URI.create(String.format("%s://%s:%d%s", starterArgs.getScheme(), starterArgs.getHost(), starterArgs.getPort(), path));
+            return ServerInfo.retrieveServerInfo(httpClient, uri).get(starterArgs.getIdleTimeout(), TimeUnit.MILLISECONDS);
+        } catch (Exception x) {
+            LOGGER.info("could not retrieve server info from {}", path, x);
+            return null;
+        } finally {
+            httpClient.stop();
+        }
+    }
+
+    static void writeStats(Path path, String format, StatsFile stats) throws IOException {
+        try (OutputStream output = Files.newOutputStream(path)) {
+            switch (format) {
+                case "json":
+                    JSON json = new JSON();
+                    output.write(json.toJSON(stats).getBytes(StandardCharsets.UTF_8));
+                    break;
+                case "binary":
+                    stats.write(output);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown statistics format: " + format);
+            }
+        }
+    }
+
+    static void displayReport(LoadGenerator.Config config, ReportListener.Report report) {
         Histogram responseTimes = report.getResponseTimeHistogram();
         HistogramSnapshot snapshot = new HistogramSnapshot(responseTimes, 20, "response times", "ms", TimeUnit.NANOSECONDS::toMillis);
         DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss z").withZone(ZoneId.systemDefault());
@@ -173,14 +389,20 @@ public class LoadGeneratorStarter {
         LOGGER.info("-------------  Load Generator Report  --------------");
         LOGGER.info("----------------------------------------------------");
         LOGGER.info("{}://{}:{} over {}", config.getScheme(), config.getHost(), config.getPort(), config.getHttpClientTransportBuilder().getType());
-        int resourceCount = config.getResource().descendantCount();
-        LOGGER.info("resource tree     : {} resource(s)", resourceCount);
+        if (config.getReplay() != null) {
+            LOGGER.info("replay            : {} at {}x", config.getReplay().getPath(), config.getReplay().getSpeed());
+        } else if (config.getScenarios().isEmpty()) {
+            LOGGER.info("resource tree     : {} resource(s)", config.getResource().descendantCount());
+        } else {
+            config.getScenarios().forEach(scenario -> LOGGER.info("scenario {}: weight {}, {} resource(s)", scenario.getName(), scenario.getWeight(), scenario.getResource().descendantCount()));
+        }
         Instant beginInstant = report.getBeginInstant();
         LOGGER.info("begin date time   : {}", dateTimeFormatter.format(beginInstant));
         Instant completeInstant = report.getCompleteInstant();
         LOGGER.info("complete date time: {}", dateTimeFormatter.format(completeInstant));
         LOGGER.info("recording time    : {} s", String.format("%.3f", (double)report.getRecordingDuration().toMillis() / 1000));
-        LOGGER.info("average cpu load  : {}/{}", String.format("%.3f", report.getAverageCPUPercent()), Runtime.getRuntime().availableProcessors() * 100);
+        LOGGER.info("average cpu load  : {}/{}", String.format("%.3f", report.getAverageCPUPercent()), report.getAvailableProcessors() * 100);
+        report.getThreadCPUTimes().keySet().forEach(group -> LOGGER.info("  {}: {}", String.format("%-16s", group), String.format("%.3f", report.getThreadCPUPercent(group))));
         LOGGER.info("");
         if (responseTimes.getTotalCount() > 0) {
             LOGGER.info("histogram:");
@@ -189,17 +411,119 @@ public class LoadGeneratorStarter {
         }
         double resourceRate = config.getResourceRate();
         LOGGER.info("nominal resource rate (resources/s): {}", String.format("%.3f", resourceRate));
-        LOGGER.info("nominal request rate (requests/s)  : {}", String.format("%.3f", resourceRate * resourceCount));
+        LOGGER.info("nominal request rate (requests/s)  : {}", String.format("%.3f", resourceRate * config.getResourceNodesPerIteration()));
         LOGGER.info("request rate (requests/s)          : {}", String.format("%.3f", report.getRequestRate()));
         LOGGER.info("response rate (responses/s)        : {}", String.format("%.3f", report.getResponseRate()));
         LOGGER.info("send rate (bytes/s)                : {}", String.format("%.3f", report.getSentBytesRate()));
         LOGGER.info("receive rate (bytes/s)             : {}", String.format("%.3f", report.getReceivedBytesRate()));
+        Map<String, ReportListener.ScenarioMetrics> scenarios = report.getScenarioMetrics();
+        if (!scenarios.isEmpty()) {
+            long trees = scenarios.values().stream().mapToLong(ReportListener.ScenarioMetrics::getResourceTrees).sum();
+            long weights = scenarios.values().stream().mapToLong(ReportListener.ScenarioMetrics::getWeight).sum();
+            scenarios.values().forEach(scenario -> {
+                LOGGER.info("scenario {}: trees/mix/nominal mix {}/{}%/{}%, responses/failures {}/{}", scenario.getName(), scenario.getResourceTrees(),
+                        String.format("%.1f", trees == 0 ? 0D : 100D * scenario.getResourceTrees() / trees),
+                        String.format("%.1f", 100D * scenario.getWeight() / weights),
+                        scenario.getResponses(), scenario.getFailures());
+                displayPercentiles("  response time (ms)", scenario.getResponseTimeHistogram(), value -> String.format("%.3f", value / 1_000_000D));
+            });
+        }
+        report.getOriginMetrics().values().forEach(origin -> {
+            LOGGER.info("origin {} {}://{}:{}: responses/failures {}/{}, connections opened/failed {}/{}", origin.getName(),
+                    origin.getScheme(), origin.getHost(), origin.getPort(), origin.getResponses(), origin.getFailures(),
+                    origin.getConnections(), origin.getConnectFailures());
+            displayPercentiles("  response time (ms)", origin.getResponseTimeHistogram(), value -> String.format("%.3f", value / 1_000_000D));
+            displayPercentiles("  connect time (ms)", origin.getConnectTimeHistogram(), value -> String.format("%.3f", value / 1_000_000D));
+        });
+        report.getHitDistributions().values().forEach(LoadGeneratorStarter::displayHitDistribution);
+        displayPercentiles("slot wait time (ms)", report.getSlotWaitTimeHistogram(), value -> String.format("%.3f", value / 1_000_000D));
         LOGGER.info("failures          : {}", report.getFailures());
+        report.getFailureCauses().forEach((cause, count) -> LOGGER.info("  {}: {}", String.format("%-16s", cause.getName()), count));
+        Map<Integer, Long> statusCodes = report.getStatusCodes();
         LOGGER.info("response 1xx group: {}", report.getResponses1xx());
+        displayStatusCodes(statusCodes, 1);
         LOGGER.info("response 2xx group: {}", report.getResponses2xx());
+        displayStatusCodes(statusCodes, 2);
         LOGGER.info("response 3xx group: {}", report.getResponses3xx());
+        displayStatusCodes(statusCodes, 3);
         LOGGER.info("response 4xx group: {}", report.getResponses4xx());
+        displayStatusCodes(statusCodes, 4);
         LOGGER.info("response 5xx group: {}", report.getResponses5xx());
+        displayStatusCodes(statusCodes, 5);
+        ReportListener.GeneratorHealth health = report.getGeneratorHealth();
+        LOGGER.info("generator health  : {}", health.isSaturated() ? "SATURATED" : "healthy");
+        health.getReasons().forEach(reason -> LOGGER.info("  {}", reason));
+        LOGGER.info("scheduling lag avg/max (ms)        : {}/{}", String.format("%.3f", health.getSchedulingLag() / 1_000_000D), String.format("%.3f", health.getMaxSchedulingLag() / 1_000_000D));
+        LOGGER.info("rejected requests                  : {}", health.getRejectedRequests());
+        LOGGER.info("max queued requests total/dest     : {}/{}", health.getMaxQueuedRequests(), health.getMaxDestinationQueuedRequests());
+        LOGGER.info("cpu time per request (us)          : {}", String.format("%.3f", health.getCPUTimePerRequest() / 1_000D));
+        LOGGER.info("max threads/file descriptors       : {}/{}", health.getMaxThreads(), health.getMaxFileDescriptors());
+        ReportListener.ConnectionMetrics connections = report.getConnectionMetrics();
+        LOGGER.info("connections opened/closed/failed   : {}/{}/{}", connections.getOpenedConnections(), connections.getClosedConnections(), connections.getConnectFailures());
+        LOGGER.info("max concurrent connections         : {}", connections.getMaxConnections());
+        displayPercentiles("connect time (ms)", connections.getConnectTimeHistogram(), value -> String.format("%.3f", value / 1_000_000D));
+        displayPercentiles("connection lifetime (s)", connections.getLifetimeHistogram(), value -> String.format("%.3f", value / 1_000_000_000D));
+        displayPercentiles("requests per connection", connections.getRequestsHistogram(), String::valueOf);
+        ReportListener.HTTP2Metrics http2 = report.getHTTP2Metrics();
+        if (http2.getSessionRecvWindow() > 0) {
+            LOGGER.info("http2 max streams server/used      : {}/{}", http2.getServerMaxConcurrentStreams(), http2.getMaxConcurrentStreams());
+            LOGGER.info("http2 max requests queued on stream: {}", http2.getMaxStreamQueuedRequests());
+            LOGGER.info("http2 session stalls/time (ms)     : {}/{}", http2.getSessionStalls(), String.format("%.3f", http2.getSessionStallTime() / 1_000_000D));
+            LOGGER.info("http2 stream stalls/time (ms)      : {}/{}", http2.getStreamStalls(), String.format("%.3f", http2.getStreamStallTime() / 1_000_000D));
+            LOGGER.info("http2 server stream send window    : {}", http2.getServerInitialStreamWindow());
+            LOGGER.info("http2 recv window sess/stream      : {}/{}", http2.getSessionRecvWindow(), http2.getStreamRecvWindow());
+            LOGGER.info("http2 min recv window sess/stream  : {}/{}", http2.getMinSessionRecvWindow(), http2.getMinStreamRecvWindow());
+        }
+        LOGGER.info("----------------------------------------------------");
+    }
+
+    static void displayHiccups(HiccupListener.Hiccups hiccups) {
+        Histogram histogram = hiccups.getHistogram();
+        LOGGER.info("load generator hiccups (ms)        : p50={} p99={} max={}",
+                String.format("%.3f", histogram.getValueAtPercentile(50) / 1_000_000D),
+                String.format("%.3f", histogram.getValueAtPercentile(99) / 1_000_000D),
+                String.format("%.3f", histogram.getMaxValue() / 1_000_000D));
+        LOGGER.info("load generator stalled time        : {} ms ({}%)",
+                String.format("%.3f", hiccups.getTotalHiccupTime() / 1_000_000D),
+                String.format("%.3f", hiccups.getStalledPercent()));
+        List<HiccupListener.IntervalHiccups> distorted = hiccups.getDistortedIntervals();
+        LOGGER.info("intervals distorted by hiccups     : {}/{}", distorted.size(), hiccups.getIntervals().size());
+        distorted.forEach(interval -> LOGGER.info("  {}: hiccup max {} ms, response time p99 {} ms",
+                interval.getBeginInstant(),
+                String.format("%.3f", interval.getHiccupMax() / 1_000_000D),
+                String.format("%.3f", interval.getResponseTimeP99() / 1_000_000D)));
         LOGGER.info("----------------------------------------------------");
     }
+
+    private static void displayStatusCodes(Map<Integer, Long> statusCodes, int group) {
+        statusCodes.forEach((code, count) -> {
+            if (code / 100 == group) {
+                LOGGER.info("  {}: {}", String.format("%-16d", code), count);
+            }
+        });
+    }
+
+    private static void displayPercentiles(String name, Histogram histogram, LongFunction<String> formatter) {
+        if (histogram.getTotalCount() > 0) {
+            LOGGER.info("{}: min/p50/p99/max {}/{}/{}/{}", String.format("%-35s", name),
+                    formatter.apply(histogram.getMinValue()),
+                    formatter.apply(histogram.getValueAtPercentile(50)),
+                    formatter.apply(histogram.getValueAtPercentile(99)),
+                    formatter.apply(histogram.getMaxValue()));
+        }
+    }
+
+    private static void displayHitDistribution(ReportListener.HitDistribution hits) {
+        long[] counts = hits.getHits();
+        long total = Arrays.stream(counts).sum();
+        LOGGER.info("feeder {}: {} hits over {} record(s), zipf exponent {}", hits.getName(), total, hits.getRecords(), hits.getExponent());
+        // Cumulative share of the hits on the most popular records.
+        long cumulated = 0;
+        long top = 1;
+        for (long count : counts) {
+            cumulated += count;
+            LOGGER.info("  top {}: {}%", String.format("%-12d", Math.min(top, hits.getRecords())), String.format("%.1f", total == 0 ? 0D : 100D * cumulated / total));
+            top *= 10;
+        }
+    }
 }
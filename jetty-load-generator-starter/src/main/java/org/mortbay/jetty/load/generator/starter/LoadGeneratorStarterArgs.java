@@ -16,32 +16,48 @@ package org.mortbay.jetty.load.generator.starter;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import com.beust.jcommander.Parameter;
 import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.xml.XmlConfiguration;
+import org.mortbay.jetty.load.generator.Feeder;
+import org.mortbay.jetty.load.generator.HARImporter;
 import org.mortbay.jetty.load.generator.HTTP1ClientTransportBuilder;
 import org.mortbay.jetty.load.generator.HTTP2ClientTransportBuilder;
 import org.mortbay.jetty.load.generator.HTTPClientTransportBuilder;
 import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.Origin;
+import org.mortbay.jetty.load.generator.Replay;
 import org.mortbay.jetty.load.generator.Resource;
+import org.mortbay.jetty.load.generator.ResourceJSONParser;
+import org.mortbay.jetty.load.generator.Scenario;
 
 public class LoadGeneratorStarterArgs {
+    private static final Logger LOGGER = Log.getLogger(LoadGeneratorStarterArgs.class);
+
     @Parameter(names = {"--threads", "-t"}, description = "Number of sender threads")
     private int threads = 1;
 
@@ -63,6 +79,12 @@ public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--channels-per-user", "-cpu"}, description = "Number of concurrent connections/streams per user")
     private int channelsPerUser = 128;
 
+    @Parameter(names = {"--max-requests-per-user", "-mrpu"}, description = "Maximum number of in-flight requests per user, 0 for no limit")
+    private int maxRequestsPerUser;
+
+    @Parameter(names = {"--max-requests-per-tree", "-mrpt"}, description = "Maximum number of in-flight requests per resource tree, 0 for no limit")
+    private int maxRequestsPerTree;
+
     @Parameter(names = {"--resource-xml-path", "-rxp"}, description = "Path to resource XML file")
     private String resourceXMLPath;
 
@@ -72,12 +94,36 @@ public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--resource-groovy-path", "-rgp"}, description = "Path to resource Groovy file")
     private String resourceGroovyPath;
 
+    @Parameter(names = {"--resource-har-path"}, description = "Path to a browser HAR file to convert into the resource tree")
+    private String resourceHARPath;
+
+    @Parameter(names = {"--scenarios-json-path"}, description = "Path to a JSON file with an array of weighted scenarios, each with name, weight and resource")
+    private String scenariosJSONPath;
+
+    @Parameter(names = {"--feeder-path"}, description = "Path to a CSV or line-delimited data file, whose columns fill the {column} variables of resource paths and request headers; may be repeated")
+    private List<String> feederPaths = new ArrayList<>();
+
+    @Parameter(names = {"--feeder-mode"}, description = "How feeder records are selected: sequential, random, circular or zipf")
+    private String feederMode = "circular";
+
+    @Parameter(names = {"--feeder-zipf-exponent"}, description = "The exponent of the Zipf popularity of feeder records in zipf mode")
+    private double feederZipfExponent = 1;
+
+    @Parameter(names = {"--replay-path"}, description = "Path to an NCSA access log or JSON lines request trace, optionally gzipped, to replay instead of sending resources at the resource rate")
+    private String replayPath;
+
+    @Parameter(names = {"--replay-speed"}, description = "The replay speed factor, for example 2 to replay twice as fast")
+    private double replaySpeed = 1;
+
     @Parameter(names = {"--resource-rate", "-rr"}, description = "Total resource tree rate, per second; use 0 for max request rate")
     private int resourceRate = 1;
 
     @Parameter(names = {"--rate-ramp-up", "-rru"}, description = "Rate ramp-up period, in seconds")
     private long rateRampUpPeriod = 0;
 
+    @Parameter(names = {"--probe-resource-rate"}, description = "Resource tree rate, per second, of a probe that runs in the same process and alone records response times; use 0 to disable the probe")
+    private int probeResourceRate;
+
     @Parameter(names = {"--scheme", "-s"}, description = "Target scheme (http/https)")
     private String scheme = "http";
 
@@ -87,6 +133,9 @@ public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--port", "-p"}, description = "Target port")
     private int port = 8080;
 
+    @Parameter(names = {"--origin"}, description = "An origin that resources may name, as name=scheme://host:port; may be repeated")
+    private List<String> originURIs = new ArrayList<>();
+
     @Parameter(names = {"--transport", "-tr"}, description = "Transport (http, https, h2, h2c)")
     private String transport = "http";
 
@@ -105,12 +154,30 @@ public class LoadGeneratorStarterArgs {
     @Parameter(names = {"--idle-timeout", "-it"}, description = "TCP connection idle timeout, in milliseconds")
     private long idleTimeout = 15000;
 
-    @Parameter(names = {"--stats-file", "-sf"}, description = "Statistics output file path in JSON format")
+    @Parameter(names = {"--stats-file", "-sf"}, description = "Statistics output file path")
     private String statsFile;
 
+    @Parameter(names = {"--stats-format", "-sfmt"}, description = "Statistics output file format (json/binary)")
+    private String statsFormat = "json";
+
+    @Parameter(names = {"--server-info-path"}, description = "Path of the target server resource that returns the server information to save in the statistics file, such as /.well-known/serverInfo")
+    private String serverInfoPath;
+
     @Parameter(names = {"--display-stats", "-ds"}, description = "Whether to display statistics in the terminal")
     private boolean displayStats;
 
+    @Parameter(names = {"--live"}, description = "Whether to display live statistics in the terminal, once per second")
+    private boolean live;
+
+    @Parameter(names = {"--event-log-directory"}, description = "Directory where to log one binary record per request, for offline analysis")
+    private String eventLogDirectory;
+
+    @Parameter(names = {"--hiccups"}, description = "Whether to record the load generator JVM hiccups, to detect response times distorted by the load generator")
+    private boolean hiccups;
+
+    @Parameter(names = {"--metrics-port"}, description = "Port of the HTTP endpoint that exposes live metrics at /metrics in OpenMetrics format; use 0 for an ephemeral port")
+    private int metricsPort = -1;
+
     @Parameter(names = {"--jmx"}, description = "Exports load generator components to the JVM platform MBeanServer as MBeans")
     private boolean jmx;
 
@@ -200,6 +267,22 @@ public class LoadGeneratorStarterArgs {
         this.channelsPerUser = channelsPerUser;
     }
 
+    public int getMaxRequestsPerUser() {
+        return maxRequestsPerUser;
+    }
+
+    public void setMaxRequestsPerUser(int maxRequestsPerUser) {
+        this.maxRequestsPerUser = maxRequestsPerUser;
+    }
+
+    public int getMaxRequestsPerTree() {
+        return maxRequestsPerTree;
+    }
+
+    public void setMaxRequestsPerTree(int maxRequestsPerTree) {
+        this.maxRequestsPerTree = maxRequestsPerTree;
+    }
+
     public String getResourceXMLPath() {
         return resourceXMLPath;
     }
@@ -216,6 +299,70 @@ public class LoadGeneratorStarterArgs {
         this.resourceJSONPath = resourceJSONPath;
     }
 
+    public String getResourceHARPath() {
+        return resourceHARPath;
+    }
+
+    public void setResourceHARPath(String resourceHARPath) {
+        this.resourceHARPath = resourceHARPath;
+    }
+
+    public String getScenariosJSONPath() {
+        return scenariosJSONPath;
+    }
+
+    public void setScenariosJSONPath(String scenariosJSONPath) {
+        this.scenariosJSONPath = scenariosJSONPath;
+    }
+
+    public List<String> getFeederPaths() {
+        return feederPaths;
+    }
+
+    public void setFeederPaths(List<String> feederPaths) {
+        this.feederPaths = feederPaths;
+    }
+
+    public List<String> getOriginURIs() {
+        return originURIs;
+    }
+
+    public void setOriginURIs(List<String> originURIs) {
+        this.originURIs = originURIs;
+    }
+
+    public String getFeederMode() {
+        return feederMode;
+    }
+
+    public void setFeederMode(String feederMode) {
+        this.feederMode = feederMode;
+    }
+
+    public double getFeederZipfExponent() {
+        return feederZipfExponent;
+    }
+
+    public void setFeederZipfExponent(double feederZipfExponent) {
+        this.feederZipfExponent = feederZipfExponent;
+    }
+
+    public String getReplayPath() {
+        return replayPath;
+    }
+
+    public void setReplayPath(String replayPath) {
+        this.replayPath = replayPath;
+    }
+
+    public double getReplaySpeed() {
+        return replaySpeed;
+    }
+
+    public void setReplaySpeed(double replaySpeed) {
+        this.replaySpeed = replaySpeed;
+    }
+
     public String getResourceGroovyPath() {
         return resourceGroovyPath;
     }
@@ -240,6 +387,14 @@ public class LoadGeneratorStarterArgs {
         this.rateRampUpPeriod = rateRampUpPeriod;
     }
 
+    public int getProbeResourceRate() {
+        return probeResourceRate;
+    }
+
+    public void setProbeResourceRate(int probeResourceRate) {
+        this.probeResourceRate = probeResourceRate;
+    }
+
     public String getScheme() {
         return scheme;
     }
@@ -330,6 +485,22 @@ public class LoadGeneratorStarterArgs {
         this.statsFile = statsFile;
     }
 
+    public String getStatsFormat() {
+        return statsFormat;
+    }
+
+    public void setStatsFormat(String statsFormat) {
+        this.statsFormat = statsFormat;
+    }
+
+    public String getServerInfoPath() {
+        return serverInfoPath;
+    }
+
+    public void setServerInfoPath(String serverInfoPath) {
+        this.serverInfoPath = serverInfoPath;
+    }
+
     public boolean isDisplayStats() {
         return displayStats;
     }
@@ -338,6 +509,38 @@ public class LoadGeneratorStarterArgs {
         this.displayStats = displayStats;
     }
 
+    public boolean isLive() {
+        return live;
+    }
+
+    public void setLive(boolean live) {
+        this.live = live;
+    }
+
+    public String getEventLogDirectory() {
+        return eventLogDirectory;
+    }
+
+    public void setEventLogDirectory(String eventLogDirectory) {
+        this.eventLogDirectory = eventLogDirectory;
+    }
+
+    public boolean isHiccups() {
+        return hiccups;
+    }
+
+    public void setHiccups(boolean hiccups) {
+        this.hiccups = hiccups;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
     public boolean isJMX() {
         return jmx;
     }
@@ -394,6 +597,14 @@ public class LoadGeneratorStarterArgs {
     }
 
     Resource getResource(LoadGenerator.Builder builder) throws Exception {
+        long begin = System.nanoTime();
+        Resource resource = loadResource(builder);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        LOGGER.info("resource tree of {} resource(s) loaded in {} ms", resource.descendantCount(), elapsed);
+        return resource;
+    }
+
+    private Resource loadResource(LoadGenerator.Builder builder) throws Exception {
         String jsonPath = getResourceJSONPath();
         if (jsonPath != null) {
             Path path = Paths.get(jsonPath);
@@ -404,6 +615,17 @@ public class LoadGeneratorStarterArgs {
             Path path = Paths.get(xmlPath);
             return (Resource)new XmlConfiguration(org.eclipse.jetty.util.resource.Resource.newResource(path)).configure();
         }
+        String harPath = getResourceHARPath();
+        if (harPath != null) {
+            List<Origin> origins = new ArrayList<>();
+            Resource resource = evaluateHAR(Paths.get(harPath), origins);
+            // The --origin options take precedence over the HAR origins.
+            Set<String> names = getOrigins().stream().map(Origin::getName).collect(Collectors.toSet());
+            origins.stream()
+                    .filter(origin -> !names.contains(origin.getName()))
+                    .forEach(origin -> builder.origin(origin.getName(), origin.getScheme(), origin.getHost(), origin.getPort()));
+            return resource;
+        }
         String groovyPath = getResourceGroovyPath();
         if (groovyPath != null) {
             Path path = Paths.get(groovyPath);
@@ -416,6 +638,54 @@ public class LoadGeneratorStarterArgs {
         return new Resource("/");
     }
 
+    Replay getReplay() {
+        String path = getReplayPath();
+        return path == null ? null : new Replay(path, getReplaySpeed());
+    }
+
+    List<Feeder> getFeeders() {
+        Feeder.Mode mode = Feeder.Mode.valueOf(getFeederMode().toUpperCase(Locale.ENGLISH));
+        List<Feeder> result = new ArrayList<>();
+        for (String path : getFeederPaths()) {
+            result.add(new Feeder(path, mode, getFeederZipfExponent()));
+        }
+        return result;
+    }
+
+    List<Origin> getOrigins() {
+        List<Origin> result = new ArrayList<>();
+        for (String origin : getOriginURIs()) {
+            int equals = origin.indexOf('=');
+            URI uri = equals > 0 ? URI.create(origin.substring(equals + 1)) : null;
+            if (uri == null || uri.getScheme() == null || uri.getHost() == null) {
+                throw new IllegalArgumentException("invalid origin, expected name=scheme://host:port: " + origin);
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ENGLISH);
+            int port = uri.getPort();
+            if (port < 0) {
+                port = "https".equals(scheme) ? 443 : 80;
+            }
+            result.add(new Origin(origin.substring(0, equals), scheme, uri.getHost(), port));
+        }
+        return result;
+    }
+
+    List<Scenario> getScenarios() throws IOException {
+        String jsonPath = getScenariosJSONPath();
+        if (jsonPath == null) {
+            return List.of();
+        }
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(jsonPath), StandardCharsets.UTF_8)) {
+            List<Scenario> result = new ArrayList<>();
+            for (Object element : (Object[])new JSON().parse(new JSON.ReaderSource(reader))) {
+                Scenario scenario = new Scenario();
+                scenario.fromJSON((Map<?, ?>)element);
+                result.add(scenario);
+            }
+            return result;
+        }
+    }
+
     static Resource evaluateJSON(Path profilePath) throws IOException {
         try (BufferedReader reader = Files.newBufferedReader(profilePath, StandardCharsets.UTF_8)) {
             return evaluateJSON(reader);
@@ -423,10 +693,17 @@ public class LoadGeneratorStarterArgs {
     }
 
     static Resource evaluateJSON(Reader reader) {
-        JSON json = new JSON();
-        Resource resource = new Resource();
-        resource.fromJSON((Map<?, ?>)json.parse(new JSON.ReaderSource(reader)));
-        return resource;
+        try {
+            return new ResourceJSONParser().parse(reader);
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    static Resource evaluateHAR(Path harPath, List<Origin> origins) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(harPath, StandardCharsets.UTF_8)) {
+            return HARImporter.toResource(reader, origins);
+        }
     }
 
     static Resource evaluateGroovy(Reader script, Map<String, Object> context) {
@@ -439,12 +716,20 @@ public class LoadGeneratorStarterArgs {
     }
 
     Executor getExecutor() {
+        return getExecutor("load-generator-executor");
+    }
+
+    Executor getExecutor(String name) {
         QueuedThreadPool executor = new QueuedThreadPool(getExecutorMaxThreads());
-        executor.setName("load-generator-executor");
+        executor.setName(name);
         return executor;
     }
     
     Scheduler getScheduler() {
-        return new ScheduledExecutorScheduler("load-generator-scheduler", false, getSchedulerMaxThreads());
+        return getScheduler("load-generator-scheduler");
+    }
+
+    Scheduler getScheduler(String name) {
+        return new ScheduledExecutorScheduler(name, false, getSchedulerMaxThreads());
     }
 }
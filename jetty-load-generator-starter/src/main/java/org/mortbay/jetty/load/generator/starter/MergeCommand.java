@@ -0,0 +1,149 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.ServerInfo;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+import org.mortbay.jetty.load.generator.listeners.StatsFile;
+
+/**
+ * <p>Merges the statistics files, in JSON or binary format, written via {@code --stats-file} by
+ * multiple load generators that ran concurrently against the same server.</p>
+ * <pre>
+ * java -jar jetty-load-generator-starter.jar merge --stats-file merged.json loader1.json loader2.json ...
+ * </pre>
+ * <p>The merged configuration is that of the first file, with the resource rate
+ * being the sum of the resource rates of all files; the merged report is
+ * computed by {@link ReportListener.Report#merge(List)}.</p>
+ */
+@Parameters(commandDescription = "Merges the statistics files of multiple load generators")
+class MergeCommand {
+    static final String NAME = "merge";
+    private static final Logger LOGGER = Log.getLogger(MergeCommand.class);
+
+    @Parameter(description = "<statistics files to merge>", required = true)
+    private List<String> files = new ArrayList<>();
+
+    @Parameter(names = {"--stats-file", "-sf"}, description = "Merged statistics output file path")
+    private String statsFile;
+
+    @Parameter(names = {"--stats-format", "-sfmt"}, description = "Merged statistics output file format (json/binary)")
+    private String statsFormat = "json";
+
+    @Parameter(names = {"--display-stats", "-ds"}, description = "Whether to display the merged statistics in the terminal")
+    private boolean displayStats;
+
+    @Parameter(names = {"--help"}, description = "Displays usage", help = true)
+    private boolean help;
+
+    List<String> getFiles() {
+        return files;
+    }
+
+    String getStatsFile() {
+        return statsFile;
+    }
+
+    String getStatsFormat() {
+        return statsFormat;
+    }
+
+    boolean isDisplayStats() {
+        return displayStats;
+    }
+
+    boolean isHelp() {
+        return help;
+    }
+
+    void run() throws IOException {
+        List<StatsFile> stats = new ArrayList<>();
+        for (String file : files) {
+            stats.add(StatsFile.read(Path.of(file)));
+        }
+        StatsFile merged = merge(files, stats);
+        if (isDisplayStats()) {
+            LoadGeneratorStarter.displayReport(merged.getConfig(), merged.getReport());
+        }
+        String statsFile = getStatsFile();
+        if (statsFile != null) {
+            LoadGeneratorStarter.writeStats(Path.of(statsFile), getStatsFormat(), merged);
+            LOGGER.info("merged load generator report saved to: {}", statsFile);
+        }
+    }
+
+    /**
+     * <p>Merges the statistics of multiple load generators that ran concurrently,
+     * logging how much later than the earliest each recording started.</p>
+     *
+     * @param names the names of the load generators, for logging
+     * @param stats the statistics to merge
+     * @return the merged statistics
+     */
+    static StatsFile merge(List<String> names, List<StatsFile> stats) {
+        List<LoadGenerator.Config> configs = new ArrayList<>();
+        List<ReportListener.Report> reports = new ArrayList<>();
+        ServerInfo serverInfo = null;
+        for (StatsFile stat : stats) {
+            configs.add(stat.getConfig());
+            reports.add(stat.getReport());
+            if (serverInfo == null) {
+                serverInfo = stat.getServerInfo();
+            }
+        }
+
+        ReportListener.Report merged = ReportListener.Report.merge(reports);
+        Instant readyInstant = merged.getReadyInstant();
+        Duration recording = merged.getRecordingDuration();
+        for (int i = 0; i < names.size(); ++i) {
+            ReportListener.Report report = reports.get(i);
+            Duration skew = Duration.between(readyInstant, report.getReadyInstant());
+            LOGGER.info("merging {}: {} responses, recording started {} ms after the earliest", names.get(i), report.getResponseTimeHistogram().getTotalCount(), skew.toMillis());
+            // Rates are computed over the union of the recording windows,
+            // so misaligned recordings result in lower merged rates.
+            if (skew.toNanos() > recording.toNanos() / 100) {
+                LOGGER.warn("recording of {} started {} ms after the earliest, more than 1% of the merged recording time", names.get(i), skew.toMillis());
+            }
+        }
+
+        return new StatsFile(mergeConfigs(configs), serverInfo, merged);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LoadGenerator.Config mergeConfigs(List<LoadGenerator.Config> configs) {
+        long resourceRate = configs.stream()
+                .mapToLong(LoadGenerator.Config::getResourceRate)
+                .sum();
+        // Config is immutable, so copy it via its JSON representation.
+        JSON json = new JSON();
+        Map<Object, Object> map = (Map<Object, Object>)json.parse(new JSON.StringSource(json.toJSON(configs.get(0))));
+        map.put("resourceRate", resourceRate);
+        LoadGenerator.Config config = new LoadGenerator.Config();
+        config.fromJSON(map);
+        return config;
+    }
+}
@@ -0,0 +1,160 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+
+/**
+ * <p>Exposes the load generator live metrics in
+ * <a href="https://openmetrics.io">OpenMetrics</a> text format at path {@code /metrics}.</p>
+ * <p>Metrics are updated at every {@link ReportListener.Interval}, and carry the
+ * timestamp of the end of the interval, so that they can be aligned with the
+ * metrics of the servers under test.</p>
+ */
+class OpenMetricsHandler extends AbstractHandler implements ReportListener.IntervalListener {
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final String PREFIX = "loadgenerator_";
+
+    private final double nominalRequestRate;
+    private long requests;
+    private long responses1xx;
+    private long responses2xx;
+    private long responses3xx;
+    private long responses4xx;
+    private long responses5xx;
+    private long failures;
+    private long sentBytes;
+    private long recvBytes;
+    private long openedConnections;
+    private long closedConnections;
+    private long sessionStallTime;
+    private long streamStallTime;
+    private volatile String metrics;
+
+    OpenMetricsHandler(LoadGenerator.Config config) {
+        this.nominalRequestRate = config.getResourceRate() * config.getResourceNodesPerIteration();
+        this.metrics = "# EOF\n";
+    }
+
+    @Override
+    public void onInterval(ReportListener.Interval interval) {
+        // Interval events are emitted by a single thread, no need to synchronize.
+        requests += interval.getRequests();
+        responses1xx += interval.getResponses1xx();
+        responses2xx += interval.getResponses2xx();
+        responses3xx += interval.getResponses3xx();
+        responses4xx += interval.getResponses4xx();
+        responses5xx += interval.getResponses5xx();
+        failures += interval.getFailures();
+        sentBytes += interval.getSentBytes();
+        recvBytes += interval.getReceivedBytes();
+        openedConnections += interval.getOpenedConnections();
+        closedConnections += interval.getClosedConnections();
+        sessionStallTime += interval.getSessionStallTime();
+        streamStallTime += interval.getStreamStallTime();
+
+        String timestamp = String.format(Locale.ENGLISH, "%.3f", interval.getEndInstant().toEpochMilli() / 1000D);
+        StringBuilder builder = new StringBuilder();
+        counter(builder, "requests", "Requests sent", timestamp, null, requests);
+        type(builder, "responses", "counter", "Responses received, by status code group");
+        sample(builder, "responses_total", "status=\"1xx\"", timestamp, responses1xx);
+        sample(builder, "responses_total", "status=\"2xx\"", timestamp, responses2xx);
+        sample(builder, "responses_total", "status=\"3xx\"", timestamp, responses3xx);
+        sample(builder, "responses_total", "status=\"4xx\"", timestamp, responses4xx);
+        sample(builder, "responses_total", "status=\"5xx\"", timestamp, responses5xx);
+        counter(builder, "failures", "Request failures", timestamp, null, failures);
+        counter(builder, "sent_bytes", "Bytes sent", timestamp, "bytes", sentBytes);
+        counter(builder, "received_bytes", "Bytes received", timestamp, "bytes", recvBytes);
+        counter(builder, "connections_opened", "Connections opened", timestamp, null, openedConnections);
+        counter(builder, "connections_closed", "Connections closed", timestamp, null, closedConnections);
+        type(builder, "connections", "gauge", "Open connections");
+        sample(builder, "connections", null, timestamp, interval.getConnections());
+        type(builder, "requests_in_flight", "gauge", "Requests sent whose response is not yet completed");
+        sample(builder, "requests_in_flight", null, timestamp, interval.getInFlightRequests());
+        type(builder, "requests_queued", "gauge", "Requests queued in the load generator, waiting for a connection");
+        sample(builder, "requests_queued", null, timestamp, interval.getQueuedRequests());
+        type(builder, "requests_queued_stream", "gauge", "HTTP/2 requests queued in the load generator, waiting for a stream");
+        sample(builder, "requests_queued_stream", null, timestamp, interval.getStreamQueuedRequests());
+        type(builder, "flow_control_stall_seconds", "counter", "Time HTTP/2 sessions and streams have been stalled by flow control");
+        unit(builder, "flow_control_stall_seconds", "seconds");
+        sample(builder, "flow_control_stall_seconds_total", "scope=\"session\"", timestamp, seconds(sessionStallTime));
+        sample(builder, "flow_control_stall_seconds_total", "scope=\"stream\"", timestamp, seconds(streamStallTime));
+        type(builder, "scheduling_lag_seconds", "gauge", "Average delay of sends with respect to their nominal schedule in the last interval");
+        unit(builder, "scheduling_lag_seconds", "seconds");
+        sample(builder, "scheduling_lag_seconds", null, timestamp, seconds(interval.getSchedulingLag()));
+        type(builder, "request_rate", "gauge", "Request rate in requests/s, nominal and achieved in the last interval");
+        sample(builder, "request_rate", "kind=\"nominal\"", timestamp, nominalRequestRate);
+        sample(builder, "request_rate", "kind=\"achieved\"", timestamp, interval.getRequestRate());
+        type(builder, "response_rate", "gauge", "Response rate in the last interval, in responses/s");
+        sample(builder, "response_rate", null, timestamp, interval.getResponseRate());
+        type(builder, "interval_response_time_seconds", "gauge", "Response time percentiles in the last interval");
+        unit(builder, "interval_response_time_seconds", "seconds");
+        sample(builder, "interval_response_time_seconds", "percentile=\"50\"", timestamp, seconds(interval.getResponseTimeP50()));
+        sample(builder, "interval_response_time_seconds", "percentile=\"99\"", timestamp, seconds(interval.getResponseTimeP99()));
+        sample(builder, "interval_response_time_seconds", "percentile=\"100\"", timestamp, seconds(interval.getResponseTimeMax()));
+        type(builder, "cpu_percent", "gauge", "Load generator CPU load in the last interval, across all cores");
+        sample(builder, "cpu_percent", null, timestamp, interval.getAverageCPUPercent());
+        type(builder, "thread_cpu_percent", "gauge", "Load generator CPU load in the last interval, across all cores, by thread group");
+        interval.getThreadCPUTimes().keySet().forEach(group -> sample(builder, "thread_cpu_percent", "group=\"" + group + "\"", timestamp, interval.getThreadCPUPercent(group)));
+        builder.append("# EOF\n");
+        metrics = builder.toString();
+    }
+
+    @Override
+    public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!"/metrics".equals(target)) {
+            return;
+        }
+        jettyRequest.setHandled(true);
+        response.setContentType(CONTENT_TYPE);
+        response.getOutputStream().write(metrics.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void counter(StringBuilder builder, String name, String help, String timestamp, String unit, long value) {
+        type(builder, name, "counter", help);
+        if (unit != null) {
+            unit(builder, name, unit);
+        }
+        sample(builder, name + "_total", null, timestamp, value);
+    }
+
+    private static void type(StringBuilder builder, String name, String type, String help) {
+        builder.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+        builder.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void unit(StringBuilder builder, String name, String unit) {
+        builder.append("# UNIT ").append(PREFIX).append(name).append(' ').append(unit).append('\n');
+    }
+
+    private static void sample(StringBuilder builder, String name, String labels, String timestamp, Object value) {
+        builder.append(PREFIX).append(name);
+        if (labels != null) {
+            builder.append('{').append(labels).append('}');
+        }
+        builder.append(' ').append(value).append(' ').append(timestamp).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000D;
+    }
+}
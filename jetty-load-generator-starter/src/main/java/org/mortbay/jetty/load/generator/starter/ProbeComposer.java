@@ -0,0 +1,59 @@
+//
+// ========================================================================
+// Copyright (c) 2016-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.mortbay.jetty.load.generator.starter;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+
+/**
+ * <p>Composes the {@link ReportListener.Interval}s of a loader with those of a probe
+ * that run in the same process, and notifies the composed intervals to the
+ * {@link ReportListener.IntervalListener}s added as beans.</p>
+ * <p>The loader and the probe sample with the same period, so the n-th interval
+ * of the loader is composed with the n-th interval of the probe.</p>
+ */
+class ProbeComposer extends ContainerLifeCycle {
+    private static final Logger LOGGER = Log.getLogger(ProbeComposer.class);
+
+    private final Queue<ReportListener.Interval> loaderIntervals = new ArrayDeque<>();
+    private final Queue<ReportListener.Interval> probeIntervals = new ArrayDeque<>();
+
+    ReportListener.IntervalListener getLoaderListener() {
+        return interval -> offer(loaderIntervals, interval);
+    }
+
+    ReportListener.IntervalListener getProbeListener() {
+        return interval -> offer(probeIntervals, interval);
+    }
+
+    private synchronized void offer(Queue<ReportListener.Interval> intervals, ReportListener.Interval interval) {
+        // Notify while holding the lock, because interval
+        // listeners expect to be notified by a single thread.
+        intervals.offer(interval);
+        while (!loaderIntervals.isEmpty() && !probeIntervals.isEmpty()) {
+            ReportListener.Interval composed = ReportListener.Interval.compose(loaderIntervals.poll(), probeIntervals.poll());
+            for (ReportListener.IntervalListener listener : getBeans(ReportListener.IntervalListener.class)) {
+                try {
+                    listener.onInterval(composed);
+                } catch (Throwable x) {
+                    LOGGER.info("ignored failure while invoking listener {}", listener, x);
+                }
+            }
+        }
+    }
+}
@@ -16,24 +16,54 @@ package org.mortbay.jetty.load.generator.starter;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.net.ssl.SSLHandshakeException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import com.beust.jcommander.JCommander;
 import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
 import org.HdrHistogram.HistogramLogReader;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
 import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
@@ -43,17 +73,26 @@ import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.servlet.StatisticsServlet;
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.Jetty;
 import org.eclipse.jetty.util.ajax.JSON;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.mortbay.jetty.load.generator.LoadGenerator;
+import org.mortbay.jetty.load.generator.Origin;
 import org.mortbay.jetty.load.generator.Resource;
+import org.mortbay.jetty.load.generator.ServerInfo;
+import org.mortbay.jetty.load.generator.listeners.EventLogListener;
+import org.mortbay.jetty.load.generator.listeners.FailureCause;
+import org.mortbay.jetty.load.generator.listeners.HiccupListener;
+import org.mortbay.jetty.load.generator.listeners.ReportListener;
+import org.mortbay.jetty.load.generator.listeners.StatsFile;
 
 public class LoadGeneratorStarterTest {
     private static final Logger LOGGER = Log.getLogger(LoadGeneratorStarterTest.class);
@@ -75,6 +114,7 @@ public class LoadGeneratorStarterTest {
         statsContext.addServlet(new ServletHolder(new StatisticsServlet()), "/stats");
         testServlet = new TestServlet(connector);
         statsContext.addServlet(new ServletHolder(testServlet), "/");
+        statsContext.addServlet(new ServletHolder(new ServerInfoServlet()), "/.well-known/serverInfo");
         server.start();
     }
 
@@ -258,6 +298,1214 @@ public class LoadGeneratorStarterTest {
         }
     }
 
+    @Test
+    public void testMergeStatsFiles() throws Exception {
+        int loaders = 2;
+        List<Path> statsPaths = new ArrayList<>();
+        List<CompletableFuture<Void>> runs = new ArrayList<>();
+        for (int i = 0; i < loaders; ++i) {
+            Path statsPath = Files.createTempFile(Path.of("target"), "jlg-stats-", ".json");
+            statsPath.toFile().deleteOnExit();
+            statsPaths.add(statsPath);
+            String[] args = new String[]{
+                    "--port",
+                    Integer.toString(connector.getLocalPort()),
+                    "--running-time",
+                    "2",
+                    "--resource-rate",
+                    "20",
+                    "--live",
+                    "--stats-file",
+                    statsPath.toString()
+            };
+            runs.add(CompletableFuture.runAsync(() -> {
+                try {
+                    LoadGeneratorStarter.main(args);
+                } catch (Exception x) {
+                    throw new RuntimeException(x);
+                }
+            }));
+        }
+        CompletableFuture.allOf(runs.toArray(new CompletableFuture[0])).get(15, TimeUnit.SECONDS);
+
+        long responses = 0;
+        for (Path statsPath : statsPaths) {
+            Map<?, ?> reportMap = (Map<?, ?>)readStats(statsPath).get("report");
+            ReportListener.Report report = new ReportListener.Report();
+            report.fromJSON(reportMap);
+            // The report must survive a round-trip.
+            JSON json = new JSON();
+            Map<?, ?> roundTrip = (Map<?, ?>)json.parse(new JSON.StringSource(json.toJSON(report)));
+            Assert.assertArrayEquals((Object[])reportMap.remove("intervals"), (Object[])roundTrip.remove("intervals"));
+            Assert.assertArrayEquals((Object[])reportMap.remove("scenarios"), (Object[])roundTrip.remove("scenarios"));
+            Assert.assertArrayEquals((Object[])reportMap.remove("origins"), (Object[])roundTrip.remove("origins"));
+            Assert.assertArrayEquals((Object[])reportMap.remove("hitDistributions"), (Object[])roundTrip.remove("hitDistributions"));
+            Map<?, ?> health = (Map<?, ?>)reportMap.remove("generatorHealth");
+            Map<?, ?> roundTripHealth = (Map<?, ?>)roundTrip.remove("generatorHealth");
+            Assert.assertArrayEquals((Object[])health.remove("reasons"), (Object[])roundTripHealth.remove("reasons"));
+            Assert.assertEquals(health, roundTripHealth);
+            Assert.assertEquals(reportMap, roundTrip);
+            Assert.assertEquals(report.getResponses2xx(), report.getResponseTimeHistogram().getTotalCount());
+            Assert.assertFalse(report.getIntervals().isEmpty());
+            responses += report.getResponses2xx();
+        }
+
+        Path mergedPath = Files.createTempFile(Path.of("target"), "jlg-merged-", ".json");
+        mergedPath.toFile().deleteOnExit();
+        List<String> args = new ArrayList<>(List.of("merge", "--display-stats", "--stats-file", mergedPath.toString()));
+        statsPaths.forEach(path -> args.add(path.toString()));
+        LoadGeneratorStarter.main(args.toArray(new String[0]));
+
+        Map<?, ?> merged = readStats(mergedPath);
+        LoadGenerator.Config config = new LoadGenerator.Config();
+        config.fromJSON((Map<?, ?>)merged.get("config"));
+        Assert.assertEquals(20 * loaders, config.getResourceRate());
+        ReportListener.Report report = new ReportListener.Report();
+        report.fromJSON((Map<?, ?>)merged.get("report"));
+        Assert.assertEquals(responses, report.getResponses2xx());
+        Assert.assertEquals(responses, report.getResponseTimeHistogram().getTotalCount());
+        long intervalResponses = report.getIntervals().stream().mapToLong(ReportListener.Interval::getResponses).sum();
+        Assert.assertEquals(responses, intervalResponses);
+        // The intervals of concurrent loaders are aligned, not appended.
+        Assert.assertTrue(report.getIntervals().size() <= 4);
+    }
+
+    @Test
+    public void testCoordinateAgents() throws Exception {
+        int agents = 2;
+        String secret = "s3cr3t";
+        List<Process> agentProcesses = new ArrayList<>();
+        List<String> agentAddresses = new ArrayList<>();
+        HttpClient httpClient = new HttpClient();
+        try {
+            // The agents run in their own JVMs, like in a real deployment.
+            for (int i = 0; i < agents; ++i) {
+                agentAddresses.add("127.0.0.1:" + forkAgent(agentProcesses, "--port", "0", "--secret", secret));
+            }
+
+            Path statsPath = Files.createTempFile(Path.of("target"), "jlg-coordinated-", ".json");
+            statsPath.toFile().deleteOnExit();
+            int iterations = 20;
+            LoadGeneratorStarter.main(new String[]{
+                    "coordinate",
+                    "--agents",
+                    String.join(",", agentAddresses),
+                    "--agent-secret",
+                    secret,
+                    // Long enough for the cold agent JVMs to prepare the run.
+                    "--start-delay",
+                    "2000",
+                    "--port",
+                    Integer.toString(connector.getLocalPort()),
+                    "--iterations",
+                    Integer.toString(iterations),
+                    "--resource-rate",
+                    "20",
+                    "--live",
+                    "--stats-file",
+                    statsPath.toString()
+            });
+
+            Map<?, ?> merged = readStats(statsPath);
+            LoadGenerator.Config config = new LoadGenerator.Config();
+            config.fromJSON((Map<?, ?>)merged.get("config"));
+            Assert.assertEquals(20 * agents, config.getResourceRate());
+            ReportListener.Report report = new ReportListener.Report();
+            report.fromJSON((Map<?, ?>)merged.get("report"));
+            Assert.assertEquals(iterations * agents, report.getResponses2xx());
+            Assert.assertFalse(report.getIntervals().isEmpty());
+
+            // The agents keep the report of the last run, and
+            // must have started at the same synchronized instant.
+            httpClient.start();
+            List<ReportListener.Report> reports = new ArrayList<>();
+            for (String agentAddress : agentAddresses) {
+                ContentResponse response = httpClient.newRequest("http://" + agentAddress + "/report")
+                        .header(AgentHandler.SECRET_HEADER, secret)
+                        .send();
+                Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+                reports.add(StatsFile.read(new ByteArrayInputStream(response.getContent())).getReport());
+            }
+            long skew = Math.abs(Duration.between(reports.get(0).getReadyInstant(), reports.get(1).getReadyInstant()).toMillis());
+            Assert.assertTrue("skew " + skew + " ms", skew < 250);
+
+            // Requests without the secret, or with a wrong one, are rejected.
+            String agentAddress = agentAddresses.get(0);
+            Assert.assertEquals(HttpStatus.FORBIDDEN_403, httpClient.GET("http://" + agentAddress + "/report").getStatus());
+            Assert.assertEquals(HttpStatus.FORBIDDEN_403, httpClient.newRequest("http://" + agentAddress + "/report")
+                    .header(AgentHandler.SECRET_HEADER, secret + "x")
+                    .send()
+                    .getStatus());
+        } finally {
+            httpClient.stop();
+            for (Process agentProcess : agentProcesses) {
+                agentProcess.destroy();
+                agentProcess.waitFor(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    public void testAgentRequiresSecret() throws Exception {
+        AgentCommand agent = new AgentCommand();
+        new JCommander(agent).parse("--port", "0");
+        // The secret may come from the environment.
+        Assume.assumeTrue(System.getenv(AgentCommand.SECRET_ENV) == null);
+        try {
+            agent.start();
+            Assert.fail();
+        } catch (IllegalArgumentException x) {
+            Assert.assertTrue(x.getMessage(), x.getMessage().contains("--secret"));
+        }
+        Assert.assertEquals("127.0.0.1", agent.getHost());
+    }
+
+    /**
+     * <p>Forks a JVM running an agent with the given arguments.</p>
+     *
+     * @param processes the list to add the agent process to
+     * @param args the agent arguments
+     * @return the agent port
+     */
+    private static int forkAgent(List<Process> processes, String... args) throws Exception {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp",
+                System.getProperty("java.class.path"),
+                LoadGeneratorStarter.class.getName(),
+                AgentCommand.NAME));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        processes.add(process);
+        CompletableFuture<Integer> port = new CompletableFuture<>();
+        Pattern listening = Pattern.compile("listening on [^:]+:(\\d+)");
+        Thread reader = new Thread(() -> {
+            // Keep reading the output, so that the agent does not block writing it.
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    Matcher matcher = listening.matcher(line);
+                    if (matcher.find()) {
+                        port.complete(Integer.parseInt(matcher.group(1)));
+                    }
+                }
+                port.completeExceptionally(new IllegalStateException("agent exited with " + process.waitFor()));
+            } catch (Throwable x) {
+                port.completeExceptionally(x);
+            }
+        }, "agent-output");
+        reader.setDaemon(true);
+        reader.start();
+        return port.get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCoordinateRejectsProcessOptions() throws Exception {
+        for (String[] option : List.of(
+                new String[]{"--probe-resource-rate", "10"},
+                new String[]{"--event-log-directory", "target"},
+                new String[]{"--hiccups"},
+                new String[]{"--metrics-port", "0"},
+                new String[]{"--jmx"})) {
+            List<String> args = new ArrayList<>(List.of("coordinate", "--agents", "localhost:0"));
+            args.addAll(List.of(option));
+            try {
+                LoadGeneratorStarter.main(args.toArray(new String[0]));
+                Assert.fail(option[0]);
+            } catch (IllegalArgumentException x) {
+                Assert.assertTrue(x.getMessage(), x.getMessage().contains(option[0]));
+            }
+        }
+    }
+
+    @Test
+    public void testLoaderAndProbe() throws Exception {
+        Path statsPath = Files.createTempFile(Path.of("target"), "jlg-probe-", ".json");
+        statsPath.toFile().deleteOnExit();
+        int iterations = 20;
+        int probeRate = 10;
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                Integer.toString(iterations),
+                "--resource-rate",
+                "20",
+                "--probe-resource-rate",
+                Integer.toString(probeRate),
+                "--live",
+                "--stats-file",
+                statsPath.toString()
+        };
+
+        // The loader and the probe end at the same time.
+        // This run also warms up the JVM, so that the
+        // generator health of the next run is accurate.
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(Arrays.copyOf(args, 8));
+        ReportListener loaderListener = new ReportListener();
+        ReportListener probeListener = new ReportListener();
+        LoadGenerator probe = LoadGeneratorStarter.configureProbe(starterArgs)
+                .listener(probeListener)
+                .resourceListener(probeListener)
+                .build();
+        LoadGenerator.Builder loaderBuilder = LoadGeneratorStarter.configure(starterArgs)
+                .listener(loaderListener)
+                .resourceListener(loaderListener);
+        LoadGeneratorStarter.endWith(probe, loaderBuilder);
+        CompletableFuture<Void> probeRun = probe.begin();
+        LoadGeneratorStarter.run(loaderBuilder.build());
+        probeRun.get(5, TimeUnit.SECONDS);
+        Instant loaderEnd = loaderListener.whenComplete().join().getEndInstant();
+        Instant probeEnd = probeListener.whenComplete().join().getEndInstant();
+        long skew = Duration.between(loaderEnd, probeEnd).toMillis();
+        // The probe notices the end within its period of 100 ms.
+        Assert.assertTrue("skew " + skew + " ms", skew >= 0 && skew < 250);
+
+        LoadGeneratorStarter.main(args);
+
+        Map<?, ?> stats = readStats(statsPath);
+        ReportListener.Report report = new ReportListener.Report();
+        report.fromJSON((Map<?, ?>)stats.get("report"));
+        // The probe runs at a lower rate, and ends when the loader ends,
+        // so it does not send all the configured iterations.
+        long probeResponses = report.getResponseTimeHistogram().getTotalCount();
+        Assert.assertTrue(String.valueOf(probeResponses), probeResponses > 0 && probeResponses < iterations);
+        Assert.assertEquals(iterations + probeResponses, report.getResponses2xx());
+        // Loader and probe run in the same process, so CPU is not double counted.
+        Assert.assertEquals(Runtime.getRuntime().availableProcessors(), report.getAvailableProcessors());
+        Assert.assertFalse(report.getIntervals().isEmpty());
+        long intervalResponseTimes = report.getIntervals().stream().mapToLong(ReportListener.Interval::getResponseTimeCount).sum();
+        Assert.assertEquals(probeResponses, intervalResponseTimes);
+        // The rates are computed from the counters, so they account for the
+        // loader even if it does not record response times.
+        Assert.assertEquals(iterations + probeResponses, report.getRequests());
+        Assert.assertTrue(String.valueOf(report.getRequestRate()), report.getRequestRate() > 20);
+        ReportListener.GeneratorHealth health = report.getGeneratorHealth();
+        Assert.assertEquals(20 + probeRate, health.getNominalRequestRate(), 0.001);
+        Assert.assertFalse(health.getReasons().toString(), health.isSaturated());
+    }
+
+    @Test
+    public void testWeightedScenarios() throws Exception {
+        Path scenariosPath = Files.createTempFile(Path.of("target"), "jlg-scenarios-", ".json");
+        scenariosPath.toFile().deleteOnExit();
+        Files.writeString(scenariosPath, "[" +
+                "{\"name\":\"browse\",\"weight\":70,\"resource\":{\"path\":\"/browse\",\"resources\":[{\"path\":\"/browse/image\"}]}}," +
+                "{\"name\":\"search\",\"weight\":25,\"resource\":{\"path\":\"/search\"}}," +
+                "{\"name\":\"buy\",\"weight\":5,\"resource\":{\"path\":\"/buy\"}}" +
+                "]", StandardCharsets.UTF_8);
+        Path statsPath = Files.createTempFile(Path.of("target"), "jlg-scenarios-", ".bin");
+        statsPath.toFile().deleteOnExit();
+        int iterations = 400;
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                Integer.toString(iterations),
+                "--resource-rate",
+                "0",
+                "--scenarios-json-path",
+                scenariosPath.toString(),
+                "--display-stats",
+                "--stats-file",
+                statsPath.toString(),
+                "--stats-format",
+                "binary"
+        };
+        LoadGeneratorStarter.main(args);
+
+        StatsFile stats = StatsFile.read(statsPath);
+        Assert.assertEquals(3, stats.getConfig().getScenarios().size());
+        Map<String, ReportListener.ScenarioMetrics> scenarios = stats.getReport().getScenarioMetrics();
+        Assert.assertEquals(List.of("browse", "search", "buy"), List.copyOf(scenarios.keySet()));
+        Assert.assertEquals(iterations, scenarios.values().stream().mapToLong(ReportListener.ScenarioMetrics::getResourceTrees).sum());
+        ReportListener.ScenarioMetrics browse = scenarios.get("browse");
+        // Expected 280 with a standard deviation of ~9.2.
+        Assert.assertTrue(String.valueOf(browse.getResourceTrees()), browse.getResourceTrees() > 230 && browse.getResourceTrees() < 330);
+        Assert.assertEquals(2 * browse.getResourceTrees(), browse.getResponses());
+        Assert.assertEquals(browse.getResponses(), browse.getResponseTimeHistogram().getTotalCount());
+        long responses = scenarios.values().stream().mapToLong(ReportListener.ScenarioMetrics::getResponses).sum();
+        Assert.assertEquals(stats.getReport().getResponseTimeHistogram().getTotalCount(), responses);
+
+        // The scenario metrics survive the JSON format.
+        JSON json = new JSON();
+        String jsonStats = json.toJSON(stats);
+        StatsFile jsonCopy = StatsFile.read(new ByteArrayInputStream(jsonStats.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(jsonStats, json.toJSON(jsonCopy));
+        Assert.assertEquals(browse.getResponses(), jsonCopy.getReport().getScenarioMetrics().get("browse").getResponses());
+    }
+
+    @Test
+    public void testZipfCatalog() throws Exception {
+        int records = 1000;
+        StringBuilder catalog = new StringBuilder();
+        for (int i = 0; i < records; ++i) {
+            catalog.append("item/").append(i).append("\n");
+        }
+        Path catalogPath = Files.createTempFile(Path.of("target"), "jlg-catalog-", ".txt");
+        catalogPath.toFile().deleteOnExit();
+        Files.writeString(catalogPath, catalog, StandardCharsets.UTF_8);
+        Path resourcePath = Files.createTempFile(Path.of("target"), "jlg-catalog-", ".json");
+        resourcePath.toFile().deleteOnExit();
+        String feederName = catalogPath.getFileName().toString().replace(".txt", "");
+        Files.writeString(resourcePath, "{\"path\":\"/{" + feederName + "}\"}", StandardCharsets.UTF_8);
+        Path statsPath = Files.createTempFile(Path.of("target"), "jlg-catalog-", ".bin");
+        statsPath.toFile().deleteOnExit();
+        int iterations = 500;
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                Integer.toString(iterations),
+                "--resource-rate",
+                "0",
+                "--resource-json-path",
+                resourcePath.toString(),
+                "--feeder-path",
+                catalogPath.toString(),
+                "--feeder-mode",
+                "zipf",
+                "--feeder-zipf-exponent",
+                "1.2",
+                "--display-stats",
+                "--stats-file",
+                statsPath.toString(),
+                "--stats-format",
+                "binary"
+        };
+        LoadGeneratorStarter.main(args);
+
+        StatsFile stats = StatsFile.read(statsPath);
+        Assert.assertEquals(iterations, stats.getReport().getResponses2xx());
+        ReportListener.HitDistribution hits = stats.getReport().getHitDistributions().get(feederName);
+        Assert.assertNotNull(hits);
+        Assert.assertEquals(records, hits.getRecords());
+        Assert.assertEquals(1.2, hits.getExponent(), 0);
+        long[] counts = hits.getHits();
+        // Buckets for ranks 1, 2-10, 11-100 and 101-1000.
+        Assert.assertEquals(4, counts.length);
+        Assert.assertEquals(iterations, Arrays.stream(counts).sum());
+        // With exponent 1.2 the top 10 records get ~68% of the hits.
+        Assert.assertTrue(Arrays.toString(counts), counts[0] + counts[1] > counts[2] + counts[3]);
+    }
+
+    @Test
+    public void testMaxRequestsPerTree() throws Exception {
+        Path resourcePath = Files.createTempFile(Path.of("target"), "jlg-page-", ".json");
+        resourcePath.toFile().deleteOnExit();
+        Files.writeString(resourcePath, "{\"path\":\"/\",\"resources\":[" +
+                "{\"path\":\"/1\"},{\"path\":\"/2\"},{\"path\":\"/3\"},{\"path\":\"/4\"}]}", StandardCharsets.UTF_8);
+        Path statsPath = Files.createTempFile(Path.of("target"), "jlg-page-", ".bin");
+        statsPath.toFile().deleteOnExit();
+        int iterations = 10;
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                Integer.toString(iterations),
+                "--resource-rate",
+                "0",
+                "--resource-json-path",
+                resourcePath.toString(),
+                "--max-requests-per-tree",
+                "2",
+                "--display-stats",
+                "--stats-file",
+                statsPath.toString(),
+                "--stats-format",
+                "binary"
+        };
+        LoadGeneratorStarter.main(args);
+
+        StatsFile stats = StatsFile.read(statsPath);
+        Assert.assertEquals(2, stats.getConfig().getMaxRequestsPerTree());
+        Assert.assertEquals(iterations * 5, stats.getReport().getResponses2xx());
+        // Every request waited, possibly for no time, for a slot.
+        Assert.assertEquals(iterations * 5, stats.getReport().getSlotWaitTimeHistogram().getTotalCount());
+    }
+
+    @Test
+    public void testOrigins() throws Exception {
+        Path resourcePath = Files.createTempFile(Path.of("target"), "jlg-page-", ".json");
+        resourcePath.toFile().deleteOnExit();
+        Files.writeString(resourcePath, "{\"path\":\"/\",\"resources\":[" +
+                "{\"path\":\"/style.css\",\"origin\":\"cdn\"},{\"path\":\"/script.js\",\"origin\":\"cdn\"}]}", StandardCharsets.UTF_8);
+        Path statsPath = Files.createTempFile(Path.of("target"), "jlg-page-", ".bin");
+        statsPath.toFile().deleteOnExit();
+        int iterations = 10;
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--origin",
+                "cdn=http://127.0.0.1:" + connector.getLocalPort(),
+                "--iterations",
+                Integer.toString(iterations),
+                "--resource-rate",
+                "0",
+                "--resource-json-path",
+                resourcePath.toString(),
+                "--display-stats",
+                "--stats-file",
+                statsPath.toString(),
+                "--stats-format",
+                "binary"
+        };
+        LoadGeneratorStarter.main(args);
+
+        StatsFile stats = StatsFile.read(statsPath);
+        Assert.assertEquals("127.0.0.1", stats.getConfig().findOrigin("cdn").getHost());
+        Map<String, ReportListener.OriginMetrics> origins = stats.getReport().getOriginMetrics();
+        Assert.assertEquals(List.of(Origin.DEFAULT, "cdn"), List.copyOf(origins.keySet()));
+        ReportListener.OriginMetrics origin = origins.get(Origin.DEFAULT);
+        Assert.assertEquals("localhost", origin.getHost());
+        Assert.assertEquals(iterations, origin.getResponses());
+        Assert.assertEquals(iterations, origin.getResponseTimeHistogram().getTotalCount());
+        Assert.assertTrue(origin.getConnections() > 0);
+        ReportListener.OriginMetrics cdn = origins.get("cdn");
+        Assert.assertEquals(2 * iterations, cdn.getResponses());
+        Assert.assertEquals(0, cdn.getFailures());
+        Assert.assertTrue(cdn.getConnections() > 0);
+        Assert.assertEquals(cdn.getConnections(), cdn.getConnectTimeHistogram().getTotalCount());
+    }
+
+    @Test
+    public void testHAR() throws Exception {
+        Path harPath = Files.createTempFile(Path.of("target"), "jlg-page-", ".har");
+        harPath.toFile().deleteOnExit();
+        Files.writeString(harPath, "{\"log\":{\"entries\":[" +
+                "{\"startedDateTime\":\"2021-03-01T10:00:00.000Z\",\"time\":100,\"request\":{\"method\":\"GET\",\"url\":\"http://localhost/index.html\",\"headers\":[]},\"response\":{\"content\":{\"size\":1024,\"mimeType\":\"text/html\"}}}," +
+                "{\"startedDateTime\":\"2021-03-01T10:00:00.150Z\",\"time\":10,\"request\":{\"method\":\"GET\",\"url\":\"http://localhost/style.css\",\"headers\":[]},\"response\":{\"content\":{\"size\":512,\"mimeType\":\"text/css\"}}}," +
+                "{\"startedDateTime\":\"2021-03-01T10:00:00.200Z\",\"time\":10,\"request\":{\"method\":\"GET\",\"url\":\"http://localhost/font.woff2\",\"headers\":[]},\"response\":{\"content\":{\"size\":256,\"mimeType\":\"font/woff2\"}}}," +
+                // Another origin, that is the same server.
+                "{\"startedDateTime\":\"2021-03-01T10:00:00.300Z\",\"time\":10,\"request\":{\"method\":\"GET\",\"url\":\"http://127.0.0.1:" + connector.getLocalPort() + "/lib.js\",\"headers\":[]},\"response\":{\"content\":{\"size\":128,\"mimeType\":\"application/javascript\"}}}" +
+                "]}}", StandardCharsets.UTF_8);
+
+        // Convert the HAR file to a resource JSON file.
+        Path resourcePath = Files.createTempFile(Path.of("target"), "jlg-page-", ".json");
+        resourcePath.toFile().deleteOnExit();
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(table, true, StandardCharsets.UTF_8));
+        try {
+            LoadGeneratorStarter.main(new String[]{"har", "--output", resourcePath.toString(), harPath.toString()});
+        } finally {
+            System.setOut(out);
+        }
+        Resource resource = LoadGeneratorStarterArgs.evaluateJSON(resourcePath);
+        Assert.assertEquals(4, resource.descendantCount());
+        Assert.assertEquals("/font.woff2", resource.getResources().get(0).getResources().get(0).getPath());
+        Assert.assertEquals("127.0.0.1", resource.getResources().get(0).getResources().get(1).getOrigin());
+        Assert.assertEquals("--origin 127.0.0.1=http://127.0.0.1:" + connector.getLocalPort(), table.toString(StandardCharsets.UTF_8).trim());
+
+        // Use the HAR file directly.
+        Path statsPath = Files.createTempFile(Path.of("target"), "jlg-har-", ".json");
+        statsPath.toFile().deleteOnExit();
+        int iterations = 5;
+        LoadGeneratorStarter.main(new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                Integer.toString(iterations),
+                "--resource-rate",
+                "0",
+                "--resource-har-path",
+                harPath.toString(),
+                "--stats-file",
+                statsPath.toString()
+        });
+        ReportListener.Report report = new ReportListener.Report();
+        report.fromJSON((Map<?, ?>)readStats(statsPath).get("report"));
+        // The HAR origins are configured automatically.
+        Assert.assertEquals(4 * iterations, report.getResponses2xx());
+    }
+
+    @Test
+    public void testBinaryStatsFile() throws Exception {
+        Path statsPath = Files.createTempFile(Path.of("target"), "jlg-stats-", ".bin");
+        statsPath.toFile().deleteOnExit();
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--running-time",
+                "2",
+                "--resource-rate",
+                "20",
+                "--live",
+                "--stats-file",
+                statsPath.toString(),
+                "--stats-format",
+                "binary",
+                "--server-info-path",
+                "/.well-known/serverInfo"
+        };
+        LoadGeneratorStarter.main(args);
+
+        StatsFile stats = StatsFile.read(statsPath);
+        Assert.assertEquals(connector.getLocalPort(), stats.getConfig().getPort());
+        Assert.assertNotNull(stats.getServerInfo());
+        Assert.assertEquals(Jetty.VERSION, stats.getServerInfo().getServerVersion());
+        ReportListener.Report report = stats.getReport();
+        long responses = report.getResponses2xx();
+        Assert.assertTrue(responses > 0);
+        Assert.assertEquals(responses, report.getResponseTimeHistogram().getTotalCount());
+        Assert.assertEquals(responses, report.getIntervals().stream().mapToLong(ReportListener.Interval::getResponses).sum());
+
+        // The binary format must be equivalent to, and smaller than, the JSON format.
+        JSON json = new JSON();
+        String jsonStats = json.toJSON(stats);
+        StatsFile jsonCopy = StatsFile.read(new ByteArrayInputStream(jsonStats.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(jsonStats, json.toJSON(jsonCopy));
+        Assert.assertTrue(Files.size(statsPath) < jsonStats.length() / 2);
+
+        // Binary statistics files can be merged too.
+        Path mergedPath = Files.createTempFile(Path.of("target"), "jlg-merged-", ".bin");
+        mergedPath.toFile().deleteOnExit();
+        LoadGeneratorStarter.main(new String[]{"merge", "--stats-format", "binary", "--stats-file", mergedPath.toString(), statsPath.toString()});
+        StatsFile merged = StatsFile.read(mergedPath);
+        Assert.assertEquals(Jetty.VERSION, merged.getServerInfo().getServerVersion());
+        Assert.assertEquals(responses, merged.getReport().getResponseTimeHistogram().getTotalCount());
+        Assert.assertEquals(report.getResponseTimeHistogram().getValueAtPercentile(99), merged.getReport().getResponseTimeHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testBinaryStatsFileVersion1() throws Exception {
+        Histogram histogram = new Histogram(3);
+        histogram.recordValue(1000);
+        histogram.recordValue(2000);
+        histogram.setStartTimeStamp(1000);
+        histogram.setEndTimeStamp(2000);
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+
+        // Version 1 stored the compressed histogram without its length.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.write(new byte[]{'J', 'L', 'G', 'S', 1});
+        output.writeByte(4);
+        // ZigZag varint section length.
+        long sectionLength = (16 + length) << 1;
+        while ((sectionLength & ~0x7FL) != 0) {
+            output.writeByte((int)((sectionLength & 0x7F) | 0x80));
+            sectionLength >>>= 7;
+        }
+        output.writeByte((int)sectionLength);
+        output.writeLong(histogram.getStartTimeStamp());
+        output.writeLong(histogram.getEndTimeStamp());
+        output.write(buffer.array(), 0, length);
+        output.writeByte(0);
+
+        Histogram read = StatsFile.read(new ByteArrayInputStream(bytes.toByteArray())).getReport().getResponseTimeHistogram();
+        Assert.assertEquals(histogram, read);
+        Assert.assertEquals(histogram.getStartTimeStamp(), read.getStartTimeStamp());
+        Assert.assertEquals(histogram.getEndTimeStamp(), read.getEndTimeStamp());
+    }
+
+    @Test
+    public void testStatusCodesAndFailureCauses() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                "10",
+                "--resource-rate",
+                "0"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        ReportListener listener = new ReportListener();
+        Resource resource = new Resource("/",
+                new Resource("/?status=404"),
+                new Resource("/?status=503"),
+                new Resource("/?status=503"));
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .resource(resource)
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+        LoadGeneratorStarter.run(generator);
+        ReportListener.Report report = listener.whenComplete().join();
+
+        Assert.assertEquals(Map.of(200, 10L, 404, 10L, 503, 20L), report.getStatusCodes());
+        Assert.assertEquals(10, report.getResponses4xx());
+        Assert.assertEquals(20, report.getResponses(503));
+        Assert.assertEquals(0, report.getFailures());
+
+        // Binary statistics files preserve the status codes.
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StatsFile(generator.getConfig(), null, report).write(output);
+        StatsFile stats = StatsFile.read(new ByteArrayInputStream(output.toByteArray()));
+        Assert.assertEquals(report.getStatusCodes(), stats.getReport().getStatusCodes());
+
+        // Make requests to a closed port.
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        starterArgs.setPort(closedPort);
+        listener = new ReportListener();
+        generator = LoadGeneratorStarter.configure(starterArgs)
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+        LoadGeneratorStarter.run(generator);
+        report = listener.whenComplete().join();
+
+        Assert.assertEquals(10, report.getFailures());
+        Assert.assertEquals(Map.of(FailureCause.CONNECT_REFUSED, 10L), report.getFailureCauses());
+        Assert.assertTrue(report.getStatusCodes().isEmpty());
+        JSON json = new JSON();
+        Map<?, ?> reportMap = (Map<?, ?>)json.parse(new JSON.StringSource(json.toJSON(report)));
+        Assert.assertEquals(Map.of(FailureCause.CONNECT_REFUSED.getName(), 10L), reportMap.get("failureCauses"));
+        ReportListener.Report copy = new ReportListener.Report();
+        copy.fromJSON(reportMap);
+        Assert.assertEquals(report.getFailureCauses(), copy.getFailureCauses());
+
+        Assert.assertEquals(FailureCause.IDLE_TIMEOUT, FailureCause.of(new TimeoutException("Idle timeout 15000 ms")));
+        Assert.assertEquals(FailureCause.CONNECT_TIMEOUT, FailureCause.of(new SocketTimeoutException("Connect Timeout")));
+        Assert.assertEquals(FailureCause.REJECTED, FailureCause.of(new RejectedExecutionException("Max requests queued per destination 1024 exceeded")));
+        Assert.assertEquals(FailureCause.RESET, FailureCause.of(new IOException(new SocketException("Connection reset"))));
+        Assert.assertEquals(FailureCause.TLS, FailureCause.of(new SSLHandshakeException("handshake failure")));
+        Assert.assertEquals(FailureCause.OTHER, FailureCause.of(new IllegalStateException()));
+    }
+
+    @Test
+    public void testGeneratorHealth() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                "5",
+                "--resource-rate",
+                "0"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        ReportListener listener = new ReportListener();
+        listener.setSamplePeriod(100);
+        Resource[] children = new Resource[16];
+        for (int i = 0; i < children.length; ++i) {
+            children[i] = new Resource("/" + i);
+        }
+        Resource resource = new Resource("/", children);
+        // A single connection with a single queued request
+        // saturates the load generator, that rejects requests.
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .channelsPerUser(1)
+                .maxRequestsQueued(1)
+                .resource(resource)
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+        LoadGeneratorStarter.run(generator);
+        ReportListener.Report report = listener.whenComplete().join();
+
+        ReportListener.GeneratorHealth health = report.getGeneratorHealth();
+        Assert.assertTrue(health.getRejectedRequests() > 0);
+        Assert.assertEquals(health.getRejectedRequests(), (long)report.getFailureCauses().get(FailureCause.REJECTED));
+        Assert.assertTrue(health.isSaturated());
+        Assert.assertTrue(health.getMaxThreads() > 0);
+        Assert.assertTrue(health.getCPUTimePerRequest() > 0);
+
+        // The generator health survives the statistics files round trip.
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StatsFile(generator.getConfig(), null, report).write(output);
+        ReportListener.GeneratorHealth binary = StatsFile.read(new ByteArrayInputStream(output.toByteArray())).getReport().getGeneratorHealth();
+        Assert.assertEquals(health.getRejectedRequests(), binary.getRejectedRequests());
+        Assert.assertEquals(health.getMaxThreads(), binary.getMaxThreads());
+        Assert.assertTrue(binary.isSaturated());
+        JSON json = new JSON();
+        Map<?, ?> reportMap = (Map<?, ?>)json.parse(new JSON.StringSource(json.toJSON(report)));
+        Map<?, ?> healthMap = (Map<?, ?>)reportMap.get("generatorHealth");
+        Assert.assertEquals("saturated", healthMap.get("verdict"));
+        ReportListener.Report copy = new ReportListener.Report();
+        copy.fromJSON(reportMap);
+        Assert.assertEquals(health.getReasons(), copy.getGeneratorHealth().getReasons());
+    }
+
+    @Test
+    public void testGeneratorHealthWithRateLimit() throws Exception {
+        ReportListener.GeneratorHealth health = runRateLimited(0);
+        Assert.assertEquals(20, health.getNominalRequestRate(), 0.001);
+        Assert.assertFalse(health.getReasons().toString(), health.isSaturated());
+    }
+
+    @Test
+    public void testGeneratorHealthWithRateRampUp() throws Exception {
+        // The ramp-up overlaps the recording, so the average
+        // nominal request rate is less than the rate.
+        ReportListener.GeneratorHealth health = runRateLimited(2);
+        double nominalRate = health.getNominalRequestRate();
+        Assert.assertTrue(String.valueOf(nominalRate), nominalRate > 10 && nominalRate < 18);
+        Assert.assertFalse(health.getReasons().toString(), health.isSaturated());
+    }
+
+    private ReportListener.GeneratorHealth runRateLimited(long rateRampUpPeriod) throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--running-time",
+                "4",
+                "--resource-rate",
+                "20",
+                "--rate-ramp-up",
+                Long.toString(rateRampUpPeriod),
+                // Warm up, so that the recording is not affected by the cold start.
+                "--warmup-iterations",
+                "5"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        ReportListener listener = new ReportListener();
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+        LoadGeneratorStarter.run(generator);
+        return listener.whenComplete().join().getGeneratorHealth();
+    }
+
+    @Test
+    public void testConnectionMetrics() throws Exception {
+        // Persistent connections, one per user.
+        ReportListener.ConnectionMetrics persistent = runConnectionMetrics("/", 2);
+        Assert.assertEquals(2, persistent.getOpenedConnections());
+        Assert.assertEquals(0, persistent.getConnectFailures());
+        Assert.assertEquals(2, persistent.getMaxConnections());
+        Assert.assertEquals(2, persistent.getConnectTimeHistogram().getTotalCount());
+        Assert.assertTrue(persistent.getConnectTimeHistogram().getMaxValue() > 0);
+        // Connections still open at completion are accounted.
+        Assert.assertEquals(2, persistent.getLifetimeHistogram().getTotalCount());
+        // The iterations are distributed among the users.
+        Assert.assertEquals(5, persistent.getRequestsHistogram().getMaxValue());
+
+        // The server closes the connection after every response.
+        ReportListener.ConnectionMetrics closing = runConnectionMetrics("/?close=true", 1);
+        Assert.assertEquals(10, closing.getOpenedConnections());
+        Assert.assertTrue(closing.getClosedConnections() >= 9);
+        // The next connection may be opened before the previous is closed.
+        Assert.assertTrue(closing.getMaxConnections() <= 2);
+        Assert.assertEquals(10, closing.getLifetimeHistogram().getTotalCount());
+        Assert.assertEquals(1, closing.getRequestsHistogram().getMaxValue());
+    }
+
+    private ReportListener.ConnectionMetrics runConnectionMetrics(String path, int users) throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                "10",
+                "--users-per-thread",
+                Integer.toString(users),
+                "--resource-rate",
+                "0"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        ReportListener listener = new ReportListener();
+        listener.setSamplePeriod(100);
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .channelsPerUser(1)
+                .resource(new Resource(path))
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+        generator.addBean(listener);
+        LoadGeneratorStarter.run(generator);
+        ReportListener.Report report = listener.whenComplete().join();
+        ReportListener.ConnectionMetrics metrics = report.getConnectionMetrics();
+        long opened = report.getIntervals().stream().mapToLong(ReportListener.Interval::getOpenedConnections).sum();
+        Assert.assertTrue(opened <= metrics.getOpenedConnections());
+
+        // The connection metrics survive the statistics files round trip.
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StatsFile(generator.getConfig(), null, report).write(output);
+        ReportListener.ConnectionMetrics binary = StatsFile.read(new ByteArrayInputStream(output.toByteArray())).getReport().getConnectionMetrics();
+        Assert.assertEquals(metrics.getOpenedConnections(), binary.getOpenedConnections());
+        Assert.assertEquals(metrics.getRequestsHistogram(), binary.getRequestsHistogram());
+        JSON json = new JSON();
+        ReportListener.Report copy = new ReportListener.Report();
+        copy.fromJSON((Map<?, ?>)json.parse(new JSON.StringSource(json.toJSON(report))));
+        Assert.assertEquals(metrics.getMaxConnections(), copy.getConnectionMetrics().getMaxConnections());
+        Assert.assertEquals(metrics.getLifetimeHistogram().getTotalCount(), copy.getConnectionMetrics().getLifetimeHistogram().getTotalCount());
+        return metrics;
+    }
+
+    @Test
+    public void testHiccups() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--running-time",
+                "2",
+                "--resource-rate",
+                "20",
+                "--hiccups",
+                "--display-stats"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        Assert.assertTrue(starterArgs.isHiccups());
+        ReportListener listener = new ReportListener();
+        listener.setSamplePeriod(250);
+        HiccupListener hiccupListener = new HiccupListener();
+        listener.addBean(hiccupListener);
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .listener(listener)
+                .listener(hiccupListener)
+                .resourceListener(listener)
+                .build();
+        LoadGeneratorStarter.run(generator);
+        ReportListener.Report report = listener.whenComplete().join();
+        HiccupListener.Hiccups hiccups = hiccupListener.whenComplete().get(5, TimeUnit.SECONDS);
+
+        // The hiccup thread samples every millisecond for 2 seconds.
+        Assert.assertTrue(hiccups.getHistogram().getTotalCount() > 1000);
+        Assert.assertTrue(hiccups.getStalledPercent() < 100);
+        List<HiccupListener.IntervalHiccups> intervals = hiccups.getIntervals();
+        Assert.assertEquals(report.getIntervals().size(), intervals.size());
+        for (int i = 0; i < intervals.size(); ++i) {
+            Assert.assertEquals(report.getIntervals().get(i).getBeginInstant(), intervals.get(i).getBeginInstant());
+            Assert.assertTrue(intervals.get(i).getHiccupMax() <= hiccups.getHistogram().getMaxValue());
+        }
+
+        // Verify that the hiccups are displayed.
+        LoadGeneratorStarter.main(args);
+    }
+
+    @Test
+    public void testEventLog() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                "20",
+                "--resource-rate",
+                "0"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        ReportListener listener = new ReportListener();
+        Path directory = Files.createTempDirectory(Path.of("target"), "jlg-events-");
+        // Small segments, to test records spanning multiple segments.
+        EventLogListener eventLog = new EventLogListener(directory, EventLogListener.HEADER_SIZE + 7 * EventLogListener.RECORD_SIZE, 16);
+        Resource resource = new Resource("/",
+                new Resource("/?status=404"),
+                new Resource("/?status=503"));
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .resource(resource)
+                .listener(listener)
+                .listener(eventLog)
+                .resourceListener(listener)
+                .resourceListener(eventLog)
+                .build();
+        LoadGeneratorStarter.run(generator);
+        listener.whenComplete().join();
+
+        Assert.assertEquals(60, eventLog.getRecords());
+        Assert.assertEquals(0, eventLog.getDroppedRecords());
+        Assert.assertEquals(List.of("GET /", "GET /?status=404", "GET /?status=503"), Files.readAllLines(directory.resolve(EventLogListener.RESOURCES_FILE)));
+        Map<Integer, Integer> statusByResource = new HashMap<>();
+        AtomicInteger records = new AtomicInteger();
+        long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        EventLogListener.read(directory, record -> {
+            records.incrementAndGet();
+            Assert.assertNull(record.getFailureCause());
+            Assert.assertTrue(record.getResponseTime() >= record.getRequestTime());
+            Assert.assertTrue(record.getRequestEpochNanos() <= now);
+            Integer previous = statusByResource.put(record.getResourceIndex(), record.getStatus());
+            Assert.assertTrue(previous == null || previous == record.getStatus());
+        });
+        Assert.assertEquals(60, records.get());
+        Assert.assertEquals(Map.of(0, 200, 1, 404, 2, 503), statusByResource);
+
+        // Make requests to a closed port.
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        starterArgs.setPort(closedPort);
+        starterArgs.setIterations(5);
+        eventLog = new EventLogListener(directory);
+        generator = LoadGeneratorStarter.configure(starterArgs)
+                .listener(eventLog)
+                .resourceListener(eventLog)
+                .build();
+        LoadGeneratorStarter.run(generator);
+
+        // The records of the previous run have been removed.
+        List<FailureCause> failures = new ArrayList<>();
+        EventLogListener.read(directory, record -> failures.add(record.getFailureCause()));
+        Assert.assertEquals(Collections.nCopies(5, FailureCause.CONNECT_REFUSED), failures);
+    }
+
+    @Test
+    public void testAnalyzeEventLog() throws Exception {
+        Path directory = Files.createTempDirectory(Path.of("target"), "jlg-events-");
+        LoadGeneratorStarter.main(new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--iterations",
+                "20",
+                "--resource-rate",
+                "0",
+                "--event-log-directory",
+                directory.toString()
+        });
+
+        Path csv = Files.createTempFile(Path.of("target"), "jlg-analysis-", ".csv");
+        LoadGeneratorStarter.main(new String[]{
+                AnalyzeCommand.NAME,
+                "--window",
+                "1",
+                "--output",
+                csv.toString(),
+                directory.toString()
+        });
+        List<String> lines = Files.readAllLines(csv);
+        Assert.assertTrue(lines.get(0).startsWith("dimension,key,count,"));
+        Map<String, Long> counts = lines.stream()
+                .skip(1)
+                .map(line -> line.split(","))
+                .collect(Collectors.toMap(fields -> fields[0] + ":" + fields[1], fields -> Long.parseLong(fields[2]), Long::sum));
+        Assert.assertEquals(20, (long)counts.get("phase:\"response\""));
+        Assert.assertEquals(20, (long)counts.get("phase:\"latency\""));
+        Assert.assertEquals(20, (long)counts.get("status:\"200\""));
+        Assert.assertEquals(20, (long)counts.get("resource:\"GET /\""));
+        long windowed = counts.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith("window:"))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+        Assert.assertEquals(20, windowed);
+
+        // Filtered out requests are not analyzed.
+        LoadGeneratorStarter.main(new String[]{
+                AnalyzeCommand.NAME,
+                "--status",
+                "404",
+                "--output",
+                csv.toString(),
+                directory.toString()
+        });
+        Assert.assertEquals(1, Files.readAllLines(csv).size());
+
+        Path hlog = Files.createTempFile(Path.of("target"), "jlg-analysis-", ".hlog");
+        LoadGeneratorStarter.main(new String[]{
+                AnalyzeCommand.NAME,
+                "--resource",
+                "/",
+                "--output",
+                hlog.toString(),
+                "--output-format",
+                "hlog",
+                directory.toString()
+        });
+        long hlogCount = 0;
+        try (InputStream input = Files.newInputStream(hlog)) {
+            HistogramLogReader reader = new HistogramLogReader(input);
+            while (reader.hasNext()) {
+                hlogCount += ((Histogram)reader.nextIntervalHistogram()).getTotalCount();
+            }
+        }
+        Assert.assertEquals(20, hlogCount);
+    }
+
+    @Test
+    public void testCompareStatsFiles() throws Exception {
+        Path baseline = runToStatsFile("/");
+        Path current = runToStatsFile("/");
+        Path slower = runToStatsFile("/?delay=100");
+
+        Assert.assertEquals(0, compare("--baseline", baseline.toString(), current.toString(), "--max-rate-decrease", "100", "--max-percentile-increase", "1000", "--min-distance", "1"));
+        Assert.assertEquals(CompareCommand.REGRESSION_EXIT_CODE, compare("--baseline", baseline.toString(), slower.toString()));
+        // Faster is not a regression.
+        Assert.assertEquals(0, compare("--baseline", slower.toString(), baseline.toString(), "--max-rate-decrease", "100"));
+
+        Histogram histogram1 = new Histogram(3);
+        Histogram histogram2 = new Histogram(3);
+        for (int i = 1; i <= 1000; ++i) {
+            histogram1.recordValue(i);
+            histogram2.recordValue(i + 500);
+        }
+        CompareCommand.KolmogorovSmirnov ks = CompareCommand.KolmogorovSmirnov.test(histogram1, histogram2);
+        Assert.assertEquals(0.5, ks.getDistance(), 0.01);
+        Assert.assertTrue(ks.getPValue() < 0.001);
+        ks = CompareCommand.KolmogorovSmirnov.test(histogram1, histogram1);
+        Assert.assertEquals(0, ks.getDistance(), 0);
+        Assert.assertEquals(1, ks.getPValue(), 0);
+        // One-sided: smaller values are not a regression.
+        ks = CompareCommand.KolmogorovSmirnov.test(histogram2, histogram1);
+        Assert.assertEquals(0, ks.getDistance(), 0);
+    }
+
+    private Path runToStatsFile(String path) throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--warmup-iterations",
+                "5",
+                "--iterations",
+                "20",
+                "--resource-rate",
+                "40"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        ReportListener listener = new ReportListener();
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .resource(new Resource(path))
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+        LoadGeneratorStarter.run(generator);
+        ReportListener.Report report = listener.whenComplete().join();
+        Path statsPath = Files.createTempFile(Path.of("target"), "jlg-stats-", ".json");
+        LoadGeneratorStarter.writeStats(statsPath, "json", new StatsFile(generator.getConfig(), null, report));
+        return statsPath;
+    }
+
+    private static int compare(String... args) throws IOException {
+        CompareCommand command = new CompareCommand();
+        new JCommander(command).parse(args);
+        return command.run();
+    }
+
+    private static Map<?, ?> readStats(Path statsPath) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(statsPath, StandardCharsets.UTF_8)) {
+            return (Map<?, ?>)new JSON().parse(new JSON.ReaderSource(reader));
+        }
+    }
+
+    @Test
+    public void testLiveIntervals() throws Exception {
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--running-time",
+                "3",
+                "--resource-rate",
+                "20",
+                "--live"
+        };
+        LoadGeneratorStarterArgs starterArgs = LoadGeneratorStarter.parse(args);
+        Assert.assertTrue(starterArgs.isLive());
+        ReportListener listener = new ReportListener();
+        listener.setSamplePeriod(500);
+        List<ReportListener.Interval> intervals = new CopyOnWriteArrayList<>();
+        listener.addBean((ReportListener.IntervalListener)intervals::add);
+        LoadGenerator generator = LoadGeneratorStarter.configure(starterArgs)
+                .listener(listener)
+                .resourceListener(listener)
+                .build();
+        generator.addBean(listener);
+        LoadGeneratorStarter.run(generator);
+        ReportListener.Report report = listener.whenComplete().join();
+
+        Assert.assertTrue(intervals.size() >= 5);
+        Assert.assertEquals(intervals, report.getIntervals());
+        long responses = intervals.stream().mapToLong(ReportListener.Interval::getResponses).sum();
+        Assert.assertEquals(report.getResponseTimeHistogram().getTotalCount(), responses);
+        long requests = intervals.stream().mapToLong(ReportListener.Interval::getRequests).sum();
+        Assert.assertEquals(responses, requests);
+        Assert.assertEquals(0, intervals.get(intervals.size() - 1).getInFlightRequests());
+
+        // The sender and executor threads use CPU, and the total
+        // of the thread groups is the CPU time of the process.
+        Map<String, Long> threadCPUTimes = report.getThreadCPUTimes();
+        Assert.assertTrue(threadCPUTimes.get("sender") > 0);
+        Assert.assertTrue(threadCPUTimes.get("executor") > 0);
+        Assert.assertFalse(threadCPUTimes.containsKey("selector"));
+        long intervalsSenderCPUTime = intervals.stream().mapToLong(interval -> interval.getThreadCPUTimes().get("sender")).sum();
+        Assert.assertEquals((long)threadCPUTimes.get("sender"), intervalsSenderCPUTime);
+        JSON json = new JSON();
+        ReportListener.Report copy = new ReportListener.Report();
+        copy.fromJSON((Map<?, ?>)json.parse(new JSON.StringSource(json.toJSON(report))));
+        Assert.assertEquals(threadCPUTimes, copy.getThreadCPUTimes());
+        // Previous versions accounted a separate selector group, now part of the executor group.
+        @SuppressWarnings("unchecked")
+        Map<String, Object> legacyMap = (Map<String, Object>)json.parse(new JSON.StringSource(json.toJSON(report)));
+        legacyMap.put("threadCPUTime", Map.of("executor", 7L, "selector", 5L));
+        ReportListener.Report legacy = new ReportListener.Report();
+        legacy.fromJSON(legacyMap);
+        Assert.assertEquals(12L, (long)legacy.getThreadCPUTimes().get("executor"));
+        Assert.assertFalse(legacy.getThreadCPUTimes().containsKey("selector"));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StatsFile(generator.getConfig(), null, report).write(output);
+        StatsFile stats = StatsFile.read(new ByteArrayInputStream(output.toByteArray()));
+        Assert.assertEquals(threadCPUTimes, stats.getReport().getThreadCPUTimes());
+        Assert.assertEquals(intervals.get(0).getThreadCPUTimes(), stats.getReport().getIntervals().get(0).getThreadCPUTimes());
+
+        // Verify that the live display works.
+        LoadGeneratorStarter.main(args);
+    }
+
+    @Test
+    public void testOpenMetricsEndpoint() throws Exception {
+        int metricsPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            metricsPort = socket.getLocalPort();
+        }
+        String[] args = new String[]{
+                "--port",
+                Integer.toString(connector.getLocalPort()),
+                "--running-time",
+                "5",
+                "--resource-rate",
+                "20",
+                "--metrics-port",
+                Integer.toString(metricsPort)
+        };
+        CompletableFuture<Void> run = CompletableFuture.runAsync(() -> {
+            try {
+                LoadGeneratorStarter.main(args);
+            } catch (Exception x) {
+                throw new RuntimeException(x);
+            }
+        });
+
+        HttpClient httpClient = new HttpClient();
+        httpClient.start();
+        try {
+            // Scrape like a metrics collector would do, until there is data.
+            String metrics = null;
+            long requests = 0;
+            for (int i = 0; i < 20 && requests == 0; ++i) {
+                Thread.sleep(500);
+                try {
+                    ContentResponse response = httpClient.GET("http://localhost:" + metricsPort + "/metrics");
+                    Assert.assertEquals(HttpStatus.OK_200, response.getStatus());
+                    Assert.assertEquals(OpenMetricsHandler.CONTENT_TYPE, response.getHeaders().get(HttpHeader.CONTENT_TYPE));
+                    metrics = response.getContentAsString();
+                    requests = metrics.lines()
+                            .filter(line -> line.startsWith("loadgenerator_requests_total "))
+                            .mapToLong(line -> Long.parseLong(line.split(" ")[1]))
+                            .findAny()
+                            .orElse(0);
+                } catch (ExecutionException x) {
+                    // The metrics server may not be started yet.
+                }
+            }
+            Assert.assertNotNull(metrics);
+            Assert.assertTrue(requests > 0);
+            List<String> lines = metrics.lines().collect(Collectors.toList());
+            Assert.assertEquals("# EOF", lines.get(lines.size() - 1));
+            Pattern sample = Pattern.compile("loadgenerator_[a-z_]+(\\{[a-z]+=\"[^\"]*\"\\})? [-+0-9.eE]+ [0-9]+\\.[0-9]{3}");
+            lines.stream()
+                    .filter(line -> !line.startsWith("#"))
+                    .forEach(line -> Assert.assertTrue(line, sample.matcher(line).matches()));
+            Assert.assertTrue(metrics.contains("loadgenerator_responses_total{status=\"2xx\"}"));
+            Assert.assertTrue(metrics.contains("loadgenerator_interval_response_time_seconds{percentile=\"99\"}"));
+        } finally {
+            httpClient.stop();
+        }
+
+        run.get(15, TimeUnit.SECONDS);
+    }
+
+    private static class ServerInfoServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            ServerInfo serverInfo = new ServerInfo();
+            serverInfo.setServerVersion(Jetty.VERSION);
+            serverInfo.setProcessorCount(Runtime.getRuntime().availableProcessors());
+            serverInfo.setJavaVersion(System.getProperty("java.version"));
+            response.setContentType("application/json");
+            response.getWriter().write(new JSON().toJSON(serverInfo));
+        }
+    }
+
     private static class TestServlet extends HttpServlet {
         private final AtomicInteger getNumber = new AtomicInteger(0);
         private final AtomicInteger postNumber = new AtomicInteger(0);
@@ -282,6 +1530,21 @@ public class LoadGeneratorStarterTest {
                             }
                         }
                     }
+                    String delay = request.getParameter("delay");
+                    if (delay != null) {
+                        try {
+                            Thread.sleep(Long.parseLong(delay));
+                        } catch (InterruptedException x) {
+                            throw new IOException(x);
+                        }
+                    }
+                    if (request.getParameter("close") != null) {
+                        response.setHeader("Connection", "close");
+                    }
+                    String status = request.getParameter("status");
+                    if (status != null) {
+                        response.setStatus(Integer.parseInt(status));
+                    }
                     response.getOutputStream().write("Jetty rocks!!".getBytes());
                     response.flushBuffer();
                     getNumber.addAndGet(1);